@@ -1,16 +1,37 @@
 package dtls;
 
-import JFSM.JFSM.src.main.java.com.fsm.StateManager;
-import dtls.fsm.definition.DtlsState;
+import dtls.admission.DtlsHandshakeAdmissionController;
+import dtls.admission.DtlsHandshakeAdmissionController.DtlsAdmissionResult;
+import dtls.cipher.DtlsCipherSuite;
+import dtls.cookie.DtlsCookieManager;
+import dtls.crypto.DtlsCryptoExecutor;
+import dtls.fsm.DtlsFsmManager;
+import dtls.session.DtlsSession;
+import dtls.session.DtlsSessionCache;
+import dtls.ticket.DtlsSessionTicketManager;
+import dtls.ticket.TlsSessionTicket;
+import dtls.type.DtlsClientHello;
+import dtls.type.DtlsNewSessionTicket;
+import dtls.unit.DtlsPeerKey;
 import dtls.unit.DtlsUnit;
+import dtls.unit.DtlsUnitEventLoopGroup;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Made by a singleton pattern
+ * Made by a singleton pattern (initialization-on-demand holder, thread-safe)
  */
 public class DtlsHandshakeManager {
 
@@ -71,78 +92,376 @@ public class DtlsHandshakeManager {
     
     ////////////////////////////////////////////////////////////
     // VARIABLES
-    private static DtlsHandshakeManager dtlsHandshakeManager = null;
+    // Shared by every DtlsUnit (no thread or FSM per association)
+    private final DtlsFsmManager dtlsFsmManager = new DtlsFsmManager();
+    // Every unit is pinned to one of these loops (its events are serialized there)
+    private final DtlsUnitEventLoopGroup dtlsUnitEventLoopGroup = new DtlsUnitEventLoopGroup();
 
-    private final HashMap<String, DtlsUnit> dtlsUnitHashMap = new HashMap<>();
-    private final ReentrantLock dtlsUnitHashMapLock = new ReentrantLock();
+    // Association table : lock-free lookups, per-bin CAS / locking on insert & remove
+    private static final int DTLS_UNIT_MAP_INITIAL_CAPACITY = 1024;
+    private final ConcurrentHashMap<DtlsPeerKey, DtlsUnit> dtlsUnitMap = new ConcurrentHashMap<>(DTLS_UNIT_MAP_INITIAL_CAPACITY);
+
+    // Lifecycle : idle TTL + max associations (LRU eviction)
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60000;
+    public static final int DEFAULT_MAX_DTLS_UNIT_COUNT = 100000;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+    private static final int EVICTION_BATCH_RATIO = 16; // Evicts 1/16 of the cap at once when it is reached
+
+    private volatile long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    private volatile int maxDtlsUnitCount = DEFAULT_MAX_DTLS_UNIT_COUNT;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ScheduledExecutorService sweepExecutor;
+
+    // Stateless HelloVerifyRequest cookies (no unit is allocated before the cookie verifies)
+    private final DtlsCookieManager dtlsCookieManager = new DtlsCookieManager();
+
+    // Session resumption (abbreviated handshake) : session ID cache + stateless tickets
+    private final DtlsSessionCache dtlsSessionCache = new DtlsSessionCache();
+    private final DtlsSessionTicketManager dtlsSessionTicketManager = new DtlsSessionTicketManager();
+    private final SecureRandom secureRandom = new SecureRandom(); // New sessions (session ID, master secret)
+
+    // Signatures & key agreements run here, not on the event loops (new handshakes are shed first on overload)
+    private final DtlsCryptoExecutor dtlsCryptoExecutor = new DtlsCryptoExecutor();
+
+    // Rate & concurrency of the new handshakes (resumptions first)
+    private final DtlsHandshakeAdmissionController dtlsHandshakeAdmissionController = new DtlsHandshakeAdmissionController();
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
     // CONSTRUCTORs
-    public DtlsHandshakeManager() {}
+    private DtlsHandshakeManager() {
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("DtlsUnitSweeper-%d").daemon(true).build()
+        );
+        sweepExecutor.scheduleWithFixedDelay(
+                () -> {
+                    long nowMs = System.currentTimeMillis();
+                    try {
+                        sweepIdleDtlsUnits(nowMs);
+                    } catch (Exception e) {
+                        logger.warn("DtlsHandshakeManager.sweepIdleDtlsUnits.Exception", e);
+                    }
+
+                    try {
+                        dtlsSessionCache.removeExpiredSessions(nowMs);
+                    } catch (Exception e) {
+                        logger.warn("DtlsHandshakeManager.removeExpiredSessions.Exception", e);
+                    }
+                },
+                SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS
+        );
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
     // FUNCTIONS
-    public static DtlsHandshakeManager getInstance() {
-        if (dtlsHandshakeManager == null) {
-            dtlsHandshakeManager = new DtlsHandshakeManager();
-        }
+    private static class DtlsHandshakeManagerHolder {
+        private static final DtlsHandshakeManager INSTANCE = new DtlsHandshakeManager();
+    }
 
-        return dtlsHandshakeManager;
+    public static DtlsHandshakeManager getInstance() {
+        return DtlsHandshakeManagerHolder.INSTANCE;
     }
     ////////////////////////////////////////////////////////////
 
-    public void addDtlsUnit(String key) {
+    /**
+     * Adds a new association (or returns the existing one, atomically)
+     *      If the table is full, the least recently active associations are evicted first.
+     * @param key Peer identity
+     * @return Unit of the association, null if the key is null or the unit can not be created
+     */
+    public DtlsUnit addDtlsUnit(DtlsPeerKey key) {
         if (key == null) {
             logger.warn("Fail to add a new dtls unit. Argument error is occurred. (key={})", key);
-            return;
+            return null;
         }
 
-        dtlsUnitHashMapLock.lock();
         try {
-            ////////////////////////////
-            DtlsUnit dtlsUnit = new DtlsUnit(key);
-            ////////////////////////////
-
-            ////////////////////////////
-            StateManager stateManager = dtlsUnit.getDtlsFsmManager().getStateManager();
-            stateManager.addStateUnit(
-                    dtlsUnit.getDtlsStateUnitName(),
-                    DtlsState.NAME,
-                    DtlsState.DTLS_STATE_PREPARING,
-                    dtlsUnit
-            );
-            ////////////////////////////
+            if (dtlsUnitMap.size() >= maxDtlsUnitCount && !dtlsUnitMap.containsKey(key)) {
+                evictLeastRecentlyActiveDtlsUnits();
+            }
 
-            dtlsUnitHashMap.putIfAbsent(key, dtlsUnit);
-            logger.warn("Success to add a new dtls unit. (key={})", key);
+            return dtlsUnitMap.computeIfAbsent(key, this::createDtlsUnit);
         } catch (Exception e) {
             logger.warn("DtlsHandshakeManager.addDtlsUnit.Exception", e);
-        } finally {
-            dtlsUnitHashMapLock.unlock();
+            return null;
         }
     }
 
-    public void deleteDtlsUnit(String key) {
+    /**
+     * Adds the association of a new handshake if the admission controller lets it in
+     *      The unit holds the admission slot until the handshake is finished or the unit is removed.
+     * @param key Peer identity
+     * @param isResumption true if the ClientHello resumes a known session (priority)
+     * @return Unit of the association, null if the handshake is deferred (nothing is allocated)
+     */
+    public DtlsUnit admitDtlsUnit(DtlsPeerKey key, boolean isResumption) {
+        if (key == null) { return null; }
+
+        DtlsAdmissionResult admissionResult = dtlsHandshakeAdmissionController.tryAdmit(isResumption, System.nanoTime());
+        if (admissionResult != DtlsAdmissionResult.ADMITTED) {
+            logger.debug("New handshake is deferred. (key={}, isResumption={}, result={})", key, isResumption, admissionResult);
+            return null;
+        }
+
+        DtlsUnit dtlsUnit = addDtlsUnit(key);
+        if (dtlsUnit == null || !dtlsUnit.setAdmission(dtlsHandshakeAdmissionController)) {
+            // Not added, or the unit already holds a slot
+            dtlsHandshakeAdmissionController.release();
+        }
+        return dtlsUnit;
+    }
+
+    private DtlsUnit createDtlsUnit(DtlsPeerKey key) {
+        // Starts in DtlsState.DTLS_STATE_PREPARING, the transition table is shared
+        DtlsUnit dtlsUnit = new DtlsUnit(
+                key, dtlsFsmManager, dtlsUnitEventLoopGroup.getEventLoop(key)
+        );
+
+        logger.debug("Success to add a new dtls unit. (key={})", key);
+        return dtlsUnit;
+    }
+
+    public void deleteDtlsUnit(DtlsPeerKey key) {
         if (key == null) { return; }
 
-        dtlsUnitHashMapLock.lock();
         try {
-            dtlsUnitHashMap.remove(key);
+            DtlsUnit dtlsUnit = dtlsUnitMap.remove(key);
+            if (dtlsUnit != null) {
+                closeDtlsUnit(dtlsUnit);
+            }
         } catch (Exception e) {
             logger.warn("DtlsHandshakeManager.deleteDtlsUnit.Exception", e);
+        }
+    }
+
+    /**
+     * Removes the given unit only if it is still the one in the table (not re-created in the meantime)
+     *      (ex. idle unit, handshake that can not go on)
+     * @return true if the unit is removed
+     */
+    public boolean removeDtlsUnit(DtlsUnit dtlsUnit) {
+        if (!dtlsUnitMap.remove(dtlsUnit.getPeerKey(), dtlsUnit)) { return false; }
+
+        closeDtlsUnit(dtlsUnit);
+        return true;
+    }
+
+    /**
+     * Tears down the timers of the unit (the FSM state goes with the unit)
+     */
+    private void closeDtlsUnit(DtlsUnit dtlsUnit) {
+        dtlsUnit.close();
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Looks up a resumable session for the ClientHello (server side)
+     *      The ticket is tried first, then the session ID. On a hit the unit takes the abbreviated handshake :
+     *          Server : ServerHello, ChangeCipherSpec, Finished > [SEND_FLIGHT_2] > WAITING > [RECEIVE_LAST_FLIGHT] > FINISHED
+     *          Client : ChangeCipherSpec, Finished > [SEND_FLIGHT_1] > FINISHED
+     *      (No Certificate, ServerKeyExchange or ClientKeyExchange, the master secret of the session is reused)
+     * @param dtlsUnit Unit of the association
+     * @param dtlsClientHello Received ClientHello
+     * @param ticket Ticket of the SessionTicket extension (nullable)
+     * @return The resumed session, null if the full handshake is needed
+     */
+    public DtlsSession resumeSession(DtlsUnit dtlsUnit, DtlsClientHello dtlsClientHello, byte[] ticket) {
+        if (dtlsUnit == null || dtlsClientHello == null) { return null; }
+
+        DtlsSession dtlsSession = null;
+        if (ticket != null && ticket.length > 0) {
+            dtlsSession = dtlsSessionTicketManager.validateTicket(ticket);
+        }
+        if (dtlsSession == null) {
+            dtlsSession = dtlsSessionCache.get(dtlsClientHello.getSessionId(), System.currentTimeMillis());
+        }
+
+        byte[] offeredCipherSuites = dtlsClientHello.getDtlsCipherSuiteList() == null ?
+                null : dtlsClientHello.getDtlsCipherSuiteList().getData();
+        if (dtlsSession == null || !dtlsSession.isResumableBy(dtlsClientHello.getProtocolVersion(), offeredCipherSuites)) {
+            return null;
+        }
+
+        dtlsUnit.setDtlsSession(dtlsSession, true);
+        logger.debug("({}) Session is resumed. (byTicket={})", dtlsUnit.getId(), ticket != null && ticket.length > 0);
+        return dtlsSession;
+    }
+
+    /**
+     * Cheap check before the admission (the session is not bound to a unit)
+     * @return true if the ticket of the ClientHello is valid or its session ID is in the session cache
+     */
+    public boolean hasResumableSession(DtlsClientHello dtlsClientHello) {
+        if (dtlsClientHello == null) { return false; }
+
+        byte[] ticket = dtlsClientHello.getSessionTicket();
+        if (ticket != null && ticket.length > 0 && dtlsSessionTicketManager.validateTicket(ticket) != null) {
+            return true;
+        }
+        return dtlsSessionCache.get(dtlsClientHello.getSessionId(), System.currentTimeMillis()) != null;
+    }
+
+    /**
+     * Creates the session of a full handshake (server side), with the first cipher suite offered by the client
+     *      The master secret is to be derived from the key exchange, which is not implemented yet,
+     *      so a random secret stands in for it. (The session can still be stored, sealed into a ticket and resumed)
+     * @return New session, null if the ClientHello offers no cipher suite
+     */
+    public DtlsSession createSession(DtlsClientHello dtlsClientHello) {
+        if (dtlsClientHello == null || dtlsClientHello.getDtlsCipherSuiteList() == null) { return null; }
+
+        List<DtlsCipherSuite> offeredCipherSuiteList = dtlsClientHello.getDtlsCipherSuiteList().getDtlsCipherSuiteList();
+        if (offeredCipherSuiteList == null || offeredCipherSuiteList.isEmpty()) { return null; }
+
+        byte[] sessionId = new byte[DtlsSession.SESSION_ID_LENGTH];
+        byte[] masterSecret = new byte[DtlsSession.MASTER_SECRET_LENGTH];
+        secureRandom.nextBytes(sessionId);
+        secureRandom.nextBytes(masterSecret);
+
+        return new DtlsSession(
+                sessionId, dtlsClientHello.getProtocolVersion(),
+                offeredCipherSuiteList.get(0), dtlsClientHello.getDtlsCompressionMethod(),
+                masterSecret, System.currentTimeMillis()
+        );
+    }
+
+    /**
+     * Keeps the session of a finished full handshake for the next resumption (session ID)
+     */
+    public void storeSession(DtlsUnit dtlsUnit, DtlsSession dtlsSession) {
+        if (dtlsUnit == null || dtlsSession == null) { return; }
+
+        dtlsUnit.setDtlsSession(dtlsSession, false);
+        dtlsSessionCache.put(dtlsSession);
+    }
+
+    /**
+     * @return NewSessionTicket message of the session, null if the ticket can not be issued
+     */
+    public DtlsNewSessionTicket issueSessionTicket(DtlsSession dtlsSession) {
+        TlsSessionTicket tlsSessionTicket = dtlsSessionTicketManager.issueTicket(dtlsSession);
+        if (tlsSessionTicket == null) { return null; }
+
+        return new DtlsNewSessionTicket(tlsSessionTicket);
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Removes the associations that are idle longer than the idle timeout (called by the sweeper every second)
+     * @param nowMs Current time (ms)
+     * @return Number of the removed associations
+     */
+    public int sweepIdleDtlsUnits(long nowMs) {
+        long curIdleTimeoutMs = idleTimeoutMs;
+        int removedCount = 0;
+
+        for (DtlsUnit dtlsUnit : dtlsUnitMap.values()) {
+            if (nowMs - dtlsUnit.getLastActivityTimeMs() >= curIdleTimeoutMs && removeDtlsUnit(dtlsUnit)) {
+                removedCount++;
+            }
+        }
+
+        if (removedCount > 0) {
+            logger.debug("Idle dtls units are removed. (count={}, remain={})", removedCount, dtlsUnitMap.size());
+        }
+        return removedCount;
+    }
+
+    /**
+     * Evicts the least recently active associations down to (max - max / EVICTION_BATCH_RATIO)
+     *      Sorting the table is amortized over the batch, so the cost per insert stays O(log n).
+     *      Only one thread evicts at a time, the others go on. (The cap can be exceeded by the concurrent inserts)
+     * @return Number of the evicted associations
+     */
+    private int evictLeastRecentlyActiveDtlsUnits() {
+        if (!evictionLock.tryLock()) { return 0; }
+
+        try {
+            int curMaxDtlsUnitCount = maxDtlsUnitCount;
+            int targetCount = curMaxDtlsUnitCount - Math.max(curMaxDtlsUnitCount / EVICTION_BATCH_RATIO, 1);
+            int evictCount = dtlsUnitMap.size() - targetCount;
+            if (evictCount <= 0) { return 0; }
+
+            List<DtlsUnit> dtlsUnitList = new ArrayList<>(dtlsUnitMap.values());
+            dtlsUnitList.sort(Comparator.comparingLong(DtlsUnit::getLastActivityTimeMs));
+
+            int evictedCount = 0;
+            for (DtlsUnit dtlsUnit : dtlsUnitList) {
+                if (evictedCount >= evictCount) { break; }
+
+                if (removeDtlsUnit(dtlsUnit)) {
+                    evictedCount++;
+                }
+            }
+
+            logger.warn("Dtls unit table is full. Least recently active units are evicted. (count={}, max={})",
+                    evictedCount, curMaxDtlsUnitCount
+            );
+            return evictedCount;
         } finally {
-            dtlsUnitHashMapLock.unlock();
+            evictionLock.unlock();
         }
     }
 
-    public DtlsUnit getDtlsUnit(String key) {
-        return dtlsUnitHashMap.get(key);
+    public DtlsUnit getDtlsUnit(DtlsPeerKey key) {
+        if (key == null) { return null; }
+
+        return dtlsUnitMap.get(key);
+    }
+
+    public DtlsUnit getDtlsUnit(InetSocketAddress peerAddress) {
+        return getDtlsUnit(DtlsPeerKey.of(peerAddress));
     }
 
     public int getDtlsUnitMapSize() {
-        return dtlsUnitHashMap.size();
+        return dtlsUnitMap.size();
+    }
+
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public int getMaxDtlsUnitCount() {
+        return maxDtlsUnitCount;
+    }
+
+    public void setMaxDtlsUnitCount(int maxDtlsUnitCount) {
+        this.maxDtlsUnitCount = Math.max(maxDtlsUnitCount, 1);
+    }
+
+    public DtlsFsmManager getDtlsFsmManager() {
+        return dtlsFsmManager;
+    }
+
+    public DtlsUnitEventLoopGroup getDtlsUnitEventLoopGroup() {
+        return dtlsUnitEventLoopGroup;
+    }
+
+    public DtlsCookieManager getDtlsCookieManager() {
+        return dtlsCookieManager;
+    }
+
+    public DtlsCryptoExecutor getDtlsCryptoExecutor() {
+        return dtlsCryptoExecutor;
+    }
+
+    public DtlsHandshakeAdmissionController getDtlsHandshakeAdmissionController() {
+        return dtlsHandshakeAdmissionController;
+    }
+
+    public DtlsSessionCache getDtlsSessionCache() {
+        return dtlsSessionCache;
+    }
+
+    public DtlsSessionTicketManager getDtlsSessionTicketManager() {
+        return dtlsSessionTicketManager;
     }
 
 }
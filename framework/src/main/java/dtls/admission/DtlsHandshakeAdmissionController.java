@@ -0,0 +1,158 @@
+package dtls.admission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control of the new handshakes (reconnect storms)
+ *      - Rate : token bucket of {@link #getHandshakesPerSecond()} with a burst of {@link #getBurst()}.
+ *          Kept as one "theoretical arrival time" (GCRA), an admission is one CAS, nothing is allocated.
+ *      - Concurrency : at most {@link #getMaxConcurrentHandshakes()} handshakes in progress.
+ *      - Resumptions are cheap (no certificate & key exchange) and have priority :
+ *          they do not take tokens, and a share of the concurrency ({@link #getReservedForResumption()})
+ *          is kept for them only.
+ *      - Thread-safe and lock-free.
+ */
+public class DtlsHandshakeAdmissionController {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsHandshakeAdmissionController.class);
+
+    public static final int DEFAULT_HANDSHAKES_PER_SECOND = 1000;
+    public static final int DEFAULT_BURST = 200;
+    public static final int DEFAULT_MAX_CONCURRENT_HANDSHAKES = 2000;
+    private static final int RESUMPTION_RESERVED_RATIO = 4; // 1/4 of the concurrency is kept for the resumptions
+
+    public enum DtlsAdmissionResult {
+        ADMITTED,
+        RATE_LIMITED,
+        CONCURRENCY_LIMITED
+    }
+
+    private final int handshakesPerSecond;
+    private final int burst;
+    private final long emissionIntervalNanos; // Cost of one handshake in the bucket
+    private final long burstToleranceNanos;
+    private final int maxConcurrentHandshakes;
+    private final int reservedForResumption;
+
+    private final AtomicLong theoreticalArrivalTimeNanos;
+    private final AtomicInteger inProgressCount = new AtomicInteger(0);
+
+    private final AtomicLong rateLimitedCount = new AtomicLong(0);
+    private final AtomicLong concurrencyLimitedCount = new AtomicLong(0);
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsHandshakeAdmissionController() {
+        this(DEFAULT_HANDSHAKES_PER_SECOND, DEFAULT_BURST, DEFAULT_MAX_CONCURRENT_HANDSHAKES);
+    }
+
+    /**
+     * @param handshakesPerSecond Sustained rate of the new full handshakes
+     * @param burst Number of the full handshakes that can start at once after an idle period
+     * @param maxConcurrentHandshakes Maximum number of the handshakes in progress (full + resumption)
+     */
+    public DtlsHandshakeAdmissionController(int handshakesPerSecond, int burst, int maxConcurrentHandshakes) {
+        this.handshakesPerSecond = Math.max(handshakesPerSecond, 1);
+        this.burst = Math.max(burst, 1);
+        this.emissionIntervalNanos = TimeUnit.SECONDS.toNanos(1) / this.handshakesPerSecond;
+        this.burstToleranceNanos = emissionIntervalNanos * this.burst;
+        this.maxConcurrentHandshakes = Math.max(maxConcurrentHandshakes, 1);
+        this.reservedForResumption = this.maxConcurrentHandshakes / RESUMPTION_RESERVED_RATIO;
+        this.theoreticalArrivalTimeNanos = new AtomicLong(System.nanoTime());
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Admits a new handshake, the caller must {@link #release()} it when the handshake ends (finished or removed)
+     * @param isResumption true if the ClientHello resumes a known session
+     * @param nowNanos Current time (System.nanoTime())
+     * @return ADMITTED, or the reason of the rejection (nothing is taken)
+     */
+    public DtlsAdmissionResult tryAdmit(boolean isResumption, long nowNanos) {
+        int concurrencyLimit = isResumption ? maxConcurrentHandshakes : maxConcurrentHandshakes - reservedForResumption;
+        if (!tryIncrementInProgress(concurrencyLimit)) {
+            concurrencyLimitedCount.incrementAndGet();
+            return DtlsAdmissionResult.CONCURRENCY_LIMITED;
+        }
+
+        if (!isResumption && !tryTakeToken(nowNanos)) {
+            inProgressCount.decrementAndGet();
+            rateLimitedCount.incrementAndGet();
+            return DtlsAdmissionResult.RATE_LIMITED;
+        }
+
+        return DtlsAdmissionResult.ADMITTED;
+    }
+
+    /**
+     * Ends an admitted handshake
+     */
+    public void release() {
+        if (inProgressCount.decrementAndGet() < 0) {
+            inProgressCount.incrementAndGet();
+            logger.warn("DtlsHandshakeAdmissionController: Released more than admitted.");
+        }
+    }
+
+    private boolean tryIncrementInProgress(int limit) {
+        while (true) {
+            int curCount = inProgressCount.get();
+            if (curCount >= limit) { return false; }
+
+            if (inProgressCount.compareAndSet(curCount, curCount + 1)) { return true; }
+        }
+    }
+
+    /**
+     * GCRA : the bucket is full when the theoretical arrival time is in the past,
+     *      a handshake pushes it by one interval, the bucket is empty when it is more than the burst ahead of now.
+     */
+    private boolean tryTakeToken(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrivalTimeNanos.get();
+            long newTat = Math.max(tat, nowNanos) + emissionIntervalNanos;
+            if (newTat - nowNanos > burstToleranceNanos) { return false; }
+
+            if (theoreticalArrivalTimeNanos.compareAndSet(tat, newTat)) { return true; }
+        }
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public int getInProgressCount() {
+        return inProgressCount.get();
+    }
+
+    public int getHandshakesPerSecond() {
+        return handshakesPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public int getMaxConcurrentHandshakes() {
+        return maxConcurrentHandshakes;
+    }
+
+    public int getReservedForResumption() {
+        return reservedForResumption;
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    public long getConcurrencyLimitedCount() {
+        return concurrencyLimitedCount.get();
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -2,7 +2,8 @@ package dtls.certificate;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import util.module.ByteUtil;
+import io.netty.buffer.ByteBuf;
+import util.parser.UnsignedField;
 
 public class Certificates {
 
@@ -23,11 +24,7 @@ public class Certificates {
         if (data != null && data.length > 0) {
             int index = 0;
 
-            byte[] lengthData = new byte[3];
-            System.arraycopy(data, index, lengthData, 0, 3);
-            byte[] lengthData2 = new byte[ByteUtil.NUM_BYTES_IN_LONG];
-            System.arraycopy(lengthData, 0, lengthData2,ByteUtil.NUM_BYTES_IN_LONG - 3, 3);
-            length = ByteUtil.bytesToLong(lengthData2, true);
+            length = UnsignedField.readUint24(data, index);
             index += 3;
 
             if (length > 0) {
@@ -43,10 +40,7 @@ public class Certificates {
         int index = 0;
         byte[] data = new byte[3 + (int) length];
 
-        byte[] lengthData = ByteUtil.longToBytes(length, true);
-        byte[] lengthData2 = new byte[3];
-        System.arraycopy(lengthData, ByteUtil.NUM_BYTES_IN_LONG - 3, lengthData2, 0, 3);
-        System.arraycopy(lengthData2, 0, data, index, 3);
+        UnsignedField.writeUint24(data, index, length);
         index += 3;
 
         if (length > 0 && certificate != null) {
@@ -55,6 +49,19 @@ public class Certificates {
 
         return data;
     }
+
+    public int encodedLength() {
+        return 3 + (int) length;
+    }
+
+    public void encodeTo(ByteBuf buf) {
+        buf.writeMedium((int) length);
+        if (length > 0 && certificate != null) {
+            buf.writeBytes(certificate, 0, (int) length);
+        } else {
+            buf.writeZero((int) length);
+        }
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
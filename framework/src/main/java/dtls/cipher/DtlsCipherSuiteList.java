@@ -2,6 +2,7 @@ package dtls.cipher;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import io.netty.buffer.ByteBuf;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -66,6 +67,17 @@ public class DtlsCipherSuiteList {
         return null;
     }
 
+    public void encodeTo(ByteBuf buf) {
+        for(DtlsCipherSuite dtlsCipherSuite : dtlsCipherSuiteList) {
+            if (dtlsCipherSuite == null) { continue; }
+
+            byte[] cipherSuiteData = dtlsCipherSuite.getCipherSuite();
+            if (cipherSuiteData == null || cipherSuiteData.length == 0) { continue; }
+
+            buf.writeBytes(cipherSuiteData);
+        }
+    }
+
     public List<DtlsCipherSuite> getDtlsCipherSuiteList() {
         return dtlsCipherSuiteList;
     }
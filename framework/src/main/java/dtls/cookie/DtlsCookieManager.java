@@ -0,0 +1,306 @@
+package dtls.cookie;
+
+import dtls.cipher.DtlsCipherSuite;
+import dtls.cipher.DtlsCipherSuiteList;
+import dtls.packet.DtlsPacket;
+import dtls.packet.base.DtlsContentType;
+import dtls.packet.base.DtlsProtocolVersion;
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.packet.recordlayer.DtlsRecordHeader;
+import dtls.packet.recordlayer.DtlsRecordLayer;
+import dtls.type.DtlsClientHello;
+import dtls.type.DtlsHelloVerifyRequest;
+import dtls.type.base.DtlsHandshakeCommonBody;
+import dtls.type.base.DtlsHandshakeType;
+import dtls.unit.DtlsPeerKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stateless cookie exchange of the first flight (RFC 6347, 4.2.1)
+ *      Cookie = HMAC-SHA256(Secret, Client-IP, Client-Parameters)
+ *      - Client-Parameters : version, random, session_id, cipher_suites, compression_method of the ClientHello
+ *          (the cookie field itself is not included, so the echoed ClientHello gives the same value)
+ *      - The secret is rotated every {@link #getRotationIntervalMs()}, the previous secret is still accepted
+ *          so a cookie issued just before the rotation is not rejected.
+ *      - Nothing is kept per peer, the server allocates a DtlsUnit only after the cookie verifies.
+ *      - Thread-safe. (Mac instances are kept per thread)
+ */
+public class DtlsCookieManager {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsCookieManager.class);
+
+    public static final String HMAC_ALGORITHM = "HmacSHA256";
+    public static final int COOKIE_LENGTH = 32;
+    public static final int SECRET_LENGTH = 32;
+    public static final long DEFAULT_ROTATION_INTERVAL_MS = 5 * 60 * 1000L;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final AtomicReference<DtlsCookieSecrets> secrets = new AtomicReference<>();
+    private final ThreadLocal<DtlsCookieMac> cookieMac = ThreadLocal.withInitial(DtlsCookieMac::new);
+    private volatile long rotationIntervalMs;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsCookieManager() {
+        this(DEFAULT_ROTATION_INTERVAL_MS);
+    }
+
+    /**
+     * @param rotationIntervalMs Lifetime of one secret (ms), a cookie is valid for up to twice this interval
+     */
+    public DtlsCookieManager(long rotationIntervalMs) {
+        this.rotationIntervalMs = rotationIntervalMs;
+        this.secrets.set(new DtlsCookieSecrets(newSecret(System.currentTimeMillis()), null));
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @param peerKey Address of the client
+     * @param dtlsClientHello Received ClientHello
+     * @return Cookie for the HelloVerifyRequest, null if the arguments are not valid
+     */
+    public byte[] generateCookie(DtlsPeerKey peerKey, DtlsClientHello dtlsClientHello) {
+        if (peerKey == null || dtlsClientHello == null) { return null; }
+
+        DtlsCookieSecrets curSecrets = getSecrets(System.currentTimeMillis());
+        return calculateCookie(curSecrets.current, peerKey, dtlsClientHello);
+    }
+
+    /**
+     * @param peerKey Address of the client
+     * @param dtlsClientHello Received ClientHello with the echoed cookie
+     * @return true if the cookie was issued to the same peer for the same ClientHello by the current or the previous secret
+     */
+    public boolean verifyCookie(DtlsPeerKey peerKey, DtlsClientHello dtlsClientHello) {
+        if (peerKey == null || dtlsClientHello == null) { return false; }
+
+        byte[] cookie = dtlsClientHello.getCookie();
+        if (cookie == null || cookie.length != COOKIE_LENGTH) { return false; }
+
+        DtlsCookieSecrets curSecrets = getSecrets(System.currentTimeMillis());
+        if (isEqual(cookie, calculateCookie(curSecrets.current, peerKey, dtlsClientHello))) {
+            return true;
+        }
+        return curSecrets.previous != null
+                && isEqual(cookie, calculateCookie(curSecrets.previous, peerKey, dtlsClientHello));
+    }
+
+    /**
+     * Makes the HelloVerifyRequest record for the given ClientHello
+     *      - The record sequence number is copied from the ClientHello. (RFC 6347, 4.2.1)
+     *      - The record and the server version are DTLS 1.0, whatever version is negotiated later. (RFC 6347, 4.2.1)
+     * @param clientHelloHeader Record header of the ClientHello
+     * @param clientHelloCommonBody Handshake header of the ClientHello
+     * @param cookie Cookie from {@link #generateCookie(DtlsPeerKey, DtlsClientHello)}
+     * @return Datagram with one HelloVerifyRequest record, null if the arguments are not valid
+     */
+    public DtlsPacket createHelloVerifyRequest(DtlsRecordHeader clientHelloHeader,
+                                               DtlsHandshakeCommonBody clientHelloCommonBody,
+                                               byte[] cookie) {
+        if (clientHelloHeader == null || clientHelloCommonBody == null || cookie == null) { return null; }
+
+        DtlsProtocolVersion protocolVersion = DtlsProtocolVersion.valueOf(
+                DtlsProtocolVersion.DTLS_1_0[0], DtlsProtocolVersion.DTLS_1_0[1]
+        );
+        DtlsHelloVerifyRequest dtlsHelloVerifyRequest = new DtlsHelloVerifyRequest(
+                protocolVersion, (short) cookie.length, cookie
+        );
+
+        int bodyLength = dtlsHelloVerifyRequest.encodedLength();
+        DtlsHandshake dtlsHandshake = new DtlsHandshake(
+                new DtlsHandshakeCommonBody(
+                        DtlsHandshakeType.valueOf(DtlsHandshakeType.TLS_TYPE_HELLO_VERIFY_REQUEST),
+                        bodyLength,
+                        clientHelloCommonBody.getMessageSequence(),
+                        0,
+                        bodyLength
+                ),
+                dtlsHelloVerifyRequest
+        );
+
+        return new DtlsPacket(
+                Collections.singletonList(
+                        new DtlsRecordLayer(
+                                new DtlsRecordHeader(
+                                        DtlsContentType.valueOf(DtlsContentType.TLS_TYPE_HANDSHAKE),
+                                        protocolVersion,
+                                        0,
+                                        clientHelloHeader.getSequenceNumber(),
+                                        dtlsHandshake.encodedLength()
+                                ),
+                                dtlsHandshake
+                        )
+                )
+        );
+    }
+
+    /**
+     * Starts a new secret now, the current one becomes the previous one
+     */
+    public void rotateSecret() {
+        rotateSecret(secrets.get(), System.currentTimeMillis());
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Rotates the secret lazily on the first call after the interval (one CAS, no timer thread)
+     */
+    private DtlsCookieSecrets getSecrets(long nowMs) {
+        DtlsCookieSecrets curSecrets = secrets.get();
+        if (nowMs - curSecrets.current.createdTimeMs < rotationIntervalMs) {
+            return curSecrets;
+        }
+        return rotateSecret(curSecrets, nowMs);
+    }
+
+    private DtlsCookieSecrets rotateSecret(DtlsCookieSecrets expectedSecrets, long nowMs) {
+        DtlsCookieSecrets newSecrets = new DtlsCookieSecrets(newSecret(nowMs), expectedSecrets.current);
+        if (secrets.compareAndSet(expectedSecrets, newSecrets)) {
+            logger.debug("DtlsCookieManager: The cookie secret is rotated.");
+            return newSecrets;
+        }
+        return secrets.get(); // Rotated by another thread
+    }
+
+    private DtlsCookieSecret newSecret(long nowMs) {
+        byte[] key = new byte[SECRET_LENGTH];
+        secureRandom.nextBytes(key);
+        return new DtlsCookieSecret(new SecretKeySpec(key, HMAC_ALGORITHM), nowMs);
+    }
+
+    private byte[] calculateCookie(DtlsCookieSecret secret, DtlsPeerKey peerKey, DtlsClientHello dtlsClientHello) {
+        Mac mac = cookieMac.get().init(secret);
+        if (mac == null) { return null; }
+
+        // Client-IP
+        updateLong(mac, peerKey.getHigh());
+        updateLong(mac, peerKey.getLow());
+        mac.update((byte) (peerKey.getPort() >>> 8));
+        mac.update((byte) peerKey.getPort());
+
+        // Client-Parameters (length-prefixed so the fields can not be shifted into each other)
+        updateField(mac, dtlsClientHello.getProtocolVersion() == null ? null : dtlsClientHello.getProtocolVersion().getVersion());
+        updateField(mac, dtlsClientHello.getRandomBytes());
+        updateField(mac, dtlsClientHello.getSessionId());
+
+        DtlsCipherSuiteList dtlsCipherSuiteList = dtlsClientHello.getDtlsCipherSuiteList();
+        int cipherSuiteCount = dtlsCipherSuiteList == null ? 0 : dtlsCipherSuiteList.getDtlsCipherSuiteList().size();
+        mac.update((byte) (cipherSuiteCount >>> 8));
+        mac.update((byte) cipherSuiteCount);
+        if (cipherSuiteCount > 0) {
+            for (DtlsCipherSuite dtlsCipherSuite : dtlsCipherSuiteList.getDtlsCipherSuiteList()) {
+                updateField(mac, dtlsCipherSuite == null ? null : dtlsCipherSuite.getCipherSuite());
+            }
+        }
+
+        int compressionMethod = dtlsClientHello.getDtlsCompressionMethod() == null ?
+                -1 : dtlsClientHello.getDtlsCompressionMethod().getMethod();
+        mac.update((byte) compressionMethod);
+
+        return mac.doFinal(); // 32 bytes (COOKIE_LENGTH)
+    }
+
+    private static void updateLong(Mac mac, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mac.update((byte) (value >>> shift));
+        }
+    }
+
+    private static void updateField(Mac mac, byte[] data) {
+        if (data == null) {
+            mac.update((byte) 0);
+            return;
+        }
+
+        mac.update((byte) data.length);
+        mac.update(data);
+    }
+
+    /**
+     * Constant-time comparison (no timing leak of the matching prefix)
+     */
+    private static boolean isEqual(byte[] cookie, byte[] expected) {
+        return expected != null && MessageDigest.isEqual(cookie, expected);
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public long getRotationIntervalMs() {
+        return rotationIntervalMs;
+    }
+
+    public void setRotationIntervalMs(long rotationIntervalMs) {
+        this.rotationIntervalMs = rotationIntervalMs;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    private static class DtlsCookieSecret {
+
+        private final SecretKeySpec key;
+        private final long createdTimeMs;
+
+        private DtlsCookieSecret(SecretKeySpec key, long createdTimeMs) {
+            this.key = key;
+            this.createdTimeMs = createdTimeMs;
+        }
+
+    }
+
+    /**
+     * Immutable pair, swapped at once by the rotation
+     */
+    private static class DtlsCookieSecrets {
+
+        private final DtlsCookieSecret current;
+        private final DtlsCookieSecret previous;
+
+        private DtlsCookieSecrets(DtlsCookieSecret current, DtlsCookieSecret previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+
+    }
+
+    /**
+     * Mac of one thread, re-keyed only when the secret changes
+     */
+    private static class DtlsCookieMac {
+
+        private Mac mac = null;
+        private DtlsCookieSecret secret = null;
+
+        private Mac init(DtlsCookieSecret newSecret) {
+            try {
+                if (mac == null) {
+                    mac = Mac.getInstance(HMAC_ALGORITHM);
+                }
+                if (secret != newSecret) {
+                    mac.init(newSecret.key);
+                    secret = newSecret;
+                } else {
+                    mac.reset();
+                }
+                return mac;
+            } catch (Exception e) {
+                logger.warn("DtlsCookieManager: Fail to initialize the mac.", e);
+                secret = null;
+                return null;
+            }
+        }
+
+    }
+    ////////////////////////////////////////////////////////////
+
+}
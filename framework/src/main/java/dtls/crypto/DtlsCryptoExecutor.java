@@ -0,0 +1,225 @@
+package dtls.crypto;
+
+import dtls.DtlsHandshakeManager;
+import dtls.fsm.definition.DtlsEvent;
+import dtls.unit.DtlsUnit;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.KeyAgreement;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Crypto offload stage of the handshake (signatures & key agreements off the event loops)
+ *      - Bounded worker pool with a bounded queue, the result is a CompletableFuture
+ *          that completes on the event loop of the association. (the unit resumes there without locks)
+ *      - The handshake is resumed by the follow-up event of the operation, or the unit is removed if it is not done.
+ *      - Backpressure by the queue depth :
+ *          work of a new handshake is shed first (when the queue is {@link #getShedThreshold()} deep),
+ *          work of an in-progress handshake only when the queue is full.
+ *      - Owned by DtlsHandshakeManager, the threads are daemon threads.
+ */
+public class DtlsCryptoExecutor {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsCryptoExecutor.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    // New handshakes are shed when the queue is 3/4 full, the rest is kept for the in-progress ones
+    private static final int SHED_RATIO_NUMERATOR = 3;
+    private static final int SHED_RATIO_DENOMINATOR = 4;
+
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final int queueSize;
+    private final int shedThreshold;
+
+    private final AtomicLong shedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsCryptoExecutor() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param threadCount Number of the crypto workers
+     * @param queueSize Maximum number of the pending crypto operations
+     */
+    public DtlsCryptoExecutor(int threadCount, int queueSize) {
+        threadCount = Math.max(threadCount, 1);
+        this.queueSize = Math.max(queueSize, 1);
+        this.shedThreshold = Math.max(this.queueSize * SHED_RATIO_NUMERATOR / SHED_RATIO_DENOMINATOR, 1);
+        this.threadPoolExecutor = new ThreadPoolExecutor(
+                threadCount, threadCount,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueSize),
+                new BasicThreadFactory.Builder().namingPattern("DtlsCrypto-%d").daemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Runs the crypto operation on a worker
+     * @param dtlsUnit Association that waits for the result (the returned future completes on its event loop),
+     *                 null to complete on the worker
+     * @param task Crypto operation
+     * @param isNewHandshake true for the work of a handshake that has not started yet (shed first)
+     * @return Future of the result, completed exceptionally with RejectedExecutionException if the stage is overloaded
+     */
+    public <T> CompletableFuture<T> submit(DtlsUnit dtlsUnit, Callable<T> task, boolean isNewHandshake) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (task == null) {
+            future.completeExceptionally(new IllegalArgumentException("task is null"));
+        } else if (isNewHandshake && threadPoolExecutor.getQueue().size() >= shedThreshold) {
+            shedCount.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("Crypto stage is overloaded. New handshake is shed."));
+        } else {
+            try {
+                threadPoolExecutor.execute(() -> {
+                    try {
+                        future.complete(task.call());
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejectedCount.incrementAndGet();
+                future.completeExceptionally(e);
+            }
+        }
+
+        if (dtlsUnit == null) {
+            return future;
+        }
+        // Hops back to the event loop of the association, also for a shed or rejected operation
+        //      (runs inline if the loop rejects it, the future must complete anyway)
+        return future.whenCompleteAsync((result, cause) -> {}, hopTask -> {
+            if (!dtlsUnit.execute(hopTask)) {
+                hopTask.run();
+            }
+        });
+    }
+
+    /**
+     * Runs the crypto operation of a flight and resumes the handshake of the unit on its event loop
+     *      - Done : onResult takes the result (ex. sends the flight), then nextEvent is fired.
+     *      - Shed, rejected or failed : the handshake can not go on, the unit is removed.
+     *          (the admission is released, the client starts over with a new ClientHello)
+     * @param dtlsUnit Association that waits for the result (not null)
+     * @param onResult Consumer of the result on the event loop of the unit (nullable)
+     * @param nextEvent Event that is fired after the result is taken (nullable)
+     * @return Future that completes on the event loop after the unit is resumed or removed
+     */
+    public <T> CompletableFuture<T> submit(DtlsUnit dtlsUnit, Callable<T> task, boolean isNewHandshake,
+                                           Consumer<T> onResult, DtlsEvent nextEvent) {
+        return submit(dtlsUnit, task, isNewHandshake).whenComplete((result, cause) -> {
+            if (dtlsUnit.isClosed()) { return; }
+
+            if (cause == null) {
+                try {
+                    if (onResult != null) {
+                        onResult.accept(result);
+                    }
+                    if (nextEvent == null || dtlsUnit.fireNow(nextEvent)) {
+                        return;
+                    }
+                    logger.warn("({}) Crypto result is done but the event is not accepted. (event={}, state={})",
+                            dtlsUnit.getId(), nextEvent, dtlsUnit.getDtlsState()
+                    );
+                } catch (Exception e) {
+                    logger.warn("({}) Fail to resume the handshake after the crypto operation.", dtlsUnit.getId(), e);
+                }
+            } else {
+                logger.debug("({}) Crypto operation is not done. Unit is removed. (cause={})", dtlsUnit.getId(), cause.toString());
+            }
+            DtlsHandshakeManager.getInstance().removeDtlsUnit(dtlsUnit);
+        });
+    }
+
+    /**
+     * Signs the data (ex. ServerKeyExchange params, CertificateVerify handshake hash)
+     * @param algorithm JCA signature algorithm (ex. SHA256withRSA, SHA256withECDSA)
+     */
+    public CompletableFuture<byte[]> sign(DtlsUnit dtlsUnit, String algorithm, PrivateKey privateKey,
+                                          byte[] data, boolean isNewHandshake) {
+        return submit(dtlsUnit, () -> {
+            Signature signature = Signature.getInstance(algorithm);
+            signature.initSign(privateKey);
+            signature.update(data);
+            return signature.sign();
+        }, isNewHandshake);
+    }
+
+    /**
+     * Verifies the signature of the peer (ex. ServerKeyExchange, CertificateVerify)
+     */
+    public CompletableFuture<Boolean> verify(DtlsUnit dtlsUnit, String algorithm, PublicKey publicKey,
+                                             byte[] data, byte[] signatureBytes, boolean isNewHandshake) {
+        return submit(dtlsUnit, () -> {
+            Signature signature = Signature.getInstance(algorithm);
+            signature.initVerify(publicKey);
+            signature.update(data);
+            return signature.verify(signatureBytes);
+        }, isNewHandshake);
+    }
+
+    /**
+     * Computes the shared secret of the key exchange (ex. ECDHE of ServerKeyExchange & ClientKeyExchange)
+     * @param algorithm JCA key agreement algorithm (ex. ECDH, DH, XDH)
+     * @return Pre-master secret
+     */
+    public CompletableFuture<byte[]> agree(DtlsUnit dtlsUnit, String algorithm, PrivateKey privateKey,
+                                           PublicKey peerPublicKey, boolean isNewHandshake) {
+        return submit(dtlsUnit, () -> {
+            KeyAgreement keyAgreement = KeyAgreement.getInstance(algorithm);
+            keyAgreement.init(privateKey);
+            keyAgreement.doPhase(peerPublicKey, true);
+            return keyAgreement.generateSecret();
+        }, isNewHandshake);
+    }
+
+    /**
+     * @return false if the work of a new handshake would be shed now (checked before a new association is added)
+     */
+    public boolean isAcceptingNewHandshakes() {
+        return threadPoolExecutor.getQueue().size() < shedThreshold;
+    }
+
+    public void stop() {
+        threadPoolExecutor.shutdown();
+        logger.debug("DtlsCryptoExecutor is stopped. (shed={}, rejected={})", shedCount.get(), rejectedCount.get());
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public int getQueueDepth() {
+        return threadPoolExecutor.getQueue().size();
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getShedThreshold() {
+        return shedThreshold;
+    }
+
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -0,0 +1,55 @@
+package dtls.fragment;
+
+import dtls.type.base.DtlsFormat;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A range [offset, offset + length) of an encoded handshake message body
+ *      Fragments of one message share the same body array, nothing is copied until the fragment is encoded.
+ */
+public class DtlsHandshakeFragmentBody extends DtlsFormat {
+
+    ////////////////////////////////////////////////////////////
+    transient private final byte[] body;
+    private final int offset;
+    private final int length;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsHandshakeFragmentBody(byte[] body, int offset, int length) {
+        this.body = body;
+        this.offset = offset;
+        this.length = length;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    @Override
+    public byte[] getData() {
+        byte[] data = new byte[length];
+        System.arraycopy(body, offset, data, 0, length);
+        return data;
+    }
+
+    @Override
+    public int encodedLength() {
+        return length;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        buf.writeBytes(body, offset, length);
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -0,0 +1,120 @@
+package dtls.fragment;
+
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.packet.recordlayer.DtlsRecordHeader;
+import dtls.type.base.DtlsHandshakeCommonBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits a handshake message into fragments that fit in one datagram of the path MTU (RFC 6347, 4.2.3)
+ *      - The body is encoded once, the fragments share it by (offset, length).
+ *      - Every fragment keeps the type, length and messageSequence of the message.
+ *      - Stateless and thread-safe.
+ */
+public class DtlsHandshakeFragmenter {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsHandshakeFragmenter.class);
+
+    public static final int DEFAULT_MTU = 1400; // Payload of a UDP datagram (without the IP & UDP headers)
+    public static final int MIN_FRAGMENT_LENGTH = 1;
+
+    private final int mtu;
+    private final int maxFragmentLength;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsHandshakeFragmenter() {
+        this(DEFAULT_MTU);
+    }
+
+    /**
+     * @param mtu Maximum datagram payload length, one record header + one handshake header must fit in it
+     */
+    public DtlsHandshakeFragmenter(int mtu) {
+        this.mtu = mtu;
+        this.maxFragmentLength = Math.max(
+                mtu - DtlsRecordHeader.LENGTH - DtlsHandshakeCommonBody.LENGTH,
+                MIN_FRAGMENT_LENGTH
+        );
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @param dtlsHandshake Whole (not fragmented) handshake message
+     * @return Fragments in order of the offset, the given handshake itself if it fits in one record,
+     *      empty list if the message is not valid
+     */
+    public List<DtlsHandshake> fragment(DtlsHandshake dtlsHandshake) {
+        return fragment(dtlsHandshake, maxFragmentLength);
+    }
+
+    /**
+     * @param dtlsHandshake Whole (not fragmented) handshake message
+     * @param firstFragmentLength Length of the first fragment (ex. to fill the rest of a datagram),
+     *      limited to [MIN_FRAGMENT_LENGTH, maxFragmentLength]. The next fragments are maxFragmentLength long.
+     * @return Fragments in order of the offset, the given handshake itself if it fits in the first fragment,
+     *      empty list if the message is not valid
+     */
+    public List<DtlsHandshake> fragment(DtlsHandshake dtlsHandshake, int firstFragmentLength) {
+        if (dtlsHandshake == null) { return Collections.emptyList(); }
+
+        DtlsHandshakeCommonBody commonBody = dtlsHandshake.getDtlsHandshakeCommonBody();
+        if (commonBody == null || dtlsHandshake.isFragment()) {
+            logger.warn("DtlsHandshakeFragmenter: Fail to fragment. Not a whole handshake message. (commonBody={})", commonBody);
+            return Collections.emptyList();
+        }
+
+        firstFragmentLength = Math.max(Math.min(firstFragmentLength, maxFragmentLength), MIN_FRAGMENT_LENGTH);
+        int bodyLength = (int) commonBody.getLength();
+        if (bodyLength <= firstFragmentLength) {
+            return Collections.singletonList(dtlsHandshake);
+        }
+
+        byte[] body = new byte[bodyLength];
+        if (!dtlsHandshake.getFormatBody(body, 0, bodyLength)) {
+            logger.warn("DtlsHandshakeFragmenter: Fail to fragment. The body is shorter than the length. (length={})", bodyLength);
+            return Collections.emptyList();
+        }
+
+        List<DtlsHandshake> fragments = new ArrayList<>(
+                1 + (bodyLength - firstFragmentLength + maxFragmentLength - 1) / maxFragmentLength
+        );
+        int offset = 0;
+        while (offset < bodyLength) {
+            int fragmentLength = Math.min(offset == 0 ? firstFragmentLength : maxFragmentLength, bodyLength - offset);
+            fragments.add(
+                    new DtlsHandshake(
+                            new DtlsHandshakeCommonBody(
+                                    commonBody.getHandshakeType(),
+                                    bodyLength,
+                                    commonBody.getMessageSequence(),
+                                    offset,
+                                    fragmentLength
+                            ),
+                            new DtlsHandshakeFragmentBody(body, offset, fragmentLength)
+                    )
+            );
+            offset += fragmentLength;
+        }
+        return fragments;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public int getMtu() {
+        return mtu;
+    }
+
+    public int getMaxFragmentLength() {
+        return maxFragmentLength;
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -0,0 +1,258 @@
+package dtls.fragment;
+
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.type.base.DtlsHandshakeCommonBody;
+import dtls.type.base.DtlsHandshakeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Reassembles fragmented handshake messages of one association (RFC 6347, 4.2.3)
+ *      - Messages are keyed by messageSequence, the received bytes of a message are tracked by a bitmap.
+ *          (Overlapping or duplicated fragments are merged)
+ *      - Messages are delivered in order of messageSequence, out-of-order messages are buffered
+ *          up to {@link #getMaxOutOfOrderWindow()} sequences ahead.
+ *      - The buffered bytes are limited by {@link #getMaxBufferedBytes()}.
+ *          If a new message does not fit, the furthest buffered messages are evicted first,
+ *          the message is dropped if it is still not enough. (The peer will retransmit)
+ *      - Not thread-safe, one instance per association handled by one thread at a time.
+ */
+public class DtlsHandshakeReassembler {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsHandshakeReassembler.class);
+
+    public static final int DEFAULT_MAX_BUFFERED_BYTES = 64 * 1024;
+    public static final int DEFAULT_MAX_MESSAGE_LENGTH = 32 * 1024;
+    public static final int DEFAULT_MAX_OUT_OF_ORDER_WINDOW = 8;
+
+    private final int maxBufferedBytes;
+    private final int maxMessageLength;
+    private final int maxOutOfOrderWindow;
+
+    private final TreeMap<Integer, DtlsHandshakeMessageBuffer> messageBufferMap = new TreeMap<>();
+    private int nextReceiveSequence = 0;
+    private int bufferedBytes = 0;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsHandshakeReassembler() {
+        this(DEFAULT_MAX_BUFFERED_BYTES, DEFAULT_MAX_MESSAGE_LENGTH, DEFAULT_MAX_OUT_OF_ORDER_WINDOW);
+    }
+
+    /**
+     * @param maxBufferedBytes Memory cap of the buffered message bodies (per association)
+     * @param maxMessageLength Maximum length of one handshake message
+     * @param maxOutOfOrderWindow Number of sequences that can be buffered ahead of the next expected sequence
+     */
+    public DtlsHandshakeReassembler(int maxBufferedBytes, int maxMessageLength, int maxOutOfOrderWindow) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.maxMessageLength = Math.min(maxMessageLength, maxBufferedBytes);
+        this.maxOutOfOrderWindow = maxOutOfOrderWindow;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Adds a received handshake (whole message or fragment)
+     * @param dtlsHandshake Received handshake
+     * @return Whole messages that became deliverable in order (empty if nothing can be delivered)
+     *      A message that is reassembled from fragments holds the raw body, parsed on the first getDtlsFormat() call.
+     */
+    public List<DtlsHandshake> add(DtlsHandshake dtlsHandshake) {
+        if (dtlsHandshake == null) { return Collections.emptyList(); }
+
+        DtlsHandshakeCommonBody commonBody = dtlsHandshake.getDtlsHandshakeCommonBody();
+        if (commonBody == null || commonBody.getHandshakeType() == null) { return Collections.emptyList(); }
+
+        int messageSequence = commonBody.getMessageSequence();
+        if (messageSequence < nextReceiveSequence) {
+            logger.debug("DtlsHandshakeReassembler: Drop the old message. (seq={}, next={})", messageSequence, nextReceiveSequence);
+            return Collections.emptyList();
+        }
+        if (messageSequence > nextReceiveSequence + maxOutOfOrderWindow) {
+            logger.warn("DtlsHandshakeReassembler: Drop the message out of the window. (seq={}, next={}, window={})",
+                    messageSequence, nextReceiveSequence, maxOutOfOrderWindow
+            );
+            return Collections.emptyList();
+        }
+
+        long length = commonBody.getLength();
+        long fragmentOffset = commonBody.getFragmentOffset();
+        long fragmentLength = commonBody.getFragmentLength();
+        if (length > maxMessageLength || fragmentOffset + fragmentLength > length) {
+            logger.warn("DtlsHandshakeReassembler: Drop the invalid fragment. (seq={}, length={}, offset={}, fragmentLength={})",
+                    messageSequence, length, fragmentOffset, fragmentLength
+            );
+            return Collections.emptyList();
+        }
+
+        // Fast path : whole message in order, nothing to buffer
+        if (messageSequence == nextReceiveSequence && !dtlsHandshake.isFragment()
+                && !messageBufferMap.containsKey(messageSequence)) {
+            nextReceiveSequence++;
+            return deliver(Collections.singletonList(dtlsHandshake));
+        }
+
+        DtlsHandshakeMessageBuffer messageBuffer = messageBufferMap.get(messageSequence);
+        if (messageBuffer == null) {
+            if (!reserve((int) length, messageSequence)) {
+                logger.warn("DtlsHandshakeReassembler: Drop the message. The buffer is full. (seq={}, length={}, buffered={}, max={})",
+                        messageSequence, length, bufferedBytes, maxBufferedBytes
+                );
+                return Collections.emptyList();
+            }
+            messageBuffer = new DtlsHandshakeMessageBuffer(commonBody.getHandshakeType(), (int) length);
+            messageBufferMap.put(messageSequence, messageBuffer);
+            bufferedBytes += (int) length;
+        } else if (messageBuffer.getHandshakeType().getType() != commonBody.getHandshakeType().getType()
+                || messageBuffer.getLength() != length) {
+            logger.warn("DtlsHandshakeReassembler: Drop the fragment. Mismatched type or length. (seq={}, type={}, length={}, buffered=[{}, {}])",
+                    messageSequence, commonBody.getHandshakeType(), length,
+                    messageBuffer.getHandshakeType(), messageBuffer.getLength()
+            );
+            return Collections.emptyList();
+        }
+
+        if (!messageBuffer.isComplete()
+                && !messageBuffer.write(dtlsHandshake, (int) fragmentOffset, (int) fragmentLength)) {
+            logger.warn("DtlsHandshakeReassembler: Drop the fragment. The body is shorter than the fragment length. (seq={}, fragmentLength={})",
+                    messageSequence, fragmentLength
+            );
+        }
+
+        return deliver(Collections.emptyList());
+    }
+
+    /**
+     * Moves the completed messages from the head of the buffer to the delivery list
+     */
+    private List<DtlsHandshake> deliver(List<DtlsHandshake> delivered) {
+        List<DtlsHandshake> result = null;
+
+        while (true) {
+            DtlsHandshakeMessageBuffer messageBuffer = messageBufferMap.get(nextReceiveSequence);
+            if (messageBuffer == null || !messageBuffer.isComplete()) { break; }
+
+            messageBufferMap.remove(nextReceiveSequence);
+            bufferedBytes -= messageBuffer.getLength();
+
+            if (result == null) {
+                result = new ArrayList<>(delivered);
+            }
+            result.add(messageBuffer.toDtlsHandshake(nextReceiveSequence));
+            nextReceiveSequence++;
+        }
+        return result == null ? delivered : result;
+    }
+
+    /**
+     * Makes room for a new message, evicts the buffered messages that are further than the given sequence
+     * @return false if the message does not fit even after the eviction
+     */
+    private boolean reserve(int length, int messageSequence) {
+        while (bufferedBytes + length > maxBufferedBytes && !messageBufferMap.isEmpty()) {
+            Map.Entry<Integer, DtlsHandshakeMessageBuffer> lastEntry = messageBufferMap.lastEntry();
+            if (lastEntry.getKey() <= messageSequence) { break; }
+
+            messageBufferMap.remove(lastEntry.getKey());
+            bufferedBytes -= lastEntry.getValue().getLength();
+            logger.debug("DtlsHandshakeReassembler: Evict the buffered message. (seq={}, length={})",
+                    lastEntry.getKey(), lastEntry.getValue().getLength()
+            );
+        }
+        return bufferedBytes + length <= maxBufferedBytes;
+    }
+
+    /**
+     * Drops every buffered message and restarts from the given sequence (ex. new handshake or renegotiation)
+     */
+    public void reset(int nextReceiveSequence) {
+        clear();
+        this.nextReceiveSequence = nextReceiveSequence;
+    }
+
+    public void clear() {
+        messageBufferMap.clear();
+        bufferedBytes = 0;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public int getNextReceiveSequence() {
+        return nextReceiveSequence;
+    }
+
+    public int getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    public int getBufferedMessageCount() {
+        return messageBufferMap.size();
+    }
+
+    public int getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    public int getMaxOutOfOrderWindow() {
+        return maxOutOfOrderWindow;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Body of one message being reassembled
+     *      The received byte ranges are kept in a bitmap (1 bit per body byte)
+     */
+    private static class DtlsHandshakeMessageBuffer {
+
+        private final DtlsHandshakeType handshakeType;
+        private final byte[] body;
+        private final BitSet receivedBitmap;
+
+        private DtlsHandshakeMessageBuffer(DtlsHandshakeType handshakeType, int length) {
+            this.handshakeType = handshakeType;
+            this.body = new byte[length];
+            this.receivedBitmap = new BitSet(length);
+        }
+
+        private boolean write(DtlsHandshake dtlsHandshake, int fragmentOffset, int fragmentLength) {
+            if (fragmentLength == 0) { return true; }
+
+            if (!dtlsHandshake.getFormatBody(body, fragmentOffset, fragmentLength)) {
+                return false;
+            }
+            receivedBitmap.set(fragmentOffset, fragmentOffset + fragmentLength);
+            return true;
+        }
+
+        private boolean isComplete() {
+            return receivedBitmap.nextClearBit(0) >= body.length;
+        }
+
+        private DtlsHandshake toDtlsHandshake(int messageSequence) {
+            return new DtlsHandshake(
+                    new DtlsHandshakeCommonBody(handshakeType, body.length, messageSequence, 0, body.length),
+                    body
+            );
+        }
+
+        private DtlsHandshakeType getHandshakeType() {
+            return handshakeType;
+        }
+
+        private int getLength() {
+            return body.length;
+        }
+
+    }
+    ////////////////////////////////////////////////////////////
+
+}
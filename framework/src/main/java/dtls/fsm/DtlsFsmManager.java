@@ -1,51 +1,100 @@
 package dtls.fsm;
 
-import JFSM.JFSM.src.main.java.com.fsm.StateManager;
-import JFSM.JFSM.src.main.java.com.fsm.module.StateHandler;
 import dtls.fsm.definition.DtlsEvent;
 import dtls.fsm.definition.DtlsState;
+import dtls.fsm.definition.callback.DtlsRetransmitTimerCanceller;
 import dtls.fsm.definition.callback.DtlsRetransmitTimerMaker;
 import dtls.unit.DtlsUnit;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FSM engine shared by every DtlsUnit (owned by DtlsHandshakeManager)
+ *      - One compiled transition table (DtlsState x DtlsEvent) for all units.
+ *      - Each unit keeps only its current state (int), a transition is one CAS on it.
+ *      - Firing an event allocates nothing, it is fired on the event loop of the unit (DtlsUnit.fire), the callback runs there too.
+ */
 public class DtlsFsmManager {
 
     /////////////////////////////////////////////////////
-    private final StateManager stateManager = new StateManager(10);
+    private static final Logger logger = LoggerFactory.getLogger(DtlsFsmManager.class);
+
+    private final DtlsTransitionTable dtlsTransitionTable;
     /////////////////////////////////////////////////////
 
     /////////////////////////////////////////////////////
     public DtlsFsmManager() {
-        // Nothing
+        this.dtlsTransitionTable = new DtlsTransitionTable(createDtlsTransitionList());
     }
     /////////////////////////////////////////////////////
 
     /////////////////////////////////////////////////////
-    public StateManager getStateManager() {
-        return stateManager;
+    /**
+     * Moves the unit to the next state of the event (atomically, lock-free)
+     * @param dtlsUnit Unit of the association
+     * @param event Event
+     * @return true if the transition is made, false if the event is not allowed in the current state
+     */
+    public boolean fire(DtlsUnit dtlsUnit, DtlsEvent event) {
+        if (dtlsUnit == null || event == null) { return false; }
+
+        while (true) {
+            int curState = dtlsUnit.getDtlsState();
+            DtlsTransition transition = dtlsTransitionTable.get(curState, event);
+            if (transition == null) {
+                logger.debug("({}) Event is not allowed in the state. (event={}, state={})",
+                        dtlsUnit.getId(), event, DtlsState.getName(curState)
+                );
+                return false;
+            }
+
+            if (dtlsUnit.compareAndSetDtlsState(curState, transition.getToState())) {
+                if (transition.getToState() == DtlsState.DTLS_STATE_FINISHED) {
+                    // The handshake is over, its admission slot goes to the next one
+                    dtlsUnit.releaseAdmission();
+                }
+
+                DtlsTransitionCallback callback = transition.getCallback();
+                if (callback != null) {
+                    try {
+                        callback.onTransition(dtlsUnit);
+                    } catch (Exception e) {
+                        logger.warn("({}) Fail to run the transition callback. ({})", dtlsUnit.getId(), transition, e);
+                    }
+                }
+                return true;
+            }
+            // Lost the race with another event of the same unit, retry on the new state
+        }
+    }
+
+    public DtlsTransitionTable getDtlsTransitionTable() {
+        return dtlsTransitionTable;
     }
     /////////////////////////////////////////////////////
 
     /////////////////////////////////////////////////////
-    public void init (DtlsUnit dtlsUnit) {
-        if (dtlsUnit == null) { return; }
+    private static List<DtlsTransition> createDtlsTransitionList() {
+        List<DtlsTransition> transitionList = new ArrayList<>();
 
         ////////////////////////////
-        // 1) INITIALIZE DTLS STATE HANDLER
-        stateManager.addStateHandler(DtlsState.NAME);
-        StateHandler dtlsStateHandler = stateManager.getStateHandler(DtlsState.NAME);
+        // 1) CALLBACKS
+        DtlsRetransmitTimerCanceller retransmitTimerCanceller = new DtlsRetransmitTimerCanceller();
         ////////////////////////////
 
         ////////////////////////////
-        // 2) ADD EVENT
+        // 2) ADD TRANSITIONS
 
         /////////////
         // 2-1) BUFFER_NEXT_FLIGHT
-        dtlsStateHandler.addState(
-                DtlsEvent.BUFFER_NEXT_FLIGHT.name(),
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.BUFFER_NEXT_FLIGHT,
                 DtlsState.DTLS_STATE_PREPARING, DtlsState.DTLS_STATE_SENDING,
-                null, null,
-                null, 0, 0
-        );
+                null
+        ));
         /////////////
 
         /////////////
@@ -55,12 +104,11 @@ public class DtlsFsmManager {
          *    implementation then enters the FINISHED state if this is the last
          *    flight in the handshake.
          */
-        dtlsStateHandler.addState(
-                DtlsEvent.SEND_FLIGHT_1.name(),
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.SEND_FLIGHT_1,
                 DtlsState.DTLS_STATE_SENDING, DtlsState.DTLS_STATE_FINISHED,
-                null, null,
-                null, 0, 0
-        );
+                null
+        ));
         /////////////
 
         /////////////
@@ -70,30 +118,11 @@ public class DtlsFsmManager {
          *    receive more messages, it sets a retransmit timer and then enters the
          *    WAITING state.
          */
-        dtlsStateHandler.addState(
-                DtlsEvent.SEND_FLIGHT_2.name(), // > Set retransmit timer
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.SEND_FLIGHT_2, // > Set retransmit timer
                 DtlsState.DTLS_STATE_SENDING, DtlsState.DTLS_STATE_WAITING,
-                new DtlsRetransmitTimerMaker(
-                        stateManager,
-                        DtlsRetransmitTimerMaker.class.getSimpleName(),
-                        dtlsUnit,
-                        /**
-                         * Implementations SHOULD use an initial timer value
-                         *    of 1 second (the minimum defined in RFC 2988 [RFC2988]) and double
-                         *    the value at each retransmission, up to no less than the RFC 2988
-                         *    maximum of 60 seconds.
-                         *
-                         *    Note that we recommend a 1-second timer
-                         *    rather than the 3-second RFC 2988 default in order to improve latency
-                         *    for time-sensitive applications.  Because DTLS only uses
-                         *    retransmission for handshake and not dataflow, the effect on
-                         *    congestion should be minimal.
-                         */
-                        60000
-                ),
-                null,
-                null, 0, 0
-        );
+                new DtlsRetransmitTimerMaker() // Timeout : DtlsUnit.getDtlsRetransmitPolicy()
+        ));
         /////////////
 
         /////////////
@@ -103,12 +132,11 @@ public class DtlsFsmManager {
          *       the SENDING state, where it retransmits the flight, resets the
          *       retransmit timer, and returns to the WAITING state.
          */
-        dtlsStateHandler.addState(
-                DtlsEvent.TIMER_EXPIRES.name(),
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.TIMER_EXPIRES,
                 DtlsState.DTLS_STATE_WAITING, DtlsState.DTLS_STATE_SENDING,
-                null, null,
-                null, 0, 0
-        );
+                null
+        ));
         /////////////
 
         /////////////
@@ -122,12 +150,11 @@ public class DtlsFsmManager {
          *       and therefore suggests that part of one's previous flight was
          *       lost.
          */
-        dtlsStateHandler.addState(
-                DtlsEvent.READ_RETRANSMIT.name(),
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.READ_RETRANSMIT,
                 DtlsState.DTLS_STATE_WAITING, DtlsState.DTLS_STATE_SENDING,
-                null, null,
-                null, 0, 0
-        );
+                null
+        ));
         /////////////
 
         /////////////
@@ -140,73 +167,60 @@ public class DtlsFsmManager {
          *       (whether partial messages or only some of the messages in the
          *       flight) do not cause state transitions or timer resets.
          */
-        dtlsStateHandler.addState(
-                DtlsEvent.RECEIVE_NEXT_FLIGHT.name(),
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.RECEIVE_NEXT_FLIGHT, // > Cancel retransmit timer
                 DtlsState.DTLS_STATE_WAITING, DtlsState.DTLS_STATE_PREPARING,
-                null, null,
-                null, 0, 0
-        );
+                retransmitTimerCanceller
+        ));
         /////////////
 
         /////////////
         // 2-7) RECEIVE_LAST_FLIGHT
-        dtlsStateHandler.addState(
-                DtlsEvent.RECEIVE_LAST_FLIGHT.name(),
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.RECEIVE_LAST_FLIGHT, // > Cancel retransmit timer
                 DtlsState.DTLS_STATE_WAITING, DtlsState.DTLS_STATE_FINISHED,
-                null, null,
-                null, 0, 0
-        );
+                retransmitTimerCanceller
+        ));
         /////////////
 
         /////////////
-        // 2-8) RECEIVE_LAST_FLIGHT
-        dtlsStateHandler.addState(
-                DtlsEvent.RECEIVE_LAST_FLIGHT.name(),
-                DtlsState.DTLS_STATE_WAITING, DtlsState.DTLS_STATE_FINISHED,
-                null, null,
-                null, 0, 0
-        );
-        /////////////
-
-        /////////////
-        // 2-9) SEND_HELLO_REQUEST
+        // 2-8) SEND_HELLO_REQUEST
         /**
          * When the server desires a rehandshake, it transitions from the
          *    FINISHED state to the PREPARING state to transmit the HelloRequest.
          */
-        dtlsStateHandler.addState(
-                DtlsEvent.SEND_HELLO_REQUEST.name(),
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.SEND_HELLO_REQUEST,
                 DtlsState.DTLS_STATE_FINISHED, DtlsState.DTLS_STATE_PREPARING,
-                null, null,
-                null, 0, 0
-        );
+                null
+        ));
         /////////////
 
         /////////////
-        // 2-10) RECEIVE_HELLO_REQUEST
+        // 2-9) RECEIVE_HELLO_REQUEST
         /**
          * When the client receives a HelloRequest it transitions from FINISHED
          *    to PREPARING to transmit the ClientHello.
          */
-        dtlsStateHandler.addState(
-                DtlsEvent.RECEIVE_HELLO_REQUEST.name(),
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.RECEIVE_HELLO_REQUEST,
                 DtlsState.DTLS_STATE_FINISHED, DtlsState.DTLS_STATE_PREPARING,
-                null, null,
-                null, 0, 0
-        );
+                null
+        ));
         /////////////
 
         /////////////
-        // 2-11) SEND_CLIENT_HELLO
-        dtlsStateHandler.addState(
-                DtlsEvent.SEND_CLIENT_HELLO.name(),
+        // 2-10) SEND_CLIENT_HELLO
+        transitionList.add(new DtlsTransition(
+                DtlsEvent.SEND_CLIENT_HELLO,
                 DtlsState.DTLS_STATE_FINISHED, DtlsState.DTLS_STATE_PREPARING,
-                null, null,
-                null, 0, 0
-        );
+                null
+        ));
         /////////////
 
         ////////////////////////////
+
+        return transitionList;
     }
     /////////////////////////////////////////////////////
 
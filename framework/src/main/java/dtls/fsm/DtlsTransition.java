@@ -0,0 +1,56 @@
+package dtls.fsm;
+
+import dtls.fsm.definition.DtlsEvent;
+import dtls.fsm.definition.DtlsState;
+
+/**
+ * One entry of the DtlsTransitionTable : (fromState, event) > toState [+ callback]
+ *      Immutable.
+ */
+public class DtlsTransition {
+
+    ////////////////////////////////////////////////////////////
+    private final DtlsEvent event;
+    private final int fromState;
+    private final int toState;
+    private final DtlsTransitionCallback callback; // Nullable
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsTransition(DtlsEvent event, int fromState, int toState, DtlsTransitionCallback callback) {
+        this.event = event;
+        this.fromState = fromState;
+        this.toState = toState;
+        this.callback = callback;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsEvent getEvent() {
+        return event;
+    }
+
+    public int getFromState() {
+        return fromState;
+    }
+
+    public int getToState() {
+        return toState;
+    }
+
+    public DtlsTransitionCallback getCallback() {
+        return callback;
+    }
+    ////////////////////////////////////////////////////////////
+
+    @Override
+    public String toString() {
+        return "DtlsTransition{" +
+                "event=" + event +
+                ", fromState=" + DtlsState.getName(fromState) +
+                ", toState=" + DtlsState.getName(toState) +
+                ", callback=" + (callback == null ? null : callback.getClass().getSimpleName()) +
+                '}';
+    }
+
+}
@@ -0,0 +1,12 @@
+package dtls.fsm;
+
+import dtls.unit.DtlsUnit;
+
+/**
+ * Action of a transition, called once by the thread that made the transition (after the state is changed)
+ */
+public interface DtlsTransitionCallback {
+
+    void onTransition(DtlsUnit dtlsUnit);
+
+}
@@ -0,0 +1,75 @@
+package dtls.fsm;
+
+import dtls.fsm.definition.DtlsEvent;
+import dtls.fsm.definition.DtlsState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Compiled transition table of the DTLS FSM
+ *      - Flat array indexed by [fromState * EVENT_COUNT + event.ordinal()], a lookup is one array load.
+ *      - Built once, immutable and shared by every DtlsUnit. (The units only keep their current state)
+ */
+public class DtlsTransitionTable {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsTransitionTable.class);
+
+    private static final DtlsEvent[] EVENTS = DtlsEvent.values();
+    private static final int EVENT_COUNT = EVENTS.length;
+
+    private final DtlsTransition[] transitions = new DtlsTransition[DtlsState.COUNT * EVENT_COUNT];
+    private final int transitionCount;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @param transitionList Transitions to compile
+     *      Invalid entries are skipped, only the first transition of the same (fromState, event) is kept.
+     */
+    public DtlsTransitionTable(List<DtlsTransition> transitionList) {
+        int count = 0;
+
+        for (DtlsTransition transition : transitionList) {
+            if (transition == null || transition.getEvent() == null
+                    || !DtlsState.isValid(transition.getFromState()) || !DtlsState.isValid(transition.getToState())) {
+                logger.warn("DtlsTransitionTable: Invalid transition is skipped. ({})", transition);
+                continue;
+            }
+
+            int index = indexOf(transition.getFromState(), transition.getEvent());
+            if (transitions[index] != null) {
+                logger.warn("DtlsTransitionTable: Duplicated transition is skipped. ({})", transition);
+                continue;
+            }
+
+            transitions[index] = transition;
+            count++;
+        }
+
+        this.transitionCount = count;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @return Transition of the given state on the given event, null if the event is not allowed in the state
+     */
+    public DtlsTransition get(int fromState, DtlsEvent event) {
+        if (!DtlsState.isValid(fromState) || event == null) { return null; }
+
+        return transitions[indexOf(fromState, event)];
+    }
+
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    private static int indexOf(int fromState, DtlsEvent event) {
+        return fromState * EVENT_COUNT + event.ordinal();
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -1,12 +1,28 @@
 package dtls.fsm.definition;
 
+/**
+ * States of the DTLS handshake FSM (RFC 6347, 4.2.4)
+ *      Small ints, used as the row index of the DtlsTransitionTable.
+ */
 public class DtlsState {
 
     public static final String NAME = "DtlsState";
 
-    public static final String DTLS_STATE_PREPARING = "PREPARING";
-    public static final String DTLS_STATE_SENDING = "SENDING";
-    public static final String DTLS_STATE_WAITING = "WAITING";
-    public static final String DTLS_STATE_FINISHED = "FINISHED";
+    public static final int DTLS_STATE_PREPARING = 0;
+    public static final int DTLS_STATE_SENDING   = 1;
+    public static final int DTLS_STATE_WAITING   = 2;
+    public static final int DTLS_STATE_FINISHED  = 3;
+
+    public static final int COUNT = 4;
+
+    private static final String[] STATE_NAMES = { "PREPARING", "SENDING", "WAITING", "FINISHED" };
+
+    public static boolean isValid(int state) {
+        return state >= 0 && state < COUNT;
+    }
+
+    public static String getName(int state) {
+        return isValid(state) ? STATE_NAMES[state] : "UNKNOWN(" + state + ")";
+    }
 
 }
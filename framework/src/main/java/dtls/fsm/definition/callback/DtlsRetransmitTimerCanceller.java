@@ -0,0 +1,19 @@
+package dtls.fsm.definition.callback;
+
+import dtls.fsm.DtlsTransitionCallback;
+import dtls.unit.DtlsUnit;
+
+/**
+ * Cancels the retransmit timer when the next flight is received
+ *      The retransmit policy samples the RTT of the flight and resets the backoff.
+ */
+public class DtlsRetransmitTimerCanceller implements DtlsTransitionCallback {
+
+    @Override
+    public void onTransition(DtlsUnit dtlsUnit) {
+        dtlsUnit.touch();
+        dtlsUnit.cancelRetransmitTimer();
+        dtlsUnit.getDtlsRetransmitPolicy().onFlightReceived(System.currentTimeMillis());
+    }
+
+}
@@ -1,6 +1,30 @@
 package dtls.handler;
 
+import dtls.DtlsHandshakeManager;
+import dtls.cookie.DtlsCookieManager;
+import dtls.fsm.definition.DtlsEvent;
+import dtls.fsm.definition.DtlsState;
 import dtls.packet.DtlsPacket;
+import dtls.packet.base.DtlsContentType;
+import dtls.packet.base.DtlsProtocolVersion;
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.packet.recordlayer.DtlsRecordHeader;
+import dtls.packet.recordlayer.DtlsRecordHeaderView;
+import dtls.packet.recordlayer.DtlsRecordLayer;
+import dtls.packet.recordlayer.message.DtlsChangeCipherSpec;
+import dtls.replay.DtlsReplayWindow;
+import dtls.session.DtlsSession;
+import dtls.type.DtlsClientHello;
+import dtls.type.DtlsFinished;
+import dtls.type.DtlsNewSessionTicket;
+import dtls.type.DtlsServerHello;
+import dtls.type.DtlsServerHelloDone;
+import dtls.type.base.DtlsFormat;
+import dtls.type.base.DtlsHandshakeCommonBody;
+import dtls.type.base.DtlsHandshakeType;
+import dtls.type.base.DtlsRandom;
+import dtls.unit.DtlsPeerKey;
+import dtls.unit.DtlsUnit;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -8,17 +32,31 @@ import io.netty.channel.socket.DatagramPacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
 public class DtlsPacketHandler extends SimpleChannelInboundHandler<DatagramPacket> {
 
     private static final Logger logger = LoggerFactory.getLogger(DtlsPacketHandler.class);
 
     private final String id;
+    // Server side : a DtlsUnit is allocated only for a ClientHello with a valid cookie
+    private final boolean isServer;
+
+    // Reused for every datagram of this channel (channelRead0 is always called on the same event loop)
+    private final DtlsRecordHeaderView dtlsRecordHeaderView = new DtlsRecordHeaderView();
 
     ////////////////////////////////////////////////////////////////////////////////
 
     public DtlsPacketHandler(String id) {
+        this(id, false);
+    }
+
+    public DtlsPacketHandler(String id, boolean isServer) {
         this.id = id;
-        logger.debug("[DtlsPacketHandler<{}>] is created.", id);
+        this.isServer = isServer;
+        logger.debug("[DtlsPacketHandler<{}>] is created. (isServer={})", id, isServer);
     }
 
     @Override
@@ -28,20 +66,414 @@ public class DtlsPacketHandler extends SimpleChannelInboundHandler<DatagramPacke
             return;
         }
 
-        int dataLength = 0;
+        int dataLength = buf.readableBytes();
+        if (dataLength <= 0) {
+            return;
+        }
+
+        // Record classification without decoding (zero allocation)
+        if (!validateRecords(buf)) {
+            return;
+        }
+
+        // Decoded once, in place (the record bodies are retained slices, parsed later on demand)
+        DtlsPacket dtlsPacket;
         try {
-            int readableBytes = buf.readableBytes();
-            if (readableBytes > 0) {
-                byte[] data = new byte[readableBytes];
-                buf.readBytes(data);
-                dataLength = data.length;
+            dtlsPacket = new DtlsPacket(buf);
+        } catch (Exception e) {
+            logger.warn("[DtlsPacketHandler<{}>] Fail to decode UDP Packet. (length={})", id, dataLength, e);
+            return;
+        }
+
+        DtlsUnit dtlsUnit = DtlsHandshakeManager.getInstance().getDtlsUnit(msg.sender());
+        if (dtlsUnit == null && isServer) {
+            dtlsUnit = verifyClientHello(ctx, msg.sender(), dtlsPacket, dataLength);
+        }
+
+        if (dtlsUnit == null) {
+            // No association (ex. client side before the unit is added, or the cookie exchange is not done)
+            logger.debug("[DtlsPacketHandler<{}>] [RECV] DtlsPacket (no association): \n{}.", id, dtlsPacket);
+            dtlsPacket.release();
+            return;
+        }
+
+        // Handed to the event loop of the unit (the records of one association are handled in order on one thread)
+        // Every state of the unit (replay window, reassembler, FSM) is read & updated only there
+        // The decoded packet keeps its own slices, so the pooled buffer can be released after this call
+        DtlsUnit targetDtlsUnit = dtlsUnit;
+        InetSocketAddress sender = msg.sender();
+        boolean isExecuted = dtlsUnit.execute(() -> {
+            try {
+                handleDtlsPacket(ctx, sender, targetDtlsUnit, dtlsPacket);
+            } catch (Exception e) {
+                logger.warn("[DtlsPacketHandler<{}>] Fail to handle UDP Packet. (unit={}, length={})", id, targetDtlsUnit.getId(), dataLength, e);
+            } finally {
+                dtlsPacket.release();
+            }
+        });
+        if (!isExecuted) {
+            dtlsPacket.release();
+            logger.warn("[DtlsPacketHandler<{}>] Fail to handle UDP Packet. The event loop of the unit is shut down. (unit={})", id, dtlsUnit.getId());
+        }
+    }
+
+    /**
+     * Handles the records of a datagram of the association (on the event loop of the unit)
+     *      Duplicated & replayed records are discarded here, before any body is parsed.
+     */
+    private void handleDtlsPacket(ChannelHandlerContext ctx, InetSocketAddress sender, DtlsUnit dtlsUnit, DtlsPacket dtlsPacket) {
+        if (dtlsUnit.isClosed() || dtlsPacket.getDtlsRecordLayerList() == null) { return; }
+
+        DtlsReplayWindow dtlsReplayWindow = dtlsUnit.getDtlsReplayWindow();
+        int freshCount = 0;
+        for (DtlsRecordLayer dtlsRecordLayer : dtlsPacket.getDtlsRecordLayerList()) {
+            DtlsRecordHeader dtlsRecordHeader = dtlsRecordLayer.getDtlsRecordHeader();
+            if (dtlsRecordHeader == null) { continue; }
+
+            int epoch = dtlsRecordHeader.getEpoch();
+            long sequenceNumber = dtlsRecordHeader.getSequenceNumber();
+            if (!dtlsReplayWindow.checkAndUpdate(epoch, sequenceNumber)) { continue; }
+
+            freshCount++;
+            handleDtlsRecord(ctx, sender, dtlsUnit, dtlsRecordLayer);
+
+            // A record of a protected epoch takes its place in the window only once it is accepted
+            if (epoch != 0) {
+                dtlsReplayWindow.markVerified(epoch, sequenceNumber);
+            }
+        }
+
+        if (freshCount == 0) {
+            logger.debug("[DtlsPacketHandler<{}>] Replayed datagram is dropped. (unit={})", id, dtlsUnit.getId());
+            return;
+        }
+
+        // Keeps the association alive (idle eviction)
+        dtlsUnit.touch();
+        logger.debug("[DtlsPacketHandler<{}>] [RECV] DtlsPacket (unit={}): \n{}.", id, dtlsUnit.getId(), dtlsPacket);
+    }
+
+    /**
+     * Handshake layer of a fresh record (on the event loop of the unit)
+     *      - ChangeCipherSpec : the records of the next epoch are accepted from now on.
+     *      - Plain handshake (epoch 0) : a ClientHello starts the handshake of the unit, the others are reassembled in order.
+     *      - Protected handshake (current epoch) : Finished of the client, the flight of the client is complete.
+     *      Only the server side is driven here.
+     */
+    private void handleDtlsRecord(ChannelHandlerContext ctx, InetSocketAddress sender, DtlsUnit dtlsUnit, DtlsRecordLayer dtlsRecordLayer) {
+        DtlsRecordHeader dtlsRecordHeader = dtlsRecordLayer.getDtlsRecordHeader();
+        DtlsContentType dtlsContentType = dtlsRecordHeader.getContentType();
+        if (dtlsContentType == null) { return; }
+
+        int epoch = dtlsRecordHeader.getEpoch();
+        switch (dtlsContentType.getType()) {
+            case DtlsContentType.TLS_TYPE_CHANGE_CIPHER_SPEC:
+                if (dtlsUnit.getDtlsReplayWindow().openEpoch(epoch + 1)) {
+                    logger.debug("[DtlsPacketHandler<{}>] [RECV] ChangeCipherSpec. (unit={}, epoch={})", id, dtlsUnit.getId(), epoch + 1);
+                }
+                break;
+            case DtlsContentType.TLS_TYPE_HANDSHAKE:
+                if (!isServer) { break; }
+
+                if (epoch == 0) {
+                    if (dtlsRecordLayer.getDtlsHandshakeFactory() instanceof DtlsHandshake) {
+                        handlePlainHandshake(ctx, sender, dtlsUnit, (DtlsHandshake) dtlsRecordLayer.getDtlsHandshakeFactory());
+                    }
+                } else if (epoch == dtlsUnit.getDtlsReplayWindow().getCurrentEpoch()) {
+                    handleClientFinished(ctx, sender, dtlsUnit);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handlePlainHandshake(ChannelHandlerContext ctx, InetSocketAddress sender, DtlsUnit dtlsUnit, DtlsHandshake dtlsHandshake) {
+        DtlsHandshakeCommonBody commonBody = dtlsHandshake.getDtlsHandshakeCommonBody();
+        if (commonBody == null || commonBody.getHandshakeType() == null) { return; }
+
+        if (commonBody.getHandshakeType().getType() == DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO && !dtlsHandshake.isFragment()) {
+            DtlsFormat dtlsFormat = dtlsHandshake.getDtlsFormat();
+            if (dtlsFormat instanceof DtlsClientHello) {
+                startHandshake(ctx, sender, dtlsUnit, (DtlsClientHello) dtlsFormat, commonBody.getMessageSequence());
+            }
+            return;
+        }
+
+        // The key exchange is not implemented yet, the other messages of the client are only put in order
+        for (DtlsHandshake message : dtlsUnit.getDtlsHandshakeReassembler().add(dtlsHandshake)) {
+            logger.debug("[DtlsPacketHandler<{}>] [RECV] Handshake message. (unit={}, type={}, seq={})",
+                    id, dtlsUnit.getId(),
+                    message.getDtlsHandshakeCommonBody().getHandshakeType().getType(),
+                    message.getDtlsHandshakeCommonBody().getMessageSequence()
+            );
+        }
+    }
+
+    /**
+     * ClientHello of the unit (server side, the cookie is already verified)
+     *      - Resumable session (ticket or session ID) : abbreviated handshake,
+     *          ServerHello, ChangeCipherSpec, Finished > [SEND_FLIGHT_2] > WAITING
+     *      - Otherwise : full handshake, > [BUFFER_NEXT_FLIGHT] > SENDING while the crypto stage creates the session,
+     *          then ServerHello, ServerHelloDone > [SEND_FLIGHT_2] > WAITING (the unit is removed if the crypto stage fails)
+     *      A ClientHello of the handshake in progress is a retransmission, it is dropped. (the timer retransmits the flight)
+     */
+    private void startHandshake(ChannelHandlerContext ctx, InetSocketAddress sender, DtlsUnit dtlsUnit,
+                                DtlsClientHello dtlsClientHello, int messageSequence) {
+        if (dtlsUnit.getDtlsState() != DtlsState.DTLS_STATE_PREPARING || dtlsUnit.getDtlsSession() != null) {
+            logger.debug("[DtlsPacketHandler<{}>] Retransmitted ClientHello is dropped. (unit={})", id, dtlsUnit.getId());
+            return;
+        }
+
+        // The messages of the server start from the sequence of the ClientHello (RFC 6347, 4.2.2)
+        dtlsUnit.getDtlsHandshakeReassembler().reset(messageSequence + 1);
+        dtlsUnit.setSendMessageSequence(messageSequence);
+
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsSession dtlsSession = dtlsHandshakeManager.resumeSession(dtlsUnit, dtlsClientHello, dtlsClientHello.getSessionTicket());
+        if (dtlsSession != null) {
+            List<DtlsRecordLayer> flight = new ArrayList<>();
+            flight.add(createServerHelloRecord(dtlsUnit, dtlsSession));
+            addFinishedRecords(dtlsUnit, flight);
+
+            if (!dtlsUnit.fireNow(DtlsEvent.BUFFER_NEXT_FLIGHT)) { return; }
+            sendFlight(ctx, sender, dtlsUnit, flight);
+            dtlsUnit.fireNow(DtlsEvent.SEND_FLIGHT_2);
+            return;
+        }
+
+        if (!dtlsUnit.fireNow(DtlsEvent.BUFFER_NEXT_FLIGHT)) { return; }
+        dtlsHandshakeManager.getDtlsCryptoExecutor().submit(dtlsUnit, () -> {
+            DtlsSession newDtlsSession = dtlsHandshakeManager.createSession(dtlsClientHello);
+            if (newDtlsSession == null) {
+                throw new IllegalArgumentException("No cipher suite is offered.");
+            }
+            return newDtlsSession;
+        }, true, newDtlsSession -> {
+            dtlsUnit.setDtlsSession(newDtlsSession, false);
 
-                DtlsPacket dtlsPacket = new DtlsPacket(data);
-                logger.debug("[DtlsPacketHandler<{}>] [RECV] DtlsPacket: \n{}.", id, dtlsPacket);
+            List<DtlsRecordLayer> flight = new ArrayList<>();
+            flight.add(createServerHelloRecord(dtlsUnit, newDtlsSession));
+            flight.add(createHandshakeRecord(dtlsUnit, 0, DtlsHandshakeType.TLS_TYPE_SERVER_HELLO_DONE, new DtlsServerHelloDone()));
+            sendFlight(ctx, sender, dtlsUnit, flight);
+        }, DtlsEvent.SEND_FLIGHT_2);
+    }
+
+    /**
+     * Finished of the client (server side)
+     *      - Abbreviated handshake : it is the last flight > [RECEIVE_LAST_FLIGHT] > FINISHED
+     *      - Full handshake : > [RECEIVE_NEXT_FLIGHT] > PREPARING > [BUFFER_NEXT_FLIGHT] > SENDING > [SEND_FLIGHT_1] > FINISHED,
+     *          the session is stored and the last flight is NewSessionTicket, ChangeCipherSpec, Finished.
+     */
+    private void handleClientFinished(ChannelHandlerContext ctx, InetSocketAddress sender, DtlsUnit dtlsUnit) {
+        DtlsSession dtlsSession = dtlsUnit.getDtlsSession();
+        if (dtlsUnit.getDtlsState() != DtlsState.DTLS_STATE_WAITING || dtlsSession == null) { return; }
+
+        if (dtlsUnit.isResumed()) {
+            if (dtlsUnit.fireNow(DtlsEvent.RECEIVE_LAST_FLIGHT)) {
+                logger.debug("[DtlsPacketHandler<{}>] Abbreviated handshake is finished. (unit={})", id, dtlsUnit.getId());
             }
+            return;
+        }
+
+        if (!dtlsUnit.fireNow(DtlsEvent.RECEIVE_NEXT_FLIGHT)
+                || !dtlsUnit.fireNow(DtlsEvent.BUFFER_NEXT_FLIGHT)
+                || !dtlsUnit.fireNow(DtlsEvent.SEND_FLIGHT_1)) {
+            return;
+        }
+
+        // FINISHED : the session can be resumed by its ID or by the ticket from now on
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        dtlsHandshakeManager.storeSession(dtlsUnit, dtlsSession);
+
+        List<DtlsRecordLayer> flight = new ArrayList<>();
+        DtlsNewSessionTicket dtlsNewSessionTicket = dtlsHandshakeManager.issueSessionTicket(dtlsSession);
+        if (dtlsNewSessionTicket != null) {
+            flight.add(createHandshakeRecord(dtlsUnit, 0, DtlsHandshakeType.TLS_TYPE_NEW_SESSION_TICKET, dtlsNewSessionTicket));
+        }
+        addFinishedRecords(dtlsUnit, flight);
+        sendFlight(ctx, sender, dtlsUnit, flight);
+        logger.debug("[DtlsPacketHandler<{}>] Full handshake is finished. (unit={}, ticket={})", id, dtlsUnit.getId(), dtlsNewSessionTicket != null);
+    }
+
+    private DtlsRecordLayer createServerHelloRecord(DtlsUnit dtlsUnit, DtlsSession dtlsSession) {
+        return createHandshakeRecord(dtlsUnit, 0, DtlsHandshakeType.TLS_TYPE_SERVER_HELLO, new DtlsServerHello(
+                dtlsSession.getProtocolVersion(), DtlsRandom.getRandom(),
+                (short) dtlsSession.getSessionId().length, dtlsSession.getSessionId(),
+                dtlsSession.getCipherSuite(), dtlsSession.getCompressionMethod()
+        ));
+    }
+
+    /**
+     * ChangeCipherSpec (epoch 0) and Finished (epoch 1, the record sequence number starts over)
+     */
+    private void addFinishedRecords(DtlsUnit dtlsUnit, List<DtlsRecordLayer> flight) {
+        flight.add(new DtlsRecordLayer(
+                createRecordHeader(DtlsContentType.TLS_TYPE_CHANGE_CIPHER_SPEC, 0, dtlsUnit.nextRecordSequenceNumber()),
+                new DtlsChangeCipherSpec()
+        ));
+        dtlsUnit.resetRecordSequenceNumber();
+        flight.add(createHandshakeRecord(dtlsUnit, 1, DtlsHandshakeType.TLS_TYPE_FINISHED, new DtlsFinished()));
+    }
+
+    private DtlsRecordLayer createHandshakeRecord(DtlsUnit dtlsUnit, int epoch, int handshakeType, DtlsFormat dtlsFormat) {
+        int length = dtlsFormat.encodedLength();
+        DtlsHandshakeCommonBody commonBody = new DtlsHandshakeCommonBody(
+                DtlsHandshakeType.valueOf(handshakeType), length, dtlsUnit.nextSendMessageSequence(), 0, length
+        );
+        return new DtlsRecordLayer(
+                createRecordHeader(DtlsContentType.TLS_TYPE_HANDSHAKE, epoch, dtlsUnit.nextRecordSequenceNumber()),
+                new DtlsHandshake(commonBody, dtlsFormat)
+        );
+    }
+
+    private DtlsRecordHeader createRecordHeader(int contentType, int epoch, long sequenceNumber) {
+        return new DtlsRecordHeader(
+                DtlsContentType.valueOf(contentType),
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                epoch, sequenceNumber, 0
+        );
+    }
+
+    /**
+     * Packs the flight into datagrams of the MTU of the unit and writes them (the sequence numbers of the records are kept)
+     */
+    private void sendFlight(ChannelHandlerContext ctx, InetSocketAddress sender, DtlsUnit dtlsUnit, List<DtlsRecordLayer> flight) {
+        for (DtlsPacket dtlsPacket : dtlsUnit.getDtlsFlightPacker().pack(flight, null)) {
+            ByteBuf out = dtlsPacket.encode(ctx.alloc());
+            if (out != null) {
+                ctx.writeAndFlush(new DatagramPacket(out, sender));
+            }
+        }
+        dtlsUnit.touch();
+        logger.debug("[DtlsPacketHandler<{}>] [SEND] Flight. (unit={}, records={})", id, dtlsUnit.getId(), flight.size());
+    }
+
+    /**
+     * @return Unit of the new association if the datagram has a ClientHello with a valid cookie, otherwise null
+     */
+    private DtlsUnit verifyClientHello(ChannelHandlerContext ctx, InetSocketAddress sender, DtlsPacket dtlsPacket, int dataLength) {
+        try {
+            return handleClientHello(ctx, sender, dtlsPacket);
         } catch (Exception e) {
-            logger.warn("[DtlsPacketHandler<{}>] Fail to handle UDP Packet. (length={})", id, dataLength, e);
+            logger.warn("[DtlsPacketHandler<{}>] Fail to verify the ClientHello. (sender={}, length={})", id, sender, dataLength, e);
+            return null;
+        }
+    }
+
+    /**
+     * Cookie exchange of a peer that has no association yet (RFC 6347, 4.2.1)
+     *      - ClientHello without a valid cookie : answered with a HelloVerifyRequest, nothing is allocated.
+     *      - ClientHello with a valid cookie : a new DtlsUnit is added.
+     *          (dropped if the crypto stage is overloaded or the handshake is not admitted, resumptions first)
+     *      - Other records : dropped.
+     * @return Unit of the new association, null if the datagram is answered or dropped
+     */
+    private DtlsUnit handleClientHello(ChannelHandlerContext ctx, InetSocketAddress sender, DtlsPacket dtlsPacket) {
+        DtlsRecordLayer clientHelloRecord = findClientHelloRecord(dtlsPacket);
+        if (clientHelloRecord == null) {
+            logger.debug("[DtlsPacketHandler<{}>] No association and no ClientHello. Datagram is dropped. (sender={})", id, sender);
+            return null;
         }
+
+        DtlsHandshake dtlsHandshake = (DtlsHandshake) clientHelloRecord.getDtlsHandshakeFactory();
+        DtlsFormat dtlsFormat = dtlsHandshake.getDtlsFormat();
+        if (!(dtlsFormat instanceof DtlsClientHello)) { return null; }
+
+        DtlsClientHello dtlsClientHello = (DtlsClientHello) dtlsFormat;
+        DtlsPeerKey peerKey = DtlsPeerKey.of(sender);
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsCookieManager dtlsCookieManager = dtlsHandshakeManager.getDtlsCookieManager();
+
+        if (dtlsCookieManager.verifyCookie(peerKey, dtlsClientHello)) {
+            // A resumption has no certificate & key exchange, it is not shed by the crypto stage and has priority
+            boolean isResumption = dtlsHandshakeManager.hasResumableSession(dtlsClientHello);
+
+            // Overloaded crypto stage : new handshakes are shed first (the client retransmits the ClientHello)
+            if (!isResumption && !dtlsHandshakeManager.getDtlsCryptoExecutor().isAcceptingNewHandshakes()) {
+                logger.debug("[DtlsPacketHandler<{}>] Crypto stage is overloaded. ClientHello is dropped. (sender={})", id, sender);
+                return null;
+            }
+
+            // Over the handshake rate or concurrency : dropped, nothing is allocated (the client retransmits the ClientHello)
+            DtlsUnit dtlsUnit = dtlsHandshakeManager.admitDtlsUnit(peerKey, isResumption);
+            if (dtlsUnit == null) {
+                logger.debug("[DtlsPacketHandler<{}>] Handshake is not admitted. ClientHello is dropped. (sender={})", id, sender);
+            }
+            return dtlsUnit;
+        }
+
+        byte[] cookie = dtlsCookieManager.generateCookie(peerKey, dtlsClientHello);
+        DtlsPacket helloVerifyRequest = dtlsCookieManager.createHelloVerifyRequest(
+                clientHelloRecord.getDtlsRecordHeader(),
+                dtlsHandshake.getDtlsHandshakeCommonBody(),
+                cookie
+        );
+        if (helloVerifyRequest == null) { return null; }
+
+        ByteBuf out = helloVerifyRequest.encode(ctx.alloc());
+        if (out != null) {
+            ctx.writeAndFlush(new DatagramPacket(out, sender));
+            logger.debug("[DtlsPacketHandler<{}>] [SEND] HelloVerifyRequest. (sender={})", id, sender);
+        }
+        return null;
+    }
+
+    /**
+     * @return First plain (epoch 0, not fragmented) ClientHello record of the datagram, null if there is none
+     */
+    private DtlsRecordLayer findClientHelloRecord(DtlsPacket dtlsPacket) {
+        if (dtlsPacket.getDtlsRecordLayerList() == null) { return null; }
+
+        for (DtlsRecordLayer dtlsRecordLayer : dtlsPacket.getDtlsRecordLayerList()) {
+            DtlsRecordHeader dtlsRecordHeader = dtlsRecordLayer.getDtlsRecordHeader();
+            if (dtlsRecordHeader == null || dtlsRecordHeader.getEpoch() != 0
+                    || dtlsRecordHeader.getContentType() == null
+                    || dtlsRecordHeader.getContentType().getType() != DtlsContentType.TLS_TYPE_HANDSHAKE
+                    || !(dtlsRecordLayer.getDtlsHandshakeFactory() instanceof DtlsHandshake)) {
+                continue;
+            }
+
+            DtlsHandshake dtlsHandshake = (DtlsHandshake) dtlsRecordLayer.getDtlsHandshakeFactory();
+            DtlsHandshakeCommonBody commonBody = dtlsHandshake.getDtlsHandshakeCommonBody();
+            if (commonBody == null || commonBody.getHandshakeType() == null || dtlsHandshake.isFragment()) { continue; }
+
+            if (commonBody.getHandshakeType().getType() == DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO) {
+                return dtlsRecordLayer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks the record headers of the datagram with the header view
+     * @param buf Inbound datagram buffer
+     * @return true if the datagram has at least one complete record and no unknown record
+     */
+    private boolean validateRecords(ByteBuf buf) {
+        int index = buf.readerIndex();
+        int endIndex = buf.writerIndex();
+        int recordCount = 0;
+
+        while (endIndex - index > 0) {
+            dtlsRecordHeaderView.wrap(buf, index);
+            if (!dtlsRecordHeaderView.isReadable() || !dtlsRecordHeaderView.isComplete()) {
+                logger.debug("[DtlsPacketHandler<{}>] Truncated record is dropped. ({})", id, dtlsRecordHeaderView);
+                break;
+            }
+
+            if (!dtlsRecordHeaderView.isKnownContentType()) {
+                logger.warn("[DtlsPacketHandler<{}>] Unknown record is received. Datagram is dropped. ({})", id, dtlsRecordHeaderView);
+                dtlsRecordHeaderView.clear();
+                return false;
+            }
+
+            recordCount++;
+            index = dtlsRecordHeaderView.getNextIndex();
+        }
+
+        dtlsRecordHeaderView.clear();
+        return recordCount > 0;
     }
 
     @Override
@@ -0,0 +1,182 @@
+package dtls.packet;
+
+import dtls.fragment.DtlsHandshakeFragmenter;
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.packet.recordlayer.DtlsRecordHeader;
+import dtls.packet.recordlayer.DtlsRecordLayer;
+import dtls.type.base.DtlsHandshakeCommonBody;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import network.socket.netty.NettyChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Packs the records of one flight into as few datagrams as fit the MTU (RFC 6347, 4.1.1 & 4.2.3)
+ *      - Records keep the order of the flight, a datagram is filled until the next record does not fit. (next-fit)
+ *      - A plain handshake record that does not fit the rest of the datagram is fragmented to fill it,
+ *          the rest goes to the next datagrams. (DtlsHandshakeFragmenter)
+ *      - Other records that are bigger than the MTU (ex. encrypted) are sent alone.
+ *      - Every record gets a new sequence number when the flight is packed (also on retransmission).
+ *      - Stateless and thread-safe.
+ */
+public class DtlsFlightPacker {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsFlightPacker.class);
+
+    private static final int RECORD_OVERHEAD = DtlsRecordHeader.LENGTH + DtlsHandshakeCommonBody.LENGTH;
+    // A handshake that does not fit the rest of a datagram is split to fill it, only if the first fragment is not too small
+    private static final int MIN_FILL_FRAGMENT_LENGTH = 64;
+
+    private final int mtu;
+    private final DtlsHandshakeFragmenter dtlsHandshakeFragmenter;
+    private final ByteBufAllocator allocator;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsFlightPacker() {
+        this(DtlsHandshakeFragmenter.DEFAULT_MTU);
+    }
+
+    public DtlsFlightPacker(int mtu) {
+        this(mtu, PooledByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * @param mtu Maximum datagram payload length (configured or discovered path MTU)
+     * @param allocator Allocator of the outbound datagram buffers
+     */
+    public DtlsFlightPacker(int mtu, ByteBufAllocator allocator) {
+        this.mtu = mtu;
+        this.dtlsHandshakeFragmenter = new DtlsHandshakeFragmenter(mtu);
+        this.allocator = allocator;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @param flight Records of the flight in order of sending
+     * @param sequenceNumberSupplier Next record sequence number of the current epoch (ex. DtlsUnit.nextRecordSequenceNumber)
+     *      If null, the sequence numbers of the given headers are kept. (fragments share the number of the original record)
+     * @return Datagrams (one DtlsPacket per datagram), empty list if there is no record
+     */
+    public List<DtlsPacket> pack(List<DtlsRecordLayer> flight, LongSupplier sequenceNumberSupplier) {
+        if (flight == null || flight.isEmpty()) { return Collections.emptyList(); }
+
+        List<DtlsPacket> dtlsPacketList = new ArrayList<>();
+        List<DtlsRecordLayer> datagram = new ArrayList<>();
+        int datagramLength = 0;
+
+        for (DtlsRecordLayer dtlsRecordLayer : flight) {
+            if (dtlsRecordLayer == null || dtlsRecordLayer.getDtlsRecordHeader() == null) { continue; }
+
+            for (DtlsRecordLayer record : fragment(dtlsRecordLayer, mtu - datagramLength)) {
+                int recordLength = record.encodedLength();
+                if (datagramLength > 0 && datagramLength + recordLength > mtu) {
+                    dtlsPacketList.add(new DtlsPacket(datagram));
+                    datagram = new ArrayList<>();
+                    datagramLength = 0;
+                }
+                if (recordLength > mtu) {
+                    logger.warn("DtlsFlightPacker: The record is bigger than the MTU. It is sent alone. (length={}, mtu={})",
+                            recordLength, mtu
+                    );
+                }
+
+                if (sequenceNumberSupplier != null) {
+                    record.getDtlsRecordHeader().setSequenceNumber(sequenceNumberSupplier.getAsLong());
+                }
+                datagram.add(record);
+                datagramLength += recordLength;
+            }
+        }
+
+        if (!datagram.isEmpty()) {
+            dtlsPacketList.add(new DtlsPacket(datagram));
+        }
+        return dtlsPacketList;
+    }
+
+    /**
+     * Packs the flight and sends every datagram with one write (NettyChannel.sendData(ByteBuf))
+     * @return Number of the sent datagrams
+     */
+    public int send(NettyChannel nettyChannel, List<DtlsRecordLayer> flight, LongSupplier sequenceNumberSupplier) {
+        if (nettyChannel == null) { return 0; }
+
+        List<DtlsPacket> dtlsPacketList = pack(flight, sequenceNumberSupplier);
+        for (DtlsPacket dtlsPacket : dtlsPacketList) {
+            ByteBuf buf = dtlsPacket.encode(allocator);
+            if (buf == null) { continue; }
+
+            nettyChannel.sendData(buf);
+        }
+        return dtlsPacketList.size();
+    }
+
+    /**
+     * @param dtlsRecordLayer Record of the flight
+     * @param room Free bytes of the current datagram
+     * @return The given record itself if it fits the room or the MTU (or can not be fragmented),
+     *      otherwise the fragment records. The first fragment fills the room if it is big enough.
+     */
+    private List<DtlsRecordLayer> fragment(DtlsRecordLayer dtlsRecordLayer, int room) {
+        DtlsRecordHeader dtlsRecordHeader = dtlsRecordLayer.getDtlsRecordHeader();
+        int recordLength = dtlsRecordLayer.encodedLength();
+        if (recordLength <= room
+                || dtlsRecordHeader.getEpoch() != 0
+                || !(dtlsRecordLayer.getDtlsHandshakeFactory() instanceof DtlsHandshake)) {
+            return Collections.singletonList(dtlsRecordLayer);
+        }
+
+        int firstFragmentLength = room - RECORD_OVERHEAD;
+        if (firstFragmentLength < MIN_FILL_FRAGMENT_LENGTH) {
+            if (recordLength <= mtu) { // Goes to the next datagram as it is
+                return Collections.singletonList(dtlsRecordLayer);
+            }
+            firstFragmentLength = dtlsHandshakeFragmenter.getMaxFragmentLength();
+        }
+
+        DtlsHandshake dtlsHandshake = (DtlsHandshake) dtlsRecordLayer.getDtlsHandshakeFactory();
+        List<DtlsHandshake> fragments = dtlsHandshakeFragmenter.fragment(dtlsHandshake, firstFragmentLength);
+        if (fragments.size() <= 1) {
+            return Collections.singletonList(dtlsRecordLayer);
+        }
+
+        List<DtlsRecordLayer> records = new ArrayList<>(fragments.size());
+        for (DtlsHandshake fragment : fragments) {
+            records.add(
+                    new DtlsRecordLayer(
+                            new DtlsRecordHeader(
+                                    dtlsRecordHeader.getContentType(),
+                                    dtlsRecordHeader.getProtocolVersion(),
+                                    dtlsRecordHeader.getEpoch(),
+                                    dtlsRecordHeader.getSequenceNumber(),
+                                    fragment.encodedLength()
+                            ),
+                            fragment
+                    )
+            );
+        }
+        return records;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public int getMtu() {
+        return mtu;
+    }
+
+    public DtlsHandshakeFragmenter getDtlsHandshakeFragmenter() {
+        return dtlsHandshakeFragmenter;
+    }
+    ////////////////////////////////////////////////////////////
+
+}
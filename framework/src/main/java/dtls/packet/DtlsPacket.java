@@ -6,6 +6,12 @@ import dtls.packet.handshake.DtlsEncryptedHandShake;
 import dtls.packet.handshake.DtlsHandshake;
 import dtls.packet.recordlayer.DtlsRecordHeader;
 import dtls.packet.recordlayer.DtlsRecordLayer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import util.module.ByteUtil;
+
+import java.nio.ByteBuffer;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -67,24 +73,99 @@ public class DtlsPacket {
             length = index;
         }
     }
+
+    /**
+     * Decodes the readable bytes of the given buffer without copying the datagram
+     *      - Record headers and handshake common bodies are read with index-based accessors.
+     *      - Encrypted records keep a retained slice of the buffer, so {@link #release()} must be called
+     *          when the packet is no longer used. (The reader index of the buffer is not moved.)
+     * @param buf Inbound datagram buffer
+     */
+    public DtlsPacket(ByteBuf buf) {
+        if (buf != null && buf.readableBytes() >= DtlsRecordHeader.LENGTH) {
+            int index = buf.readerIndex();
+            int endIndex = buf.writerIndex();
+            dtlsRecordLayerList = new ArrayList<>();
+
+            // Packet Parsing
+            while (endIndex - index >= DtlsRecordHeader.LENGTH) {
+                int recordLength = buf.getUnsignedShort(index + DtlsRecordHeader.LENGTH - 2);
+                if (endIndex - index - DtlsRecordHeader.LENGTH < recordLength) {
+                    break; // Truncated record
+                }
+
+                if (recordLength > 0) {
+                    dtlsRecordLayerList.add(new DtlsRecordLayer(buf, index));
+                }
+                index += DtlsRecordHeader.LENGTH + recordLength;
+            }
+            length = index - buf.readerIndex();
+        }
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
     public byte[] getData() {
         if (dtlsRecordLayerList == null || length == 0) { return null; }
 
-        int index = 0;
-        byte[] data = new byte[length];
+        ByteBuf buf = Unpooled.wrappedBuffer(new byte[encodedLength()]);
+        buf.writerIndex(0);
+        encodeTo(buf);
+        return buf.array();
+    }
+
+    /**
+     * @return Number of bytes written by {@link #encodeTo(ByteBuf)} (sum of the record lengths)
+     */
+    public int encodedLength() {
+        if (dtlsRecordLayerList == null) { return 0; }
+
+        int encodedLength = 0;
+        for (DtlsRecordLayer dtlsRecordLayer : dtlsRecordLayerList) {
+            if (dtlsRecordLayer == null) { continue; }
+
+            encodedLength += dtlsRecordLayer.encodedLength();
+        }
+        return encodedLength;
+    }
+
+    /**
+     * Writes all records at the writer index of the given buffer in one pass
+     * @param buf Output buffer (must have at least {@link #encodedLength()} writable bytes)
+     */
+    public void encodeTo(ByteBuf buf) {
+        if (dtlsRecordLayerList == null) { return; }
 
         for (DtlsRecordLayer dtlsRecordLayer : dtlsRecordLayerList) {
             if (dtlsRecordLayer == null) { continue; }
 
-            byte[] dtlsRecordLayerData = dtlsRecordLayer.getData();
-            System.arraycopy(dtlsRecordLayerData, 0, data, index, dtlsRecordLayerData.length);
-            index += dtlsRecordLayerData.length;
+            dtlsRecordLayer.encodeTo(buf);
         }
+    }
+
+    /**
+     * Writes all records at the given absolute offset of the ByteBuffer (position is not changed)
+     * @return Offset right after the last written byte
+     */
+    public int encodeTo(ByteBuffer byteBuffer, int offset) {
+        ByteBuf buf = ByteUtil.wrapForWrite(byteBuffer, offset);
+        encodeTo(buf);
+        return buf.writerIndex();
+    }
 
-        return data;
+    /**
+     * Encodes the packet into an exactly sized buffer of the given allocator
+     *      The returned buffer can be passed to NettyChannel.sendData(ByteBuf) directly.
+     * @param allocator Buffer allocator (ex. PooledByteBufAllocator.DEFAULT or channel.alloc())
+     * @return Encoded buffer (must be released by the caller or the channel), null if there is no record
+     */
+    public ByteBuf encode(ByteBufAllocator allocator) {
+        int encodedLength = encodedLength();
+        if (encodedLength == 0) { return null; }
+
+        ByteBuf buf = allocator.buffer(encodedLength, encodedLength);
+        encodeTo(buf);
+        return buf;
     }
     ////////////////////////////////////////////////////////////
 
@@ -101,6 +182,19 @@ public class DtlsPacket {
         return length;
     }
 
+    /**
+     * Releases the buffer slices retained by the records decoded from a ByteBuf
+     */
+    public void release() {
+        if (dtlsRecordLayerList == null) { return; }
+
+        for (DtlsRecordLayer dtlsRecordLayer : dtlsRecordLayerList) {
+            if (dtlsRecordLayer == null) { continue; }
+
+            dtlsRecordLayer.release();
+        }
+    }
+
     @Override
     public String toString() {
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
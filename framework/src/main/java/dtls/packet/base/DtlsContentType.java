@@ -12,10 +12,28 @@ public class DtlsContentType {
 
     private final int type;
 
+    private static final DtlsContentType[] CACHE = new DtlsContentType[256];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new DtlsContentType(i);
+        }
+    }
+
     public DtlsContentType(int type) {
         this.type = type;
     }
 
+    /**
+     * @param type uint8 type value
+     * @return Shared (immutable) instance for the given type, decoders use it instead of allocating a new one
+     */
+    public static DtlsContentType valueOf(int type) {
+        if (type >= 0 && type < CACHE.length) {
+            return CACHE[type];
+        }
+        return new DtlsContentType(type);
+    }
+
     public int getType() {
         return type;
     }
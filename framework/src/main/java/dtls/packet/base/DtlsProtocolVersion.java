@@ -6,12 +6,32 @@ public class DtlsProtocolVersion {
     public static final byte[] DTLS_1_2 = { 0x01, 0x02 };
     public static final byte[] DTLS_1_3 = { 0x01, 0x03 };
 
+    private static final DtlsProtocolVersion DTLS_1_0_VERSION = new DtlsProtocolVersion(DTLS_1_0);
+    private static final DtlsProtocolVersion DTLS_1_2_VERSION = new DtlsProtocolVersion(DTLS_1_2);
+    private static final DtlsProtocolVersion DTLS_1_3_VERSION = new DtlsProtocolVersion(DTLS_1_3);
+
     private final byte[] version;
 
     public DtlsProtocolVersion(byte[] version) {
         this.version = version;
     }
 
+    /**
+     * @return Shared instance for the known versions, a new instance for the others
+     */
+    public static DtlsProtocolVersion valueOf(int major, int minor) {
+        if (major == DTLS_1_0[0]) {
+            if (minor == DTLS_1_0[1]) { return DTLS_1_0_VERSION; }
+            if (minor == DTLS_1_2[1]) { return DTLS_1_2_VERSION; }
+            if (minor == DTLS_1_3[1]) { return DTLS_1_3_VERSION; }
+        }
+        return new DtlsProtocolVersion(new byte[] { (byte) major, (byte) minor });
+    }
+
+    public static DtlsProtocolVersion valueOf(byte[] data, int offset) {
+        return valueOf(data[offset] & 0xff, data[offset + 1] & 0xff);
+    }
+
     public byte[] getVersion() {
         return version;
     }
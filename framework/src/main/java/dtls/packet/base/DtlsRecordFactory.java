@@ -1,7 +1,39 @@
 package dtls.packet.base;
 
+import io.netty.buffer.ByteBuf;
+import util.module.ByteUtil;
+
+import java.nio.ByteBuffer;
+
 public interface DtlsRecordFactory {
 
     byte[] getData();
 
+    /**
+     * @return Number of bytes written by {@link #encodeTo(ByteBuf)} (same as getData().length)
+     */
+    int encodedLength();
+
+    /**
+     * Writes the record body at the writer index of the given buffer
+     * @param buf Output buffer (must have at least {@link #encodedLength()} writable bytes)
+     */
+    void encodeTo(ByteBuf buf);
+
+    /**
+     * Writes the record body at the given absolute offset of the ByteBuffer (position is not changed)
+     * @return Offset right after the last written byte
+     */
+    default int encodeTo(ByteBuffer byteBuffer, int offset) {
+        ByteBuf buf = ByteUtil.wrapForWrite(byteBuffer, offset);
+        encodeTo(buf);
+        return buf.writerIndex();
+    }
+
+    /**
+     * Releases the inbound buffer slice retained by this record (if any)
+     *      Records decoded from a ByteBuf may keep a retained slice of the datagram instead of a copy.
+     */
+    default void release() {}
+
 }
@@ -3,11 +3,14 @@ package dtls.packet.handshake;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dtls.packet.base.DtlsRecordFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 public class DtlsEncryptedHandShake implements DtlsRecordFactory {
 
     ////////////////////////////////////////////////////////////
     transient private byte[] encryptedMessage = null;
+    transient private ByteBuf encryptedMessageBuf = null; // Retained slice of the inbound datagram
     private int encryptedMessageLength = 0;
     ////////////////////////////////////////////////////////////
 
@@ -21,11 +24,26 @@ public class DtlsEncryptedHandShake implements DtlsRecordFactory {
             encryptedMessageLength = encryptedMessage.length;
         }
     }
+
+    /**
+     * Keeps a retained slice of the given buffer instead of copying the encrypted message
+     *      The slice must be returned by {@link #release()}.
+     * @param buf Buffer that contains the encrypted message
+     * @param index Absolute index of the first encrypted message byte
+     * @param length Encrypted message length
+     */
+    public DtlsEncryptedHandShake(ByteBuf buf, int index, int length) {
+        if (buf != null && length > 0 && buf.writerIndex() - index >= length) {
+            encryptedMessageBuf = buf.retainedSlice(index, length);
+            encryptedMessageLength = length;
+        }
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
     @Override
     public byte[] getData() {
+        byte[] encryptedMessage = getEncryptedMessage();
         if (encryptedMessage == null) { return null; }
 
         byte[] data = new byte[encryptedMessage.length];
@@ -33,13 +51,44 @@ public class DtlsEncryptedHandShake implements DtlsRecordFactory {
 
         return data;
     }
+
+    @Override
+    public int encodedLength() {
+        if (encryptedMessage != null) { return encryptedMessage.length; }
+        if (encryptedMessageBuf != null) { return encryptedMessageBuf.readableBytes(); }
+        return 0;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (encryptedMessage != null) {
+            buf.writeBytes(encryptedMessage);
+        } else if (encryptedMessageBuf != null) {
+            buf.writeBytes(encryptedMessageBuf, encryptedMessageBuf.readerIndex(), encryptedMessageBuf.readableBytes());
+        }
+    }
+
+    @Override
+    public void release() {
+        if (encryptedMessageBuf != null) {
+            encryptedMessageBuf.release();
+            encryptedMessageBuf = null;
+        }
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
     public byte[] getEncryptedMessage() {
+        if (encryptedMessage == null && encryptedMessageBuf != null) {
+            encryptedMessage = ByteBufUtil.getBytes(encryptedMessageBuf);
+        }
         return encryptedMessage;
     }
 
+    public ByteBuf getEncryptedMessageBuf() {
+        return encryptedMessageBuf;
+    }
+
     public void setEncryptedMessage(byte[] encryptedMessage) {
         this.encryptedMessage = encryptedMessage;
     }
@@ -7,6 +7,9 @@ import dtls.type.*;
 import dtls.type.base.DtlsFormat;
 import dtls.type.base.DtlsHandshakeCommonBody;
 import dtls.type.base.DtlsHandshakeType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,6 +20,10 @@ public class DtlsHandshake implements DtlsRecordFactory {
 
     private DtlsHandshakeCommonBody dtlsHandshakeCommonBody = null;
     private DtlsFormat dtlsFormat = null;
+
+    // Raw (not parsed yet) format body, parsed on the first getDtlsFormat() call
+    transient private byte[] dtlsFormatData = null;
+    transient private ByteBuf dtlsFormatBuf = null; // Retained slice of the inbound datagram
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -25,6 +32,17 @@ public class DtlsHandshake implements DtlsRecordFactory {
         this.dtlsFormat = dtlsFormat;
     }
 
+    /**
+     * @param dtlsHandshakeCommonBody Common body
+     * @param dtlsFormatData Raw format body (ex. a reassembled message), parsed on the first {@link #getDtlsFormat()} call
+     */
+    public DtlsHandshake(DtlsHandshakeCommonBody dtlsHandshakeCommonBody, byte[] dtlsFormatData) {
+        this.dtlsHandshakeCommonBody = dtlsHandshakeCommonBody;
+        if (dtlsFormatData != null && dtlsFormatData.length > 0) {
+            this.dtlsFormatData = dtlsFormatData;
+        }
+    }
+
     public DtlsHandshake() {}
 
     public DtlsHandshake(byte[] data) {
@@ -38,130 +56,245 @@ public class DtlsHandshake implements DtlsRecordFactory {
 
             int remainDataLength = data.length - index;
             if (remainDataLength > 0) {
-                byte[] dtlsFormatData = new byte[remainDataLength];
+                dtlsFormatData = new byte[remainDataLength];
                 System.arraycopy(data, index, dtlsFormatData, 0, remainDataLength);
+            }
+        }
+    }
 
-                DtlsHandshakeType dtlsHandshakeType = dtlsHandshakeCommonBody.getHandshakeType();
-                switch (dtlsHandshakeType.getType()) {
-                    //////////////////////////////////////////////////////////////////////////
-                    case DtlsHandshakeType.TLS_TYPE_HELLO_REQUEST:
-                        // TODO: Not implemented yet
-                        dtlsFormat = new DtlsHelloRequest(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO:
-                        dtlsFormat = new DtlsClientHello(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_SERVER_HELLO:
-                        dtlsFormat = new DtlsServerHello(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_HELLO_VERIFY_REQUEST:
-                        dtlsFormat = new DtlsHelloVerifyRequest(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_CERTIFICATE:
-                        dtlsFormat = new DtlsCertificate(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_SERVER_KEY_EXCHANGE:
-                        dtlsFormat = new DtlsServerKeyExchange(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_REQUEST:
-                        // TODO: Not implemented yet
-                        dtlsFormat = new DtlsCertificateRequest(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_SERVER_HELLO_DONE:
-                        dtlsFormat = new DtlsServerHelloDone();
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_VERIFY:
-                        // TODO: Not implemented yet
-                        dtlsFormat = new DtlsCertificateVerify(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_CLIENT_KEY_EXCHANGE:
-                        dtlsFormat = new DtlsClientKeyExchange(dtlsFormatData);
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_FINISHED:
-                        dtlsFormat = new DtlsFinished();
-                        break;
-                    //////////////////////////////////////////////////////////////////////////
-
-                    //////////////////////////////////////////////////////////////////////////
-                    case DtlsHandshakeType.TLS_TYPE_NEW_SESSION_TICKET:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_NEW_SESSION_TICKET)");
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_END_OF_EARLY_DATA:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_END_OF_EARLY_DATA)");
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_HELLO_RETRY_REQUEST:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_HELLO_RETRY_REQUEST)");
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_ENCRYPTED_EXTENSIONS:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_ENCRYPTED_EXTENSIONS)");
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_URL:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_CERTIFICATE_URL)");
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_STATUS:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_CERTIFICATE_STATUS)");
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_SUPPLEMENTAL_DATA:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_SUPPLEMENTAL_DATA)");
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_KEY_UPDATE:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_KEY_UPDATE)");
-                        break;
-                    case DtlsHandshakeType.TLS_TYPE_MESSAGE_HASH:
-                        // Not implemented yet
-                        logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_MESSAGE_HASH)");
-                        break;
-                    //////////////////////////////////////////////////////////////////////////
-
-                    default:
-                        logger.warn("DtlsHandshakeBody.UnknownHandshakeType ({})", dtlsHandshakeType.getType());
-                }
+    /**
+     * Decodes the handshake in place from the given buffer
+     *      The common body is read without copying,
+     *      the format body is kept as a retained slice and parsed on the first {@link #getDtlsFormat()} call.
+     *      The slice must be returned by {@link #release()}.
+     * @param buf Buffer that contains the handshake
+     * @param index Absolute index of the first handshake byte
+     * @param length Handshake length (record length)
+     */
+    public DtlsHandshake(ByteBuf buf, int index, int length) {
+        if (buf != null && length >= DtlsHandshakeCommonBody.LENGTH && buf.writerIndex() - index >= length) {
+            dtlsHandshakeCommonBody = new DtlsHandshakeCommonBody(buf, index);
+            index += DtlsHandshakeCommonBody.LENGTH;
+
+            int remainDataLength = length - DtlsHandshakeCommonBody.LENGTH;
+            if (remainDataLength > 0) {
+                dtlsFormatBuf = buf.retainedSlice(index, remainDataLength);
             }
         }
     }
+
+    private static DtlsFormat decodeDtlsFormat(DtlsHandshakeType dtlsHandshakeType, byte[] dtlsFormatData) {
+        switch (dtlsHandshakeType.getType()) {
+            //////////////////////////////////////////////////////////////////////////
+            case DtlsHandshakeType.TLS_TYPE_HELLO_REQUEST:
+                // TODO: Not implemented yet
+                return new DtlsHelloRequest(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO:
+                return new DtlsClientHello(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_SERVER_HELLO:
+                return new DtlsServerHello(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_HELLO_VERIFY_REQUEST:
+                return new DtlsHelloVerifyRequest(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_CERTIFICATE:
+                return new DtlsCertificate(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_SERVER_KEY_EXCHANGE:
+                return new DtlsServerKeyExchange(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_REQUEST:
+                // TODO: Not implemented yet
+                return new DtlsCertificateRequest(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_SERVER_HELLO_DONE:
+                return new DtlsServerHelloDone();
+            case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_VERIFY:
+                // TODO: Not implemented yet
+                return new DtlsCertificateVerify(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_CLIENT_KEY_EXCHANGE:
+                return new DtlsClientKeyExchange(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_FINISHED:
+                return new DtlsFinished();
+            //////////////////////////////////////////////////////////////////////////
+
+            //////////////////////////////////////////////////////////////////////////
+            case DtlsHandshakeType.TLS_TYPE_NEW_SESSION_TICKET:
+                return new DtlsNewSessionTicket(dtlsFormatData);
+            case DtlsHandshakeType.TLS_TYPE_END_OF_EARLY_DATA:
+                // Not implemented yet
+                logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_END_OF_EARLY_DATA)");
+                break;
+            case DtlsHandshakeType.TLS_TYPE_HELLO_RETRY_REQUEST:
+                // Not implemented yet
+                logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_HELLO_RETRY_REQUEST)");
+                break;
+            case DtlsHandshakeType.TLS_TYPE_ENCRYPTED_EXTENSIONS:
+                // Not implemented yet
+                logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_ENCRYPTED_EXTENSIONS)");
+                break;
+            case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_URL:
+                // Not implemented yet
+                logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_CERTIFICATE_URL)");
+                break;
+            case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_STATUS:
+                // Not implemented yet
+                logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_CERTIFICATE_STATUS)");
+                break;
+            case DtlsHandshakeType.TLS_TYPE_SUPPLEMENTAL_DATA:
+                // Not implemented yet
+                logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_SUPPLEMENTAL_DATA)");
+                break;
+            case DtlsHandshakeType.TLS_TYPE_KEY_UPDATE:
+                // Not implemented yet
+                logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_KEY_UPDATE)");
+                break;
+            case DtlsHandshakeType.TLS_TYPE_MESSAGE_HASH:
+                // Not implemented yet
+                logger.warn("DtlsHandshakeBody.NotImplemented (DtlsHandshakeType.TLS_TYPE_MESSAGE_HASH)");
+                break;
+            //////////////////////////////////////////////////////////////////////////
+
+            default:
+                logger.warn("DtlsHandshakeBody.UnknownHandshakeType ({})", dtlsHandshakeType.getType());
+        }
+
+        return null;
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
     @Override
     public byte[] getData() {
-        if (dtlsHandshakeCommonBody == null || dtlsFormat == null) { return null; }
+        if (dtlsHandshakeCommonBody == null || !hasFormatBody()) { return null; }
 
-        int formatLength = 0;
-        byte[] formatData = dtlsFormat.getData();
-        if (formatData != null) {
-            formatLength = formatData.length;
+        ByteBuf buf = Unpooled.wrappedBuffer(new byte[encodedLength()]);
+        buf.writerIndex(0);
+        encodeTo(buf);
+        return buf.array();
+    }
+
+    @Override
+    public int encodedLength() {
+        if (dtlsHandshakeCommonBody == null || !hasFormatBody()) { return 0; }
+
+        int formatLength;
+        if (dtlsFormat != null) {
+            formatLength = dtlsFormat.encodedLength();
+        } else if (dtlsFormatData != null) {
+            formatLength = dtlsFormatData.length;
+        } else {
+            formatLength = dtlsFormatBuf.readableBytes();
         }
+        return DtlsHandshakeCommonBody.LENGTH + formatLength;
+    }
 
-        int index = 0;
-        byte[] data = new byte[DtlsHandshakeCommonBody.LENGTH + formatLength];
+    /**
+     * Writes the common body and the format body
+     *      A format body that is not parsed yet is written as it is received. (No parsing)
+     */
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (dtlsHandshakeCommonBody == null || !hasFormatBody()) { return; }
 
-        byte[] commonBodyData = dtlsHandshakeCommonBody.getData();
-        System.arraycopy(commonBodyData, 0, data, index, DtlsHandshakeCommonBody.LENGTH);
-        index += DtlsHandshakeCommonBody.LENGTH;
+        dtlsHandshakeCommonBody.encodeTo(buf);
+        if (dtlsFormat != null) {
+            dtlsFormat.encodeTo(buf);
+        } else if (dtlsFormatData != null) {
+            buf.writeBytes(dtlsFormatData);
+        } else {
+            buf.writeBytes(dtlsFormatBuf, dtlsFormatBuf.readerIndex(), dtlsFormatBuf.readableBytes());
+        }
+    }
 
-        if (formatData != null && formatLength > 0) {
-            System.arraycopy(formatData, 0, data, index, formatLength);
+    @Override
+    public void release() {
+        if (dtlsFormatBuf != null) {
+            dtlsFormatBuf.release();
+            dtlsFormatBuf = null;
         }
+    }
 
-        return data;
+    private boolean hasFormatBody() {
+        return dtlsFormat != null || dtlsFormatData != null || dtlsFormatBuf != null;
     }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
+    public DtlsHandshakeCommonBody getDtlsHandshakeCommonBody() {
+        return dtlsHandshakeCommonBody;
+    }
+
+    public void setDtlsHandshakeCommonBody(DtlsHandshakeCommonBody dtlsHandshakeCommonBody) {
+        this.dtlsHandshakeCommonBody = dtlsHandshakeCommonBody;
+    }
+
+    /**
+     * Parses the format body on the first call (lazy decoding)
+     *      - Duplicated or retransmitted messages can be dropped by the common body (messageSequence)
+     *          without paying for the format parsing.
+     *      - The body slice of an inbound buffer must be parsed before {@link #release()} is called.
+     *      - Not thread-safe, a handshake is handled by one thread at a time.
+     * @return Parsed format, null if there is no body, the type is not supported
+     *      or the handshake is a fragment (see DtlsHandshakeReassembler)
+     */
     public DtlsFormat getDtlsFormat() {
+        if (dtlsFormat == null && dtlsHandshakeCommonBody != null && !isFragment()) {
+            byte[] formatData = dtlsFormatData;
+            if (formatData == null && dtlsFormatBuf != null) {
+                formatData = ByteBufUtil.getBytes(dtlsFormatBuf);
+            }
+
+            if (formatData != null) {
+                dtlsFormat = decodeDtlsFormat(dtlsHandshakeCommonBody.getHandshakeType(), formatData);
+                if (dtlsFormat != null) { // Unsupported types keep the raw body (to be forwarded as it is)
+                    dtlsFormatData = null;
+                    release();
+                }
+            }
+        }
         return dtlsFormat;
     }
 
+    /**
+     * @return true if the handshake carries only a part of the message (fragmentOffset > 0 or fragmentLength < length)
+     */
+    public boolean isFragment() {
+        if (dtlsHandshakeCommonBody == null) { return false; }
+
+        return dtlsHandshakeCommonBody.getFragmentOffset() != 0
+                || dtlsHandshakeCommonBody.getFragmentLength() != dtlsHandshakeCommonBody.getLength();
+    }
+
+    /**
+     * Copies the format body (raw or encoded) into the given array without parsing it
+     * @param dst Destination array
+     * @param dstIndex Destination index
+     * @param length Number of bytes to copy
+     * @return false if the body is shorter than the given length
+     */
+    public boolean getFormatBody(byte[] dst, int dstIndex, int length) {
+        if (dtlsFormatData != null) {
+            if (dtlsFormatData.length < length) { return false; }
+            System.arraycopy(dtlsFormatData, 0, dst, dstIndex, length);
+        } else if (dtlsFormatBuf != null) {
+            if (dtlsFormatBuf.readableBytes() < length) { return false; }
+            dtlsFormatBuf.getBytes(dtlsFormatBuf.readerIndex(), dst, dstIndex, length);
+        } else if (dtlsFormat != null) {
+            int formatLength = dtlsFormat.encodedLength();
+            if (formatLength < length) { return false; }
+            ByteBuf formatBuf = Unpooled.buffer(formatLength, formatLength);
+            dtlsFormat.encodeTo(formatBuf);
+            formatBuf.getBytes(0, dst, dstIndex, length);
+        } else {
+            return length == 0;
+        }
+        return true;
+    }
+
+    public boolean isDtlsFormatParsed() {
+        return dtlsFormat != null;
+    }
+
     public void setDtlsFormat(DtlsFormat dtlsFormat) {
         this.dtlsFormat = dtlsFormat;
+        this.dtlsFormatData = null;
+        release();
     }
 
     @Override
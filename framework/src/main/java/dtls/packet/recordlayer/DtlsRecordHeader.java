@@ -4,7 +4,9 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dtls.packet.base.DtlsContentType;
 import dtls.packet.base.DtlsProtocolVersion;
+import io.netty.buffer.ByteBuf;
 import util.module.ByteUtil;
+import util.parser.UnsignedField;
 
 public class DtlsRecordHeader {
 
@@ -43,37 +45,42 @@ public class DtlsRecordHeader {
         if (data != null && data.length == LENGTH) {
             int index = 0;
 
-            byte[] contentTypeData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, contentTypeData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            byte[] contentTypeData2 = new byte[ByteUtil.NUM_BYTES_IN_INT];
-            System.arraycopy(contentTypeData, 0, contentTypeData2, ByteUtil.NUM_BYTES_IN_INT - ByteUtil.NUM_BYTES_IN_BYTE, ByteUtil.NUM_BYTES_IN_BYTE);
-            contentType = new DtlsContentType(ByteUtil.bytesToInt(contentTypeData2, true));
+            contentType = DtlsContentType.valueOf(UnsignedField.readUint8(data, index));
             index += ByteUtil.NUM_BYTES_IN_BYTE;
 
-            byte[] protocolVersionData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, protocolVersionData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            protocolVersion = new DtlsProtocolVersion(protocolVersionData);
+            protocolVersion = DtlsProtocolVersion.valueOf(data, index);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-            byte[] epochData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, epochData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            byte[] epochData2 = new byte[ByteUtil.NUM_BYTES_IN_INT];
-            System.arraycopy(epochData, 0, epochData2, ByteUtil.NUM_BYTES_IN_SHORT, ByteUtil.NUM_BYTES_IN_SHORT);
-            epoch = ByteUtil.bytesToInt(epochData2, true);
+            epoch = UnsignedField.readUint16(data, index);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-            byte[] sequenceNumberData = new byte[6];
-            System.arraycopy(data, index, sequenceNumberData, 0, 6);
-            byte[] sequenceNumberData2 = new byte[ByteUtil.NUM_BYTES_IN_LONG];
-            System.arraycopy(sequenceNumberData, 0, sequenceNumberData2, ByteUtil.NUM_BYTES_IN_LONG - 6, 6);
-            sequenceNumber = ByteUtil.bytesToLong(sequenceNumberData2, true);
+            sequenceNumber = UnsignedField.readUint48(data, index);
             index += 6;
 
-            byte[] lengthData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, lengthData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            byte[] lengthData2 = new byte[ByteUtil.NUM_BYTES_IN_INT];
-            System.arraycopy(lengthData, 0, lengthData2, ByteUtil.NUM_BYTES_IN_SHORT, ByteUtil.NUM_BYTES_IN_SHORT);
-            length = ByteUtil.bytesToInt(lengthData2, true);
+            length = UnsignedField.readUint16(data, index);
+        }
+    }
+
+    /**
+     * Reads the header in place from the given buffer (no copy, reader index is not moved)
+     * @param buf Buffer that contains the header
+     * @param index Absolute index of the first header byte
+     */
+    public DtlsRecordHeader(ByteBuf buf, int index) {
+        if (buf != null && index >= 0 && buf.writerIndex() - index >= LENGTH) {
+            contentType = DtlsContentType.valueOf(buf.getUnsignedByte(index));
+            index += ByteUtil.NUM_BYTES_IN_BYTE;
+
+            protocolVersion = DtlsProtocolVersion.valueOf(buf.getUnsignedByte(index), buf.getUnsignedByte(index + 1));
+            index += ByteUtil.NUM_BYTES_IN_SHORT;
+
+            epoch = buf.getUnsignedShort(index);
+            index += ByteUtil.NUM_BYTES_IN_SHORT;
+
+            sequenceNumber = ((long) buf.getUnsignedShort(index) << 32) | buf.getUnsignedInt(index + ByteUtil.NUM_BYTES_IN_SHORT);
+            index += 6;
+
+            length = buf.getUnsignedShort(index);
         }
     }
     ////////////////////////////////////////////////////////////
@@ -83,35 +90,32 @@ public class DtlsRecordHeader {
         int index = 0;
         byte[] data = new byte[LENGTH];
 
-        byte[] contentTypeData = ByteUtil.intToBytes(contentType.getType(), true);
-        byte[] contentTypeData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(contentTypeData, ByteUtil.NUM_BYTES_IN_INT - ByteUtil.NUM_BYTES_IN_BYTE, contentTypeData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(contentTypeData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, contentType.getType());
         index += ByteUtil.NUM_BYTES_IN_BYTE;
 
         byte[] protocolVersionData = protocolVersion.getVersion();
         System.arraycopy(protocolVersionData, 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
         index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-        byte[] epochData = ByteUtil.intToBytes(epoch, true);
-        byte[] epochData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-        System.arraycopy(epochData, ByteUtil.NUM_BYTES_IN_SHORT, epochData2, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-        System.arraycopy(epochData2, 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
+        UnsignedField.writeUint16(data, index, epoch);
         index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-        byte[] sequenceNumberData = ByteUtil.longToBytes(sequenceNumber, true);
-        byte[] sequenceNumberData2 = new byte[6];
-        System.arraycopy(sequenceNumberData, ByteUtil.NUM_BYTES_IN_LONG - 6, sequenceNumberData2, 0, 6);
-        System.arraycopy(sequenceNumberData2, 0, data, index, 6);
+        UnsignedField.writeUint48(data, index, sequenceNumber);
         index += 6;
 
-        byte[] lengthData = ByteUtil.intToBytes(length, true);
-        byte[] lengthData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-        System.arraycopy(lengthData, ByteUtil.NUM_BYTES_IN_SHORT, lengthData2, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-        System.arraycopy(lengthData2, 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
+        UnsignedField.writeUint16(data, index, length);
 
         return data;
     }
+
+    public void encodeTo(ByteBuf buf) {
+        buf.writeByte(contentType.getType());
+        buf.writeBytes(protocolVersion.getVersion(), 0, ByteUtil.NUM_BYTES_IN_SHORT);
+        buf.writeShort(epoch);
+        buf.writeShort((int) (sequenceNumber >>> 32));
+        buf.writeInt((int) sequenceNumber);
+        buf.writeShort(length);
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -0,0 +1,159 @@
+package dtls.packet.recordlayer;
+
+import dtls.packet.base.DtlsContentType;
+import dtls.packet.base.DtlsProtocolVersion;
+import io.netty.buffer.ByteBuf;
+import util.module.ByteUtil;
+
+/**
+ * Reusable (flyweight) view of a record header in a buffer
+ *      - Fields are read on demand from the underlying buffer with primitive getters. (Nothing is allocated)
+ *      - The view is re-pointed with {@link #wrap(ByteBuf, int)}, so one instance can walk every record of a datagram.
+ *      - Not thread-safe, keep one instance per handler (channel).
+ *      - {@link #toDtlsRecordHeader()} builds the full object only when it is really needed.
+ */
+public class DtlsRecordHeaderView {
+
+    ////////////////////////////////////////////////////////////
+    private static final int CONTENT_TYPE_OFFSET = 0;
+    private static final int PROTOCOL_VERSION_OFFSET = CONTENT_TYPE_OFFSET + ByteUtil.NUM_BYTES_IN_BYTE;
+    private static final int EPOCH_OFFSET = PROTOCOL_VERSION_OFFSET + ByteUtil.NUM_BYTES_IN_SHORT;
+    private static final int SEQUENCE_NUMBER_OFFSET = EPOCH_OFFSET + ByteUtil.NUM_BYTES_IN_SHORT;
+    private static final int LENGTH_OFFSET = SEQUENCE_NUMBER_OFFSET + 6;
+
+    private ByteBuf buf = null;
+    private int index = 0;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsRecordHeaderView() {}
+
+    /**
+     * Points the view at the record header that starts at the given absolute index
+     * @return this
+     */
+    public DtlsRecordHeaderView wrap(ByteBuf buf, int index) {
+        this.buf = buf;
+        this.index = index;
+        return this;
+    }
+
+    public void clear() {
+        this.buf = null;
+        this.index = 0;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @return true if the whole 13-byte header is in the buffer
+     */
+    public boolean isReadable() {
+        return buf != null && index >= 0 && buf.writerIndex() - index >= DtlsRecordHeader.LENGTH;
+    }
+
+    /**
+     * @return true if the header and the whole record body (length bytes) are in the buffer
+     */
+    public boolean isComplete() {
+        return isReadable() && buf.writerIndex() - index - DtlsRecordHeader.LENGTH >= getLength();
+    }
+
+    public boolean isKnownContentType() {
+        int contentType = getContentType();
+        return contentType >= DtlsContentType.TLS_TYPE_CHANGE_CIPHER_SPEC
+                && contentType <= DtlsContentType.TLS_TYPE_ACK;
+    }
+
+    public boolean isEncrypted() {
+        return getEpoch() != 0;
+    }
+
+    public int getContentType() {
+        return buf.getUnsignedByte(index + CONTENT_TYPE_OFFSET);
+    }
+
+    public int getMajorVersion() {
+        return buf.getUnsignedByte(index + PROTOCOL_VERSION_OFFSET);
+    }
+
+    public int getMinorVersion() {
+        return buf.getUnsignedByte(index + PROTOCOL_VERSION_OFFSET + 1);
+    }
+
+    public int getEpoch() {
+        return buf.getUnsignedShort(index + EPOCH_OFFSET);
+    }
+
+    public long getSequenceNumber() {
+        return ((long) buf.getUnsignedShort(index + SEQUENCE_NUMBER_OFFSET) << 32)
+                | buf.getUnsignedInt(index + SEQUENCE_NUMBER_OFFSET + ByteUtil.NUM_BYTES_IN_SHORT);
+    }
+
+    public int getLength() {
+        return buf.getUnsignedShort(index + LENGTH_OFFSET);
+    }
+
+    /**
+     * @return Header length + body length
+     */
+    public int getRecordLength() {
+        return DtlsRecordHeader.LENGTH + getLength();
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Absolute index of the first body byte
+     */
+    public int getBodyIndex() {
+        return index + DtlsRecordHeader.LENGTH;
+    }
+
+    /**
+     * @return Absolute index of the next record header
+     */
+    public int getNextIndex() {
+        return index + getRecordLength();
+    }
+
+    public ByteBuf getBuf() {
+        return buf;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Materializes the current header (allocates a new DtlsRecordHeader)
+     */
+    public DtlsRecordHeader toDtlsRecordHeader() {
+        if (!isReadable()) { return null; }
+
+        return new DtlsRecordHeader(
+                DtlsContentType.valueOf(getContentType()),
+                DtlsProtocolVersion.valueOf(getMajorVersion(), getMinorVersion()),
+                getEpoch(),
+                getSequenceNumber(),
+                getLength()
+        );
+    }
+
+    @Override
+    public String toString() {
+        if (!isReadable()) {
+            return "DtlsRecordHeaderView{}";
+        }
+
+        return "DtlsRecordHeaderView{" +
+                "contentType=" + getContentType() +
+                ", version=" + getMajorVersion() + "." + getMinorVersion() +
+                ", epoch=" + getEpoch() +
+                ", sequenceNumber=" + getSequenceNumber() +
+                ", length=" + getLength() +
+                '}';
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -2,9 +2,14 @@ package dtls.packet.recordlayer;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import dtls.packet.base.DtlsRecordFactory;
 import dtls.packet.handshake.DtlsEncryptedHandShake;
 import dtls.packet.handshake.DtlsHandshake;
-import dtls.packet.base.DtlsRecordFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import util.module.ByteUtil;
+
+import java.nio.ByteBuffer;
 
 public class DtlsRecordLayer {
 
@@ -20,12 +25,7 @@ public class DtlsRecordLayer {
         this.dtlsRecordHeader = recordHeader;
         this.dtlsHandshakeFactory = dtlsHandshakeFactory;
 
-        int dtlsHandshakeLength = 0;
-        if (this.dtlsHandshakeFactory.getData() != null) {
-            dtlsHandshakeLength = this.dtlsHandshakeFactory.getData().length;
-        }
-
-        this.length = DtlsRecordHeader.LENGTH + dtlsHandshakeLength;
+        this.length = DtlsRecordHeader.LENGTH + dtlsHandshakeFactory.encodedLength();
     }
 
     public DtlsRecordLayer() {}
@@ -54,7 +54,31 @@ public class DtlsRecordLayer {
                     }
                 }
             }
-            length = index;
+            length = index + dtlsRecordHeader.getLength();
+        }
+    }
+
+    /**
+     * Decodes a record in place from the given buffer
+     * @param buf Buffer that contains the record
+     * @param index Absolute index of the first record header byte
+     */
+    public DtlsRecordLayer(ByteBuf buf, int index) {
+        if (buf != null && buf.writerIndex() - index >= DtlsRecordHeader.LENGTH) {
+            dtlsRecordHeader = new DtlsRecordHeader(buf, index);
+            index += DtlsRecordHeader.LENGTH;
+
+            int length = dtlsRecordHeader.getLength();
+            if (length > 0 && buf.writerIndex() - index >= length) {
+                if (dtlsRecordHeader.getEpoch() != 0) { // Encrypted
+                    dtlsHandshakeFactory = new DtlsEncryptedHandShake(buf, index, length);
+                } else { // Not encrypted
+                    dtlsHandshakeFactory = new DtlsHandshake(buf, index, length);
+                }
+                this.length = DtlsRecordHeader.LENGTH + length;
+            } else {
+                this.length = DtlsRecordHeader.LENGTH;
+            }
         }
     }
     ////////////////////////////////////////////////////////////
@@ -63,19 +87,42 @@ public class DtlsRecordLayer {
     public byte[] getData() {
         if (dtlsRecordHeader == null || dtlsHandshakeFactory == null || length == 0) { return null; }
 
-        int index = 0;
-        byte[] data = new byte[length];
+        ByteBuf buf = Unpooled.wrappedBuffer(new byte[encodedLength()]);
+        buf.writerIndex(0);
+        encodeTo(buf);
+        return buf.array();
+    }
 
-        byte[] dtlsRecordHeaderData = dtlsRecordHeader.getData();
-        System.arraycopy(dtlsRecordHeaderData, 0, data, index, DtlsRecordHeader.LENGTH);
-        index += DtlsRecordHeader.LENGTH;
+    /**
+     * @return Number of bytes written by {@link #encodeTo(ByteBuf)} (record header + record body)
+     */
+    public int encodedLength() {
+        if (dtlsRecordHeader == null || dtlsHandshakeFactory == null) { return 0; }
 
-        byte[] dtlsHandshakeFactoryData = dtlsHandshakeFactory.getData();
-        if (dtlsHandshakeFactoryData != null && dtlsHandshakeFactoryData.length > 0) {
-            System.arraycopy(dtlsHandshakeFactoryData, 0, data, index, dtlsHandshakeFactoryData.length);
-        }
+        return DtlsRecordHeader.LENGTH + dtlsHandshakeFactory.encodedLength();
+    }
 
-        return data;
+    /**
+     * Writes the record header and the record body at the writer index of the given buffer
+     *      The length field of the header is written from the body that is actually encoded.
+     */
+    public void encodeTo(ByteBuf buf) {
+        if (dtlsRecordHeader == null || dtlsHandshakeFactory == null) { return; }
+
+        int bodyLength = dtlsHandshakeFactory.encodedLength();
+        dtlsRecordHeader.setLength(bodyLength);
+        dtlsRecordHeader.encodeTo(buf);
+        dtlsHandshakeFactory.encodeTo(buf);
+    }
+
+    /**
+     * Writes the record at the given absolute offset of the ByteBuffer (position is not changed)
+     * @return Offset right after the last written byte
+     */
+    public int encodeTo(ByteBuffer byteBuffer, int offset) {
+        ByteBuf buf = ByteUtil.wrapForWrite(byteBuffer, offset);
+        encodeTo(buf);
+        return buf.writerIndex();
     }
     ////////////////////////////////////////////////////////////
 
@@ -100,6 +147,12 @@ public class DtlsRecordLayer {
         return length;
     }
 
+    public void release() {
+        if (dtlsHandshakeFactory != null) {
+            dtlsHandshakeFactory.release();
+        }
+    }
+
     @Override
     public String toString() {
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
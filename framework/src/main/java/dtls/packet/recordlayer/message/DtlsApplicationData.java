@@ -3,6 +3,7 @@ package dtls.packet.recordlayer.message;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dtls.packet.base.DtlsRecordFactory;
+import io.netty.buffer.ByteBuf;
 
 public class DtlsApplicationData implements DtlsRecordFactory {
 
@@ -31,6 +32,18 @@ public class DtlsApplicationData implements DtlsRecordFactory {
 
         return data;
     }
+
+    @Override
+    public int encodedLength() {
+        return encryptedApplicationData == null ? 0 : encryptedApplicationData.length;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (encryptedApplicationData == null) { return; }
+
+        buf.writeBytes(encryptedApplicationData);
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dtls.packet.base.DtlsRecordFactory;
 import dtls.packet.recordlayer.DtlsRecordHeader;
+import io.netty.buffer.ByteBuf;
 
 public class DtlsChangeCipherSpec implements DtlsRecordFactory {
 
@@ -22,6 +23,16 @@ public class DtlsChangeCipherSpec implements DtlsRecordFactory {
     public byte[] getData() {
         return new byte[] { CHANGE_CIPHER_SPEC_MESSAGE };
     }
+
+    @Override
+    public int encodedLength() {
+        return 1;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        buf.writeByte(CHANGE_CIPHER_SPEC_MESSAGE);
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
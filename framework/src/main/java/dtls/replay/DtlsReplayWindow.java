@@ -0,0 +1,182 @@
+package dtls.replay;
+
+import dtls.packet.recordlayer.DtlsRecordHeaderView;
+
+/**
+ * Anti-replay window of one association (RFC 6347, 4.1.2.6)
+ *      - One 64-bit shift-register bitmap per epoch, bit n is set if (max sequence number - n) is received.
+ *      - The current and the previous epoch are kept (retransmitted flights of the previous epoch are still accepted),
+ *          they are slotted by the parity of the epoch, so the lookup is one AND.
+ *      - Epoch 0 has no MAC, its records are marked (and slide the window) as soon as they are checked.
+ *      - Records of a protected epoch do not move the window until they are accepted (RFC 6347 : "MUST NOT be updated
+ *          until the MAC is verified") : {@link #checkAndUpdate(int, long)} only checks them, {@link #markVerified(int, long)}
+ *          marks them, and only {@link #openEpoch(int)} (handshake layer, on ChangeCipherSpec) changes the epoch.
+ *          (a spoofed record can not open an epoch, burn a sequence number or push the window past the real records)
+ *      - Check & update are a few bit operations on primitives, nothing is allocated.
+ *      - Not thread-safe, used only by the packet handler of the association (one thread).
+ */
+public class DtlsReplayWindow {
+
+    ////////////////////////////////////////////////////////////
+    public static final int WINDOW_SIZE = Long.SIZE;
+
+    private static final int SLOT_COUNT = 2;
+    private static final int SLOT_MASK = SLOT_COUNT - 1;
+    private static final int NO_EPOCH = -1;
+    private static final long NO_SEQUENCE_NUMBER = -1;
+
+    private final int[] epochs = new int[SLOT_COUNT];
+    private final long[] maxSequenceNumbers = new long[SLOT_COUNT];
+    private final long[] bitmaps = new long[SLOT_COUNT];
+    private int currentEpoch;
+
+    private long replayedCount = 0;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsReplayWindow() {
+        reset();
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @return true if the record can be passed to the handshake layer, false if it is discarded
+     */
+    public boolean checkAndUpdate(DtlsRecordHeaderView dtlsRecordHeaderView) {
+        return checkAndUpdate(dtlsRecordHeaderView.getEpoch(), dtlsRecordHeaderView.getSequenceNumber());
+    }
+
+    /**
+     * Checks a received record
+     *      - Epoch 0 : discarded if it is a duplicate or older than the window, otherwise marked (no MAC to wait for).
+     *      - Other known epoch (current or previous) : discarded if it is a duplicate or older than the window,
+     *          otherwise passed unmarked. ({@link #markVerified(int, long)} once it is accepted)
+     *      - Next epoch (current + 1) : passed unmarked, the handshake layer decides to open it or not.
+     *      - Any other epoch : discarded.
+     * @param epoch Epoch of the record (16 bits)
+     * @param sequenceNumber Sequence number of the record (48 bits)
+     * @return true if the record can be passed to the handshake layer, false if it is discarded
+     */
+    public boolean checkAndUpdate(int epoch, long sequenceNumber) {
+        int slot = epoch & SLOT_MASK;
+        if (epochs[slot] != epoch) {
+            if (epoch != currentEpoch + 1) {
+                replayedCount++;
+                return false;
+            }
+            return true;
+        }
+
+        if (epoch == 0) {
+            return markVerified(epoch, sequenceNumber);
+        }
+
+        long offset = maxSequenceNumbers[slot] - sequenceNumber;
+        if (offset >= 0 && (offset >= WINDOW_SIZE || (bitmaps[slot] & (1L << offset)) != 0)) {
+            replayedCount++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks a verified record (MAC checked), slides the window if the record is ahead of it
+     * @return true if the record is new, false if it is a duplicate, too old or of an unknown epoch
+     */
+    public boolean markVerified(int epoch, long sequenceNumber) {
+        int slot = epoch & SLOT_MASK;
+        if (epochs[slot] != epoch) {
+            replayedCount++;
+            return false;
+        }
+
+        long maxSequenceNumber = maxSequenceNumbers[slot];
+        if (sequenceNumber > maxSequenceNumber) {
+            // Slides the window
+            long shift = sequenceNumber - maxSequenceNumber;
+            bitmaps[slot] = shift >= WINDOW_SIZE ? 1L : (bitmaps[slot] << shift) | 1L;
+            maxSequenceNumbers[slot] = sequenceNumber;
+            return true;
+        }
+
+        long offset = maxSequenceNumber - sequenceNumber;
+        long bit = 1L << offset;
+        if (offset >= WINDOW_SIZE || (bitmaps[slot] & bit) != 0) {
+            replayedCount++;
+            return false;
+        }
+
+        bitmaps[slot] |= bit;
+        return true;
+    }
+
+    /**
+     * Opens the next epoch (called by the handshake layer on ChangeCipherSpec), it takes the slot of the epoch before the current one
+     * @return false if the epoch is not the next one (nothing is changed)
+     */
+    public boolean openEpoch(int epoch) {
+        if (epoch != currentEpoch + 1) { return false; }
+
+        int slot = epoch & SLOT_MASK;
+        epochs[slot] = epoch;
+        maxSequenceNumbers[slot] = NO_SEQUENCE_NUMBER;
+        bitmaps[slot] = 0;
+        currentEpoch = epoch;
+        return true;
+    }
+
+    /**
+     * @return true if the record would be discarded (the window is not updated)
+     */
+    public boolean isReplayed(int epoch, long sequenceNumber) {
+        int slot = epoch & SLOT_MASK;
+        if (epochs[slot] != epoch) {
+            return epoch != currentEpoch + 1;
+        }
+
+        long offset = maxSequenceNumbers[slot] - sequenceNumber;
+        if (offset < 0) { return false; }
+
+        return offset >= WINDOW_SIZE || (bitmaps[slot] & (1L << offset)) != 0;
+    }
+
+    /**
+     * Starts over from epoch 0 (ex. a new handshake of the same peer)
+     */
+    public void reset() {
+        epochs[0] = 0;
+        epochs[1] = NO_EPOCH;
+        maxSequenceNumbers[0] = NO_SEQUENCE_NUMBER;
+        maxSequenceNumbers[1] = NO_SEQUENCE_NUMBER;
+        bitmaps[0] = 0;
+        bitmaps[1] = 0;
+        currentEpoch = 0;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public int getCurrentEpoch() {
+        return currentEpoch;
+    }
+
+    /**
+     * @return Number of the discarded records
+     */
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+    ////////////////////////////////////////////////////////////
+
+    @Override
+    public String toString() {
+        int slot = currentEpoch & SLOT_MASK;
+        return "DtlsReplayWindow{" +
+                "currentEpoch=" + currentEpoch +
+                ", maxSequenceNumber=" + maxSequenceNumbers[slot] +
+                ", bitmap=" + Long.toHexString(bitmaps[slot]) +
+                ", replayedCount=" + replayedCount +
+                '}';
+    }
+
+}
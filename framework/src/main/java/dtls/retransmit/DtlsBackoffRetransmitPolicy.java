@@ -0,0 +1,153 @@
+package dtls.retransmit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Default retransmit policy (RFC 6347, 4.2.4.1 & RFC 6298)
+ *      - The timer starts at the initial timeout and doubles at every expiration, up to the maximum timeout.
+ *      - The backoff is reset when the next flight is received.
+ *      - RTT is sampled from the first transmission of a flight to the reception of the next flight,
+ *          a retransmitted flight is not sampled. (Karn's algorithm)
+ *      - Once sampled, the base timeout is SRTT + max(G, 4 * RTTVAR) in [minTimeoutMs, maxTimeoutMs].
+ */
+public class DtlsBackoffRetransmitPolicy implements DtlsRetransmitPolicy {
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Implementations SHOULD use an initial timer value
+     *    of 1 second (the minimum defined in RFC 2988 [RFC2988]) and double
+     *    the value at each retransmission, up to no less than the RFC 2988
+     *    maximum of 60 seconds.
+     */
+    public static final long DEFAULT_INITIAL_TIMEOUT_MS = 1000;
+    public static final long DEFAULT_MIN_TIMEOUT_MS = 100;
+    public static final long DEFAULT_MAX_TIMEOUT_MS = 60000;
+
+    private static final long CLOCK_GRANULARITY_MS = DtlsRetransmitTimer.TICK_DURATION_MS;
+
+    private final long initialTimeoutMs;
+    private final long minTimeoutMs;
+    private final long maxTimeoutMs;
+
+    private long baseTimeoutMs; // RTO without the backoff
+    private int backoffCount = 0;
+
+    private long smoothedRttMs = -1; // SRTT (-1 : not sampled yet)
+    private long rttVariationMs = 0; // RTTVAR
+
+    private long flightSendTimeMs = 0; // First transmission time of the current flight (0 : no flight)
+    private boolean isRetransmitted = false;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsBackoffRetransmitPolicy() {
+        this(DEFAULT_INITIAL_TIMEOUT_MS, DEFAULT_MIN_TIMEOUT_MS, DEFAULT_MAX_TIMEOUT_MS);
+    }
+
+    public DtlsBackoffRetransmitPolicy(long initialTimeoutMs, long minTimeoutMs, long maxTimeoutMs) {
+        this.initialTimeoutMs = initialTimeoutMs;
+        this.minTimeoutMs = minTimeoutMs;
+        this.maxTimeoutMs = maxTimeoutMs;
+        this.baseTimeoutMs = initialTimeoutMs;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    @Override
+    public synchronized long getTimeoutMs() {
+        long timeoutMs = baseTimeoutMs;
+        for (int i = 0; i < backoffCount && timeoutMs < maxTimeoutMs; i++) {
+            timeoutMs <<= 1;
+        }
+        return Math.min(timeoutMs, maxTimeoutMs);
+    }
+
+    @Override
+    public synchronized void onFlightSent(long nowMs) {
+        if (flightSendTimeMs == 0) {
+            flightSendTimeMs = nowMs;
+        } else {
+            isRetransmitted = true;
+        }
+    }
+
+    @Override
+    public synchronized void onTimerExpired() {
+        if (getTimeoutMs() < maxTimeoutMs) {
+            backoffCount++;
+        }
+        isRetransmitted = true;
+    }
+
+    @Override
+    public synchronized void onFlightReceived(long nowMs) {
+        if (flightSendTimeMs != 0 && !isRetransmitted && nowMs >= flightSendTimeMs) {
+            sampleRtt(nowMs - flightSendTimeMs);
+        }
+
+        backoffCount = 0;
+        flightSendTimeMs = 0;
+        isRetransmitted = false;
+    }
+
+    @Override
+    public synchronized void reset() {
+        baseTimeoutMs = initialTimeoutMs;
+        backoffCount = 0;
+        smoothedRttMs = -1;
+        rttVariationMs = 0;
+        flightSendTimeMs = 0;
+        isRetransmitted = false;
+    }
+
+    /**
+     * RFC 6298, 2.2 & 2.3
+     */
+    private void sampleRtt(long rttMs) {
+        if (smoothedRttMs < 0) {
+            smoothedRttMs = rttMs;
+            rttVariationMs = rttMs / 2;
+        } else {
+            rttVariationMs = (3 * rttVariationMs + Math.abs(smoothedRttMs - rttMs)) / 4;
+            smoothedRttMs = (7 * smoothedRttMs + rttMs) / 8;
+        }
+
+        long timeoutMs = smoothedRttMs + Math.max(CLOCK_GRANULARITY_MS, 4 * rttVariationMs);
+        baseTimeoutMs = Math.max(minTimeoutMs, Math.min(timeoutMs, maxTimeoutMs));
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public synchronized long getSmoothedRttMs() {
+        return smoothedRttMs;
+    }
+
+    public synchronized long getRttVariationMs() {
+        return rttVariationMs;
+    }
+
+    public synchronized int getBackoffCount() {
+        return backoffCount;
+    }
+
+    public long getInitialTimeoutMs() {
+        return initialTimeoutMs;
+    }
+
+    public long getMinTimeoutMs() {
+        return minTimeoutMs;
+    }
+
+    public long getMaxTimeoutMs() {
+        return maxTimeoutMs;
+    }
+
+    @Override
+    public String toString() {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        return gson.toJson(this);
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -1,77 +1,61 @@
 package dtls.retransmit;
 
-import JFSM.JFSM.src.main.java.com.fsm.StateManager;
-import JFSM.JFSM.src.main.java.com.fsm.module.StateHandler;
 import dtls.fsm.definition.DtlsEvent;
-import dtls.fsm.definition.DtlsState;
 import dtls.unit.DtlsUnit;
-import org.apache.commons.lang3.time.StopWatch;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import service.scheduler.job.Job;
-import service.scheduler.schedule.ScheduleManager;
 
-import java.util.concurrent.TimeUnit;
-
-public class DtlsRetransmit extends Job { // Scheduled by DtlsUnit
+/**
+ * Retransmit timer task of a DtlsUnit (Scheduled on the shared DtlsRetransmitTimer by DtlsUnit)
+ *      Fires [TIMER_EXPIRES] if the timer is still the current one of the unit (not cancelled or replaced).
+ *      The expiry runs on the event loop of the unit, not on the timer thread.
+ */
+public class DtlsRetransmit implements TimerTask {
 
     private static final Logger logger = LoggerFactory.getLogger(DtlsRetransmit.class);
 
-    private final StopWatch stopWatch = new StopWatch();
-
     private final DtlsUnit dtlsUnit;
     private final long timeoutMs;
+    private final long startTimeMs;
 
-    public DtlsRetransmit(ScheduleManager scheduleManager, String name,
-                          int initialDelay, int interval, TimeUnit timeUnit,
-                          int priority, int totalRunCount, boolean isLasted,
-                          DtlsUnit dtlsUnit, long initialTimeoutMs) {
-        super(scheduleManager, name, initialDelay, interval, timeUnit, priority, totalRunCount, isLasted);
-
+    public DtlsRetransmit(DtlsUnit dtlsUnit, long timeoutMs) {
         this.dtlsUnit = dtlsUnit;
-        this.timeoutMs = initialTimeoutMs;
+        this.timeoutMs = timeoutMs;
+        this.startTimeMs = System.currentTimeMillis();
     }
 
     @Override
-    public void run() {
-        stopWatch.start();
+    public void run(Timeout timeout) {
+        if (timeout.isCancelled() || dtlsUnit.isClosed() || !dtlsUnit.clearRetransmitTimeout(timeout)) {
+            return;
+        }
 
-        long curTimeMs;
-        long startTimeMs = stopWatch.getStartTime();
-        logger.debug("({}) DTLS RETRANSMIT IS STARTED. (startTimeMs={}, timeoutMs={})",
-                getName(), startTimeMs, timeoutMs
-        );
+        // Leaves the timer thread, the expiry is handled on the event loop of the unit
+        if (!dtlsUnit.execute(this::expire)) {
+            logger.warn("({}) Fail to handle the retransmit timeout. The event loop is shut down.", dtlsUnit.getId());
+        }
+    }
 
-        ////////////////////////////
-        while (true) {
-            curTimeMs = stopWatch.getTime(TimeUnit.MILLISECONDS);
-            if (curTimeMs - startTimeMs >= timeoutMs) {
-                logger.warn("({}) DTLS RETRANSMIT TIMEOUT EXPIRED! (timeoutMs={})",
-                        getName(), timeoutMs
-                );
+    private void expire() {
+        if (dtlsUnit.isClosed()) { return; }
 
-                ////////////////////////////
-                // FIRE [TIMER_EXPIRES]
-                StateManager stateManager = dtlsUnit.getDtlsFsmManager().getStateManager();
-                StateHandler stateHandler = stateManager.getStateHandler(DtlsState.NAME);
-                if (stateHandler != null) {
-                    stateHandler.fire(
-                            DtlsEvent.TIMER_EXPIRES.name(),
-                            stateManager.getStateUnit(dtlsUnit.getDtlsStateUnitName())
-                    );
-                }
-                ////////////////////////////
+        logger.warn("({}) DTLS RETRANSMIT TIMEOUT EXPIRED! (timeoutMs={}, elapsedMs={})",
+                dtlsUnit.getId(), timeoutMs, System.currentTimeMillis() - startTimeMs
+        );
 
-                break;
-            }
+        ////////////////////////////
+        // FIRE [TIMER_EXPIRES]
+        // The backoff is applied only if the flight is really retransmitted (ex. not if the unit is already FINISHED)
+        if (dtlsUnit.fireNow(DtlsEvent.TIMER_EXPIRES)) {
+            dtlsUnit.getDtlsRetransmitPolicy().onTimerExpired();
         }
         ////////////////////////////
+    }
 
-        stopWatch.stop();
-        curTimeMs = stopWatch.getTime(TimeUnit.MILLISECONDS);
-        logger.debug("({}) DTLS RETRANSMIT IS FINISHED. (startTimeMs={}, curTimeMs={}, timeoutMs={})",
-                getName(), startTimeMs, curTimeMs, timeoutMs
-        );
+    public long getTimeoutMs() {
+        return timeoutMs;
     }
 
 }
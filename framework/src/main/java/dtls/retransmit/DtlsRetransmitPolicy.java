@@ -0,0 +1,36 @@
+package dtls.retransmit;
+
+/**
+ * Retransmit timeout policy of one association
+ *      Called by the FSM callbacks of the DtlsUnit (SEND_FLIGHT_2, TIMER_EXPIRES, RECEIVE_NEXT_FLIGHT, ...)
+ */
+public interface DtlsRetransmitPolicy {
+
+    /**
+     * @return Timeout of the retransmit timer that is about to be started (ms)
+     */
+    long getTimeoutMs();
+
+    /**
+     * A flight is sent (first transmission or retransmission)
+     * @param nowMs Current time (ms)
+     */
+    void onFlightSent(long nowMs);
+
+    /**
+     * The retransmit timer expired without receiving the next flight
+     */
+    void onTimerExpired();
+
+    /**
+     * The next flight is received (progress)
+     * @param nowMs Current time (ms)
+     */
+    void onFlightReceived(long nowMs);
+
+    /**
+     * Forgets the backoff and the RTT estimation (ex. new handshake)
+     */
+    void reset();
+
+}
@@ -0,0 +1,75 @@
+package dtls.retransmit;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared retransmit timer of every DtlsUnit (hashed wheel)
+ *      - One daemon thread for all associations, a pending timer costs no CPU until it expires.
+ *      - Scheduling and cancelling a timer are O(1). (A cancelled timer is removed on the next tick)
+ *      - Expired tasks run on the timer thread only to hand the expiry over to the event loop of the unit
+ *          (see DtlsRetransmit), the FSM event is fired there. Nothing may block the wheel thread.
+ *      - Resolution is TICK_DURATION_MS, enough for the retransmit timeouts of 1 sec ~ 60 sec.
+ */
+public class DtlsRetransmitTimer {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsRetransmitTimer.class);
+
+    public static final long TICK_DURATION_MS = 10;
+    public static final int TICKS_PER_WHEEL = 512;
+
+    private final HashedWheelTimer hashedWheelTimer;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    private DtlsRetransmitTimer() {
+        hashedWheelTimer = new HashedWheelTimer(
+                new BasicThreadFactory.Builder().namingPattern("DtlsRetransmitTimer-%d").daemon(true).build(),
+                TICK_DURATION_MS, TimeUnit.MILLISECONDS,
+                TICKS_PER_WHEEL
+        );
+    }
+
+    private static class DtlsRetransmitTimerHolder {
+        private static final DtlsRetransmitTimer INSTANCE = new DtlsRetransmitTimer();
+    }
+
+    public static DtlsRetransmitTimer getInstance() {
+        return DtlsRetransmitTimerHolder.INSTANCE;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @param timerTask Task to run on expiration
+     * @param delayMs Delay (ms)
+     * @return Handle of the timer (Timeout.cancel() to stop it), null if the timer is stopped
+     */
+    public Timeout schedule(TimerTask timerTask, long delayMs) {
+        if (timerTask == null) { return null; }
+
+        try {
+            return hashedWheelTimer.newTimeout(timerTask, delayMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.warn("DtlsRetransmitTimer: Fail to schedule the timer. (delayMs={})", delayMs, e);
+            return null;
+        }
+    }
+
+    public int getPendingTimeouts() {
+        return (int) hashedWheelTimer.pendingTimeouts();
+    }
+
+    public void stop() {
+        hashedWheelTimer.stop();
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -0,0 +1,162 @@
+package dtls.session;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import dtls.cipher.DtlsCipherSuite;
+import dtls.compression.DtlsCompressionMethodType;
+import dtls.packet.base.DtlsProtocolVersion;
+import util.module.ByteUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Resumable state of a finished handshake (RFC 5246, 7.4.1.2 & RFC 5077, 4)
+ *      - Kept by the DtlsSessionCache (session ID) or sealed into a ticket (DtlsSessionTicketManager).
+ *      - Immutable.
+ */
+public class DtlsSession {
+
+    ////////////////////////////////////////////////////////////
+    public static final int SESSION_ID_LENGTH = 32;
+    public static final int MASTER_SECRET_LENGTH = 48;
+
+    transient private final byte[] sessionId; // 0 ~ 32 bytes
+    private final DtlsProtocolVersion protocolVersion;
+    private final DtlsCipherSuite cipherSuite;
+    private final DtlsCompressionMethodType compressionMethod;
+    transient private final byte[] masterSecret; // 48 bytes
+    private final long creationTimeMs;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsSession(byte[] sessionId, DtlsProtocolVersion protocolVersion,
+                       DtlsCipherSuite cipherSuite, DtlsCompressionMethodType compressionMethod,
+                       byte[] masterSecret, long creationTimeMs) {
+        this.sessionId = sessionId;
+        this.protocolVersion = protocolVersion;
+        this.cipherSuite = cipherSuite;
+        this.compressionMethod = compressionMethod;
+        this.masterSecret = masterSecret;
+        this.creationTimeMs = creationTimeMs;
+    }
+
+    /**
+     * Decodes the state sealed in a ticket
+     *      version(2) | cipher_suite(2) | compression(1) | session_id_length(1) | session_id
+     *      | master_secret_length(1) | master_secret | creation_time(8)
+     * @return null if the data is not valid
+     */
+    public static DtlsSession decode(byte[] data) {
+        if (data == null || data.length < 7) { return null; }
+
+        try {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+
+            byte[] version = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
+            byteBuffer.get(version);
+            byte[] cipherSuite = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
+            byteBuffer.get(cipherSuite);
+            int compressionMethod = byteBuffer.get() & 0xff;
+
+            byte[] sessionId = new byte[byteBuffer.get() & 0xff];
+            byteBuffer.get(sessionId);
+            byte[] masterSecret = new byte[byteBuffer.get() & 0xff];
+            byteBuffer.get(masterSecret);
+            long creationTimeMs = byteBuffer.getLong();
+
+            return new DtlsSession(
+                    sessionId,
+                    DtlsProtocolVersion.valueOf(version, 0),
+                    new DtlsCipherSuite(cipherSuite),
+                    new DtlsCompressionMethodType(compressionMethod),
+                    masterSecret,
+                    creationTimeMs
+            );
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @return Encoded state (plaintext of a ticket), null if the session is not complete
+     */
+    public byte[] encode() {
+        if (sessionId == null || protocolVersion == null || cipherSuite == null
+                || cipherSuite.getCipherSuite() == null || compressionMethod == null || masterSecret == null) {
+            return null;
+        }
+
+        ByteBuffer byteBuffer = ByteBuffer.allocate(
+                ByteUtil.NUM_BYTES_IN_SHORT * 2 + 3 + sessionId.length + masterSecret.length + ByteUtil.NUM_BYTES_IN_LONG
+        );
+        byteBuffer.put(protocolVersion.getVersion(), 0, ByteUtil.NUM_BYTES_IN_SHORT);
+        byteBuffer.put(cipherSuite.getCipherSuite(), 0, ByteUtil.NUM_BYTES_IN_SHORT);
+        byteBuffer.put((byte) compressionMethod.getMethod());
+        byteBuffer.put((byte) sessionId.length);
+        byteBuffer.put(sessionId);
+        byteBuffer.put((byte) masterSecret.length);
+        byteBuffer.put(masterSecret);
+        byteBuffer.putLong(creationTimeMs);
+        return byteBuffer.array();
+    }
+
+    public boolean isExpired(long nowMs, long ttlMs) {
+        return nowMs - creationTimeMs >= ttlMs;
+    }
+
+    /**
+     * @return true if the session can be resumed by a ClientHello of the given version that offers the cipher suite
+     */
+    public boolean isResumableBy(DtlsProtocolVersion clientVersion, byte[] offeredCipherSuites) {
+        if (clientVersion == null || protocolVersion == null || cipherSuite == null) { return false; }
+
+        byte[] version = protocolVersion.getVersion();
+        byte[] clientVersionBytes = clientVersion.getVersion();
+        if (version[0] != clientVersionBytes[0] || version[1] != clientVersionBytes[1]) { return false; }
+
+        if (offeredCipherSuites == null) { return false; }
+        byte[] suite = cipherSuite.getCipherSuite();
+        for (int i = 0; i + 1 < offeredCipherSuites.length; i += ByteUtil.NUM_BYTES_IN_SHORT) {
+            if (offeredCipherSuites[i] == suite[0] && offeredCipherSuites[i + 1] == suite[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public byte[] getSessionId() {
+        return sessionId;
+    }
+
+    public DtlsProtocolVersion getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    public DtlsCipherSuite getCipherSuite() {
+        return cipherSuite;
+    }
+
+    public DtlsCompressionMethodType getCompressionMethod() {
+        return compressionMethod;
+    }
+
+    public byte[] getMasterSecret() {
+        return masterSecret;
+    }
+
+    public long getCreationTimeMs() {
+        return creationTimeMs;
+    }
+    ////////////////////////////////////////////////////////////
+
+    @Override
+    public String toString() {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        return gson.toJson(this);
+    }
+
+}
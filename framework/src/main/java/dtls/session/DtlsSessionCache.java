@@ -0,0 +1,165 @@
+package dtls.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server-side session cache (resumption by session ID)
+ *      - Bounded by {@link #getMaxSessionCount()}, the least recently used session is evicted first. (LRU)
+ *      - A session expires {@link #getTtlMs()} after its creation (checked on lookup and by {@link #removeExpiredSessions(long)}).
+ *      - Thread-safe. (one lock, the critical sections are O(1))
+ */
+public class DtlsSessionCache {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsSessionCache.class);
+
+    public static final int DEFAULT_MAX_SESSION_COUNT = 20000;
+    public static final long DEFAULT_TTL_MS = 2 * 60 * 60 * 1000L; // 2 hours
+
+    private final int maxSessionCount;
+    private final long ttlMs;
+
+    // Access ordered : the eldest entry is the least recently used one
+    private final LinkedHashMap<ByteBuffer, DtlsSession> sessionMap;
+    private final ReentrantLock sessionMapLock = new ReentrantLock();
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsSessionCache() {
+        this(DEFAULT_MAX_SESSION_COUNT, DEFAULT_TTL_MS);
+    }
+
+    /**
+     * @param maxSessionCount Maximum number of the cached sessions
+     * @param ttlMs Lifetime of a session from its creation (ms)
+     */
+    public DtlsSessionCache(int maxSessionCount, long ttlMs) {
+        this.maxSessionCount = Math.max(maxSessionCount, 1);
+        this.ttlMs = ttlMs;
+        this.sessionMap = new LinkedHashMap<ByteBuffer, DtlsSession>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, DtlsSession> eldest) {
+                return size() > DtlsSessionCache.this.maxSessionCount;
+            }
+        };
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Caches the session by its session ID (replaces the session of the same ID)
+     * @return false if the session has no session ID
+     */
+    public boolean put(DtlsSession dtlsSession) {
+        if (dtlsSession == null || dtlsSession.getSessionId() == null || dtlsSession.getSessionId().length == 0) {
+            return false;
+        }
+
+        ByteBuffer key = ByteBuffer.wrap(dtlsSession.getSessionId().clone());
+        sessionMapLock.lock();
+        try {
+            sessionMap.put(key, dtlsSession);
+        } finally {
+            sessionMapLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * @param sessionId Session ID of a ClientHello
+     * @param nowMs Current time (ms)
+     * @return The cached session, null if there is none or it is expired (the expired one is removed)
+     */
+    public DtlsSession get(byte[] sessionId, long nowMs) {
+        if (sessionId == null || sessionId.length == 0) { return null; }
+
+        ByteBuffer key = ByteBuffer.wrap(sessionId);
+        sessionMapLock.lock();
+        try {
+            DtlsSession dtlsSession = sessionMap.get(key);
+            if (dtlsSession == null) { return null; }
+
+            if (dtlsSession.isExpired(nowMs, ttlMs)) {
+                sessionMap.remove(key);
+                return null;
+            }
+            return dtlsSession;
+        } finally {
+            sessionMapLock.unlock();
+        }
+    }
+
+    public DtlsSession remove(byte[] sessionId) {
+        if (sessionId == null || sessionId.length == 0) { return null; }
+
+        sessionMapLock.lock();
+        try {
+            return sessionMap.remove(ByteBuffer.wrap(sessionId));
+        } finally {
+            sessionMapLock.unlock();
+        }
+    }
+
+    /**
+     * @param nowMs Current time (ms)
+     * @return Number of the removed sessions
+     */
+    public int removeExpiredSessions(long nowMs) {
+        int removedCount = 0;
+
+        sessionMapLock.lock();
+        try {
+            Iterator<DtlsSession> iterator = sessionMap.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isExpired(nowMs, ttlMs)) {
+                    iterator.remove();
+                    removedCount++;
+                }
+            }
+        } finally {
+            sessionMapLock.unlock();
+        }
+
+        if (removedCount > 0) {
+            logger.debug("Expired dtls sessions are removed. (count={})", removedCount);
+        }
+        return removedCount;
+    }
+
+    public void clear() {
+        sessionMapLock.lock();
+        try {
+            sessionMap.clear();
+        } finally {
+            sessionMapLock.unlock();
+        }
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public int size() {
+        sessionMapLock.lock();
+        try {
+            return sessionMap.size();
+        } finally {
+            sessionMapLock.unlock();
+        }
+    }
+
+    public int getMaxSessionCount() {
+        return maxSessionCount;
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -0,0 +1,229 @@
+package dtls.ticket;
+
+import dtls.session.DtlsSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stateless session tickets (RFC 5077, 4)
+ *      ticket = key_name(16) | iv(12) | AES-GCM(key, iv, aad = key_name, DtlsSession.encode()) + tag(16)
+ *      - Nothing is kept per session on the server, the state comes back in the ticket.
+ *      - The key is rotated every {@link #getKeyRotationIntervalMs()}, tickets of the previous key are still accepted.
+ *      - A ticket expires {@link #getTicketLifetimeMs()} after the creation of its session.
+ *      - Thread-safe. (Cipher instances are kept per thread)
+ */
+public class DtlsSessionTicketManager {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsSessionTicketManager.class);
+
+    public static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    public static final int KEY_NAME_LENGTH = 16;
+    public static final int KEY_LENGTH = 16; // AES-128
+    public static final int IV_LENGTH = 12;
+    public static final int TAG_LENGTH = 16;
+    public static final int OVERHEAD = KEY_NAME_LENGTH + IV_LENGTH + TAG_LENGTH;
+
+    public static final long DEFAULT_TICKET_LIFETIME_MS = 2 * 60 * 60 * 1000L; // 2 hours
+    public static final long DEFAULT_KEY_ROTATION_INTERVAL_MS = DEFAULT_TICKET_LIFETIME_MS;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final AtomicReference<DtlsTicketKeys> ticketKeys = new AtomicReference<>();
+    private final ThreadLocal<Cipher> ticketCipher = new ThreadLocal<>();
+    private final long ticketLifetimeMs;
+    private final long keyRotationIntervalMs;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsSessionTicketManager() {
+        this(DEFAULT_TICKET_LIFETIME_MS, DEFAULT_KEY_ROTATION_INTERVAL_MS);
+    }
+
+    /**
+     * @param ticketLifetimeMs Lifetime of a ticket from the creation of its session (ms)
+     * @param keyRotationIntervalMs Lifetime of one ticket key (ms), should not be shorter than the ticket lifetime
+     */
+    public DtlsSessionTicketManager(long ticketLifetimeMs, long keyRotationIntervalMs) {
+        this.ticketLifetimeMs = ticketLifetimeMs;
+        this.keyRotationIntervalMs = keyRotationIntervalMs;
+        this.ticketKeys.set(new DtlsTicketKeys(newKey(System.currentTimeMillis()), null));
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * Seals the session into a new ticket (for the NewSessionTicket message)
+     * @return Ticket with the lifetime hint, null if the session is not complete or the encryption fails
+     */
+    public TlsSessionTicket issueTicket(DtlsSession dtlsSession) {
+        if (dtlsSession == null) { return null; }
+
+        byte[] state = dtlsSession.encode();
+        if (state == null) { return null; }
+
+        DtlsTicketKey key = getKeys(System.currentTimeMillis()).current;
+        byte[] iv = new byte[IV_LENGTH];
+        secureRandom.nextBytes(iv);
+
+        try {
+            Cipher cipher = getCipher();
+            cipher.init(Cipher.ENCRYPT_MODE, key.key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+            cipher.updateAAD(key.name);
+
+            byte[] ticket = new byte[KEY_NAME_LENGTH + IV_LENGTH + cipher.getOutputSize(state.length)];
+            System.arraycopy(key.name, 0, ticket, 0, KEY_NAME_LENGTH);
+            System.arraycopy(iv, 0, ticket, KEY_NAME_LENGTH, IV_LENGTH);
+            cipher.doFinal(state, 0, state.length, ticket, KEY_NAME_LENGTH + IV_LENGTH);
+
+            return new TlsSessionTicket(ticketLifetimeMs / 1000, ticket.length, ticket);
+        } catch (Exception e) {
+            logger.warn("DtlsSessionTicketManager: Fail to issue the ticket.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Opens a ticket received from a client
+     * @param ticket Ticket bytes (TlsSessionTicket.getTicket() of the SessionTicket extension)
+     * @return The sealed session, null if the ticket is unknown, tampered or expired (> full handshake)
+     */
+    public DtlsSession validateTicket(byte[] ticket) {
+        if (ticket == null || ticket.length <= OVERHEAD) { return null; }
+
+        long nowMs = System.currentTimeMillis();
+        DtlsTicketKey key = findKey(getKeys(nowMs), ticket);
+        if (key == null) {
+            logger.debug("DtlsSessionTicketManager: Unknown ticket key.");
+            return null;
+        }
+
+        try {
+            Cipher cipher = getCipher();
+            cipher.init(
+                    Cipher.DECRYPT_MODE, key.key,
+                    new GCMParameterSpec(TAG_LENGTH * 8, ticket, KEY_NAME_LENGTH, IV_LENGTH)
+            );
+            cipher.updateAAD(ticket, 0, KEY_NAME_LENGTH);
+            byte[] state = cipher.doFinal(ticket, KEY_NAME_LENGTH + IV_LENGTH, ticket.length - KEY_NAME_LENGTH - IV_LENGTH);
+
+            DtlsSession dtlsSession = DtlsSession.decode(state);
+            if (dtlsSession == null || dtlsSession.isExpired(nowMs, ticketLifetimeMs)) {
+                return null;
+            }
+            return dtlsSession;
+        } catch (Exception e) {
+            // AEADBadTagException : tampered or forged
+            logger.debug("DtlsSessionTicketManager: Invalid ticket. ({})", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Starts a new ticket key now, the current one becomes the previous one
+     */
+    public void rotateKey() {
+        rotateKey(ticketKeys.get(), System.currentTimeMillis());
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    private DtlsTicketKeys getKeys(long nowMs) {
+        DtlsTicketKeys curKeys = ticketKeys.get();
+        if (nowMs - curKeys.current.createdTimeMs < keyRotationIntervalMs) {
+            return curKeys;
+        }
+        return rotateKey(curKeys, nowMs);
+    }
+
+    private DtlsTicketKeys rotateKey(DtlsTicketKeys expectedKeys, long nowMs) {
+        DtlsTicketKeys newKeys = new DtlsTicketKeys(newKey(nowMs), expectedKeys.current);
+        if (ticketKeys.compareAndSet(expectedKeys, newKeys)) {
+            logger.debug("DtlsSessionTicketManager: The ticket key is rotated.");
+            return newKeys;
+        }
+        return ticketKeys.get(); // Rotated by another thread
+    }
+
+    private DtlsTicketKey newKey(long nowMs) {
+        byte[] name = new byte[KEY_NAME_LENGTH];
+        byte[] key = new byte[KEY_LENGTH];
+        secureRandom.nextBytes(name);
+        secureRandom.nextBytes(key);
+        return new DtlsTicketKey(name, new SecretKeySpec(key, "AES"), nowMs);
+    }
+
+    private static DtlsTicketKey findKey(DtlsTicketKeys keys, byte[] ticket) {
+        if (matchesKeyName(keys.current, ticket)) { return keys.current; }
+        if (keys.previous != null && matchesKeyName(keys.previous, ticket)) { return keys.previous; }
+        return null;
+    }
+
+    private static boolean matchesKeyName(DtlsTicketKey key, byte[] ticket) {
+        return ByteBuffer.wrap(ticket, 0, KEY_NAME_LENGTH).equals(ByteBuffer.wrap(key.name));
+    }
+
+    private Cipher getCipher() throws Exception {
+        Cipher cipher = ticketCipher.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            ticketCipher.set(cipher);
+        }
+        return cipher;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public long getTicketLifetimeMs() {
+        return ticketLifetimeMs;
+    }
+
+    public long getKeyRotationIntervalMs() {
+        return keyRotationIntervalMs;
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    private static class DtlsTicketKey {
+
+        private final byte[] name;
+        private final SecretKeySpec key;
+        private final long createdTimeMs;
+
+        private DtlsTicketKey(byte[] name, SecretKeySpec key, long createdTimeMs) {
+            this.name = name;
+            this.key = key;
+            this.createdTimeMs = createdTimeMs;
+        }
+
+        @Override
+        public String toString() {
+            return "DtlsTicketKey{name=" + Arrays.toString(name) + ", createdTimeMs=" + createdTimeMs + '}';
+        }
+
+    }
+
+    /**
+     * Immutable pair, swapped at once by the rotation
+     */
+    private static class DtlsTicketKeys {
+
+        private final DtlsTicketKey current;
+        private final DtlsTicketKey previous;
+
+        private DtlsTicketKeys(DtlsTicketKey current, DtlsTicketKey previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -2,7 +2,9 @@ package dtls.ticket;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import io.netty.buffer.ByteBuf;
 import util.module.ByteUtil;
+import util.parser.UnsignedField;
 
 public class TlsSessionTicket {
 
@@ -24,18 +26,10 @@ public class TlsSessionTicket {
         if (data != null && data.length >= MIN_LENGTH) {
             int index = 0;
 
-            byte[] lifeTimeHintData = new byte[ByteUtil.NUM_BYTES_IN_INT];
-            System.arraycopy(data, index, lifeTimeHintData, 0, ByteUtil.NUM_BYTES_IN_INT);
-            byte[] lifeTimeHintData2 = new byte[ByteUtil.NUM_BYTES_IN_LONG];
-            System.arraycopy(lifeTimeHintData, 0, lifeTimeHintData2, ByteUtil.NUM_BYTES_IN_INT, ByteUtil.NUM_BYTES_IN_INT);
-            lifeTimeHint = ByteUtil.bytesToLong(lifeTimeHintData2, true);
+            lifeTimeHint = UnsignedField.readUint32(data, index);
             index += ByteUtil.NUM_BYTES_IN_INT;
 
-            byte[] lengthData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, lengthData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            byte[] lengthData2 = new byte[ByteUtil.NUM_BYTES_IN_INT];
-            System.arraycopy(lengthData, 0, lengthData2, ByteUtil.NUM_BYTES_IN_SHORT, ByteUtil.NUM_BYTES_IN_SHORT);
-            length = ByteUtil.bytesToInt(lengthData2, true);
+            length = UnsignedField.readUint16(data, index);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
             if (length > 0) {
@@ -49,16 +43,10 @@ public class TlsSessionTicket {
         int index = 0;
         byte[] data = new byte[MIN_LENGTH];
 
-        byte[] lifeTimeHintData = ByteUtil.longToBytes(lifeTimeHint, true);
-        byte[] lifeTimeHintData2 = new byte[ByteUtil.NUM_BYTES_IN_INT];
-        System.arraycopy(lifeTimeHintData, ByteUtil.NUM_BYTES_IN_INT, lifeTimeHintData2, 0, ByteUtil.NUM_BYTES_IN_INT);
-        System.arraycopy(lifeTimeHintData2, 0, data, index, ByteUtil.NUM_BYTES_IN_INT);
+        UnsignedField.writeUint32(data, index, lifeTimeHint);
         index += ByteUtil.NUM_BYTES_IN_INT;
 
-        byte[] lengthData = ByteUtil.intToBytes(length, true);
-        byte[] lengthData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-        System.arraycopy(lengthData, ByteUtil.NUM_BYTES_IN_SHORT, lengthData2, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-        System.arraycopy(lengthData2, 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
+        UnsignedField.writeUint16(data, index, length);
         index += ByteUtil.NUM_BYTES_IN_SHORT;
 
         if (length > 0 && ticket != null && ticket.length > 0) {
@@ -71,6 +59,33 @@ public class TlsSessionTicket {
         return data;
     }
 
+    public int encodedLength() {
+        if (length > 0 && ticket != null && ticket.length > 0) {
+            return MIN_LENGTH + length;
+        }
+        return MIN_LENGTH;
+    }
+
+    public void encodeTo(ByteBuf buf) {
+        buf.writeInt((int) lifeTimeHint);
+        buf.writeShort(length);
+        if (length > 0 && ticket != null && ticket.length > 0) {
+            buf.writeBytes(ticket, 0, length);
+        }
+    }
+
+    public long getLifeTimeHint() {
+        return lifeTimeHint;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public byte[] getTicket() {
+        return ticket;
+    }
+
     @Override
     public String toString() {
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
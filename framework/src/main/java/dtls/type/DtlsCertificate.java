@@ -2,7 +2,8 @@ package dtls.type;
 
 import dtls.certificate.Certificates;
 import dtls.type.base.DtlsFormat;
-import util.module.ByteUtil;
+import io.netty.buffer.ByteBuf;
+import util.parser.UnsignedField;
 
 public class DtlsCertificate extends DtlsFormat {
 
@@ -26,11 +27,7 @@ public class DtlsCertificate extends DtlsFormat {
         if (data != null && data.length >= MIN_LENGTH) {
             int index = 0;
 
-            byte[] certificatesLengthData = new byte[3];
-            System.arraycopy(data, index, certificatesLengthData, 0, 3);
-            byte[] certificatesLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_LONG];
-            System.arraycopy(certificatesLengthData, 0, certificatesLengthData2,ByteUtil.NUM_BYTES_IN_LONG - 3, 3);
-            certificatesLength = ByteUtil.bytesToLong(certificatesLengthData2, true);
+            certificatesLength = UnsignedField.readUint24(data, index);
             index += 3;
 
             if (certificatesLength > 0) {
@@ -53,10 +50,7 @@ public class DtlsCertificate extends DtlsFormat {
         if (certificatesLength > 0) {
             data = new byte[MIN_LENGTH + (int) certificatesLength];
 
-            byte[] certificatesLengthData = ByteUtil.longToBytes(certificatesLength, true);
-            byte[] certificatesLengthData2 = new byte[3];
-            System.arraycopy(certificatesLengthData, ByteUtil.NUM_BYTES_IN_LONG - 3, certificatesLengthData2, 0, 3);
-            System.arraycopy(certificatesLengthData2, 0, data, index, 3);
+            UnsignedField.writeUint24(data, index, certificatesLength);
             index += 3;
 
             byte[] certificatesData = certificates.getData();
@@ -64,14 +58,28 @@ public class DtlsCertificate extends DtlsFormat {
         } else {
             data = new byte[MIN_LENGTH];
 
-            byte[] certificatesLengthData = ByteUtil.longToBytes(certificatesLength, true);
-            byte[] certificatesLengthData2 = new byte[3];
-            System.arraycopy(certificatesLengthData, ByteUtil.NUM_BYTES_IN_LONG - 3, certificatesLengthData2, 0, 3);
-            System.arraycopy(certificatesLengthData2, 0, data, index, 3);
+            UnsignedField.writeUint24(data, index, certificatesLength);
         }
 
         return data;
     }
+
+    @Override
+    public int encodedLength() {
+        if (certificates == null) { return 0; }
+
+        return MIN_LENGTH + (int) certificatesLength;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (certificates == null) { return; }
+
+        buf.writeMedium((int) certificatesLength);
+        if (certificatesLength > 0) {
+            certificates.encodeTo(buf);
+        }
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
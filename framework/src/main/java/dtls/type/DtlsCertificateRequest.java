@@ -1,6 +1,7 @@
 package dtls.type;
 
 import dtls.type.base.DtlsFormat;
+import io.netty.buffer.ByteBuf;
 
 public class DtlsCertificateRequest extends DtlsFormat {
 
@@ -22,6 +23,16 @@ public class DtlsCertificateRequest extends DtlsFormat {
     public byte[] getData() {
         return new byte[0];
     }
+
+    @Override
+    public int encodedLength() {
+        return 0;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        // Empty body
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -5,13 +5,19 @@ import dtls.compression.DtlsCompressionMethodType;
 import dtls.packet.base.DtlsProtocolVersion;
 import dtls.type.base.DtlsFormat;
 import dtls.type.base.DtlsRandom;
+import io.netty.buffer.ByteBuf;
 import util.module.ByteUtil;
+import util.parser.UnsignedField;
 
 public class DtlsClientHello extends DtlsFormat {
 
     ////////////////////////////////////////////////////////////
     public static final int MIN_LENGTH = 40;
 
+    // SessionTicket extension (RFC 5077, 3.2), the only extension that is kept
+    public static final int EXTENSION_TYPE_SESSION_TICKET = 35;
+    private static final int EXTENSION_HEADER_LENGTH = 4; // type (2) + length (2)
+
     private DtlsProtocolVersion protocolVersion = null; // 2 bytes
     transient private byte[] randomBytes = null; // 32 bytes > DtlsRandom.getRandom()
     private short sessionIdLength = 0; // 1 byte
@@ -22,6 +28,7 @@ public class DtlsClientHello extends DtlsFormat {
     private DtlsCipherSuiteList dtlsCipherSuiteList = null; // cipherSuitesLength bytes
     private short compressionMethodsLength = 0; // 1 byte
     private DtlsCompressionMethodType dtlsCompressionMethod = null; // 1 byte
+    transient private byte[] sessionTicket = null; // Extension, empty : supported but no ticket, null : not sent
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -47,20 +54,14 @@ public class DtlsClientHello extends DtlsFormat {
         if (data != null && data.length >= MIN_LENGTH) {
             int index = 0;
 
-            byte[] protocolVersionData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, protocolVersionData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            protocolVersion = new DtlsProtocolVersion(protocolVersionData);
+            protocolVersion = DtlsProtocolVersion.valueOf(data, index);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
             randomBytes = new byte[DtlsRandom.LENGTH];
             System.arraycopy(data, index, randomBytes, 0, DtlsRandom.LENGTH);
             index += DtlsRandom.LENGTH;
 
-            byte[] sessionIdLengthData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, sessionIdLengthData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            byte[] sessionIdLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(sessionIdLengthData, 0, sessionIdLengthData2, ByteUtil.NUM_BYTES_IN_BYTE, ByteUtil.NUM_BYTES_IN_BYTE);
-            sessionIdLength = ByteUtil.bytesToShort(sessionIdLengthData2, true);
+            sessionIdLength = (short) UnsignedField.readUint8(data, index);
             index += ByteUtil.NUM_BYTES_IN_BYTE;
 
             if (sessionIdLength > 0) {
@@ -69,11 +70,7 @@ public class DtlsClientHello extends DtlsFormat {
                 index += sessionIdLength;
             }
 
-            byte[] cookieLengthData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, cookieLengthData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            byte[] cookieLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(cookieLengthData, 0, cookieLengthData2, ByteUtil.NUM_BYTES_IN_BYTE, ByteUtil.NUM_BYTES_IN_BYTE);
-            cookieLength = ByteUtil.bytesToShort(cookieLengthData2, true);
+            cookieLength = (short) UnsignedField.readUint8(data, index);
             index += ByteUtil.NUM_BYTES_IN_BYTE;
 
             if (cookieLength > 0) {
@@ -82,11 +79,7 @@ public class DtlsClientHello extends DtlsFormat {
                 index += cookieLength;
             }
 
-            byte[] cipherSuitesLengthData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, cipherSuitesLengthData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            byte[] cipherSuitesLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_INT];
-            System.arraycopy(cipherSuitesLengthData, 0, cipherSuitesLengthData2, ByteUtil.NUM_BYTES_IN_SHORT, ByteUtil.NUM_BYTES_IN_SHORT);
-            cipherSuitesLength = ByteUtil.bytesToInt(cipherSuitesLengthData2, true);
+            cipherSuitesLength = UnsignedField.readUint16(data, index);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
             if (cipherSuitesLength > 0) {
@@ -96,16 +89,30 @@ public class DtlsClientHello extends DtlsFormat {
                 index += cipherSuitesLength;
             }
 
-            byte[] compressionMethodsLengthData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, compressionMethodsLengthData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            byte[] compressionMethodsLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(compressionMethodsLengthData, 0, compressionMethodsLengthData2, ByteUtil.NUM_BYTES_IN_BYTE, ByteUtil.NUM_BYTES_IN_BYTE);
-            compressionMethodsLength = ByteUtil.bytesToShort(compressionMethodsLengthData2, true);
+            compressionMethodsLength = (short) UnsignedField.readUint8(data, index);
             index += ByteUtil.NUM_BYTES_IN_BYTE;
 
-            byte[] dtlsCompressionMethodData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, dtlsCompressionMethodData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            dtlsCompressionMethod = new DtlsCompressionMethodType(dtlsCompressionMethodData[0]);
+            dtlsCompressionMethod = new DtlsCompressionMethodType(UnsignedField.readUint8(data, index));
+            index += compressionMethodsLength;
+
+            // Extensions (optional)
+            if (data.length - index >= ByteUtil.NUM_BYTES_IN_SHORT) {
+                int extensionsEndIndex = Math.min(index + ByteUtil.NUM_BYTES_IN_SHORT + UnsignedField.readUint16(data, index), data.length);
+                index += ByteUtil.NUM_BYTES_IN_SHORT;
+
+                while (extensionsEndIndex - index >= EXTENSION_HEADER_LENGTH) {
+                    int extensionType = UnsignedField.readUint16(data, index);
+                    int extensionLength = UnsignedField.readUint16(data, index + ByteUtil.NUM_BYTES_IN_SHORT);
+                    index += EXTENSION_HEADER_LENGTH;
+                    if (extensionsEndIndex - index < extensionLength) { break; }
+
+                    if (extensionType == EXTENSION_TYPE_SESSION_TICKET) {
+                        sessionTicket = new byte[extensionLength];
+                        System.arraycopy(data, index, sessionTicket, 0, extensionLength);
+                    }
+                    index += extensionLength;
+                }
+            }
         }
     }
     ////////////////////////////////////////////////////////////
@@ -116,7 +123,7 @@ public class DtlsClientHello extends DtlsFormat {
         if (protocolVersion == null || randomBytes == null || dtlsCompressionMethod == null) { return null; }
 
         int index = 0;
-        byte[] data = new byte[MIN_LENGTH + sessionIdLength + cookieLength + cipherSuitesLength];
+        byte[] data = new byte[encodedLength()];
 
         System.arraycopy(protocolVersion.getVersion(), 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
         index += ByteUtil.NUM_BYTES_IN_SHORT;
@@ -124,10 +131,7 @@ public class DtlsClientHello extends DtlsFormat {
         System.arraycopy(randomBytes, 0, data, index, DtlsRandom.LENGTH);
         index += DtlsRandom.LENGTH;
 
-        byte[] sessionIdLengthData = ByteUtil.shortToBytes(sessionIdLength, true);
-        byte[] sessionIdLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(sessionIdLengthData, ByteUtil.NUM_BYTES_IN_BYTE, sessionIdLengthData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(sessionIdLengthData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, sessionIdLength);
         index += ByteUtil.NUM_BYTES_IN_BYTE;
 
         if (sessionIdLength > 0 && sessionId != null) {
@@ -135,10 +139,7 @@ public class DtlsClientHello extends DtlsFormat {
             index += sessionIdLength;
         }
 
-        byte[] cookieLengthData = ByteUtil.shortToBytes(cookieLength, true);
-        byte[] cookieLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(cookieLengthData, ByteUtil.NUM_BYTES_IN_BYTE, cookieLengthData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(cookieLengthData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, cookieLength);
         index += ByteUtil.NUM_BYTES_IN_BYTE;
 
         if (cookieLength > 0 && cookie != null) {
@@ -146,10 +147,7 @@ public class DtlsClientHello extends DtlsFormat {
             index += cookieLength;
         }
 
-        byte[] cipherSuitesLengthData = ByteUtil.intToBytes(cipherSuitesLength, true);
-        byte[] cipherSuitesLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-        System.arraycopy(cipherSuitesLengthData, ByteUtil.NUM_BYTES_IN_SHORT, cipherSuitesLengthData2, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-        System.arraycopy(cipherSuitesLengthData2, 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
+        UnsignedField.writeUint16(data, index, cipherSuitesLength);
         index += ByteUtil.NUM_BYTES_IN_SHORT;
 
         if (cipherSuitesLength > 0 && dtlsCipherSuiteList != null) {
@@ -160,19 +158,74 @@ public class DtlsClientHello extends DtlsFormat {
             }
         }
 
-        byte[] compressionMethodsLengthData = ByteUtil.shortToBytes(compressionMethodsLength, true);
-        byte[] compressionMethodsLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(compressionMethodsLengthData, ByteUtil.NUM_BYTES_IN_BYTE, compressionMethodsLengthData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(compressionMethodsLengthData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, compressionMethodsLength);
         index += ByteUtil.NUM_BYTES_IN_BYTE;
 
-        byte[] dtlsCompressionMethodData = ByteUtil.intToBytes(dtlsCompressionMethod.getMethod(), true);
-        byte[] dtlsCompressionMethodData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(dtlsCompressionMethodData, ByteUtil.NUM_BYTES_IN_SHORT - ByteUtil.NUM_BYTES_IN_BYTE, dtlsCompressionMethodData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(dtlsCompressionMethodData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, dtlsCompressionMethod.getMethod());
+        index += ByteUtil.NUM_BYTES_IN_BYTE;
+
+        if (sessionTicket != null) {
+            UnsignedField.writeUint16(data, index, EXTENSION_HEADER_LENGTH + sessionTicket.length);
+            index += ByteUtil.NUM_BYTES_IN_SHORT;
+            UnsignedField.writeUint16(data, index, EXTENSION_TYPE_SESSION_TICKET);
+            index += ByteUtil.NUM_BYTES_IN_SHORT;
+            UnsignedField.writeUint16(data, index, sessionTicket.length);
+            index += ByteUtil.NUM_BYTES_IN_SHORT;
+            System.arraycopy(sessionTicket, 0, data, index, sessionTicket.length);
+        }
 
         return data;
     }
+
+    @Override
+    public int encodedLength() {
+        if (protocolVersion == null || randomBytes == null || dtlsCompressionMethod == null) { return 0; }
+
+        return MIN_LENGTH + sessionIdLength + cookieLength + cipherSuitesLength + getExtensionsLength();
+    }
+
+    private int getExtensionsLength() {
+        if (sessionTicket == null) { return 0; }
+
+        return ByteUtil.NUM_BYTES_IN_SHORT + EXTENSION_HEADER_LENGTH + sessionTicket.length;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (protocolVersion == null || randomBytes == null || dtlsCompressionMethod == null) { return; }
+
+        buf.writeBytes(protocolVersion.getVersion(), 0, ByteUtil.NUM_BYTES_IN_SHORT);
+        buf.writeBytes(randomBytes, 0, DtlsRandom.LENGTH);
+
+        buf.writeByte(sessionIdLength);
+        if (sessionIdLength > 0 && sessionId != null) {
+            buf.writeBytes(sessionId, 0, sessionIdLength);
+        } else {
+            buf.writeZero(sessionIdLength);
+        }
+
+        buf.writeByte(cookieLength);
+        if (cookieLength > 0 && cookie != null) {
+            buf.writeBytes(cookie, 0, cookieLength);
+        } else {
+            buf.writeZero(cookieLength);
+        }
+
+        buf.writeShort(cipherSuitesLength);
+        if (cipherSuitesLength > 0 && dtlsCipherSuiteList != null) {
+            dtlsCipherSuiteList.encodeTo(buf);
+        }
+
+        buf.writeByte(compressionMethodsLength);
+        buf.writeByte(dtlsCompressionMethod.getMethod());
+
+        if (sessionTicket != null) {
+            buf.writeShort(EXTENSION_HEADER_LENGTH + sessionTicket.length);
+            buf.writeShort(EXTENSION_TYPE_SESSION_TICKET);
+            buf.writeShort(sessionTicket.length);
+            buf.writeBytes(sessionTicket);
+        }
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -255,6 +308,17 @@ public class DtlsClientHello extends DtlsFormat {
     public void setDtlsCompressionMethod(DtlsCompressionMethodType dtlsCompressionMethod) {
         this.dtlsCompressionMethod = dtlsCompressionMethod;
     }
+
+    /**
+     * @return Ticket of the SessionTicket extension (empty if the client has no ticket yet), null if the extension is not sent
+     */
+    public byte[] getSessionTicket() {
+        return sessionTicket;
+    }
+
+    public void setSessionTicket(byte[] sessionTicket) {
+        this.sessionTicket = sessionTicket;
+    }
     ////////////////////////////////////////////////////////////
 
 }
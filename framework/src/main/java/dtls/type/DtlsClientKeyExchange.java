@@ -1,6 +1,7 @@
 package dtls.type;
 
 import dtls.type.base.DtlsFormat;
+import io.netty.buffer.ByteBuf;
 
 /**
  * - It provides the server with the necessary data
@@ -48,6 +49,20 @@ public class DtlsClientKeyExchange extends DtlsFormat {
 
         return data;
     }
+
+    @Override
+    public int encodedLength() {
+        if (encryptedPreMasterSecretData == null) { return 0; }
+
+        return encryptedPreMasterSecretData.length;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (encryptedPreMasterSecretData == null) { return; }
+
+        buf.writeBytes(encryptedPreMasterSecretData);
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -1,6 +1,7 @@
 package dtls.type;
 
 import dtls.type.base.DtlsFormat;
+import io.netty.buffer.ByteBuf;
 
 public class DtlsFinished extends DtlsFormat {
 
@@ -17,6 +18,16 @@ public class DtlsFinished extends DtlsFormat {
     public byte[] getData() {
         return null;
     }
+
+    @Override
+    public int encodedLength() {
+        return 0;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        // Empty body
+    }
     ////////////////////////////////////////////////////////////
 
 }
@@ -2,7 +2,9 @@ package dtls.type;
 
 import dtls.packet.base.DtlsProtocolVersion;
 import dtls.type.base.DtlsFormat;
+import io.netty.buffer.ByteBuf;
 import util.module.ByteUtil;
+import util.parser.UnsignedField;
 
 public class DtlsHelloVerifyRequest extends DtlsFormat {
 
@@ -27,16 +29,10 @@ public class DtlsHelloVerifyRequest extends DtlsFormat {
         if (data != null && data.length >= MIN_LENGTH) {
             int index = 0;
 
-            byte[] protocolVersionData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, protocolVersionData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            protocolVersion = new DtlsProtocolVersion(protocolVersionData);
+            protocolVersion = DtlsProtocolVersion.valueOf(data, index);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-            byte[] cookieLengthData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, cookieLengthData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            byte[] cookieLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(cookieLengthData, 0, cookieLengthData2, ByteUtil.NUM_BYTES_IN_BYTE, ByteUtil.NUM_BYTES_IN_BYTE);
-            cookieLength = ByteUtil.bytesToShort(cookieLengthData2, true);
+            cookieLength = (short) UnsignedField.readUint8(data, index);
             index += ByteUtil.NUM_BYTES_IN_BYTE;
 
             if (cookieLength > 0) {
@@ -58,10 +54,7 @@ public class DtlsHelloVerifyRequest extends DtlsFormat {
         System.arraycopy(protocolVersion.getVersion(), 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
         index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-        byte[] cookieLengthData = ByteUtil.shortToBytes(cookieLength, true);
-        byte[] cookieLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(cookieLengthData, ByteUtil.NUM_BYTES_IN_BYTE, cookieLengthData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(cookieLengthData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, cookieLength);
         index += ByteUtil.NUM_BYTES_IN_BYTE;
 
         if (cookieLength > 0 && cookie != null) {
@@ -70,6 +63,26 @@ public class DtlsHelloVerifyRequest extends DtlsFormat {
 
         return data;
     }
+
+    @Override
+    public int encodedLength() {
+        if (protocolVersion == null) { return 0; }
+
+        return MIN_LENGTH + cookieLength;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (protocolVersion == null) { return; }
+
+        buf.writeBytes(protocolVersion.getVersion(), 0, ByteUtil.NUM_BYTES_IN_SHORT);
+        buf.writeByte(cookieLength);
+        if (cookieLength > 0 && cookie != null) {
+            buf.writeBytes(cookie, 0, cookieLength);
+        } else {
+            buf.writeZero(cookieLength);
+        }
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -2,13 +2,14 @@ package dtls.type;
 
 import dtls.ticket.TlsSessionTicket;
 import dtls.type.base.DtlsFormat;
+import io.netty.buffer.ByteBuf;
 
 public class DtlsNewSessionTicket extends DtlsFormat {
 
     ////////////////////////////////////////////////////////////
-    public static final int LENGTH = TlsSessionTicket.MIN_LENGTH;
+    public static final int MIN_LENGTH = TlsSessionTicket.MIN_LENGTH;
 
-    private TlsSessionTicket tlsSessionTicket; // 166 bytes
+    private TlsSessionTicket tlsSessionTicket; // MIN_LENGTH + ticket length bytes
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -19,12 +20,8 @@ public class DtlsNewSessionTicket extends DtlsFormat {
     public DtlsNewSessionTicket() {}
 
     public DtlsNewSessionTicket(byte[] data) {
-        if (data != null && data.length == LENGTH) {
-            int index = 0;
-
-            byte[] tlsSessionTicketData = new byte[TlsSessionTicket.MIN_LENGTH];
-            System.arraycopy(data, index, tlsSessionTicketData, 0, TlsSessionTicket.MIN_LENGTH);
-            tlsSessionTicket = new TlsSessionTicket(tlsSessionTicketData);
+        if (data != null && data.length >= MIN_LENGTH) {
+            tlsSessionTicket = new TlsSessionTicket(data);
         }
     }
     ////////////////////////////////////////////////////////////
@@ -34,13 +31,21 @@ public class DtlsNewSessionTicket extends DtlsFormat {
     public byte[] getData() {
         if (tlsSessionTicket == null) { return null; }
 
-        int index = 0;
-        byte[] data = new byte[LENGTH];
+        return tlsSessionTicket.getData();
+    }
+
+    @Override
+    public int encodedLength() {
+        if (tlsSessionTicket == null) { return 0; }
 
-        byte[] tlsSessionTicketData = tlsSessionTicket.getData();
-        System.arraycopy(tlsSessionTicketData, 0, data, index, TlsSessionTicket.MIN_LENGTH);
+        return tlsSessionTicket.encodedLength();
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (tlsSessionTicket == null) { return; }
 
-        return data;
+        tlsSessionTicket.encodeTo(buf);
     }
     ////////////////////////////////////////////////////////////
 
@@ -5,7 +5,9 @@ import dtls.compression.DtlsCompressionMethodType;
 import dtls.packet.base.DtlsProtocolVersion;
 import dtls.type.base.DtlsFormat;
 import dtls.type.base.DtlsRandom;
+import io.netty.buffer.ByteBuf;
 import util.module.ByteUtil;
+import util.parser.UnsignedField;
 
 public class DtlsServerHello extends DtlsFormat {
 
@@ -39,20 +41,14 @@ public class DtlsServerHello extends DtlsFormat {
         if (data != null && data.length == LENGTH) {
             int index = 0;
 
-            byte[] protocolVersionData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, protocolVersionData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            protocolVersion = new DtlsProtocolVersion(protocolVersionData);
+            protocolVersion = DtlsProtocolVersion.valueOf(data, index);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
             randomBytes = new byte[DtlsRandom.LENGTH];
             System.arraycopy(data, index, randomBytes, 0, DtlsRandom.LENGTH);
             index += DtlsRandom.LENGTH;
 
-            byte[] sessionIdLengthData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, sessionIdLengthData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            byte[] sessionIdLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(sessionIdLengthData, 0, sessionIdLengthData2, ByteUtil.NUM_BYTES_IN_BYTE, ByteUtil.NUM_BYTES_IN_BYTE);
-            sessionIdLength = ByteUtil.bytesToShort(sessionIdLengthData2, true);
+            sessionIdLength = (short) UnsignedField.readUint8(data, index);
             index += ByteUtil.NUM_BYTES_IN_BYTE;
 
             sessionId = new byte[32];
@@ -64,9 +60,7 @@ public class DtlsServerHello extends DtlsFormat {
             cipherSuite = new DtlsCipherSuite(cipherSuiteData);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-            byte[] dtlsCompressionMethodData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, dtlsCompressionMethodData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            dtlsCompressionMethod = new DtlsCompressionMethodType(dtlsCompressionMethodData[0]);
+            dtlsCompressionMethod = new DtlsCompressionMethodType(UnsignedField.readUint8(data, index));
         }
     }
     ////////////////////////////////////////////////////////////
@@ -86,10 +80,7 @@ public class DtlsServerHello extends DtlsFormat {
         System.arraycopy(randomBytes, 0, data, index, randomBytes.length);
         index += randomBytes.length;
 
-        byte[] sessionIdLengthData = ByteUtil.shortToBytes(sessionIdLength, true);
-        byte[] sessionIdLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(sessionIdLengthData, ByteUtil.NUM_BYTES_IN_BYTE, sessionIdLengthData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(sessionIdLengthData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, sessionIdLength);
         index += ByteUtil.NUM_BYTES_IN_BYTE;
 
         System.arraycopy(sessionId, 0, data, index, sessionId.length);
@@ -98,13 +89,36 @@ public class DtlsServerHello extends DtlsFormat {
         System.arraycopy(cipherSuite.getCipherSuite(), 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
         index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-        byte[] dtlsCompressionMethodData = ByteUtil.intToBytes(dtlsCompressionMethod.getMethod(), true);
-        byte[] dtlsCompressionMethodData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(dtlsCompressionMethodData, ByteUtil.NUM_BYTES_IN_SHORT - ByteUtil.NUM_BYTES_IN_BYTE, dtlsCompressionMethodData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(dtlsCompressionMethodData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, dtlsCompressionMethod.getMethod());
 
         return data;
     }
+
+    @Override
+    public int encodedLength() {
+        if (protocolVersion == null || randomBytes == null || sessionId == null
+                || cipherSuite == null || dtlsCompressionMethod == null) { return 0; }
+
+        return LENGTH;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (protocolVersion == null || randomBytes == null || sessionId == null
+                || cipherSuite == null || dtlsCompressionMethod == null) { return; }
+
+        int startIndex = buf.writerIndex();
+
+        buf.writeBytes(protocolVersion.getVersion(), 0, ByteUtil.NUM_BYTES_IN_SHORT);
+        buf.writeBytes(randomBytes);
+        buf.writeByte(sessionIdLength);
+        buf.writeBytes(sessionId);
+        buf.writeBytes(cipherSuite.getCipherSuite(), 0, ByteUtil.NUM_BYTES_IN_SHORT);
+        buf.writeByte(dtlsCompressionMethod.getMethod());
+
+        // Fixed length (zero padding)
+        buf.writeZero(LENGTH - (buf.writerIndex() - startIndex));
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -1,6 +1,7 @@
 package dtls.type;
 
 import dtls.type.base.DtlsFormat;
+import io.netty.buffer.ByteBuf;
 
 /**
  * - This message carries the keys exchange algorithm parameters
@@ -53,6 +54,20 @@ public class DtlsServerKeyExchange extends DtlsFormat {
 
         return data;
     }
+
+    @Override
+    public int encodedLength() {
+        if (encryptedPreMasterSecretData == null) { return 0; }
+
+        return encryptedPreMasterSecretData.length;
+    }
+
+    @Override
+    public void encodeTo(ByteBuf buf) {
+        if (encryptedPreMasterSecretData == null) { return; }
+
+        buf.writeBytes(encryptedPreMasterSecretData);
+    }
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -2,6 +2,10 @@ package dtls.type.base;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import io.netty.buffer.ByteBuf;
+import util.module.ByteUtil;
+
+import java.nio.ByteBuffer;
 
 public abstract class DtlsFormat {
 
@@ -10,6 +14,35 @@ public abstract class DtlsFormat {
         return null;
     }
 
+    /**
+     * @return Number of bytes written by {@link #encodeTo(ByteBuf)} (same as getData().length)
+     */
+    public int encodedLength() {
+        byte[] data = getData();
+        return data == null ? 0 : data.length;
+    }
+
+    /**
+     * Writes the format body at the writer index of the given buffer
+     * @param buf Output buffer (must have at least {@link #encodedLength()} writable bytes)
+     */
+    public void encodeTo(ByteBuf buf) {
+        byte[] data = getData();
+        if (data != null) {
+            buf.writeBytes(data);
+        }
+    }
+
+    /**
+     * Writes the format body at the given absolute offset of the ByteBuffer (position is not changed)
+     * @return Offset right after the last written byte
+     */
+    public int encodeTo(ByteBuffer byteBuffer, int offset) {
+        ByteBuf buf = ByteUtil.wrapForWrite(byteBuffer, offset);
+        encodeTo(buf);
+        return buf.writerIndex();
+    }
+
     @Override
     public String toString() {
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
@@ -2,7 +2,9 @@ package dtls.type.base;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import io.netty.buffer.ByteBuf;
 import util.module.ByteUtil;
+import util.parser.UnsignedField;
 
 public class DtlsHandshakeCommonBody {
 
@@ -30,39 +32,42 @@ public class DtlsHandshakeCommonBody {
         if (data != null && data.length == LENGTH) {
             int index = 0;
 
-            byte[] handshakeTypeData = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-            System.arraycopy(data, index, handshakeTypeData, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-            byte[] handshakeTypeData2 = new byte[ByteUtil.NUM_BYTES_IN_INT];
-            System.arraycopy(handshakeTypeData, 0, handshakeTypeData2, ByteUtil.NUM_BYTES_IN_INT - ByteUtil.NUM_BYTES_IN_BYTE, ByteUtil.NUM_BYTES_IN_BYTE);
-            handshakeType = new DtlsHandshakeType(ByteUtil.bytesToInt(handshakeTypeData2, true));
+            handshakeType = DtlsHandshakeType.valueOf(UnsignedField.readUint8(data, index));
             index += ByteUtil.NUM_BYTES_IN_BYTE;
 
-            byte[] lengthData = new byte[3];
-            System.arraycopy(data, index, lengthData, 0, 3);
-            byte[] lengthData2 = new byte[ByteUtil.NUM_BYTES_IN_LONG];
-            System.arraycopy(lengthData, 0, lengthData2,ByteUtil.NUM_BYTES_IN_LONG - 3, 3);
-            length = ByteUtil.bytesToLong(lengthData2, true);
+            length = UnsignedField.readUint24(data, index);
             index += 3;
 
-            byte[] messageSequenceData = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-            System.arraycopy(data, index, messageSequenceData, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-            byte[] messageSequenceData2 = new byte[ByteUtil.NUM_BYTES_IN_INT];
-            System.arraycopy(messageSequenceData, 0, messageSequenceData2, ByteUtil.NUM_BYTES_IN_SHORT, ByteUtil.NUM_BYTES_IN_SHORT);
-            messageSequence = ByteUtil.bytesToInt(messageSequenceData2, true);
+            messageSequence = UnsignedField.readUint16(data, index);
             index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-            byte[] fragmentOffsetData = new byte[3];
-            System.arraycopy(data, index, fragmentOffsetData, 0, 3);
-            byte[] fragmentOffsetData2 = new byte[ByteUtil.NUM_BYTES_IN_LONG];
-            System.arraycopy(fragmentOffsetData, 0, fragmentOffsetData2,ByteUtil.NUM_BYTES_IN_LONG - 3, 3);
-            fragmentOffset = ByteUtil.bytesToLong(fragmentOffsetData2, true);
+            fragmentOffset = UnsignedField.readUint24(data, index);
             index += 3;
 
-            byte[] fragmentLengthData = new byte[3];
-            System.arraycopy(data, index, fragmentLengthData, 0, 3);
-            byte[] fragmentLengthData2 = new byte[ByteUtil.NUM_BYTES_IN_LONG];
-            System.arraycopy(fragmentLengthData, 0, fragmentLengthData2,ByteUtil.NUM_BYTES_IN_LONG - 3, 3);
-            fragmentLength = ByteUtil.bytesToLong(fragmentLengthData2, true);
+            fragmentLength = UnsignedField.readUint24(data, index);
+        }
+    }
+
+    /**
+     * Reads the common body in place from the given buffer (no copy, reader index is not moved)
+     * @param buf Buffer that contains the common body
+     * @param index Absolute index of the first common body byte
+     */
+    public DtlsHandshakeCommonBody(ByteBuf buf, int index) {
+        if (buf != null && index >= 0 && buf.writerIndex() - index >= LENGTH) {
+            handshakeType = DtlsHandshakeType.valueOf(buf.getUnsignedByte(index));
+            index += ByteUtil.NUM_BYTES_IN_BYTE;
+
+            length = buf.getUnsignedMedium(index);
+            index += 3;
+
+            messageSequence = buf.getUnsignedShort(index);
+            index += ByteUtil.NUM_BYTES_IN_SHORT;
+
+            fragmentOffset = buf.getUnsignedMedium(index);
+            index += 3;
+
+            fragmentLength = buf.getUnsignedMedium(index);
         }
     }
 
@@ -70,38 +75,31 @@ public class DtlsHandshakeCommonBody {
         int index = 0;
         byte[] data = new byte[LENGTH];
 
-        byte[] handshakeTypeData = ByteUtil.intToBytes(handshakeType.getType(), true);
-        byte[] handshakeTypeData2 = new byte[ByteUtil.NUM_BYTES_IN_BYTE];
-        System.arraycopy(handshakeTypeData, ByteUtil.NUM_BYTES_IN_INT - ByteUtil.NUM_BYTES_IN_BYTE, handshakeTypeData2, 0, ByteUtil.NUM_BYTES_IN_BYTE);
-        System.arraycopy(handshakeTypeData2, 0, data, index, ByteUtil.NUM_BYTES_IN_BYTE);
+        UnsignedField.writeUint8(data, index, handshakeType.getType());
         index += ByteUtil.NUM_BYTES_IN_BYTE;
 
-        byte[] lengthData = ByteUtil.longToBytes(length, true);
-        byte[] lengthData2 = new byte[3];
-        System.arraycopy(lengthData, ByteUtil.NUM_BYTES_IN_LONG - 3, lengthData2, 0, 3);
-        System.arraycopy(lengthData2, 0, data, index, 3);
+        UnsignedField.writeUint24(data, index, length);
         index += 3;
 
-        byte[] messageSequenceData = ByteUtil.intToBytes(messageSequence, true);
-        byte[] messageSequenceData2 = new byte[ByteUtil.NUM_BYTES_IN_SHORT];
-        System.arraycopy(messageSequenceData, ByteUtil.NUM_BYTES_IN_SHORT, messageSequenceData2, 0, ByteUtil.NUM_BYTES_IN_SHORT);
-        System.arraycopy(messageSequenceData2, 0, data, index, ByteUtil.NUM_BYTES_IN_SHORT);
+        UnsignedField.writeUint16(data, index, messageSequence);
         index += ByteUtil.NUM_BYTES_IN_SHORT;
 
-        byte[] fragmentOffsetData = ByteUtil.longToBytes(fragmentOffset, true);
-        byte[] fragmentOffsetData2 = new byte[3];
-        System.arraycopy(fragmentOffsetData, ByteUtil.NUM_BYTES_IN_LONG - 3, fragmentOffsetData2, 0, 3);
-        System.arraycopy(fragmentOffsetData2, 0, data, index, 3);
+        UnsignedField.writeUint24(data, index, fragmentOffset);
         index += 3;
 
-        byte[] fragmentLengthData = ByteUtil.longToBytes(fragmentLength, true);
-        byte[] fragmentLengthData2 = new byte[3];
-        System.arraycopy(fragmentLengthData, ByteUtil.NUM_BYTES_IN_LONG - 3, fragmentLengthData2, 0, 3);
-        System.arraycopy(fragmentLengthData2, 0, data, index, 3);
+        UnsignedField.writeUint24(data, index, fragmentLength);
 
         return data;
     }
 
+    public void encodeTo(ByteBuf buf) {
+        buf.writeByte(handshakeType.getType());
+        buf.writeMedium((int) length);
+        buf.writeShort(messageSequence);
+        buf.writeMedium((int) fragmentOffset);
+        buf.writeMedium((int) fragmentLength);
+    }
+
     public DtlsHandshakeType getHandshakeType() {
         return handshakeType;
     }
@@ -28,10 +28,28 @@ public class DtlsHandshakeType {
 
     private final int type;
 
+    private static final DtlsHandshakeType[] CACHE = new DtlsHandshakeType[256];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new DtlsHandshakeType(i);
+        }
+    }
+
     public DtlsHandshakeType(int type) {
         this.type = type;
     }
 
+    /**
+     * @param type uint8 type value
+     * @return Shared (immutable) instance for the given type, decoders use it instead of allocating a new one
+     */
+    public static DtlsHandshakeType valueOf(int type) {
+        if (type >= 0 && type < CACHE.length) {
+            return CACHE[type];
+        }
+        return new DtlsHandshakeType(type);
+    }
+
     public int getType() {
         return type;
     }
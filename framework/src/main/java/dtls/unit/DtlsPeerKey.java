@@ -0,0 +1,141 @@
+package dtls.unit;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Compact binary identity of a peer (address + port)
+ *      - The address is kept as a 128-bit value (IPv4 addresses in the IPv4-mapped IPv6 form, ::ffff:a.b.c.d)
+ *          so an IPv4 peer and the same peer seen through a dual-stack socket have the same key.
+ *      - Immutable, used as the key of the association table in DtlsHandshakeManager.
+ */
+public final class DtlsPeerKey {
+
+    ////////////////////////////////////////////////////////////
+    private static final long IPV4_MAPPED_PREFIX = 0x0000FFFF00000000L;
+
+    private final long high; // Address bits [0, 64)
+    private final long low; // Address bits [64, 128)
+    private final int port;
+    private final int hash;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    private DtlsPeerKey(long high, long low, int port) {
+        this.high = high;
+        this.low = low;
+        this.port = port;
+
+        long h = high * 0x9E3779B97F4A7C15L + low * 0xC2B2AE3D27D4EB4FL + port;
+        this.hash = (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return Key of the given IPv4 address (host byte order int) and port
+     */
+    public static DtlsPeerKey of(int ipv4, int port) {
+        return new DtlsPeerKey(0, IPV4_MAPPED_PREFIX | (ipv4 & 0xFFFFFFFFL), port & 0xFFFF);
+    }
+
+    /**
+     * @return Key of the given address and port, null if the address is null
+     */
+    public static DtlsPeerKey of(InetAddress address, int port) {
+        if (address == null) { return null; }
+
+        byte[] addressBytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return of(toInt(addressBytes, 0), port);
+        } else if (address instanceof Inet6Address && addressBytes.length == 16) {
+            return new DtlsPeerKey(toLong(addressBytes, 0), toLong(addressBytes, 8), port & 0xFFFF);
+        }
+        return null;
+    }
+
+    /**
+     * @return Key of the given socket address, null if the address is not resolved
+     */
+    public static DtlsPeerKey of(InetSocketAddress socketAddress) {
+        if (socketAddress == null) { return null; }
+
+        return of(socketAddress.getAddress(), socketAddress.getPort());
+    }
+
+    /**
+     * @param ip IP address literal (a host name is resolved)
+     * @return Key of the given address and port, null if the address is not valid
+     */
+    public static DtlsPeerKey of(String ip, int port) {
+        if (ip == null) { return null; }
+
+        try {
+            return of(InetAddress.getByName(ip), port);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static int toInt(byte[] data, int index) {
+        return ((data[index] & 0xFF) << 24)
+                | ((data[index + 1] & 0xFF) << 16)
+                | ((data[index + 2] & 0xFF) << 8)
+                | (data[index + 3] & 0xFF);
+    }
+
+    private static long toLong(byte[] data, int index) {
+        return ((long) toInt(data, index) << 32) | (toInt(data, index + 4) & 0xFFFFFFFFL);
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public boolean isIpv4() {
+        return high == 0 && (low & 0xFFFFFFFF00000000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof DtlsPeerKey)) { return false; }
+
+        DtlsPeerKey that = (DtlsPeerKey) o;
+        return low == that.low && port == that.port && high == that.high;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (isIpv4()) {
+            return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "." + ((low >>> 8) & 0xFF) + "." + (low & 0xFF)
+                    + ":" + port;
+        }
+
+        StringBuilder stringBuilder = new StringBuilder("[");
+        for (int i = 0; i < 8; i++) {
+            long word = i < 4 ? high : low;
+            int shift = (3 - (i % 4)) * 16;
+            if (i > 0) { stringBuilder.append(':'); }
+            stringBuilder.append(Long.toHexString((word >>> shift) & 0xFFFF));
+        }
+        return stringBuilder.append("]:").append(port).toString();
+    }
+    ////////////////////////////////////////////////////////////
+
+}
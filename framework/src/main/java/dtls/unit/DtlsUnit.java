@@ -2,56 +2,361 @@ package dtls.unit;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import dtls.admission.DtlsHandshakeAdmissionController;
+import dtls.fragment.DtlsHandshakeFragmenter;
+import dtls.fragment.DtlsHandshakeReassembler;
 import dtls.fsm.DtlsFsmManager;
-import service.scheduler.schedule.ScheduleManager;
+import dtls.fsm.definition.DtlsEvent;
+import dtls.fsm.definition.DtlsState;
+import dtls.packet.DtlsFlightPacker;
+import dtls.replay.DtlsReplayWindow;
+import dtls.retransmit.DtlsBackoffRetransmitPolicy;
+import dtls.retransmit.DtlsRetransmit;
+import dtls.retransmit.DtlsRetransmitPolicy;
+import dtls.retransmit.DtlsRetransmitTimer;
+import dtls.session.DtlsSession;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * DTLS 제어 객체
  *      DtlsHandShakeManager 에 의해서 관리됨
+ *      Lightweight state of one association, the executor and the FSM engine are shared. (owned by DtlsHandshakeManager)
+ *      The unit is pinned to one event loop (DtlsUnitEventLoopGroup), its events run there one by one. (see execute())
+ *      Only the FSM state, the timer, the activity time and the record sequence number are safe from any thread,
+ *      FSM events are fired on the loop too. (see fire())
  */
 public class DtlsUnit {
 
     /////////////////////////////////////////////////////
+    private static final AtomicIntegerFieldUpdater<DtlsUnit> DTLS_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(DtlsUnit.class, "dtlsState");
+
+    private final DtlsPeerKey peerKey;
     private final String id;
-    private final String dtlsStateUnitName;
 
-    private final ScheduleManager dtlsScheduleManager = new ScheduleManager();
+    // Current state of the shared FSM (DtlsState), changed only by CAS (DtlsFsmManager.fire)
+    private volatile int dtlsState = DtlsState.DTLS_STATE_PREPARING;
 
-    private final DtlsFsmManager dtlsFsmManager = new DtlsFsmManager();
-    private final String dtlsScheduleKey = "DTLS";
-    /////////////////////////////////////////////////////
+    transient private final DtlsFsmManager dtlsFsmManager; // Shared
+    transient private final EventExecutor eventLoop; // Shared by the units of the same hash
+
+    private int mtu = DtlsHandshakeFragmenter.DEFAULT_MTU;
+    transient private DtlsHandshakeFragmenter dtlsHandshakeFragmenter = null;
+    transient private DtlsHandshakeReassembler dtlsHandshakeReassembler = null;
+    transient private DtlsFlightPacker dtlsFlightPacker = null;
+    transient private final AtomicLong recordSequenceNumber = new AtomicLong(0);
+    // Message sequence of the next handshake message to send (RFC 6347, 4.2.2)
+    private int sendMessageSequence = 0;
+    // Received records (epoch & sequence number), used only by the packet handler of the channel
+    transient private DtlsReplayWindow dtlsReplayWindow = null;
+
+    // Current retransmit timer on the shared DtlsRetransmitTimer (null if not waiting for a flight)
+    transient private final AtomicReference<Timeout> retransmitTimeout = new AtomicReference<>(null);
+    transient private DtlsRetransmitPolicy dtlsRetransmitPolicy = new DtlsBackoffRetransmitPolicy();
 
+    // Session of the current handshake (resumed from the cache or a ticket, or stored after a full handshake)
+    transient private DtlsSession dtlsSession = null;
+    private boolean isResumed = false;
+
+    // Admission slot of the handshake in progress (released once, on FINISHED or on close)
+    transient private final AtomicReference<DtlsHandshakeAdmissionController> admissionController = new AtomicReference<>(null);
+
+    private volatile long lastActivityTimeMs = System.currentTimeMillis();
+    private volatile boolean isClosed = false;
     /////////////////////////////////////////////////////
-    public DtlsUnit(String id) {
-        this.id = id;
-        this.dtlsStateUnitName = dtlsScheduleKey + "_" + id;
 
-        dtlsFsmManager.init(this);
-        dtlsScheduleManager.initJob(
-                dtlsScheduleKey, 10, 10
-        );
+    /////////////////////////////////////////////////////
+    /**
+     * @param peerKey Peer identity (key of the association table)
+     * @param dtlsFsmManager Shared FSM engine
+     * @param eventLoop Event loop the unit is pinned to (DtlsUnitEventLoopGroup.getEventLoop(peerKey))
+     */
+    public DtlsUnit(DtlsPeerKey peerKey, DtlsFsmManager dtlsFsmManager,
+                    EventExecutor eventLoop) {
+        this.peerKey = peerKey;
+        this.id = peerKey.toString();
+        this.dtlsFsmManager = dtlsFsmManager;
+        this.eventLoop = eventLoop;
     }
     /////////////////////////////////////////////////////
 
     /////////////////////////////////////////////////////
+    /**
+     * Runs the task on the event loop of the unit
+     *      Runs it now if the caller is already on the loop, so the order of the events of the unit is kept.
+     * @return false if the task is rejected (the loop is shut down)
+     */
+    public boolean execute(Runnable task) {
+        if (task == null) { return false; }
+
+        if (eventLoop.inEventLoop()) {
+            task.run();
+            return true;
+        }
+
+        try {
+            eventLoop.execute(task);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public boolean inEventLoop() {
+        return eventLoop.inEventLoop();
+    }
+
+    public EventExecutor getEventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * Marks the association as active now (packet received, flight sent, ...), used by the idle eviction
+     */
+    public void touch() {
+        lastActivityTimeMs = System.currentTimeMillis();
+    }
+
+    public long getLastActivityTimeMs() {
+        return lastActivityTimeMs;
+    }
+
+    /**
+     * Releases the resources of the association (called by DtlsHandshakeManager on removal or eviction)
+     *      The admission & the timer are atomic, they are released at once on the calling thread (sweeper, Netty).
+     *      The reassembler belongs to the event loop, it is cleared there (inline if the loop is already shut down).
+     */
+    public void close() {
+        isClosed = true;
+        releaseAdmission();
+        cancelRetransmitTimer();
+
+        Runnable clearReassembler = this::clearHandshakeReassembler;
+        if (!execute(clearReassembler)) {
+            // No task can run on a terminated loop anymore
+            clearReassembler.run();
+        }
+    }
+
+    private void clearHandshakeReassembler() {
+        if (dtlsHandshakeReassembler != null) {
+            dtlsHandshakeReassembler.clear();
+        }
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    public DtlsPeerKey getPeerKey() {
+        return peerKey;
+    }
+
     public String getId() {
         return id;
     }
 
-    public String getDtlsStateUnitName() {
-        return dtlsStateUnitName;
+    /**
+     * Fires the event on the shared FSM, on the event loop of the unit (see execute())
+     *      Fired now if the caller is already on the loop, so the returned future is done.
+     * @return Result of the transition (true if it is made), failed if the loop is shut down
+     */
+    public Future<Boolean> fire(DtlsEvent event) {
+        if (eventLoop.inEventLoop()) {
+            return eventLoop.newSucceededFuture(dtlsFsmManager.fire(this, event));
+        }
+
+        try {
+            return eventLoop.submit(() -> dtlsFsmManager.fire(this, event));
+        } catch (Exception e) {
+            return eventLoop.newFailedFuture(e);
+        }
+    }
+
+    /**
+     * Fires the event on the shared FSM now (by the tasks of the unit, on its event loop)
+     * @return true if the transition is made, false if it is not allowed or the caller is not on the loop
+     */
+    public boolean fireNow(DtlsEvent event) {
+        if (!eventLoop.inEventLoop()) { return false; }
+
+        return dtlsFsmManager.fire(this, event);
+    }
+
+    /**
+     * Holds the admission slot of the handshake until {@link #releaseAdmission()}
+     * @return false if the unit already holds a slot (the caller releases its own)
+     */
+    public boolean setAdmission(DtlsHandshakeAdmissionController dtlsHandshakeAdmissionController) {
+        if (dtlsHandshakeAdmissionController == null) { return false; }
+
+        return admissionController.compareAndSet(null, dtlsHandshakeAdmissionController);
+    }
+
+    /**
+     * Gives back the admission slot (the handshake is finished or the unit is removed), only the first call releases it
+     */
+    public void releaseAdmission() {
+        DtlsHandshakeAdmissionController prevAdmissionController = admissionController.getAndSet(null);
+        if (prevAdmissionController != null) {
+            prevAdmissionController.release();
+        }
+    }
+
+    public boolean isAdmitted() {
+        return admissionController.get() != null;
     }
 
-    public ScheduleManager getDtlsScheduleManager() {
-        return dtlsScheduleManager;
+    public int getDtlsState() {
+        return dtlsState;
+    }
+
+    public boolean compareAndSetDtlsState(int expectedState, int newState) {
+        return DTLS_STATE_UPDATER.compareAndSet(this, expectedState, newState);
     }
 
     public DtlsFsmManager getDtlsFsmManager() {
         return dtlsFsmManager;
     }
 
-    public String getDtlsScheduleKey() {
-        return dtlsScheduleKey;
+    public int getMtu() {
+        return mtu;
+    }
+
+    public void setMtu(int mtu) {
+        this.mtu = mtu;
+        this.dtlsHandshakeFragmenter = null;
+        this.dtlsFlightPacker = null;
+    }
+
+    public DtlsHandshakeFragmenter getDtlsHandshakeFragmenter() {
+        if (dtlsHandshakeFragmenter == null) {
+            dtlsHandshakeFragmenter = new DtlsHandshakeFragmenter(mtu);
+        }
+        return dtlsHandshakeFragmenter;
+    }
+
+    public DtlsFlightPacker getDtlsFlightPacker() {
+        if (dtlsFlightPacker == null) {
+            dtlsFlightPacker = new DtlsFlightPacker(mtu);
+        }
+        return dtlsFlightPacker;
+    }
+
+    /**
+     * @return Next record sequence number of the current epoch (used by the flight packer)
+     */
+    public long nextRecordSequenceNumber() {
+        return recordSequenceNumber.getAndIncrement();
+    }
+
+    /**
+     * Restarts the record sequence number (on an epoch change)
+     */
+    public void resetRecordSequenceNumber() {
+        recordSequenceNumber.set(0);
+    }
+
+    /**
+     * @return Message sequence of the next handshake message to send (on the event loop of the unit)
+     */
+    public int nextSendMessageSequence() {
+        return sendMessageSequence++;
+    }
+
+    /**
+     * @param sendMessageSequence Message sequence of the first handshake message of the next flight
+     *      (ex. the server starts with the sequence of the ClientHello that has the cookie)
+     */
+    public void setSendMessageSequence(int sendMessageSequence) {
+        this.sendMessageSequence = sendMessageSequence;
+    }
+
+    /**
+     * Starts (or restarts) the retransmit timer, the previous timer is cancelled
+     * @param timeoutMs Retransmit timeout (ms)
+     */
+    public void startRetransmitTimer(long timeoutMs) {
+        if (isClosed) { return; }
+
+        Timeout timeout = DtlsRetransmitTimer.getInstance().schedule(new DtlsRetransmit(this, timeoutMs), timeoutMs);
+        Timeout prevTimeout = retransmitTimeout.getAndSet(timeout);
+        if (prevTimeout != null) {
+            prevTimeout.cancel();
+        }
+    }
+
+    /**
+     * @return true if a pending timer is cancelled
+     */
+    public boolean cancelRetransmitTimer() {
+        Timeout prevTimeout = retransmitTimeout.getAndSet(null);
+        return prevTimeout != null && prevTimeout.cancel();
+    }
+
+    /**
+     * Called by the expired timer
+     * @return false if the given timer is not the current one (already cancelled or replaced)
+     */
+    public boolean clearRetransmitTimeout(Timeout timeout) {
+        return retransmitTimeout.compareAndSet(timeout, null);
+    }
+
+    public boolean isRetransmitTimerActive() {
+        return retransmitTimeout.get() != null;
+    }
+
+    public DtlsRetransmitPolicy getDtlsRetransmitPolicy() {
+        return dtlsRetransmitPolicy;
+    }
+
+    public void setDtlsRetransmitPolicy(DtlsRetransmitPolicy dtlsRetransmitPolicy) {
+        if (dtlsRetransmitPolicy == null) { return; }
+
+        this.dtlsRetransmitPolicy = dtlsRetransmitPolicy;
+    }
+
+    public DtlsSession getDtlsSession() {
+        return dtlsSession;
+    }
+
+    /**
+     * @param dtlsSession Session of the handshake
+     * @param isResumed true for the abbreviated handshake (no certificate & key exchange)
+     */
+    public void setDtlsSession(DtlsSession dtlsSession, boolean isResumed) {
+        this.dtlsSession = dtlsSession;
+        this.isResumed = isResumed;
+    }
+
+    public boolean isResumed() {
+        return isResumed;
+    }
+
+    /**
+     * @return Anti-replay window of the received records (created on the first call)
+     */
+    public DtlsReplayWindow getDtlsReplayWindow() {
+        if (dtlsReplayWindow == null) {
+            dtlsReplayWindow = new DtlsReplayWindow();
+        }
+        return dtlsReplayWindow;
+    }
+
+    /**
+     * @return Reassembler of the received handshake messages (created on the first call)
+     */
+    public DtlsHandshakeReassembler getDtlsHandshakeReassembler() {
+        if (dtlsHandshakeReassembler == null) {
+            dtlsHandshakeReassembler = new DtlsHandshakeReassembler();
+        }
+        return dtlsHandshakeReassembler;
     }
     /////////////////////////////////////////////////////
 
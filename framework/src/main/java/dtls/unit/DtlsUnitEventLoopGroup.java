@@ -0,0 +1,71 @@
+package dtls.unit;
+
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of single-threaded event loops for the DtlsUnits (actor model)
+ *      - A unit is pinned to one loop by the hash of its peer key, for its whole life.
+ *      - Every event of the unit (inbound records, retransmit timers, application sends) runs on that loop,
+ *          so they are serialized without locks and the unit state stays on one core.
+ *      - Owned by DtlsHandshakeManager, the threads are daemon threads.
+ */
+public class DtlsUnitEventLoopGroup {
+
+    ////////////////////////////////////////////////////////////
+    private static final Logger logger = LoggerFactory.getLogger(DtlsUnitEventLoopGroup.class);
+
+    private final DefaultEventExecutorGroup eventExecutorGroup;
+    private final EventExecutor[] eventLoops;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public DtlsUnitEventLoopGroup() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threadCount Number of the event loops (one thread each)
+     */
+    public DtlsUnitEventLoopGroup(int threadCount) {
+        threadCount = Math.max(threadCount, 1);
+        this.eventExecutorGroup = new DefaultEventExecutorGroup(
+                threadCount,
+                new BasicThreadFactory.Builder().namingPattern("DtlsUnitEventLoop-%d").daemon(true).build()
+        );
+
+        this.eventLoops = new EventExecutor[threadCount];
+        int index = 0;
+        for (EventExecutor eventExecutor : eventExecutorGroup) {
+            eventLoops[index++] = eventExecutor;
+        }
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    /**
+     * @param peerKey Peer identity of the unit
+     * @return Event loop of the peer (always the same one for the same key)
+     */
+    public EventExecutor getEventLoop(DtlsPeerKey peerKey) {
+        int hash = peerKey == null ? 0 : peerKey.hashCode();
+        hash ^= (hash >>> 16); // Spreads the high bits, the count is usually small
+        return eventLoops[(hash & Integer.MAX_VALUE) % eventLoops.length];
+    }
+
+    public int getEventLoopCount() {
+        return eventLoops.length;
+    }
+
+    public void shutdown() {
+        eventExecutorGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        logger.debug("DtlsUnitEventLoopGroup is shut down.");
+    }
+    ////////////////////////////////////////////////////////////
+
+}
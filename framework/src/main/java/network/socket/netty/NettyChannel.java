@@ -1,7 +1,9 @@
 package network.socket.netty;
 
 import instance.BaseEnvironment;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.util.ReferenceCountUtil;
 import util.module.ConcurrentCyclicFIFO;
 
 public class NettyChannel {
@@ -96,6 +98,15 @@ public class NettyChannel {
     public void closeConnectChannel() {}
 
     public void sendData(byte[] data, int dataLength) {}
+
+    /**
+     * Sends the already encoded buffer as it is (no copy)
+     *      The ownership of the buffer is transferred to this channel. (It is released after write or on failure)
+     * @param buf Encoded data
+     */
+    public void sendData(ByteBuf buf) {
+        ReferenceCountUtil.release(buf);
+    }
     ////////////////////////////////////////////////////////////
 
 }
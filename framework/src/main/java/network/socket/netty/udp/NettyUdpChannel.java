@@ -124,6 +124,19 @@ public class NettyUdpChannel extends NettyChannel {
         ByteBuf buf = Unpooled.copiedBuffer(data);
         connectChannel.writeAndFlush(buf);
     }
+
+    @Override
+    public void sendData(ByteBuf buf) {
+        if (buf == null) { return; }
+
+        if (connectChannel == null || !connectChannel.isActive()) {
+            getBaseEnvironment().printMsg(DebugLevel.WARN, "Channel is not active. Fail to send the data. (length=%s)", buf.readableBytes());
+            buf.release();
+            return;
+        }
+
+        connectChannel.writeAndFlush(buf, connectChannel.voidPromise());
+    }
     ////////////////////////////////////////////////////////////
 
 }
@@ -6,14 +6,15 @@ import service.scheduler.schedule.ScheduleManager;
 import service.scheduler.schedule.unit.FutureScheduler;
 import service.scheduler.schedule.unit.ScheduleUnit;
 
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class Job implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(Job.class);
+    private static final AtomicLong SEQUENCE_GENERATOR = new AtomicLong(0);
 
     private final ScheduleManager scheduleManager;
     private final String name;
@@ -22,14 +23,14 @@ public abstract class Job implements Runnable {
     private final TimeUnit timeUnit; // ex) TimeUnit.MILLISECONDS
 
     private final int priority;
+    private final long sequence = SEQUENCE_GENERATOR.getAndIncrement(); // FIFO order of the same priority
     private final int totalRunCount;
     private final AtomicInteger curRemainRunCount = new AtomicInteger(0);
     private final boolean isLasted;
     private final AtomicBoolean isInitialFinished = new AtomicBoolean(false);
     private final AtomicBoolean isFinished = new AtomicBoolean(false);
 
-    //
-    private final ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1);
+    // Delays & intervals run on the timing wheel of the ScheduleManager (no thread per job)
     private String scheduleUnitKey;
     private FutureScheduler futureScheduler;
     //
@@ -50,17 +51,32 @@ public abstract class Job implements Runnable {
 
     ////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Dispatches the job after the initial delay, then every interval (if any)
+     */
     public void initialSchedule() {
-        ScheduleUnit scheduleUnit = scheduleManager.getScheduleUnit(scheduleUnitKey);
-        if (scheduleUnit != null && this.futureScheduler == null) {
-            this.futureScheduler = new FutureScheduler(scheduleManager, this);
-        }
+        FutureScheduler curFutureScheduler = getOrCreateFutureScheduler();
+        if (curFutureScheduler == null) { return; }
 
-        scheduledThreadPoolExecutor.schedule(futureScheduler, initialDelay, timeUnit);
+        curFutureScheduler.start(initialDelay, timeUnit);
     }
 
+    /**
+     * Dispatches the job every interval, starting one interval from now (the first run is dispatched by the caller)
+     */
     public void schedule() {
-        scheduledThreadPoolExecutor.scheduleAtFixedRate(this, 0, interval, timeUnit);
+        FutureScheduler curFutureScheduler = getOrCreateFutureScheduler();
+        if (curFutureScheduler == null) { return; }
+
+        curFutureScheduler.start(interval, timeUnit);
+    }
+
+    private FutureScheduler getOrCreateFutureScheduler() {
+        ScheduleUnit scheduleUnit = scheduleManager.getScheduleUnit(scheduleUnitKey);
+        if (scheduleUnit != null && this.futureScheduler == null) {
+            this.futureScheduler = new FutureScheduler(scheduleManager, this);
+        }
+        return futureScheduler;
     }
 
     public FutureScheduler getFutureScheduler() {
@@ -83,6 +99,10 @@ public abstract class Job implements Runnable {
         return priority;
     }
 
+    public long getSequence() {
+        return sequence;
+    }
+
     public int getTotalRunCount() {
         return totalRunCount;
     }
@@ -137,8 +157,8 @@ public abstract class Job implements Runnable {
 
     public void setIsFinished(boolean isFinished) {
         this.isFinished.set(isFinished);
-        if (isFinished) {
-            scheduledThreadPoolExecutor.shutdown();
+        if (isFinished && futureScheduler != null) {
+            futureScheduler.cancel();
         }
     }
 
@@ -1,12 +1,20 @@
 package service.scheduler.schedule;
 
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import service.scheduler.job.Job;
+import service.scheduler.schedule.handler.BoundedJobQueue;
+import service.scheduler.schedule.handler.JobDispatchMode;
+import service.scheduler.schedule.handler.JobOverflowPolicy;
 import service.scheduler.schedule.unit.ScheduleUnit;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class ScheduleManager {
@@ -16,11 +24,23 @@ public class ScheduleManager {
     private static final Logger logger = LoggerFactory.getLogger(ScheduleManager.class);
     private final HashMap<String, ScheduleUnit> scheduleUnitMap = new HashMap<>();
     private final ReentrantLock scheduleUnitMapLock = new ReentrantLock();
+
+    // Shared timing wheel of the job delays & intervals (one thread for every job, O(1) insert & cancel)
+    public static final long JOB_TIMER_TICK_DURATION_MS = 10;
+    public static final int JOB_TIMER_TICKS_PER_WHEEL = 512;
+    private final HashedWheelTimer jobTimer;
     ////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
     // CONSTRUCTOR
-    public ScheduleManager() {}
+    public ScheduleManager() {
+        // The wheel thread starts on the first timeout
+        jobTimer = new HashedWheelTimer(
+                new BasicThreadFactory.Builder().namingPattern("JobTimer-%d").daemon(true).build(),
+                JOB_TIMER_TICK_DURATION_MS, TimeUnit.MILLISECONDS,
+                JOB_TIMER_TICKS_PER_WHEEL
+        );
+    }
     ////////////////////////////////////////////////////////////////////////////////
 
     ////////////////////////////////////////////////////////////
@@ -46,7 +66,8 @@ public class ScheduleManager {
         return cloneMap;
     }
 
-    private ScheduleUnit addScheduleUnit(String key, int poolSize, int queueSize) {
+    private ScheduleUnit addScheduleUnit(String key, int poolSize, int queueSize, JobDispatchMode jobDispatchMode,
+                                         JobOverflowPolicy jobOverflowPolicy, long blockTimeoutMs) {
         if (key == null) {
             return null;
         }
@@ -58,7 +79,10 @@ public class ScheduleManager {
                     new ScheduleUnit(
                             key,
                             poolSize,
-                            queueSize
+                            queueSize,
+                            jobDispatchMode,
+                            jobOverflowPolicy,
+                            blockTimeoutMs
                     )
             );
             return scheduleUnitMap.get(key);
@@ -106,9 +130,33 @@ public class ScheduleManager {
     ////////////////////////////////////////////////////////////////////////////////
 
     public boolean initJob(String key, int totalThreadPoolSize, int priorityBlockingQueueSize) {
-        return addScheduleUnit(key, totalThreadPoolSize, priorityBlockingQueueSize) != null;
+        return initJob(key, totalThreadPoolSize, priorityBlockingQueueSize, JobDispatchMode.LEAST_LOADED);
+    }
+
+    public boolean initJob(String key, int totalThreadPoolSize, int priorityBlockingQueueSize, JobDispatchMode jobDispatchMode) {
+        return initJob(
+                key, totalThreadPoolSize, priorityBlockingQueueSize, jobDispatchMode,
+                JobOverflowPolicy.REJECT, BoundedJobQueue.DEFAULT_BLOCK_TIMEOUT_MS
+        );
     }
 
+    /**
+     * @param priorityBlockingQueueSize Capacity of the job queue of each executor (bounded)
+     * @param jobOverflowPolicy Policy of a full queue (REJECT, CALLER_RUNS, DROP_OLDEST_LOWEST_PRIORITY, BLOCK_WITH_TIMEOUT)
+     * @param blockTimeoutMs Maximum wait of BLOCK_WITH_TIMEOUT (ms)
+     */
+    public boolean initJob(String key, int totalThreadPoolSize, int priorityBlockingQueueSize, JobDispatchMode jobDispatchMode,
+                           JobOverflowPolicy jobOverflowPolicy, long blockTimeoutMs) {
+        return addScheduleUnit(
+                key, totalThreadPoolSize, priorityBlockingQueueSize, jobDispatchMode,
+                jobOverflowPolicy, blockTimeoutMs
+        ) != null;
+    }
+
+    /**
+     * @return false if the job is not accepted (no schedule unit, finished, or rejected by the full queue),
+     *          the caller can shed the load
+     */
     public boolean startJob(String scheduleUnitKey, Job job) {
         if (scheduleUnitKey == null) { return false; }
 
@@ -154,6 +202,26 @@ public class ScheduleManager {
         }
 
         clearScheduleUnitMap();
+        jobTimer.stop();
+    }
+
+    /**
+     * Schedules the timer task on the shared timing wheel (resolution : JOB_TIMER_TICK_DURATION_MS)
+     * @return Handle of the timer (Timeout.cancel() to stop it), null if the timing wheel is stopped
+     */
+    public Timeout newTimeout(TimerTask timerTask, long delay, TimeUnit timeUnit) {
+        if (timerTask == null || timeUnit == null) { return null; }
+
+        try {
+            return jobTimer.newTimeout(timerTask, delay, timeUnit);
+        } catch (Exception e) {
+            logger.warn("Fail to schedule the job timer. (delay={}, timeUnit={})", delay, timeUnit, e);
+            return null;
+        }
+    }
+
+    public long getPendingTimeouts() {
+        return jobTimer.pendingTimeouts();
     }
 
     public int getActiveJobNumber(String scheduleUnitKey) {
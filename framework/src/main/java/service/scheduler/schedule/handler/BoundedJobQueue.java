@@ -0,0 +1,234 @@
+package service.scheduler.schedule.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import service.scheduler.job.Job;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Priority queue of jobs with a real capacity (PriorityBlockingQueue alone is unbounded)
+ *      - Order : priority (lower value first), then FIFO. (Job sequence)
+ *      - The capacity is kept by a semaphore of free slots, taken on offer and given back on every removal.
+ *      - A full queue applies its JobOverflowPolicy. (CALLER_RUNS is left to the executor, the queue only rejects)
+ */
+public class BoundedJobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedJobQueue.class);
+
+    public static final Comparator<Job> JOB_COMPARATOR =
+            Comparator.comparingInt(Job::getPriority).thenComparingLong(Job::getSequence);
+
+    public static final long DEFAULT_BLOCK_TIMEOUT_MS = 100;
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final int capacity;
+    private final JobOverflowPolicy jobOverflowPolicy;
+    private final long blockTimeoutMs;
+
+    private final PriorityBlockingQueue<Job> priorityQueue;
+    private final Semaphore freeSlots;
+    private final AtomicInteger jobCount = new AtomicInteger(0);
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    public BoundedJobQueue(int capacity) {
+        this(capacity, JobOverflowPolicy.REJECT, DEFAULT_BLOCK_TIMEOUT_MS);
+    }
+
+    /**
+     * @param capacity Maximum number of the queued jobs
+     * @param jobOverflowPolicy Policy of a full queue
+     * @param blockTimeoutMs Maximum wait of BLOCK_WITH_TIMEOUT (ms)
+     */
+    public BoundedJobQueue(int capacity, JobOverflowPolicy jobOverflowPolicy, long blockTimeoutMs) {
+        this.capacity = Math.max(capacity, 1);
+        this.jobOverflowPolicy = jobOverflowPolicy == null ? JobOverflowPolicy.REJECT : jobOverflowPolicy;
+        this.blockTimeoutMs = Math.max(blockTimeoutMs, 0);
+
+        priorityQueue = new PriorityBlockingQueue<>(Math.min(this.capacity, MAX_INITIAL_CAPACITY), JOB_COMPARATOR);
+        freeSlots = new Semaphore(this.capacity);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return true if the job is queued, false if it is rejected by the overflow policy
+     */
+    public boolean offer(Job job) {
+        if (job == null) { return false; }
+
+        if (freeSlots.tryAcquire()) {
+            add(job);
+            return true;
+        }
+
+        switch (jobOverflowPolicy) {
+            case BLOCK_WITH_TIMEOUT:
+                try {
+                    if (freeSlots.tryAcquire(blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        add(job);
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_OLDEST_LOWEST_PRIORITY:
+                if (replaceLowestPriorityJob(job)) {
+                    return true;
+                }
+                break;
+            default:
+                break;
+        }
+
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Never waits (timer thread) : a full queue rejects the job, except DROP_OLDEST_LOWEST_PRIORITY (a scan, no wait)
+     * @return true if the job is queued, false if it is rejected
+     */
+    public boolean tryOffer(Job job) {
+        if (job == null) { return false; }
+
+        if (freeSlots.tryAcquire()) {
+            add(job);
+            return true;
+        }
+
+        if (jobOverflowPolicy == JobOverflowPolicy.DROP_OLDEST_LOWEST_PRIORITY && replaceLowestPriorityJob(job)) {
+            return true;
+        }
+
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    public Job poll() {
+        Job job = priorityQueue.poll();
+        if (job != null) {
+            onRemoved(1);
+        }
+        return job;
+    }
+
+    public Job take() throws InterruptedException {
+        Job job = priorityQueue.take();
+        onRemoved(1);
+        return job;
+    }
+
+    /**
+     * @return Number of the drained jobs (in priority order)
+     */
+    public int drainTo(Collection<Job> jobs, int maxCount) {
+        int drainedCount = priorityQueue.drainTo(jobs, maxCount);
+        if (drainedCount > 0) {
+            onRemoved(drainedCount);
+        }
+        return drainedCount;
+    }
+
+    public void clear() {
+        Job job;
+        while ((job = priorityQueue.poll()) != null) {
+            onRemoved(1);
+        }
+    }
+
+    private void add(Job job) {
+        jobCount.incrementAndGet();
+        priorityQueue.offer(job);
+    }
+
+    private void onRemoved(int count) {
+        jobCount.addAndGet(-count);
+        freeSlots.release(count);
+    }
+
+    /**
+     * The slot of the victim goes to the new job (scans the queue, only on overflow)
+     * @return false if the new job is the lowest priority one (or the queue is drained meanwhile)
+     */
+    private boolean replaceLowestPriorityJob(Job job) {
+        Job victim = null;
+        for (Job queuedJob : priorityQueue) {
+            if (victim == null || isBetterVictim(queuedJob, victim)) {
+                victim = queuedJob;
+            }
+        }
+
+        if (victim == null) {
+            // Drained meanwhile
+            if (freeSlots.tryAcquire()) {
+                add(job);
+                return true;
+            }
+            return false;
+        }
+        if (job.getPriority() > victim.getPriority() || !priorityQueue.remove(victim)) {
+            return false;
+        }
+
+        priorityQueue.offer(job);
+        droppedCount.incrementAndGet();
+        logger.debug("Job queue is full. The lowest priority job is dropped. ({})", victim.getName());
+        return true;
+    }
+
+    /**
+     * @return true if the candidate is lower priority than the victim, or the same priority and older
+     */
+    private static boolean isBetterVictim(Job candidate, Job victim) {
+        if (candidate.getPriority() != victim.getPriority()) {
+            return candidate.getPriority() > victim.getPriority();
+        }
+        return candidate.getSequence() < victim.getSequence();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    public int size() {
+        return jobCount.get();
+    }
+
+    public boolean isEmpty() {
+        return jobCount.get() <= 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public JobOverflowPolicy getJobOverflowPolicy() {
+        return jobOverflowPolicy;
+    }
+
+    public long getBlockTimeoutMs() {
+        return blockTimeoutMs;
+    }
+
+    /**
+     * @return Number of the jobs not queued because the queue is full (run by the caller in CALLER_RUNS)
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+}
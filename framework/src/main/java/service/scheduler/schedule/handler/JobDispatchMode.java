@@ -0,0 +1,12 @@
+package service.scheduler.schedule.handler;
+
+/**
+ * How JobScheduler picks the executor of a new job
+ */
+public enum JobDispatchMode {
+
+    ROUND_ROBIN,    // Next executor in turn
+    LEAST_LOADED,   // Executor with the fewest queued & running jobs, idle executors steal from the busy ones
+    VIRTUAL_THREAD  // Every job on a virtual thread, at most poolSize at once (JDK 21+, LEAST_LOADED before)
+
+}
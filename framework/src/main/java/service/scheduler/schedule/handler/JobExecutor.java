@@ -1,39 +1,60 @@
 package service.scheduler.schedule.handler;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import service.scheduler.job.Job;
 
-import java.util.Comparator;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * One worker thread with its own priority queue
+ *      - The worker blocks on the queue (take()) while it is empty, so an idle executor costs no CPU.
+ *      - When it wakes up, it takes the jobs one by one without waiting (in priority order),
+ *          so the throughput is bounded by the cost of the jobs, not by a polling tick.
+ *          The head is re-checked before every job, a new high priority job runs right after the running one.
+ *      - The queue is bounded (BoundedJobQueue), a full queue applies its JobOverflowPolicy.
+ *      - With a JobScheduler in LEAST_LOADED mode, the worker steals the head job of a busy sibling
+ *          before it blocks. (a slow job does not hold the jobs queued behind it)
+ *          A parked worker does not steal, so a queue that grows to {@link #WAKE_THRESHOLD} jobs
+ *          hands its head job to a parked sibling. (it wakes up, then steals the rest)
+ */
 public class JobExecutor {
 
+    private static final Logger logger = LoggerFactory.getLogger(JobExecutor.class);
+
+    // Queued jobs that wake up a parked sibling (a job is waiting behind another queued one)
+    public static final int WAKE_THRESHOLD = 2;
+
     private final int index;
 
-    private final PriorityBlockingQueue<Job> priorityQueue;
-    private final ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
+    private final BoundedJobQueue jobQueue;
+    private final Thread workerThread;
+    private volatile boolean isRunning = true;
+
+    // Load of the executor (queued jobs + the jobs taken by the worker), read by the dispatcher & the thieves
+    private volatile int takenJobCount = 0; // Written only by the worker (1 while a job is running)
+    private final JobScheduler jobScheduler; // Null : no stealing
+    private volatile boolean isParked = false; // Blocked on the empty queue (take())
 
     ////////////////////////////////////////////////////////////////////////////////
 
     public JobExecutor(int index, int queueSize) {
-        this.index = index;
+        this(index, new BoundedJobQueue(queueSize), null);
+    }
 
-        priorityQueue = new PriorityBlockingQueue<>(
-                queueSize,
-                Comparator.comparing(Job::getPriority)
-        );
+    /**
+     * @param jobQueue Bounded queue of the executor
+     * @param jobScheduler Owner of the siblings to steal from (null to disable stealing)
+     */
+    public JobExecutor(int index, BoundedJobQueue jobQueue, JobScheduler jobScheduler) {
+        this.index = index;
+        this.jobQueue = jobQueue;
+        this.jobScheduler = jobScheduler;
 
         ThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern("JobExecutor" + "-" + index).daemon(true).build();
-        scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1, threadFactory);
-        scheduledThreadPoolExecutor.scheduleAtFixedRate(
-                new Worker(),
-                0,
-                1,
-                TimeUnit.MILLISECONDS
-        );
+        workerThread = threadFactory.newThread(new Worker());
+        workerThread.start();
     }
 
     ////////////////////////////////////////////////////////////////////////////////
@@ -42,29 +63,98 @@ public class JobExecutor {
 
         @Override
         public void run() {
-            try {
-                // poll(): dequeue 후 객체 null 여부에 상관없이 기다리지 않음
-                // take(): dequeue 후 객체가 null 이 아닐 때까지 기다림
-                Job job = priorityQueue.poll();
-                if (job == null) {
-                    return;
+            while (isRunning) {
+                try {
+                    // poll(): 기다리지 않고 현재 가장 우선순위가 높은 job 을 가져옴 (job 마다 다시 확인)
+                    Job job = pollJob();
+                    if (job == null && jobScheduler != null) {
+                        job = jobScheduler.stealJob(JobExecutor.this);
+                    }
+                    if (job == null) {
+                        // take(): dequeue 후 객체가 null 이 아닐 때까지 기다림 (idle 상태에서 깨어나지 않음)
+                        isParked = true;
+                        try {
+                            job = jobQueue.take();
+                        } finally {
+                            isParked = false;
+                        }
+                    }
+                    takenJobCount = 1;
+                    runJob(job);
+                    takenJobCount = 0;
+                } catch (InterruptedException e) {
+                    // stop()
+                    Thread.currentThread().interrupt();
+                    break;
                 }
-
-                job.run();
-            } catch (Exception e) {
-                // ignore
             }
         }
 
     }
 
+    private void runJob(Job job) {
+        try {
+            job.run();
+        } catch (Exception e) {
+            logger.warn("JobExecutor-{}: Fail to run the job. ({})", index, job.getName(), e);
+        }
+    }
+
     public void stop() {
-        scheduledThreadPoolExecutor.shutdown();
-        priorityQueue.clear();
+        isRunning = false;
+        workerThread.interrupt();
+
+        int queuedJobCount = jobQueue.size();
+        jobQueue.clear();
+        if (queuedJobCount > 0) {
+            logger.warn("JobExecutor-{}: Stopped. {} queued job(s) are discarded.", index, queuedJobCount);
+        }
     }
 
-    public void addJob(Job job) {
-        priorityQueue.offer(job);
+    /**
+     * @return false if the job is rejected by the overflow policy of the full queue
+     */
+    public boolean addJob(Job job) {
+        if (job == null || !isRunning) { return false; }
+
+        if (jobQueue.offer(job)) {
+            wakeParkedSibling();
+            return true;
+        }
+
+        if (jobQueue.getJobOverflowPolicy() == JobOverflowPolicy.CALLER_RUNS) {
+            // Backpressure : the producer runs the job itself
+            runJob(job);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Never waits and never runs the job on the caller (timer thread), whatever the overflow policy is
+     * @return false if the job is rejected by the full queue
+     */
+    public boolean tryAddJob(Job job) {
+        if (job == null || !isRunning) { return false; }
+
+        if (!jobQueue.tryOffer(job)) { return false; }
+
+        wakeParkedSibling();
+        return true;
+    }
+
+    private void wakeParkedSibling() {
+        if (jobScheduler != null && jobQueue.size() >= WAKE_THRESHOLD) {
+            jobScheduler.handOverJob(this);
+        }
+    }
+
+    /**
+     * Takes the head job without waiting (by the worker itself or by a thief)
+     * @return Highest priority job, null if the queue is empty
+     */
+    public Job pollJob() {
+        return jobQueue.poll();
     }
 
     ////////////////////////////////////////////////////////////////////////////////
@@ -72,4 +162,31 @@ public class JobExecutor {
     public int getIndex() {
         return index;
     }
+
+    public int getQueueSize() {
+        return jobQueue.size();
+    }
+
+    public int getQueuedJobCount() {
+        return jobQueue.size();
+    }
+
+    public BoundedJobQueue getJobQueue() {
+        return jobQueue;
+    }
+
+    public boolean isBusy() {
+        return takenJobCount > 0;
+    }
+
+    public boolean isParked() {
+        return isParked;
+    }
+
+    /**
+     * @return Queued jobs + the jobs taken by the worker (approximate, no lock)
+     */
+    public int getLoad() {
+        return jobQueue.size() + takenJobCount;
+    }
 }
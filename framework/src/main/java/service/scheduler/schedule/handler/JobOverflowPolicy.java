@@ -0,0 +1,15 @@
+package service.scheduler.schedule.handler;
+
+/**
+ * What a full job queue does with a new job (BoundedJobQueue)
+ *      Applied to the direct callers (ScheduleManager.startJob) only.
+ *      The timer of the delayed & repeated jobs never waits or runs a job : CALLER_RUNS & BLOCK_WITH_TIMEOUT reject there.
+ */
+public enum JobOverflowPolicy {
+
+    REJECT,                         // The new job is not accepted
+    CALLER_RUNS,                    // The new job runs on the caller thread (slows the producer down)
+    DROP_OLDEST_LOWEST_PRIORITY,    // The oldest job of the lowest priority is dropped, unless the new job is lower
+    BLOCK_WITH_TIMEOUT              // The caller waits for a free slot, up to the block timeout
+
+}
@@ -4,6 +4,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import service.scheduler.job.Job;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches the jobs of one ScheduleUnit to its executors
+ *      - ROUND_ROBIN : next executor in turn (atomic counter)
+ *      - LEAST_LOADED : executor with the lowest load (queued + taken jobs),
+ *          and an executor that runs out of jobs steals the head job of a busy sibling.
+ *          A queue that grows while a sibling is parked hands its head job to it. (the sibling wakes up)
+ *          The priority is still honored inside each executor. (the head job is the highest priority one)
+ *      - Every executor has a bounded queue of queueSize jobs, a full queue applies the JobOverflowPolicy.
+ *      - VIRTUAL_THREAD : virtual threads limited to poolSize running jobs (VirtualJobExecutor),
+ *          for the units of blocking jobs. Falls back to LEAST_LOADED if the JVM has no virtual threads.
+ */
 public class JobScheduler {
 
     private static final Logger logger = LoggerFactory.getLogger(JobScheduler.class);
@@ -13,26 +26,79 @@ public class JobScheduler {
     private final String ownerName;
     private final int poolSize;
     private final int queueSize;
+    private final JobOverflowPolicy jobOverflowPolicy;
+    private final long blockTimeoutMs;
 
-    private final JobExecutor[] jobExecutors; // Round-Robin executor selection
-    private int curExecutorIndex = 0;
+    private final JobDispatchMode jobDispatchMode;
+    private final JobExecutor[] jobExecutors;
+    private final VirtualJobExecutor virtualJobExecutor; // VIRTUAL_THREAD only
+    // Round-Robin executor selection (also the start of the least-loaded scan, ties are spread)
+    private final AtomicInteger curExecutorIndex = new AtomicInteger(0);
+    private final AtomicInteger stolenJobCount = new AtomicInteger(0);
+    private final AtomicInteger handedOverJobCount = new AtomicInteger(0);
 
     ////////////////////////////////////////////////////////////////////////////////
 
     public JobScheduler(String ownerName, int poolSize, int queueSize) {
+        this(ownerName, poolSize, queueSize, JobDispatchMode.LEAST_LOADED);
+    }
+
+    public JobScheduler(String ownerName, int poolSize, int queueSize, JobDispatchMode jobDispatchMode) {
+        this(ownerName, poolSize, queueSize, jobDispatchMode, JobOverflowPolicy.REJECT, BoundedJobQueue.DEFAULT_BLOCK_TIMEOUT_MS);
+    }
+
+    /**
+     * @param queueSize Capacity of the queue of each executor
+     * @param jobOverflowPolicy Policy of a full queue
+     * @param blockTimeoutMs Maximum wait of BLOCK_WITH_TIMEOUT (ms)
+     *                       (direct callers only, the timer of the delayed & repeated jobs never waits)
+     */
+    public JobScheduler(String ownerName, int poolSize, int queueSize, JobDispatchMode jobDispatchMode,
+                        JobOverflowPolicy jobOverflowPolicy, long blockTimeoutMs) {
         this.ownerName = ownerName;
         this.poolSize = poolSize;
         this.queueSize = queueSize;
+        this.jobOverflowPolicy = jobOverflowPolicy == null ? JobOverflowPolicy.REJECT : jobOverflowPolicy;
+        this.blockTimeoutMs = blockTimeoutMs;
+        if (jobDispatchMode == null) {
+            jobDispatchMode = JobDispatchMode.LEAST_LOADED;
+        }
+
+        VirtualJobExecutor curVirtualJobExecutor = null;
+        if (jobDispatchMode == JobDispatchMode.VIRTUAL_THREAD) {
+            curVirtualJobExecutor = VirtualJobExecutor.create(ownerName, poolSize, newJobQueue());
+            if (curVirtualJobExecutor == null) {
+                logger.warn("[{}] Virtual threads are not supported. LEAST_LOADED mode is used.", ownerName);
+                jobDispatchMode = JobDispatchMode.LEAST_LOADED;
+            }
+        }
+        this.virtualJobExecutor = curVirtualJobExecutor;
+        this.jobDispatchMode = jobDispatchMode;
 
-        jobExecutors = new JobExecutor[poolSize];
-        for (int i = 0; i < poolSize; i++) {
-            jobExecutors[i] = new JobExecutor(i, queueSize);
+        // No platform thread executor in VIRTUAL_THREAD mode
+        int executorCount = virtualJobExecutor != null ? 0 : poolSize;
+        boolean isStealing = this.jobDispatchMode == JobDispatchMode.LEAST_LOADED;
+        jobExecutors = new JobExecutor[executorCount];
+        for (int i = 0; i < executorCount; i++) {
+            jobExecutors[i] = new JobExecutor(i, newJobQueue(), isStealing ? this : null);
         }
     }
 
+    private BoundedJobQueue newJobQueue() {
+        return new BoundedJobQueue(queueSize, jobOverflowPolicy, blockTimeoutMs);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Initial delay : the timer of the job dispatches the first run and the next ones.
+     * Otherwise : the first run is dispatched now, the timer dispatches the next ones. (if the job has an interval)
+     */
     public boolean schedule(Job job) {
+        if (job == null || job.getIsFinished()) {
+            return false;
+        }
+
         if (!job.getIsInitialFinished()) {
             int initialDelay = job.getInitialDelay();
             if (initialDelay > 0) {
@@ -45,7 +111,15 @@ public class JobScheduler {
             return false;
         }
 
-        addJobToExecutor(job);
+        if (!addJobToExecutor(job)) {
+            // Not accepted : the run is given back
+            if (!job.isLasted()) {
+                job.incCurRemainRunCount();
+            }
+            logger.debug("[{}] Job is rejected. The queue is full. ({})", ownerName, job.getName());
+            return false;
+        }
+        job.setIsInitialFinished(true);
         int interval = job.getInterval();
         if (interval > 0) {
             job.schedule();
@@ -59,8 +133,11 @@ public class JobScheduler {
     }
 
     public void stop() {
-        for (int i = 0; i < poolSize; i++) {
-            jobExecutors[i].stop();
+        for (JobExecutor jobExecutor : jobExecutors) {
+            jobExecutor.stop();
+        }
+        if (virtualJobExecutor != null) {
+            virtualJobExecutor.stop();
         }
 
         logger.debug("[{}] is finished.", ownerName);
@@ -68,13 +145,120 @@ public class JobScheduler {
 
     ////////////////////////////////////////////////////////////////////////////////
 
-    public void addJobToExecutor(Job job) {
-        jobExecutors[curExecutorIndex].addJob(job);
+    /**
+     * @return false if the job is rejected by the overflow policy of the full queue
+     */
+    public boolean addJobToExecutor(Job job) {
+        if (virtualJobExecutor != null) {
+            return virtualJobExecutor.addJob(job);
+        } else if (jobDispatchMode == JobDispatchMode.LEAST_LOADED) {
+            return getLeastLoadedExecutor().addJob(job);
+        } else {
+            return jobExecutors[nextExecutorIndex()].addJob(job);
+        }
+    }
+
+    /**
+     * Dispatch of the timer (shared by every job) : never waits and never runs the job inline,
+     *      a full queue rejects it whatever the overflow policy is. (the run is skipped)
+     * @return false if the job is rejected by the full queue
+     */
+    public boolean tryAddJobToExecutor(Job job) {
+        if (virtualJobExecutor != null) {
+            return virtualJobExecutor.tryAddJob(job);
+        } else if (jobDispatchMode == JobDispatchMode.LEAST_LOADED) {
+            return getLeastLoadedExecutor().tryAddJob(job);
+        } else {
+            return jobExecutors[nextExecutorIndex()].tryAddJob(job);
+        }
+    }
+
+    private int nextExecutorIndex() {
+        return Math.floorMod(curExecutorIndex.getAndIncrement(), poolSize);
+    }
+
+    /**
+     * Scans every executor (the pool is small), an idle one is taken at once
+     */
+    private JobExecutor getLeastLoadedExecutor() {
+        int startIndex = nextExecutorIndex();
+        JobExecutor leastLoadedExecutor = jobExecutors[startIndex];
+        int leastLoad = leastLoadedExecutor.getLoad();
+
+        for (int i = 1; i < poolSize && leastLoad > 0; i++) {
+            JobExecutor jobExecutor = jobExecutors[(startIndex + i) % poolSize];
+            int load = jobExecutor.getLoad();
+            if (load < leastLoad) {
+                leastLoadedExecutor = jobExecutor;
+                leastLoad = load;
+            }
+        }
+        return leastLoadedExecutor;
+    }
+
+    /**
+     * Called by an executor that has no job (before it blocks)
+     *      The victim is the busy sibling with the most queued jobs, its head job is taken.
+     *      (jobs of an idle sibling are left to it, it is about to take them)
+     * @param thief Executor that has no job
+     * @return Stolen job, null if no sibling has a job waiting behind a running one
+     */
+    public Job stealJob(JobExecutor thief) {
+        JobExecutor[] curJobExecutors = jobExecutors;
+        if (curJobExecutors == null || thief == null) { return null; }
 
-        curExecutorIndex++;
-        if (curExecutorIndex >= poolSize) {
-            curExecutorIndex = 0;
+        JobExecutor victim = null;
+        int victimQueuedJobCount = 0;
+        for (JobExecutor jobExecutor : curJobExecutors) {
+            if (jobExecutor == null || jobExecutor == thief || !jobExecutor.isBusy()) { continue; }
+
+            int queuedJobCount = jobExecutor.getQueuedJobCount();
+            if (queuedJobCount > victimQueuedJobCount) {
+                victim = jobExecutor;
+                victimQueuedJobCount = queuedJobCount;
+            }
+        }
+        if (victim == null) { return null; }
+
+        Job job = victim.pollJob();
+        if (job != null) {
+            stolenJobCount.incrementAndGet();
+        }
+        return job;
+    }
+
+    /**
+     * Called by an executor whose queue grows to JobExecutor.WAKE_THRESHOLD jobs
+     *      A parked sibling (blocked on its empty queue) is woken up by the head job of the source.
+     *      (then it steals the rest of the jobs of the source while the source is busy)
+     * @param source Executor that has jobs waiting
+     * @return true if a job is handed over
+     */
+    public boolean handOverJob(JobExecutor source) {
+        JobExecutor[] curJobExecutors = jobExecutors;
+        if (curJobExecutors == null || source == null) { return false; }
+
+        for (JobExecutor jobExecutor : curJobExecutors) {
+            if (jobExecutor == null || jobExecutor == source
+                    || !jobExecutor.isParked() || jobExecutor.getQueuedJobCount() > 0) {
+                continue;
+            }
+
+            Job job = source.pollJob();
+            if (job == null) { return false; }
+
+            // Queue of the sibling directly (it must not hand the job over again)
+            if (jobExecutor.getJobQueue().tryOffer(job)) {
+                handedOverJobCount.incrementAndGet();
+                return true;
+            }
+            // Not accepted : back to the source (its slot is just freed)
+            if (!source.getJobQueue().tryOffer(job)) {
+                logger.warn("[{}] Fail to give the job back. The job is dropped. ({})", ownerName, job.getName());
+            }
+            return false;
         }
+        return false;
     }
 
     public boolean isJobFinished(Job job) {
@@ -89,7 +273,49 @@ public class JobScheduler {
     ////////////////////////////////////////////////////////////////////////////////
 
     public int getCurExecutorIndex() {
-        return curExecutorIndex;
+        return Math.floorMod(curExecutorIndex.get(), poolSize);
+    }
+
+    public JobDispatchMode getJobDispatchMode() {
+        return jobDispatchMode;
+    }
+
+    public JobOverflowPolicy getJobOverflowPolicy() {
+        return jobOverflowPolicy;
+    }
+
+    /**
+     * @return Number of the jobs not queued because the queues are full (run by the caller in CALLER_RUNS)
+     */
+    public long getRejectedJobCount() {
+        long rejectedJobCount = 0;
+        for (JobExecutor jobExecutor : jobExecutors) {
+            rejectedJobCount += jobExecutor.getJobQueue().getRejectedCount();
+        }
+        if (virtualJobExecutor != null) {
+            rejectedJobCount += virtualJobExecutor.getJobQueue().getRejectedCount();
+        }
+        return rejectedJobCount;
+    }
+
+    public VirtualJobExecutor getVirtualJobExecutor() {
+        return virtualJobExecutor;
+    }
+
+    public int getStolenJobCount() {
+        return stolenJobCount.get();
+    }
+
+    public int getHandedOverJobCount() {
+        return handedOverJobCount.get();
+    }
+
+    /**
+     * @return Executor of the index, null in VIRTUAL_THREAD mode or if the index is out of range
+     */
+    public JobExecutor getJobExecutor(int index) {
+        if (index < 0 || index >= jobExecutors.length) { return null; }
+        return jobExecutors[index];
     }
 
     @Override
@@ -98,6 +324,8 @@ public class JobScheduler {
                 "ownerName='" + ownerName + '\'' +
                 ", poolSize=" + poolSize +
                 ", queueSize=" + queueSize +
+                ", jobDispatchMode=" + jobDispatchMode +
+                ", jobOverflowPolicy=" + jobOverflowPolicy +
                 '}';
     }
 }
@@ -0,0 +1,221 @@
+package service.scheduler.schedule.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import service.scheduler.job.Job;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the jobs of a ScheduleUnit on virtual threads (JDK 21+)
+ *      - A blocking job (DNS, file or keystore I/O, ...) parks only its virtual thread, not a pool thread.
+ *      - At most {@link #getMaxConcurrency()} jobs run at once (semaphore), the others wait in a bounded priority queue.
+ *      - A virtual thread runs the waiting jobs one after another until the queue is empty, then gives its permit back.
+ *      - The virtual thread factory is looked up at runtime, so the code still builds and runs on Java 8.
+ *          ({@link #isAvailable()} is false there, JobScheduler falls back to the platform thread executors)
+ */
+public class VirtualJobExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualJobExecutor.class);
+
+    private final String ownerName;
+    private final int maxConcurrency;
+
+    private final BoundedJobQueue jobQueue;
+    private final Semaphore concurrencyLimiter;
+    private final ThreadFactory virtualThreadFactory;
+    private volatile boolean isRunning = true;
+
+    private final AtomicLong startedThreadCount = new AtomicLong(0);
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    private VirtualJobExecutor(String ownerName, int maxConcurrency, BoundedJobQueue jobQueue, ThreadFactory virtualThreadFactory) {
+        this.ownerName = ownerName;
+        this.maxConcurrency = Math.max(maxConcurrency, 1);
+        this.jobQueue = jobQueue;
+        this.virtualThreadFactory = virtualThreadFactory;
+        concurrencyLimiter = new Semaphore(this.maxConcurrency);
+    }
+
+    public static VirtualJobExecutor create(String ownerName, int maxConcurrency, int queueSize) {
+        return create(ownerName, maxConcurrency, new BoundedJobQueue(queueSize));
+    }
+
+    /**
+     * @param ownerName Name of the schedule unit (thread name prefix)
+     * @param maxConcurrency Maximum number of the jobs running at once
+     * @param jobQueue Bounded queue of the waiting jobs
+     * @return null if the JVM has no virtual threads (ex. before JDK 21, JDK 19/20 without --enable-preview)
+     */
+    public static VirtualJobExecutor create(String ownerName, int maxConcurrency, BoundedJobQueue jobQueue) {
+        if (jobQueue == null) { return null; }
+
+        ThreadFactory virtualThreadFactory = VirtualThreadFactoryHolder.newThreadFactory("VirtualJobExecutor-" + ownerName + "-");
+        if (virtualThreadFactory == null) { return null; }
+
+        return new VirtualJobExecutor(ownerName, maxConcurrency, jobQueue, virtualThreadFactory);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return true if the JVM supports virtual threads (JDK 21+)
+     */
+    public static boolean isAvailable() {
+        return VirtualThreadFactoryHolder.THREAD_FACTORY_METHOD != null;
+    }
+
+    /**
+     * @return false if the job is rejected by the overflow policy of the full queue
+     */
+    public boolean addJob(Job job) {
+        if (job == null || !isRunning) { return false; }
+
+        if (!jobQueue.offer(job)) {
+            if (jobQueue.getJobOverflowPolicy() != JobOverflowPolicy.CALLER_RUNS) {
+                return false;
+            }
+            // Backpressure : the producer runs the job itself
+            runJob(job);
+            return true;
+        }
+
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Never waits and never runs the job on the caller (timer thread), whatever the overflow policy is
+     * @return false if the job is rejected by the full queue
+     */
+    public boolean tryAddJob(Job job) {
+        if (job == null || !isRunning) { return false; }
+
+        if (!jobQueue.tryOffer(job)) {
+            return false;
+        }
+
+        dispatch();
+        return true;
+    }
+
+    public void stop() {
+        isRunning = false;
+        jobQueue.clear();
+        logger.debug("[{}] VirtualJobExecutor is stopped. (startedThreads={})", ownerName, startedThreadCount.get());
+    }
+
+    /**
+     * Starts a virtual thread for each free permit while jobs are waiting
+     */
+    private void dispatch() {
+        while (isRunning && !jobQueue.isEmpty() && concurrencyLimiter.tryAcquire()) {
+            try {
+                virtualThreadFactory.newThread(this::drain).start();
+                startedThreadCount.incrementAndGet();
+            } catch (Exception e) {
+                concurrencyLimiter.release();
+                logger.warn("[{}] Fail to start a virtual thread.", ownerName, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Body of a virtual thread : holds one permit until the queue is empty
+     */
+    private void drain() {
+        try {
+            Job job;
+            while (isRunning && (job = jobQueue.poll()) != null) {
+                runJob(job);
+            }
+        } finally {
+            concurrencyLimiter.release();
+        }
+
+        // A job added after the last poll() and before the release() found no permit
+        dispatch();
+    }
+
+    private void runJob(Job job) {
+        try {
+            job.run();
+        } catch (Exception e) {
+            logger.warn("[{}] Fail to run the job. ({})", ownerName, job.getName(), e);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getRunningCount() {
+        return maxConcurrency - concurrencyLimiter.availablePermits();
+    }
+
+    public int getQueueSize() {
+        return jobQueue.size();
+    }
+
+    public BoundedJobQueue getJobQueue() {
+        return jobQueue;
+    }
+
+    public long getStartedThreadCount() {
+        return startedThreadCount.get();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Thread.ofVirtual().name(prefix, 0).factory(), looked up once by reflection
+     */
+    private static class VirtualThreadFactoryHolder {
+
+        private static final Method OF_VIRTUAL_METHOD;
+        private static final Method NAME_METHOD;
+        private static final Method THREAD_FACTORY_METHOD;
+
+        static {
+            Method ofVirtualMethod = null;
+            Method nameMethod = null;
+            Method threadFactoryMethod = null;
+            try {
+                ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                nameMethod = builderClass.getMethod("name", String.class, long.class);
+                threadFactoryMethod = builderClass.getMethod("factory");
+            } catch (Exception e) {
+                // Before JDK 21
+                ofVirtualMethod = null;
+                nameMethod = null;
+                threadFactoryMethod = null;
+            }
+            OF_VIRTUAL_METHOD = ofVirtualMethod;
+            NAME_METHOD = nameMethod;
+            THREAD_FACTORY_METHOD = threadFactoryMethod;
+        }
+
+        private static ThreadFactory newThreadFactory(String namePrefix) {
+            if (THREAD_FACTORY_METHOD == null) { return null; }
+
+            try {
+                Object builder = OF_VIRTUAL_METHOD.invoke(null);
+                builder = NAME_METHOD.invoke(builder, namePrefix, 0L);
+                return (ThreadFactory) THREAD_FACTORY_METHOD.invoke(builder);
+            } catch (Exception e) {
+                logger.warn("Fail to create the virtual thread factory.", e);
+                return null;
+            }
+        }
+
+    }
+
+}
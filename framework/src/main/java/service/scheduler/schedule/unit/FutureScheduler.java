@@ -1,37 +1,89 @@
 package service.scheduler.schedule.unit;
 
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import service.scheduler.job.Job;
 import service.scheduler.schedule.ScheduleManager;
 
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
-public class FutureScheduler extends TimerTask {
+/**
+ * Timer of one Job on the shared timing wheel of the ScheduleManager
+ *      - Initial delay : fires once, then goes on with the interval (if any).
+ *      - Interval : fixed rate, the next deadline is computed from the previous one (no drift).
+ *      - Run count : checked on every expiration (JobScheduler.isJobFinished), the timer stops when it runs out.
+ *      - Expires on the timer thread, it only hands the job to an executor without waiting.
+ *          (a run rejected by the full queue is skipped, the overflow policy never blocks or runs the job here)
+ */
+public class FutureScheduler implements TimerTask {
 
     private final ScheduleManager scheduleManager;
     private final Job job;
 
+    private volatile Timeout timeout = null;
+    private long nextDeadlineNanos = 0; // Written only on start & on the timer thread
+    private volatile boolean isCancelled = false;
+
     public FutureScheduler(ScheduleManager scheduleManager, Job job) {
         this.scheduleManager = scheduleManager;
         this.job = job;
     }
 
+    /**
+     * Starts the timer, the job is dispatched after the delay
+     * @return false if the timer is cancelled or the timing wheel is stopped
+     */
+    public boolean start(long delay, TimeUnit timeUnit) {
+        if (isCancelled) { return false; }
+
+        long delayNanos = Math.max(timeUnit.toNanos(delay), 0);
+        nextDeadlineNanos = System.nanoTime() + delayNanos;
+        timeout = scheduleManager.newTimeout(this, delayNanos, TimeUnit.NANOSECONDS);
+        return timeout != null;
+    }
+
+    /**
+     * Stops the timer (O(1), the wheel drops it on the next tick)
+     */
+    public void cancel() {
+        isCancelled = true;
+
+        Timeout curTimeout = timeout;
+        if (curTimeout != null) {
+            curTimeout.cancel();
+        }
+    }
+
     @Override
-    public void run() {
-        if (job.getScheduleUnitKey() == null) {
+    public void run(Timeout expiredTimeout) {
+        if (isCancelled || job.getScheduleUnitKey() == null) {
             return;
         }
 
         ScheduleUnit scheduleUnit = scheduleManager.getScheduleUnit(job.getScheduleUnitKey());
-        if (scheduleUnit.getJobScheduler().isJobFinished(job)) {
+        if (scheduleUnit == null || scheduleUnit.getJobScheduler().isJobFinished(job)) {
             return;
         }
 
-        scheduleUnit.getJobScheduler().addJobToExecutor(job);
+        if (!scheduleUnit.getJobScheduler().tryAddJobToExecutor(job) && !job.isLasted()) {
+            // Rejected by the full queue : this run is skipped, the run count is given back
+            job.incCurRemainRunCount();
+        }
+        job.setIsInitialFinished(true);
 
-        if (!job.getIsInitialFinished() && job.getInitialDelay() > 0) {
-            job.setIsInitialFinished(true);
-            scheduleUnit.getJobScheduler().schedule(job);
+        int interval = job.getInterval();
+        if (interval <= 0 || isCancelled) {
+            return;
         }
+
+        // Fixed rate : the next deadline is kept on the grid of the first one
+        nextDeadlineNanos += job.getTimeUnit().toNanos(interval);
+        long delayNanos = Math.max(nextDeadlineNanos - System.nanoTime(), 0);
+        timeout = scheduleManager.newTimeout(this, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
     }
 
-}
\ No newline at end of file
+}
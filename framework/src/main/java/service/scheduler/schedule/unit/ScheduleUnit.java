@@ -3,6 +3,9 @@ package service.scheduler.schedule.unit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import service.scheduler.job.Job;
+import service.scheduler.schedule.handler.BoundedJobQueue;
+import service.scheduler.schedule.handler.JobDispatchMode;
+import service.scheduler.schedule.handler.JobOverflowPolicy;
 import service.scheduler.schedule.handler.JobScheduler;
 
 import java.util.ArrayList;
@@ -25,6 +28,20 @@ public class ScheduleUnit {
     ////////////////////////////////////////////////////////////////////////////////
 
     public ScheduleUnit(String key, int poolSize, int queueSize) {
+        this(key, poolSize, queueSize, JobDispatchMode.LEAST_LOADED);
+    }
+
+    public ScheduleUnit(String key, int poolSize, int queueSize, JobDispatchMode jobDispatchMode) {
+        this(key, poolSize, queueSize, jobDispatchMode, JobOverflowPolicy.REJECT, BoundedJobQueue.DEFAULT_BLOCK_TIMEOUT_MS);
+    }
+
+    /**
+     * @param queueSize Capacity of the job queue of each executor (bounded)
+     * @param jobOverflowPolicy Policy of a full queue
+     * @param blockTimeoutMs Maximum wait of BLOCK_WITH_TIMEOUT (ms)
+     */
+    public ScheduleUnit(String key, int poolSize, int queueSize, JobDispatchMode jobDispatchMode,
+                        JobOverflowPolicy jobOverflowPolicy, long blockTimeoutMs) {
         this.scheduleUnitKey = key;
 
         if (poolSize > 0) {
@@ -33,16 +50,26 @@ public class ScheduleUnit {
             this.poolSize = DEFAULT_THREAD_COUNT;
         }
 
-        jobScheduler = new JobScheduler(scheduleUnitKey, poolSize, queueSize);
+        jobScheduler = new JobScheduler(
+                scheduleUnitKey, this.poolSize, queueSize, jobDispatchMode,
+                jobOverflowPolicy, blockTimeoutMs
+        );
     }
 
     ////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * @return false if the job is not accepted (finished, or rejected by the full queue)
+     */
     public boolean start(Job job) {
         if (job == null) { return false; }
         job.setScheduleUnitKey(scheduleUnitKey);
         jobKeyList.add(job.getName());
-        return jobScheduler.schedule(job);
+        if (!jobScheduler.schedule(job)) {
+            jobKeyList.remove(job.getName());
+            return false;
+        }
+        return true;
     }
 
     public void stop(Job job) {
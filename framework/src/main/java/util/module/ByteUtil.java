@@ -1,5 +1,8 @@
 package util.module;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -183,6 +186,22 @@ public class ByteUtil {
         }
     }
 
+    /**
+     * Wraps the whole capacity of the given ByteBuffer (without copying) as a writable ByteBuf
+     *      Position, limit and byte order of the ByteBuffer are not changed, writes are always big-endian.
+     * @param byteBuffer Target buffer
+     * @param offset Absolute offset of the first byte to write
+     * @return ByteBuf whose writer index is the given offset
+     */
+    public static ByteBuf wrapForWrite(ByteBuffer byteBuffer, int offset) {
+        ByteBuffer view = byteBuffer.duplicate(); // BIG_ENDIAN
+        view.clear();
+
+        ByteBuf buf = Unpooled.wrappedBuffer(view);
+        buf.writerIndex(offset);
+        return buf;
+    }
+
     public static String byteArrayToHex(byte[] a) {
         StringBuilder sb = new StringBuilder();
         for(final byte b: a) {
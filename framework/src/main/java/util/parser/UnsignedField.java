@@ -0,0 +1,91 @@
+package util.parser;
+
+/**
+ * Fixed-width big-endian unsigned field codec (uint8 / uint16 / uint24 / uint32 / uint48)
+ *      Reads and writes in place at the given offset without temporary arrays or ByteBuffers.
+ */
+public class UnsignedField {
+
+    ////////////////////////////////////////////////////////////
+    // VARIABLES
+    public static final int UINT8_LENGTH = 1;
+    public static final int UINT16_LENGTH = 2;
+    public static final int UINT24_LENGTH = 3;
+    public static final int UINT32_LENGTH = 4;
+    public static final int UINT48_LENGTH = 6;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    // FUNCTIONS
+    public static int readUint8( byte[] data, int offset ) {
+        return data[offset] & 0xff;
+    }
+
+    public static int readUint16( byte[] data, int offset ) {
+        return ((data[offset] & 0xff) << 8)
+                | (data[offset+1] & 0xff);
+    }
+
+    public static int readUint24( byte[] data, int offset ) {
+        return ((data[offset] & 0xff) << 16)
+                | ((data[offset+1] & 0xff) << 8)
+                | (data[offset+2] & 0xff);
+    }
+
+    public static long readUint32( byte[] data, int offset ) {
+        return (((long) data[offset] & 0xffL) << 24)
+                | (((long) data[offset+1] & 0xffL) << 16)
+                | (((long) data[offset+2] & 0xffL) << 8)
+                |  ((long) data[offset+3] & 0xffL);
+    }
+
+    public static long readUint48( byte[] data, int offset ) {
+        return (((long) data[offset] & 0xffL) << 40)
+                | (((long) data[offset+1] & 0xffL) << 32)
+                | (((long) data[offset+2] & 0xffL) << 24)
+                | (((long) data[offset+3] & 0xffL) << 16)
+                | (((long) data[offset+4] & 0xffL) << 8)
+                |  ((long) data[offset+5] & 0xffL);
+    }
+
+    /**
+     * @return Offset right after the written field
+     */
+    public static int writeUint8( byte[] data, int offset, int number ) {
+        data[offset] = (byte) (number & 0xff);
+        return offset + UINT8_LENGTH;
+    }
+
+    public static int writeUint16( byte[] data, int offset, int number ) {
+        data[offset] = (byte) ((number >> 8) & 0xff);
+        data[offset+1] = (byte) (number & 0xff);
+        return offset + UINT16_LENGTH;
+    }
+
+    public static int writeUint24( byte[] data, int offset, long number ) {
+        data[offset] = (byte) ((number >> 16) & 0xff);
+        data[offset+1] = (byte) ((number >> 8) & 0xff);
+        data[offset+2] = (byte) (number & 0xff);
+        return offset + UINT24_LENGTH;
+    }
+
+    public static int writeUint32( byte[] data, int offset, long number ) {
+        data[offset] = (byte) ((number >> 24) & 0xff);
+        data[offset+1] = (byte) ((number >> 16) & 0xff);
+        data[offset+2] = (byte) ((number >> 8) & 0xff);
+        data[offset+3] = (byte) (number & 0xff);
+        return offset + UINT32_LENGTH;
+    }
+
+    public static int writeUint48( byte[] data, int offset, long number ) {
+        data[offset] = (byte) ((number >> 40) & 0xff);
+        data[offset+1] = (byte) ((number >> 32) & 0xff);
+        data[offset+2] = (byte) ((number >> 24) & 0xff);
+        data[offset+3] = (byte) ((number >> 16) & 0xff);
+        data[offset+4] = (byte) ((number >> 8) & 0xff);
+        data[offset+5] = (byte) (number & 0xff);
+        return offset + UINT48_LENGTH;
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -0,0 +1,561 @@
+package dtls;
+
+import dtls.admission.DtlsHandshakeAdmissionController;
+import dtls.admission.DtlsHandshakeAdmissionController.DtlsAdmissionResult;
+import dtls.cookie.DtlsCookieManager;
+import dtls.crypto.DtlsCryptoExecutor;
+import dtls.fsm.definition.DtlsEvent;
+import dtls.fsm.definition.DtlsState;
+import dtls.packet.DtlsPacket;
+import dtls.packet.base.DtlsContentType;
+import dtls.packet.base.DtlsProtocolVersion;
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.packet.recordlayer.DtlsRecordHeader;
+import dtls.packet.recordlayer.DtlsRecordLayer;
+import dtls.type.DtlsClientHello;
+import dtls.type.DtlsHelloVerifyRequest;
+import dtls.type.base.DtlsHandshakeCommonBody;
+import dtls.type.base.DtlsHandshakeType;
+import dtls.unit.DtlsPeerKey;
+import dtls.unit.DtlsUnit;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DtlsHandshakeManagerTest {
+
+    @Test
+    public void peerKeyTest() throws Exception {
+        DtlsPeerKey ipv4Key = DtlsPeerKey.of("127.0.0.1", 5000);
+        Assert.assertNotNull(ipv4Key);
+        Assert.assertTrue(ipv4Key.isIpv4());
+        Assert.assertEquals("127.0.0.1:5000", ipv4Key.toString());
+        Assert.assertEquals(ipv4Key, DtlsPeerKey.of(new InetSocketAddress("127.0.0.1", 5000)));
+        Assert.assertEquals(ipv4Key, DtlsPeerKey.of(0x7F000001, 5000));
+        Assert.assertEquals(ipv4Key.hashCode(), DtlsPeerKey.of(0x7F000001, 5000).hashCode());
+        Assert.assertNotEquals(ipv4Key, DtlsPeerKey.of("127.0.0.1", 5001));
+
+        // IPv4-mapped IPv6 address is the same peer
+        InetAddress mappedAddress = InetAddress.getByAddress(
+                new byte[] { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFF, 127, 0, 0, 1 }
+        );
+        Assert.assertEquals(ipv4Key, DtlsPeerKey.of(mappedAddress, 5000));
+
+        DtlsPeerKey ipv6Key = DtlsPeerKey.of("::1", 5000);
+        Assert.assertNotNull(ipv6Key);
+        Assert.assertFalse(ipv6Key.isIpv4());
+        Assert.assertNotEquals(ipv4Key, ipv6Key);
+        Assert.assertEquals("[0:0:0:0:0:0:0:1]:5000", ipv6Key.toString());
+    }
+
+    @Test
+    public void concurrentAddTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        int threadCount = 8;
+        int keyCount = 1000;
+
+        ConcurrentHashMap<DtlsPeerKey, DtlsUnit> addedUnitMap = new ConcurrentHashMap<>();
+        AtomicInteger errorCount = new AtomicInteger(0);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> threadList = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int port = 0; port < keyCount; port++) {
+                    DtlsPeerKey key = DtlsPeerKey.of(0x0A000001, 10000 + port);
+                    DtlsUnit dtlsUnit = dtlsHandshakeManager.addDtlsUnit(key);
+                    DtlsUnit prevUnit = addedUnitMap.putIfAbsent(key, dtlsUnit);
+                    if ((prevUnit != null && prevUnit != dtlsUnit) // One unit per key
+                            || dtlsUnit != dtlsHandshakeManager.getDtlsUnit(key)) {
+                        errorCount.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threadList.add(thread);
+        }
+        startLatch.countDown();
+        for (Thread thread : threadList) {
+            thread.join();
+        }
+        Assert.assertEquals(0, errorCount.get());
+        Assert.assertEquals(keyCount, addedUnitMap.size());
+
+        for (DtlsPeerKey key : addedUnitMap.keySet()) {
+            dtlsHandshakeManager.deleteDtlsUnit(key);
+            Assert.assertNull(dtlsHandshakeManager.getDtlsUnit(key));
+        }
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        int prevMaxDtlsUnitCount = dtlsHandshakeManager.getMaxDtlsUnitCount();
+        dtlsHandshakeManager.setMaxDtlsUnitCount(32);
+
+        try {
+            /////////////////////////////////////////////////////////
+            // LRU eviction : the table is full, 2 (32 / 16) least recently active units are evicted
+            List<DtlsUnit> dtlsUnitList = new ArrayList<>();
+            for (int port = 0; port < 32; port++) {
+                dtlsUnitList.add(dtlsHandshakeManager.addDtlsUnit(DtlsPeerKey.of(0x0A000002, 20000 + port)));
+            }
+            Thread.sleep(5);
+            for (int i = 0; i < 32; i++) {
+                if (i != 7 && i != 9) {
+                    dtlsUnitList.get(i).touch();
+                }
+            }
+
+            DtlsUnit newDtlsUnit = dtlsHandshakeManager.addDtlsUnit(DtlsPeerKey.of(0x0A000002, 30000));
+            Assert.assertNotNull(newDtlsUnit);
+            Assert.assertEquals(31, dtlsHandshakeManager.getDtlsUnitMapSize());
+            Assert.assertNull(dtlsHandshakeManager.getDtlsUnit(dtlsUnitList.get(7).getPeerKey()));
+            Assert.assertNull(dtlsHandshakeManager.getDtlsUnit(dtlsUnitList.get(9).getPeerKey()));
+            Assert.assertTrue(dtlsUnitList.get(7).isClosed());
+            Assert.assertFalse(dtlsUnitList.get(8).isClosed());
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Idle TTL
+            long nowMs = System.currentTimeMillis();
+            Assert.assertEquals(0, dtlsHandshakeManager.sweepIdleDtlsUnits(nowMs));
+            Assert.assertEquals(31, dtlsHandshakeManager.sweepIdleDtlsUnits(nowMs + dtlsHandshakeManager.getIdleTimeoutMs()));
+            Assert.assertEquals(0, dtlsHandshakeManager.getDtlsUnitMapSize());
+            Assert.assertTrue(newDtlsUnit.isClosed());
+            /////////////////////////////////////////////////////////
+        } finally {
+            dtlsHandshakeManager.setMaxDtlsUnitCount(prevMaxDtlsUnitCount);
+        }
+    }
+
+    @Test
+    public void cookieTest() throws Exception {
+        DtlsCookieManager dtlsCookieManager = new DtlsCookieManager();
+        DtlsPeerKey peerKey = DtlsPeerKey.of("127.0.0.1", 5000);
+        DtlsClientHello dtlsClientHello = DtlsMessageTest.createDtlsClientHelloTest();
+
+        /////////////////////////////////////////////////////////
+        // First ClientHello (no cookie)
+        Assert.assertFalse(dtlsCookieManager.verifyCookie(peerKey, dtlsClientHello));
+
+        byte[] cookie = dtlsCookieManager.generateCookie(peerKey, dtlsClientHello);
+        Assert.assertNotNull(cookie);
+        Assert.assertEquals(DtlsCookieManager.COOKIE_LENGTH, cookie.length);
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // HelloVerifyRequest (record sequence number of the ClientHello)
+        DtlsRecordHeader clientHelloHeader = new DtlsRecordHeader(
+                DtlsContentType.valueOf(DtlsContentType.TLS_TYPE_HANDSHAKE),
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                0, 7, 0
+        );
+        DtlsHandshakeCommonBody clientHelloCommonBody = new DtlsHandshakeCommonBody(
+                DtlsHandshakeType.valueOf(DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO), 0, 0, 0, 0
+        );
+        DtlsPacket helloVerifyRequestPacket = dtlsCookieManager.createHelloVerifyRequest(
+                clientHelloHeader, clientHelloCommonBody, cookie
+        );
+        Assert.assertNotNull(helloVerifyRequestPacket);
+
+        DtlsPacket decodedPacket = new DtlsPacket(helloVerifyRequestPacket.getData());
+        Assert.assertEquals(1, decodedPacket.getDtlsRecordLayerList().size());
+        DtlsRecordLayer decodedRecord = decodedPacket.getDtlsRecordLayerList().get(0);
+        Assert.assertEquals(7, decodedRecord.getDtlsRecordHeader().getSequenceNumber());
+        DtlsHandshake decodedHandshake = (DtlsHandshake) decodedRecord.getDtlsHandshakeFactory();
+        Assert.assertEquals(
+                DtlsHandshakeType.TLS_TYPE_HELLO_VERIFY_REQUEST,
+                decodedHandshake.getDtlsHandshakeCommonBody().getHandshakeType().getType()
+        );
+        DtlsHelloVerifyRequest decodedHelloVerifyRequest = (DtlsHelloVerifyRequest) decodedHandshake.getDtlsFormat();
+        Assert.assertArrayEquals(cookie, decodedHelloVerifyRequest.getCookie());
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // Second ClientHello (echoed cookie)
+        dtlsClientHello.setCookieLength((short) cookie.length);
+        dtlsClientHello.setCookie(cookie);
+        Assert.assertTrue(dtlsCookieManager.verifyCookie(peerKey, dtlsClientHello));
+        Assert.assertFalse(dtlsCookieManager.verifyCookie(DtlsPeerKey.of("127.0.0.1", 5001), dtlsClientHello));
+
+        byte[] modifiedCookie = cookie.clone();
+        modifiedCookie[0] ^= 0x01;
+        dtlsClientHello.setCookie(modifiedCookie);
+        Assert.assertFalse(dtlsCookieManager.verifyCookie(peerKey, dtlsClientHello));
+        dtlsClientHello.setCookie(cookie);
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // Secret rotation : the previous secret is still accepted, not the one before
+        dtlsCookieManager.rotateSecret();
+        Assert.assertTrue(dtlsCookieManager.verifyCookie(peerKey, dtlsClientHello));
+        dtlsCookieManager.rotateSecret();
+        Assert.assertFalse(dtlsCookieManager.verifyCookie(peerKey, dtlsClientHello));
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void fsmTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsPeerKey key = DtlsPeerKey.of(0x0A000003, 40000);
+        DtlsUnit dtlsUnit = dtlsHandshakeManager.addDtlsUnit(key);
+        Assert.assertNotNull(dtlsUnit);
+
+        try {
+            Assert.assertEquals(DtlsState.DTLS_STATE_PREPARING, dtlsUnit.getDtlsState());
+
+            // Not allowed in the current state : no transition
+            Assert.assertFalse(dtlsUnit.fire(DtlsEvent.TIMER_EXPIRES).get());
+            // Fired only on the event loop of the unit
+            Assert.assertFalse(dtlsUnit.fireNow(DtlsEvent.BUFFER_NEXT_FLIGHT));
+            Assert.assertEquals(DtlsState.DTLS_STATE_PREPARING, dtlsUnit.getDtlsState());
+            Assert.assertEquals(DtlsState.DTLS_STATE_PREPARING, dtlsUnit.getDtlsState());
+
+            Assert.assertTrue(dtlsUnit.fire(DtlsEvent.BUFFER_NEXT_FLIGHT).get());
+            Assert.assertEquals(DtlsState.DTLS_STATE_SENDING, dtlsUnit.getDtlsState());
+
+            // SENDING > WAITING : the retransmit timer is set
+            Assert.assertTrue(dtlsUnit.fire(DtlsEvent.SEND_FLIGHT_2).get());
+            Assert.assertEquals(DtlsState.DTLS_STATE_WAITING, dtlsUnit.getDtlsState());
+            Assert.assertTrue(dtlsUnit.isRetransmitTimerActive());
+
+            // WAITING > FINISHED : the retransmit timer is cancelled
+            Assert.assertTrue(dtlsUnit.fire(DtlsEvent.RECEIVE_LAST_FLIGHT).get());
+            Assert.assertEquals(DtlsState.DTLS_STATE_FINISHED, dtlsUnit.getDtlsState());
+            Assert.assertFalse(dtlsUnit.isRetransmitTimerActive());
+
+            // Concurrent events : only one of the same transition is made
+            Assert.assertTrue(dtlsUnit.fire(DtlsEvent.SEND_HELLO_REQUEST).get());
+            AtomicInteger successCount = new AtomicInteger(0);
+            CountDownLatch startLatch = new CountDownLatch(1);
+            List<Thread> threadList = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    try {
+                        if (dtlsUnit.fire(DtlsEvent.BUFFER_NEXT_FLIGHT).get()) {
+                            successCount.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        // Counted as a failure
+                    }
+                });
+                thread.start();
+                threadList.add(thread);
+            }
+            startLatch.countDown();
+            for (Thread thread : threadList) {
+                thread.join();
+            }
+            Assert.assertEquals(1, successCount.get());
+            Assert.assertEquals(DtlsState.DTLS_STATE_SENDING, dtlsUnit.getDtlsState());
+        } finally {
+            dtlsHandshakeManager.deleteDtlsUnit(key);
+        }
+    }
+
+    @Test
+    public void eventLoopTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsPeerKey key = DtlsPeerKey.of(0x0A000004, 50000);
+        DtlsUnit dtlsUnit = dtlsHandshakeManager.addDtlsUnit(key);
+        Assert.assertNotNull(dtlsUnit);
+
+        try {
+            // Pinned by the peer key
+            Assert.assertSame(
+                    dtlsHandshakeManager.getDtlsUnitEventLoopGroup().getEventLoop(key),
+                    dtlsUnit.getEventLoop()
+            );
+            Assert.assertFalse(dtlsUnit.inEventLoop());
+
+            // Events from many threads run one by one on the same thread, in order of submission per thread
+            int threadCount = 4;
+            int taskCount = 1000;
+            List<Thread> loopThreadList = new ArrayList<>();
+            AtomicInteger errorCount = new AtomicInteger(0);
+            int[] lastValues = new int[threadCount];
+            CountDownLatch doneLatch = new CountDownLatch(threadCount * taskCount);
+            List<Thread> threadList = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                int threadIndex = i;
+                Thread thread = new Thread(() -> {
+                    for (int value = 1; value <= taskCount; value++) {
+                        int curValue = value;
+                        dtlsUnit.execute(() -> {
+                            // No lock : the tasks of the unit never run at the same time
+                            if (!dtlsUnit.inEventLoop() || lastValues[threadIndex] != curValue - 1) {
+                                errorCount.incrementAndGet();
+                            }
+                            lastValues[threadIndex] = curValue;
+                            if (loopThreadList.isEmpty()) {
+                                loopThreadList.add(Thread.currentThread());
+                            } else if (loopThreadList.get(0) != Thread.currentThread()) {
+                                errorCount.incrementAndGet();
+                            }
+                            doneLatch.countDown();
+                        });
+                    }
+                });
+                thread.start();
+                threadList.add(thread);
+            }
+            for (Thread thread : threadList) {
+                thread.join();
+            }
+            Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, errorCount.get());
+        } finally {
+            dtlsHandshakeManager.deleteDtlsUnit(key);
+        }
+    }
+
+    @Test
+    public void cryptoTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsPeerKey key = DtlsPeerKey.of(0x0A000006, 40000);
+        DtlsUnit dtlsUnit = dtlsHandshakeManager.addDtlsUnit(key);
+        Assert.assertNotNull(dtlsUnit);
+
+        DtlsCryptoExecutor dtlsCryptoExecutor = new DtlsCryptoExecutor(1, 4);
+        try {
+            /////////////////////////////////////////////////////////
+            // Signature off the event loop, the result comes back on the loop of the unit
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+            keyPairGenerator.initialize(256);
+            KeyPair keyPair = keyPairGenerator.generateKeyPair();
+            byte[] data = "ServerKeyExchange".getBytes();
+
+            byte[] signature = dtlsCryptoExecutor.sign(dtlsUnit, "SHA256withECDSA", keyPair.getPrivate(), data, true)
+                    .get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(dtlsCryptoExecutor.verify(dtlsUnit, "SHA256withECDSA", keyPair.getPublic(), data, signature, false)
+                    .get(5, TimeUnit.SECONDS));
+
+            CountDownLatch blockLatch = new CountDownLatch(1);
+            CompletableFuture<Integer> blockedFuture = dtlsCryptoExecutor.submit(dtlsUnit, () -> {
+                blockLatch.await();
+                return 1;
+            }, false);
+            CompletableFuture<Boolean> inEventLoopFuture = blockedFuture.thenApply(result -> dtlsUnit.inEventLoop());
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Backpressure : the worker is blocked, the queue (4) is filled up
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dtlsCryptoExecutor.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            for (int i = 0; i < 3; i++) {
+                Assert.assertFalse(dtlsCryptoExecutor.submit(null, () -> 0, true).isDone());
+            }
+            Assert.assertFalse(dtlsCryptoExecutor.isAcceptingNewHandshakes());
+
+            // New handshake is shed first, in-progress one still goes in
+            assertRejected(dtlsCryptoExecutor.submit(null, () -> 0, true));
+            Assert.assertFalse(dtlsCryptoExecutor.submit(null, () -> 0, false).isDone());
+            // Full
+            assertRejected(dtlsCryptoExecutor.submit(null, () -> 0, false));
+            Assert.assertEquals(1, dtlsCryptoExecutor.getShedCount());
+            Assert.assertEquals(1, dtlsCryptoExecutor.getRejectedCount());
+
+            blockLatch.countDown();
+            Assert.assertTrue(inEventLoopFuture.get(5, TimeUnit.SECONDS));
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // The loop of the unit is shut down : the hop runs inline, the future still completes
+            DefaultEventExecutor closedEventLoop = new DefaultEventExecutor();
+            closedEventLoop.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).await(5, TimeUnit.SECONDS);
+            DtlsUnit closedDtlsUnit = new DtlsUnit(
+                    DtlsPeerKey.of(0x0A000007, 40000), dtlsHandshakeManager.getDtlsFsmManager(), closedEventLoop
+            );
+            Assert.assertFalse(closedDtlsUnit.execute(() -> {}));
+            Assert.assertEquals(Integer.valueOf(7), dtlsCryptoExecutor.submit(closedDtlsUnit, () -> 7, false).get(5, TimeUnit.SECONDS));
+            /////////////////////////////////////////////////////////
+        } finally {
+            dtlsCryptoExecutor.stop();
+            dtlsHandshakeManager.deleteDtlsUnit(key);
+        }
+    }
+
+    @Test
+    public void cryptoEventTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsPeerKey doneKey = DtlsPeerKey.of(0x0A000008, 40000);
+        DtlsPeerKey failedKey = DtlsPeerKey.of(0x0A000009, 40000);
+        DtlsPeerKey shedKey = DtlsPeerKey.of(0x0A00000A, 40000);
+        DtlsUnit doneUnit = dtlsHandshakeManager.addDtlsUnit(doneKey);
+        DtlsUnit failedUnit = dtlsHandshakeManager.addDtlsUnit(failedKey);
+        DtlsUnit shedUnit = dtlsHandshakeManager.addDtlsUnit(shedKey);
+        Assert.assertNotNull(doneUnit);
+        Assert.assertNotNull(failedUnit);
+        Assert.assertNotNull(shedUnit);
+
+        DtlsCryptoExecutor dtlsCryptoExecutor = new DtlsCryptoExecutor(1, 4);
+        try {
+            /////////////////////////////////////////////////////////
+            // Done : the result is taken on the loop of the unit, then the follow-up event is fired there
+            Assert.assertTrue(doneUnit.fire(DtlsEvent.BUFFER_NEXT_FLIGHT).get(5, TimeUnit.SECONDS));
+            AtomicInteger resultOnEventLoop = new AtomicInteger(0);
+            Assert.assertEquals(Integer.valueOf(1), dtlsCryptoExecutor.submit(doneUnit, () -> 1, true, result -> {
+                if (doneUnit.inEventLoop()) {
+                    resultOnEventLoop.set(result);
+                }
+            }, DtlsEvent.SEND_FLIGHT_1).get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, resultOnEventLoop.get());
+            Assert.assertEquals(DtlsState.DTLS_STATE_FINISHED, doneUnit.getDtlsState());
+            Assert.assertSame(doneUnit, dtlsHandshakeManager.getDtlsUnit(doneKey));
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Failed : no event, the unit is removed
+            Assert.assertTrue(failedUnit.fire(DtlsEvent.BUFFER_NEXT_FLIGHT).get(5, TimeUnit.SECONDS));
+            assertFailed(dtlsCryptoExecutor.submit(failedUnit, () -> {
+                throw new IllegalStateException("failed");
+            }, false, null, DtlsEvent.SEND_FLIGHT_1));
+            Assert.assertEquals(DtlsState.DTLS_STATE_SENDING, failedUnit.getDtlsState());
+            Assert.assertTrue(failedUnit.isClosed());
+            Assert.assertNull(dtlsHandshakeManager.getDtlsUnit(failedKey));
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Shed : the worker is blocked and the queue is over the shed threshold (3), the unit is removed
+            CountDownLatch blockLatch = new CountDownLatch(1);
+            dtlsCryptoExecutor.submit(null, () -> {
+                blockLatch.await();
+                return 0;
+            }, false);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dtlsCryptoExecutor.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            for (int i = 0; i < 3; i++) {
+                dtlsCryptoExecutor.submit(null, () -> 0, false);
+            }
+
+            Assert.assertTrue(shedUnit.fire(DtlsEvent.BUFFER_NEXT_FLIGHT).get(5, TimeUnit.SECONDS));
+            assertRejected(dtlsCryptoExecutor.submit(shedUnit, () -> 1, true, null, DtlsEvent.SEND_FLIGHT_1));
+            Assert.assertEquals(1, dtlsCryptoExecutor.getShedCount());
+            Assert.assertTrue(shedUnit.isClosed());
+            Assert.assertNull(dtlsHandshakeManager.getDtlsUnit(shedKey));
+            blockLatch.countDown();
+            /////////////////////////////////////////////////////////
+        } finally {
+            dtlsCryptoExecutor.stop();
+            dtlsHandshakeManager.deleteDtlsUnit(doneKey);
+            dtlsHandshakeManager.deleteDtlsUnit(failedKey);
+            dtlsHandshakeManager.deleteDtlsUnit(shedKey);
+        }
+    }
+
+    @Test
+    public void admissionTest() throws Exception {
+        /////////////////////////////////////////////////////////
+        // 10 per second, burst of 2, 4 in progress (1 kept for the resumptions)
+        DtlsHandshakeAdmissionController controller = new DtlsHandshakeAdmissionController(10, 2, 4);
+        long now = System.nanoTime();
+        Assert.assertEquals(1, controller.getReservedForResumption());
+
+        Assert.assertEquals(DtlsAdmissionResult.ADMITTED, controller.tryAdmit(false, now));
+        Assert.assertEquals(DtlsAdmissionResult.ADMITTED, controller.tryAdmit(false, now));
+        Assert.assertEquals(DtlsAdmissionResult.RATE_LIMITED, controller.tryAdmit(false, now));
+        // Refilled after one interval (100ms)
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        Assert.assertEquals(DtlsAdmissionResult.ADMITTED, controller.tryAdmit(false, now));
+        Assert.assertEquals(3, controller.getInProgressCount());
+
+        // The full handshakes can not take the reserved slot, the resumptions can (no token)
+        now += TimeUnit.SECONDS.toNanos(1);
+        Assert.assertEquals(DtlsAdmissionResult.CONCURRENCY_LIMITED, controller.tryAdmit(false, now));
+        Assert.assertEquals(DtlsAdmissionResult.ADMITTED, controller.tryAdmit(true, now));
+        Assert.assertEquals(DtlsAdmissionResult.CONCURRENCY_LIMITED, controller.tryAdmit(true, now));
+        Assert.assertEquals(1, controller.getRateLimitedCount());
+        Assert.assertEquals(2, controller.getConcurrencyLimitedCount());
+
+        // 2 finished : one slot for the full handshakes again
+        controller.release();
+        controller.release();
+        Assert.assertEquals(DtlsAdmissionResult.ADMITTED, controller.tryAdmit(false, now));
+        Assert.assertEquals(DtlsAdmissionResult.CONCURRENCY_LIMITED, controller.tryAdmit(false, now));
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // The unit holds the slot until the handshake is finished or the unit is removed
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsHandshakeAdmissionController managerController = dtlsHandshakeManager.getDtlsHandshakeAdmissionController();
+        DtlsPeerKey key1 = DtlsPeerKey.of(0x0A000007, 40000);
+        DtlsPeerKey key2 = DtlsPeerKey.of(0x0A000007, 40001);
+        int inProgressCount = managerController.getInProgressCount();
+        try {
+            DtlsUnit dtlsUnit1 = dtlsHandshakeManager.admitDtlsUnit(key1, false);
+            DtlsUnit dtlsUnit2 = dtlsHandshakeManager.admitDtlsUnit(key2, true);
+            Assert.assertNotNull(dtlsUnit1);
+            Assert.assertNotNull(dtlsUnit2);
+            Assert.assertTrue(dtlsUnit1.isAdmitted());
+            Assert.assertEquals(inProgressCount + 2, managerController.getInProgressCount());
+
+            // Same peer again : no second slot
+            Assert.assertSame(dtlsUnit1, dtlsHandshakeManager.admitDtlsUnit(key1, false));
+            Assert.assertEquals(inProgressCount + 2, managerController.getInProgressCount());
+
+            // Client : PREPARING > SENDING > FINISHED
+            Assert.assertTrue(dtlsUnit1.fire(DtlsEvent.BUFFER_NEXT_FLIGHT).get());
+            Assert.assertTrue(dtlsUnit1.fire(DtlsEvent.SEND_FLIGHT_1).get());
+            Assert.assertFalse(dtlsUnit1.isAdmitted());
+            Assert.assertEquals(inProgressCount + 1, managerController.getInProgressCount());
+
+            dtlsHandshakeManager.deleteDtlsUnit(key2);
+            Assert.assertFalse(dtlsUnit2.isAdmitted());
+            Assert.assertEquals(inProgressCount, managerController.getInProgressCount());
+        } finally {
+            dtlsHandshakeManager.deleteDtlsUnit(key1);
+            dtlsHandshakeManager.deleteDtlsUnit(key2);
+        }
+        Assert.assertEquals(inProgressCount, managerController.getInProgressCount());
+        /////////////////////////////////////////////////////////
+    }
+
+    private static void assertFailed(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static void assertRejected(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+}
@@ -5,20 +5,29 @@ import dtls.cipher.DtlsCipherSuite;
 import dtls.cipher.DtlsCipherSuiteList;
 import dtls.cipher.DtlsCipherSuiteType;
 import dtls.compression.DtlsCompressionMethodType;
+import dtls.fragment.DtlsHandshakeFragmenter;
+import dtls.fragment.DtlsHandshakeReassembler;
+import dtls.packet.DtlsFlightPacker;
 import dtls.packet.DtlsPacket;
 import dtls.packet.base.DtlsContentType;
 import dtls.packet.base.DtlsProtocolVersion;
 import dtls.packet.handshake.DtlsEncryptedHandShake;
 import dtls.packet.handshake.DtlsHandshake;
 import dtls.packet.recordlayer.DtlsRecordHeader;
+import dtls.packet.recordlayer.DtlsRecordHeaderView;
 import dtls.packet.recordlayer.DtlsRecordLayer;
 import dtls.packet.recordlayer.message.DtlsApplicationData;
 import dtls.packet.recordlayer.message.DtlsChangeCipherSpec;
+import dtls.replay.DtlsReplayWindow;
+import dtls.ticket.TlsSessionTicket;
 import dtls.type.*;
 import dtls.type.base.DtlsFormat;
 import dtls.type.base.DtlsHandshakeCommonBody;
 import dtls.type.base.DtlsHandshakeType;
 import dtls.type.base.DtlsRandom;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -26,12 +35,16 @@ import org.slf4j.LoggerFactory;
 import util.module.ByteUtil;
 
 import java.io.FileInputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DtlsMessageTest {
 
@@ -147,6 +160,434 @@ public class DtlsMessageTest {
         /////////////////////////////////////////////////////////
     }
 
+    @Test
+    public void byteBufDecodeTest() {
+        /////////////////////////////////////////////////////////
+        // DtlsPacket (Handshake + Encrypted handshake) > byte[]
+        DtlsClientHello dtlsClientHello = createDtlsClientHelloTest();
+        DtlsHandshake dtlsHandshake = createDtlsHandshakeByObjectTest(
+                createDtlsCommonBodyTest(
+                        new DtlsHandshakeType(DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO),
+                        dtlsClientHello.getData().length
+                ),
+                dtlsClientHello
+        );
+        DtlsEncryptedHandShake dtlsEncryptedHandShake = createDtlsEncryptedHandshakeTest();
+
+        List<DtlsRecordLayer> dtlsRecordLayerList = new ArrayList<>();
+        dtlsRecordLayerList.add(new DtlsRecordLayer(
+                createDtlsRecordHeaderTest(DtlsContentType.TLS_TYPE_HANDSHAKE, dtlsHandshake.getData().length),
+                dtlsHandshake
+        ));
+        dtlsRecordLayerList.add(new DtlsRecordLayer(
+                new DtlsRecordHeader(
+                        new DtlsContentType(DtlsContentType.TLS_TYPE_HANDSHAKE),
+                        new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_0),
+                        1, 0x0000123456789AL,
+                        dtlsEncryptedHandShake.getData().length
+                ),
+                dtlsEncryptedHandShake
+        ));
+        byte[] dtlsPacketData = createDtlsPacketTest(dtlsRecordLayerList).getData();
+        Assert.assertNotNull(dtlsPacketData);
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // ByteBuf > DtlsPacket
+        ByteBuf buf = Unpooled.wrappedBuffer(dtlsPacketData);
+        DtlsPacket dtlsPacket = new DtlsPacket(buf);
+        Assert.assertEquals(dtlsPacketData.length, dtlsPacket.getLength());
+        Assert.assertEquals(2, dtlsPacket.getDtlsRecordLayerList().size());
+        Assert.assertEquals(0x0000123456789AL, dtlsPacket.getDtlsRecordLayerList().get(1).getDtlsRecordHeader().getSequenceNumber());
+        Assert.assertArrayEquals(dtlsPacketData, dtlsPacket.getData());
+        Assert.assertArrayEquals(dtlsPacketData, new DtlsPacket(dtlsPacketData).getData());
+
+        // Handshake body is parsed lazily from the retained slice
+        DtlsHandshake decodedDtlsHandshake = (DtlsHandshake) dtlsPacket.getDtlsRecordLayerList().get(0).getDtlsHandshakeFactory();
+        Assert.assertFalse(decodedDtlsHandshake.isDtlsFormatParsed());
+        Assert.assertEquals(DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO, decodedDtlsHandshake.getDtlsHandshakeCommonBody().getHandshakeType().getType());
+        Assert.assertEquals(3, buf.refCnt());
+        Assert.assertTrue(decodedDtlsHandshake.getDtlsFormat() instanceof DtlsClientHello);
+        Assert.assertTrue(decodedDtlsHandshake.isDtlsFormatParsed());
+        Assert.assertArrayEquals(dtlsPacketData, dtlsPacket.getData());
+
+        // Retained slices are returned to the datagram buffer
+        Assert.assertEquals(2, buf.refCnt());
+        dtlsPacket.release();
+        Assert.assertEquals(1, buf.refCnt());
+        buf.release();
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void encodeTest() {
+        /////////////////////////////////////////////////////////
+        // DtlsFormat > encodeTo == getData
+        byte[] ticket = new byte[160];
+        for (int i = 0; i < ticket.length; i++) { ticket[i] = (byte) i; }
+
+        List<DtlsFormat> dtlsFormatList = new ArrayList<>();
+        dtlsFormatList.add(createDtlsClientHelloTest());
+        dtlsFormatList.add(createDtlsHelloVerifyRequestTest());
+        dtlsFormatList.add(createDtlsServerHelloTest());
+        dtlsFormatList.add(new DtlsCertificate(3 + 4, new Certificates(4, new byte[] { 0x30, 0x01, 0x02, 0x03 })));
+        dtlsFormatList.add(createDtlsServerKeyExchangeTest());
+        dtlsFormatList.add(createDtlsServerHelloDoneTest());
+        dtlsFormatList.add(createDtlsClientKeyExchangeTest());
+        dtlsFormatList.add(new DtlsNewSessionTicket(new TlsSessionTicket(7200, ticket.length, ticket)));
+        dtlsFormatList.add(createDtlsFinishedTest());
+
+        List<DtlsRecordLayer> dtlsRecordLayerList = new ArrayList<>();
+        for (DtlsFormat dtlsFormat : dtlsFormatList) {
+            byte[] formatData = dtlsFormat.getData();
+            int formatLength = formatData == null ? 0 : formatData.length;
+            Assert.assertEquals(formatLength, dtlsFormat.encodedLength());
+
+            ByteBuf formatBuf = Unpooled.buffer(formatLength);
+            dtlsFormat.encodeTo(formatBuf);
+            Assert.assertEquals(formatLength, formatBuf.readableBytes());
+            if (formatData != null) {
+                Assert.assertArrayEquals(formatData, formatBuf.array());
+            }
+
+            DtlsHandshake dtlsHandshake = createDtlsHandshakeByObjectTest(
+                    createDtlsCommonBodyTest(new DtlsHandshakeType(DtlsHandshakeType.TLS_TYPE_FINISHED), formatLength),
+                    dtlsFormat
+            );
+            dtlsRecordLayerList.add(new DtlsRecordLayer(
+                    createDtlsRecordHeaderTest(DtlsContentType.TLS_TYPE_HANDSHAKE, dtlsHandshake.encodedLength()),
+                    dtlsHandshake
+            ));
+        }
+        dtlsRecordLayerList.add(new DtlsRecordLayer(
+                createDtlsRecordHeaderTest(DtlsContentType.TLS_TYPE_CHANGE_CIPHER_SPEC, 1),
+                createDtlsChangeCipherSpecTest()
+        ));
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // DtlsPacket > one pre-sized buffer
+        DtlsPacket dtlsPacket = createDtlsPacketTest(dtlsRecordLayerList);
+        byte[] dtlsPacketData = dtlsPacket.getData();
+        Assert.assertNotNull(dtlsPacketData);
+        Assert.assertEquals(dtlsPacket.getLength(), dtlsPacket.encodedLength());
+        Assert.assertEquals(dtlsPacketData.length, dtlsPacket.encodedLength());
+
+        ByteBuf buf = dtlsPacket.encode(PooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(dtlsPacketData.length, buf.readableBytes());
+        Assert.assertEquals(buf.capacity(), buf.writerIndex());
+        byte[] encodedData = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), encodedData);
+        Assert.assertArrayEquals(dtlsPacketData, encodedData);
+        buf.release();
+
+        int offset = 5;
+        ByteBuffer byteBuffer = ByteBuffer.allocate(offset + dtlsPacketData.length);
+        Assert.assertEquals(byteBuffer.capacity(), dtlsPacket.encodeTo(byteBuffer, offset));
+        Assert.assertEquals(0, byteBuffer.position());
+        byte[] byteBufferData = new byte[dtlsPacketData.length];
+        System.arraycopy(byteBuffer.array(), offset, byteBufferData, 0, byteBufferData.length);
+        Assert.assertArrayEquals(dtlsPacketData, byteBufferData);
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void fixedWidthFieldTest() {
+        /////////////////////////////////////////////////////////
+        // DtlsRecordHeader (uint8 / uint16 / uint48)
+        DtlsRecordHeader dtlsRecordHeader = new DtlsRecordHeader(
+                new DtlsContentType(DtlsContentType.TLS_TYPE_APPLICATION_DATA),
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                0xFFFF, 0xFFFFFFFFFFFFL, 0xFEDC
+        );
+        byte[] dtlsRecordHeaderData = dtlsRecordHeader.getData();
+        DtlsRecordHeader decodedDtlsRecordHeader = new DtlsRecordHeader(dtlsRecordHeaderData);
+        Assert.assertEquals(DtlsContentType.TLS_TYPE_APPLICATION_DATA, decodedDtlsRecordHeader.getContentType().getType());
+        Assert.assertArrayEquals(DtlsProtocolVersion.DTLS_1_2, decodedDtlsRecordHeader.getProtocolVersion().getVersion());
+        Assert.assertEquals(0xFFFF, decodedDtlsRecordHeader.getEpoch());
+        Assert.assertEquals(0xFFFFFFFFFFFFL, decodedDtlsRecordHeader.getSequenceNumber());
+        Assert.assertEquals(0xFEDC, decodedDtlsRecordHeader.getLength());
+        Assert.assertArrayEquals(dtlsRecordHeaderData, decodedDtlsRecordHeader.getData());
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // DtlsHandshakeCommonBody (uint8 / uint24 / uint16)
+        DtlsHandshakeCommonBody dtlsHandshakeCommonBody = new DtlsHandshakeCommonBody(
+                new DtlsHandshakeType(DtlsHandshakeType.TLS_TYPE_MESSAGE_HASH),
+                0xFFFFFF, 0xABCD, 0x123456, 0xFEDCBA
+        );
+        byte[] dtlsHandshakeCommonBodyData = dtlsHandshakeCommonBody.getData();
+        DtlsHandshakeCommonBody decodedDtlsHandshakeCommonBody = new DtlsHandshakeCommonBody(dtlsHandshakeCommonBodyData);
+        Assert.assertEquals(DtlsHandshakeType.TLS_TYPE_MESSAGE_HASH, decodedDtlsHandshakeCommonBody.getHandshakeType().getType());
+        Assert.assertEquals(0xFFFFFF, decodedDtlsHandshakeCommonBody.getLength());
+        Assert.assertEquals(0xABCD, decodedDtlsHandshakeCommonBody.getMessageSequence());
+        Assert.assertEquals(0x123456, decodedDtlsHandshakeCommonBody.getFragmentOffset());
+        Assert.assertEquals(0xFEDCBA, decodedDtlsHandshakeCommonBody.getFragmentLength());
+        Assert.assertArrayEquals(dtlsHandshakeCommonBodyData, decodedDtlsHandshakeCommonBody.getData());
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void recordHeaderViewTest() {
+        DtlsRecordHeader firstRecordHeader = new DtlsRecordHeader(
+                new DtlsContentType(DtlsContentType.TLS_TYPE_HANDSHAKE),
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                0, 1, 1
+        );
+        DtlsRecordHeader secondRecordHeader = new DtlsRecordHeader(
+                new DtlsContentType(DtlsContentType.TLS_TYPE_APPLICATION_DATA),
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                2, 0x0000123456789AL, 3
+        );
+
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(0xFF); // Not a part of the record
+        buf.writeBytes(firstRecordHeader.getData()).writeByte(0x01);
+        buf.writeBytes(secondRecordHeader.getData()).writeBytes(new byte[] { 0x01, 0x02 }); // Truncated
+        buf.readerIndex(1);
+
+        DtlsRecordHeaderView dtlsRecordHeaderView = new DtlsRecordHeaderView().wrap(buf, buf.readerIndex());
+        Assert.assertTrue(dtlsRecordHeaderView.isComplete());
+        Assert.assertTrue(dtlsRecordHeaderView.isKnownContentType());
+        Assert.assertFalse(dtlsRecordHeaderView.isEncrypted());
+        Assert.assertEquals(DtlsContentType.TLS_TYPE_HANDSHAKE, dtlsRecordHeaderView.getContentType());
+        Assert.assertEquals(1, dtlsRecordHeaderView.getSequenceNumber());
+        Assert.assertArrayEquals(firstRecordHeader.getData(), dtlsRecordHeaderView.toDtlsRecordHeader().getData());
+
+        dtlsRecordHeaderView.wrap(buf, dtlsRecordHeaderView.getNextIndex());
+        Assert.assertTrue(dtlsRecordHeaderView.isReadable());
+        Assert.assertFalse(dtlsRecordHeaderView.isComplete());
+        Assert.assertTrue(dtlsRecordHeaderView.isEncrypted());
+        Assert.assertEquals(2, dtlsRecordHeaderView.getEpoch());
+        Assert.assertEquals(0x0000123456789AL, dtlsRecordHeaderView.getSequenceNumber());
+        Assert.assertEquals(3, dtlsRecordHeaderView.getLength());
+        Assert.assertArrayEquals(secondRecordHeader.getData(), dtlsRecordHeaderView.toDtlsRecordHeader().getData());
+
+        buf.release();
+    }
+
+    @Test
+    public void replayWindowTest() {
+        DtlsReplayWindow dtlsReplayWindow = new DtlsReplayWindow();
+
+        /////////////////////////////////////////////////////////
+        // Epoch 0 : verified records slide the window (new, duplicate, reordered, too old)
+        Assert.assertTrue(dtlsReplayWindow.markVerified(0, 0));
+        Assert.assertFalse(dtlsReplayWindow.markVerified(0, 0));
+        Assert.assertTrue(dtlsReplayWindow.markVerified(0, 5));
+        Assert.assertTrue(dtlsReplayWindow.markVerified(0, 3));
+        Assert.assertFalse(dtlsReplayWindow.markVerified(0, 3));
+        Assert.assertTrue(dtlsReplayWindow.markVerified(0, 100));
+        Assert.assertTrue(dtlsReplayWindow.isReplayed(0, 100 - DtlsReplayWindow.WINDOW_SIZE));
+        Assert.assertFalse(dtlsReplayWindow.markVerified(0, 100 - DtlsReplayWindow.WINDOW_SIZE));
+        Assert.assertFalse(dtlsReplayWindow.isReplayed(0, 100 - DtlsReplayWindow.WINDOW_SIZE + 1));
+        Assert.assertTrue(dtlsReplayWindow.markVerified(0, 100 - DtlsReplayWindow.WINDOW_SIZE + 1));
+        Assert.assertEquals(3, dtlsReplayWindow.getReplayedCount());
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // Epoch 0 has no MAC : a new record is marked (and slides the window) as soon as it is checked
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(0, 99));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(0, 99));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(0, 100));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(0, 100 - DtlsReplayWindow.WINDOW_SIZE));
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(0, 101));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(0, 101));
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(0, 98));
+        Assert.assertEquals(7, dtlsReplayWindow.getReplayedCount());
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // Unverified records never open an epoch : the next one is passed, the others are discarded
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(1, 0));
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(1, 0));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(2, 0));
+        Assert.assertFalse(dtlsReplayWindow.markVerified(1, 0));
+        Assert.assertEquals(0, dtlsReplayWindow.getCurrentEpoch());
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(0, 97));
+
+        // Epoch 1 is opened by the handshake layer, its records are marked only once they are accepted
+        Assert.assertFalse(dtlsReplayWindow.openEpoch(2));
+        Assert.assertTrue(dtlsReplayWindow.openEpoch(1));
+        Assert.assertEquals(1, dtlsReplayWindow.getCurrentEpoch());
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(1, 0));
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(1, 0));
+        Assert.assertTrue(dtlsReplayWindow.markVerified(1, 0));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(1, 0));
+
+        // A spoofed far sequence number is passed unmarked, the real records behind it are still accepted
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(1, 0xFFFFFFFFFFFFL));
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(1, 1));
+        Assert.assertTrue(dtlsReplayWindow.markVerified(1, 1));
+
+        // Epoch 0 is still accepted, epoch 3 is not
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(0, 102));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(3, 0));
+
+        // Epoch 2 replaces epoch 0
+        Assert.assertTrue(dtlsReplayWindow.openEpoch(2));
+        Assert.assertTrue(dtlsReplayWindow.markVerified(2, 0));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(0, 103));
+        Assert.assertTrue(dtlsReplayWindow.markVerified(1, 2));
+        Assert.assertEquals(12, dtlsReplayWindow.getReplayedCount());
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // Fed from the header view
+        dtlsReplayWindow.reset();
+        DtlsRecordHeader dtlsRecordHeader = new DtlsRecordHeader(
+                new DtlsContentType(DtlsContentType.TLS_TYPE_HANDSHAKE),
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                0, 7, 0
+        );
+        ByteBuf buf = Unpooled.wrappedBuffer(dtlsRecordHeader.getData());
+        DtlsRecordHeaderView dtlsRecordHeaderView = new DtlsRecordHeaderView().wrap(buf, buf.readerIndex());
+        Assert.assertTrue(dtlsReplayWindow.checkAndUpdate(dtlsRecordHeaderView));
+        Assert.assertFalse(dtlsReplayWindow.checkAndUpdate(dtlsRecordHeaderView));
+        buf.release();
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void fragmentTest() {
+        /////////////////////////////////////////////////////////
+        // Fragmenter : 3000 bytes Certificate > 500 bytes MTU
+        byte[] certificateBody = new byte[3000];
+        new Random(7).nextBytes(certificateBody);
+        DtlsHandshake certificateHandshake = new DtlsHandshake(
+                new DtlsHandshakeCommonBody(
+                        new DtlsHandshakeType(DtlsHandshakeType.TLS_TYPE_CERTIFICATE),
+                        certificateBody.length, 1, 0, certificateBody.length
+                ),
+                certificateBody
+        );
+
+        DtlsHandshakeFragmenter dtlsHandshakeFragmenter = new DtlsHandshakeFragmenter(500);
+        List<DtlsHandshake> fragments = dtlsHandshakeFragmenter.fragment(certificateHandshake);
+        Assert.assertEquals(7, fragments.size());
+        for (DtlsHandshake fragment : fragments) {
+            Assert.assertTrue(fragment.isFragment());
+            Assert.assertTrue(DtlsRecordHeader.LENGTH + fragment.encodedLength() <= dtlsHandshakeFragmenter.getMtu());
+            Assert.assertEquals(1, fragment.getDtlsHandshakeCommonBody().getMessageSequence());
+        }
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // Reassembler : ServerHello (seq 0) after the shuffled & duplicated Certificate fragments (seq 1)
+        List<DtlsHandshake> receivedList = new ArrayList<>();
+        for (DtlsHandshake fragment : fragments) {
+            receivedList.add(new DtlsHandshake(fragment.getData()));
+        }
+        receivedList.add(new DtlsHandshake(fragments.get(3).getData()));
+        Collections.shuffle(receivedList, new Random(11));
+
+        DtlsHandshakeReassembler dtlsHandshakeReassembler = new DtlsHandshakeReassembler();
+        for (DtlsHandshake received : receivedList) {
+            Assert.assertTrue(dtlsHandshakeReassembler.add(received).isEmpty());
+        }
+        Assert.assertEquals(certificateBody.length, dtlsHandshakeReassembler.getBufferedBytes());
+
+        DtlsHandshake serverHelloHandshake = new DtlsHandshake(
+                new DtlsHandshakeCommonBody(
+                        new DtlsHandshakeType(DtlsHandshakeType.TLS_TYPE_SERVER_HELLO),
+                        4, 0, 0, 4
+                ),
+                new byte[] { 0x01, 0x02, 0x03, 0x04 }
+        );
+        List<DtlsHandshake> deliveredList = dtlsHandshakeReassembler.add(serverHelloHandshake);
+        Assert.assertEquals(2, deliveredList.size());
+        Assert.assertSame(serverHelloHandshake, deliveredList.get(0));
+        Assert.assertFalse(deliveredList.get(1).isFragment());
+        Assert.assertArrayEquals(certificateHandshake.getData(), deliveredList.get(1).getData());
+        Assert.assertEquals(2, dtlsHandshakeReassembler.getNextReceiveSequence());
+        Assert.assertEquals(0, dtlsHandshakeReassembler.getBufferedBytes());
+
+        // Retransmitted fragment of a delivered message
+        Assert.assertTrue(dtlsHandshakeReassembler.add(receivedList.get(0)).isEmpty());
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // Memory cap : the furthest message is evicted, a message over the cap is dropped
+        DtlsHandshakeReassembler cappedReassembler = new DtlsHandshakeReassembler(4000, 4000, 8);
+        cappedReassembler.add(fragments.get(1)); // seq 1
+        Assert.assertEquals(3000, cappedReassembler.getBufferedBytes());
+
+        DtlsHandshakeFragmenter smallFragmenter = new DtlsHandshakeFragmenter(1000);
+        DtlsHandshake nearHandshake = new DtlsHandshake(
+                new DtlsHandshakeCommonBody(
+                        new DtlsHandshakeType(DtlsHandshakeType.TLS_TYPE_SERVER_HELLO),
+                        2000, 0, 0, 2000
+                ),
+                new byte[2000]
+        );
+        cappedReassembler.add(smallFragmenter.fragment(nearHandshake).get(0)); // seq 0, evicts seq 1
+        Assert.assertEquals(2000, cappedReassembler.getBufferedBytes());
+        Assert.assertEquals(1, cappedReassembler.getBufferedMessageCount());
+
+        cappedReassembler.add(fragments.get(2)); // seq 1 does not fit anymore
+        Assert.assertEquals(2000, cappedReassembler.getBufferedBytes());
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void flightPackTest() {
+        /////////////////////////////////////////////////////////
+        // Server flight : ServerHello (70) + Certificate (3000) + ServerKeyExchange (300) + ServerHelloDone (0)
+        byte[] certificateBody = new byte[3000];
+        new Random(3).nextBytes(certificateBody);
+
+        List<DtlsRecordLayer> flight = new ArrayList<>();
+        flight.add(createRawHandshakeRecord(DtlsHandshakeType.TLS_TYPE_SERVER_HELLO, 1, new byte[70]));
+        flight.add(createRawHandshakeRecord(DtlsHandshakeType.TLS_TYPE_CERTIFICATE, 2, certificateBody));
+        flight.add(createRawHandshakeRecord(DtlsHandshakeType.TLS_TYPE_SERVER_KEY_EXCHANGE, 3, new byte[300]));
+        DtlsServerHelloDone dtlsServerHelloDone = new DtlsServerHelloDone();
+        DtlsHandshake serverHelloDoneHandshake = new DtlsHandshake(
+                new DtlsHandshakeCommonBody(new DtlsHandshakeType(DtlsHandshakeType.TLS_TYPE_SERVER_HELLO_DONE), 0, 4, 0, 0),
+                dtlsServerHelloDone
+        );
+        flight.add(new DtlsRecordLayer(createDtlsRecordHeaderTest(DtlsContentType.TLS_TYPE_HANDSHAKE, 0), serverHelloDoneHandshake));
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // 4 records (one per send) > 3 datagrams of 1200 bytes at most
+        DtlsFlightPacker dtlsFlightPacker = new DtlsFlightPacker(1200);
+        AtomicLong sequenceNumber = new AtomicLong(100);
+        List<DtlsPacket> dtlsPacketList = dtlsFlightPacker.pack(flight, sequenceNumber::getAndIncrement);
+        Assert.assertEquals(3, dtlsPacketList.size());
+
+        long expectedSequenceNumber = 100;
+        DtlsHandshakeReassembler dtlsHandshakeReassembler = new DtlsHandshakeReassembler();
+        dtlsHandshakeReassembler.reset(1);
+        List<DtlsHandshake> deliveredList = new ArrayList<>();
+        for (DtlsPacket dtlsPacket : dtlsPacketList) {
+            byte[] datagram = dtlsPacket.getData();
+            Assert.assertTrue(datagram.length <= 1200);
+
+            DtlsPacket receivedPacket = new DtlsPacket(datagram);
+            for (DtlsRecordLayer dtlsRecordLayer : receivedPacket.getDtlsRecordLayerList()) {
+                Assert.assertEquals(expectedSequenceNumber++, dtlsRecordLayer.getDtlsRecordHeader().getSequenceNumber());
+                deliveredList.addAll(dtlsHandshakeReassembler.add((DtlsHandshake) dtlsRecordLayer.getDtlsHandshakeFactory()));
+            }
+        }
+        Assert.assertEquals(1200, dtlsPacketList.get(0).encodedLength()); // ServerHello + the first Certificate fragment
+
+        Assert.assertEquals(4, deliveredList.size());
+        Assert.assertArrayEquals(flight.get(1).getDtlsHandshakeFactory().getData(), deliveredList.get(1).getData());
+        Assert.assertEquals(5, dtlsHandshakeReassembler.getNextReceiveSequence());
+        /////////////////////////////////////////////////////////
+    }
+
+    private static DtlsRecordLayer createRawHandshakeRecord(int handshakeType, int messageSequence, byte[] body) {
+        DtlsHandshake dtlsHandshake = new DtlsHandshake(
+                new DtlsHandshakeCommonBody(new DtlsHandshakeType(handshakeType), body.length, messageSequence, 0, body.length),
+                body
+        );
+        return new DtlsRecordLayer(
+                createDtlsRecordHeaderTest(DtlsContentType.TLS_TYPE_HANDSHAKE, dtlsHandshake.encodedLength()),
+                dtlsHandshake
+        );
+    }
+
     public static DtlsRecordHeader createDtlsRecordHeaderTest(int dtlsContentType, int recordLength) {
         DtlsRecordHeader dtlsRecordHeader = new DtlsRecordHeader(
                 new DtlsContentType(dtlsContentType),
@@ -1,10 +1,6 @@
 package dtls;
 
-import JFSM.JFSM.src.main.java.com.fsm.StateManager;
-import JFSM.JFSM.src.main.java.com.fsm.module.StateHandler;
-import JFSM.JFSM.src.main.java.com.fsm.unit.StateUnit;
 import dtls.fsm.definition.DtlsEvent;
-import dtls.fsm.definition.DtlsState;
 import dtls.handler.DtlsPacketHandler;
 import dtls.packet.DtlsPacket;
 import dtls.packet.base.DtlsContentType;
@@ -17,6 +13,7 @@ import dtls.type.*;
 import dtls.type.base.DtlsFormat;
 import dtls.type.base.DtlsHandshakeCommonBody;
 import dtls.type.base.DtlsHandshakeType;
+import dtls.unit.DtlsPeerKey;
 import dtls.unit.DtlsUnit;
 import instance.BaseEnvironment;
 import instance.DebugLevel;
@@ -109,25 +106,17 @@ public class DtlsNetworkTest {
         ////////////////////////////////////////////////////////////
         // DTLS UNIT 생성 (Client: 1, Server: 2)
 
-        // Client dtls unit
-        String dtls1Key = "DTLS_1";
+        // Client dtls unit (peer : server)
+        DtlsPeerKey dtls1Key = DtlsPeerKey.of(netAddress2.getAddressString(), netAddress2.getPort());
         DtlsHandshakeManager.getInstance().addDtlsUnit(dtls1Key);
         DtlsUnit dtlsUnit1 = DtlsHandshakeManager.getInstance().getDtlsUnit(dtls1Key);
         Assert.assertNotNull(dtlsUnit1);
 
-        StateManager stateManager1 = dtlsUnit1.getDtlsFsmManager().getStateManager();
-        StateHandler stateHandler1 = stateManager1.getStateHandler(DtlsState.NAME);
-        StateUnit stateUnit1 = stateManager1.getStateUnit(dtlsUnit1.getDtlsStateUnitName());
-
-        // Server dtls unit
-        String dtls2Key = "DTLS_2";
+        // Server dtls unit (peer : client)
+        DtlsPeerKey dtls2Key = DtlsPeerKey.of(netAddress1.getAddressString(), netAddress1.getPort());
         DtlsHandshakeManager.getInstance().addDtlsUnit(dtls2Key);
         DtlsUnit dtlsUnit2 = DtlsHandshakeManager.getInstance().getDtlsUnit(dtls2Key);
         Assert.assertNotNull(dtlsUnit2);
-
-        StateManager stateManager2 = dtlsUnit2.getDtlsFsmManager().getStateManager();
-        StateHandler stateHandler2 = stateManager2.getStateHandler(DtlsState.NAME);
-        StateUnit stateUnit2 = stateManager2.getStateUnit(dtlsUnit2.getDtlsStateUnitName());
         ////////////////////////////////////////////////////////////
 
         ////////////////////////////////////////////////////////////
@@ -165,8 +154,8 @@ public class DtlsNetworkTest {
          * DTLS_UNIT_1: PREPARING > SENDING > WAITING
          * >> Waiting for HelloVerifyRequest from server
          */
-        stateHandler1.fire(DtlsEvent.BUFFER_NEXT_FLIGHT.name(), stateUnit1);
-        stateHandler1.fire(DtlsEvent.SEND_FLIGHT_2.name(), stateUnit1);
+        dtlsUnit1.fire(DtlsEvent.BUFFER_NEXT_FLIGHT);
+        dtlsUnit1.fire(DtlsEvent.SEND_FLIGHT_2);
         ///////////////////////////////
 
         ///////////////////////////////
@@ -189,12 +178,12 @@ public class DtlsNetworkTest {
          * DTLS_UNIT_1: If timer is not expired, WAITING > PREPARING
          *              If timer is expired, WAITING > SENDING
          */
-        stateHandler2.fire(DtlsEvent.BUFFER_NEXT_FLIGHT.name(), stateUnit2);
-        stateHandler2.fire(DtlsEvent.SEND_FLIGHT_2.name(), stateUnit2);
+        dtlsUnit2.fire(DtlsEvent.BUFFER_NEXT_FLIGHT);
+        dtlsUnit2.fire(DtlsEvent.SEND_FLIGHT_2);
 
         // MessageHandler 에서 직접 상태 천이 필요 > Timer 삭제 여부 반영 > 지금은 테스트 중이니까 여기서 천이
-        stateHandler1.fire(DtlsEvent.RECEIVE_NEXT_FLIGHT.name(), stateUnit1);
-        //stateHandler1.fire(DtlsEvent.TIMER_EXPIRES.name(), stateUnit1);
+        dtlsUnit1.fire(DtlsEvent.RECEIVE_NEXT_FLIGHT);
+        //dtlsUnit1.fire(DtlsEvent.TIMER_EXPIRES);
         ///////////////////////////////
 
         ///////////////////////////////
@@ -216,10 +205,10 @@ public class DtlsNetworkTest {
          * >> Waiting for DTLS_FLIGHT_4
          * DTLS_UNIT_2: WAITING > PREPARING
          */
-        stateHandler1.fire(DtlsEvent.BUFFER_NEXT_FLIGHT.name(), stateUnit1);
-        stateHandler1.fire(DtlsEvent.SEND_FLIGHT_2.name(), stateUnit1);
+        dtlsUnit1.fire(DtlsEvent.BUFFER_NEXT_FLIGHT);
+        dtlsUnit1.fire(DtlsEvent.SEND_FLIGHT_2);
 
-        stateHandler2.fire(DtlsEvent.RECEIVE_NEXT_FLIGHT.name(), stateUnit2);
+        dtlsUnit2.fire(DtlsEvent.RECEIVE_NEXT_FLIGHT);
         ///////////////////////////////
 
         ///////////////////////////////
@@ -241,10 +230,10 @@ public class DtlsNetworkTest {
          * >> Waiting for DTLS_FLIGHT_5
          * DTLS_UNIT_1: WAITING > PREPARING
          */
-        stateHandler2.fire(DtlsEvent.BUFFER_NEXT_FLIGHT.name(), stateUnit2);
-        stateHandler2.fire(DtlsEvent.SEND_FLIGHT_2.name(), stateUnit2);
+        dtlsUnit2.fire(DtlsEvent.BUFFER_NEXT_FLIGHT);
+        dtlsUnit2.fire(DtlsEvent.SEND_FLIGHT_2);
 
-        stateHandler1.fire(DtlsEvent.RECEIVE_NEXT_FLIGHT.name(), stateUnit1);
+        dtlsUnit1.fire(DtlsEvent.RECEIVE_NEXT_FLIGHT);
         ///////////////////////////////
 
         ///////////////////////////////
@@ -337,10 +326,10 @@ public class DtlsNetworkTest {
          * >> Waiting for DTLS_FLIGHT_6
          * DTLS_UNIT_2: WAITING > PREPARING
          */
-        stateHandler1.fire(DtlsEvent.BUFFER_NEXT_FLIGHT.name(), stateUnit1);
-        stateHandler1.fire(DtlsEvent.SEND_FLIGHT_2.name(), stateUnit1);
+        dtlsUnit1.fire(DtlsEvent.BUFFER_NEXT_FLIGHT);
+        dtlsUnit1.fire(DtlsEvent.SEND_FLIGHT_2);
 
-        stateHandler2.fire(DtlsEvent.RECEIVE_NEXT_FLIGHT.name(), stateUnit2);
+        dtlsUnit2.fire(DtlsEvent.RECEIVE_NEXT_FLIGHT);
         ///////////////////////////////
 
         ///////////////////////////////
@@ -400,7 +389,7 @@ public class DtlsNetworkTest {
          * [DTLS_FLIGHT_5]
          * DTLS_UNIT_1: WAITING > FINISHED
          */
-        stateHandler1.fire(DtlsEvent.RECEIVE_LAST_FLIGHT.name(), stateUnit1);
+        dtlsUnit1.fire(DtlsEvent.RECEIVE_LAST_FLIGHT);
         ///////////////////////////////
 
         ///////////////////////////////
@@ -415,7 +404,7 @@ public class DtlsNetworkTest {
          * [DTLS_FLIGHT_6]
          * DTLS_UNIT_2: PREPARING > SENDING
          */
-        stateHandler2.fire(DtlsEvent.BUFFER_NEXT_FLIGHT.name(), stateUnit2);
+        dtlsUnit2.fire(DtlsEvent.BUFFER_NEXT_FLIGHT);
         ///////////////////////////////
 
         ///////////////////////////////
@@ -435,7 +424,7 @@ public class DtlsNetworkTest {
          * [DTLS_FLIGHT_6]
          * DTLS_UNIT_2: SENDING > FINISHED
          */
-        stateHandler2.fire(DtlsEvent.SEND_FLIGHT_1.name(), stateUnit2);
+        dtlsUnit2.fire(DtlsEvent.SEND_FLIGHT_1);
         ///////////////////////////////
 
         ////////////////////////////////////////////////////////////
@@ -0,0 +1,244 @@
+package dtls;
+
+import dtls.fsm.definition.DtlsState;
+import dtls.handler.DtlsPacketHandler;
+import dtls.packet.DtlsPacket;
+import dtls.packet.base.DtlsContentType;
+import dtls.packet.base.DtlsProtocolVersion;
+import dtls.packet.handshake.DtlsEncryptedHandShake;
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.packet.recordlayer.DtlsRecordHeader;
+import dtls.packet.recordlayer.DtlsRecordLayer;
+import dtls.packet.recordlayer.message.DtlsChangeCipherSpec;
+import dtls.type.DtlsClientHello;
+import dtls.type.DtlsNewSessionTicket;
+import dtls.type.DtlsServerHello;
+import dtls.type.base.DtlsHandshakeCommonBody;
+import dtls.type.base.DtlsHandshakeType;
+import dtls.unit.DtlsPeerKey;
+import dtls.unit.DtlsUnit;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+public class DtlsPacketHandlerTest {
+
+    private static final InetSocketAddress LOCAL_ADDRESS = new InetSocketAddress("127.0.0.1", 5000);
+
+    @Test
+    public void replayedDatagramTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        InetSocketAddress sender = new InetSocketAddress("127.0.0.1", 40020);
+        DtlsPeerKey key = DtlsPeerKey.of(sender);
+        DtlsUnit dtlsUnit = dtlsHandshakeManager.addDtlsUnit(key);
+        Assert.assertNotNull(dtlsUnit);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new DtlsPacketHandler("replayedDatagramTest"));
+        try {
+            /////////////////////////////////////////////////////////
+            // Epoch 0 : the same datagram twice, the second copy is dropped
+            byte[] clientHelloData = createDtlsPacket(createDtlsClientHelloRecord(0, 0)).getData();
+            channel.writeInbound(new DatagramPacket(Unpooled.wrappedBuffer(clientHelloData), LOCAL_ADDRESS, sender));
+            Assert.assertEquals(0L, (long) callOnEventLoop(dtlsUnit, () -> dtlsUnit.getDtlsReplayWindow().getReplayedCount()));
+
+            channel.writeInbound(new DatagramPacket(Unpooled.wrappedBuffer(clientHelloData), LOCAL_ADDRESS, sender));
+            Assert.assertEquals(1L, (long) callOnEventLoop(dtlsUnit, () -> dtlsUnit.getDtlsReplayWindow().getReplayedCount()));
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // ChangeCipherSpec opens epoch 1, the accepted record of epoch 1 is marked, the copy is dropped
+            byte[] finishedData = createDtlsPacket(
+                    new DtlsRecordLayer(createDtlsRecordHeader(DtlsContentType.TLS_TYPE_CHANGE_CIPHER_SPEC, 0, 1), new DtlsChangeCipherSpec()),
+                    new DtlsRecordLayer(createDtlsRecordHeader(DtlsContentType.TLS_TYPE_HANDSHAKE, 1, 0), new DtlsEncryptedHandShake(new byte[32]))
+            ).getData();
+            channel.writeInbound(new DatagramPacket(Unpooled.wrappedBuffer(finishedData), LOCAL_ADDRESS, sender));
+            Assert.assertEquals(1, (int) callOnEventLoop(dtlsUnit, () -> dtlsUnit.getDtlsReplayWindow().getCurrentEpoch()));
+            Assert.assertEquals(1L, (long) callOnEventLoop(dtlsUnit, () -> dtlsUnit.getDtlsReplayWindow().getReplayedCount()));
+
+            channel.writeInbound(new DatagramPacket(Unpooled.wrappedBuffer(finishedData), LOCAL_ADDRESS, sender));
+            Assert.assertEquals(3L, (long) callOnEventLoop(dtlsUnit, () -> dtlsUnit.getDtlsReplayWindow().getReplayedCount()));
+            /////////////////////////////////////////////////////////
+        } finally {
+            channel.finishAndReleaseAll();
+            dtlsHandshakeManager.deleteDtlsUnit(key);
+        }
+    }
+
+    @Test
+    public void sessionResumptionTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        EmbeddedChannel channel = new EmbeddedChannel(new DtlsPacketHandler("sessionResumptionTest", true));
+        InetSocketAddress fullSender = new InetSocketAddress("127.0.0.1", 40021);
+        InetSocketAddress idSender = new InetSocketAddress("127.0.0.1", 40022);
+        InetSocketAddress ticketSender = new InetSocketAddress("127.0.0.1", 40023);
+        try {
+            /////////////////////////////////////////////////////////
+            // Full handshake : ServerHello, ServerHelloDone > WAITING > client Finished > FINISHED, the session is stored & a ticket is issued
+            DtlsClientHello dtlsClientHello = createCookieClientHello(fullSender, null, new byte[0]);
+            DtlsUnit fullUnit = sendClientHello(channel, fullSender, dtlsClientHello);
+            // The session is created by the crypto stage, the flight is sent when it comes back to the loop
+            awaitDtlsState(fullUnit, DtlsState.DTLS_STATE_WAITING);
+            Assert.assertFalse(callOnEventLoop(fullUnit, fullUnit::isResumed));
+
+            List<DtlsHandshake> serverFlight = readHandshakes(channel, fullUnit);
+            Assert.assertEquals(DtlsHandshakeType.TLS_TYPE_SERVER_HELLO, getHandshakeType(serverFlight.get(0)));
+            Assert.assertEquals(DtlsHandshakeType.TLS_TYPE_SERVER_HELLO_DONE, getHandshakeType(serverFlight.get(1)));
+            byte[] sessionId = ((DtlsServerHello) serverFlight.get(0).getDtlsFormat()).getSessionId();
+
+            sendClientFinished(channel, fullSender);
+            Assert.assertEquals(DtlsState.DTLS_STATE_FINISHED, (int) callOnEventLoop(fullUnit, fullUnit::getDtlsState));
+            Assert.assertNotNull(dtlsHandshakeManager.getDtlsSessionCache().get(sessionId, System.currentTimeMillis()));
+
+            serverFlight = readHandshakes(channel, fullUnit);
+            Assert.assertEquals(DtlsHandshakeType.TLS_TYPE_NEW_SESSION_TICKET, getHandshakeType(serverFlight.get(0)));
+            byte[] ticket = ((DtlsNewSessionTicket) serverFlight.get(0).getDtlsFormat()).getTlsSessionTicket().getTicket();
+            Assert.assertTrue(ticket.length > 0);
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Abbreviated handshake by the session ID : ServerHello, ChangeCipherSpec, Finished > WAITING > client Finished > FINISHED
+            DtlsUnit idUnit = sendClientHello(channel, idSender, createCookieClientHello(idSender, sessionId, null));
+            Assert.assertTrue(callOnEventLoop(idUnit, idUnit::isResumed));
+            Assert.assertEquals(DtlsState.DTLS_STATE_WAITING, (int) callOnEventLoop(idUnit, idUnit::getDtlsState));
+            serverFlight = readHandshakes(channel, idUnit);
+            Assert.assertArrayEquals(sessionId, ((DtlsServerHello) serverFlight.get(0).getDtlsFormat()).getSessionId());
+
+            sendClientFinished(channel, idSender);
+            Assert.assertEquals(DtlsState.DTLS_STATE_FINISHED, (int) callOnEventLoop(idUnit, idUnit::getDtlsState));
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Abbreviated handshake by the ticket (no session ID)
+            DtlsUnit ticketUnit = sendClientHello(channel, ticketSender, createCookieClientHello(ticketSender, new byte[0], ticket));
+            Assert.assertTrue(callOnEventLoop(ticketUnit, ticketUnit::isResumed));
+            Assert.assertArrayEquals(sessionId, callOnEventLoop(ticketUnit, () -> ticketUnit.getDtlsSession().getSessionId()));
+
+            sendClientFinished(channel, ticketSender);
+            Assert.assertEquals(DtlsState.DTLS_STATE_FINISHED, (int) callOnEventLoop(ticketUnit, ticketUnit::getDtlsState));
+            /////////////////////////////////////////////////////////
+        } finally {
+            channel.finishAndReleaseAll();
+            dtlsHandshakeManager.deleteDtlsUnit(DtlsPeerKey.of(fullSender));
+            dtlsHandshakeManager.deleteDtlsUnit(DtlsPeerKey.of(idSender));
+            dtlsHandshakeManager.deleteDtlsUnit(DtlsPeerKey.of(ticketSender));
+        }
+    }
+
+    private static DtlsClientHello createCookieClientHello(InetSocketAddress sender, byte[] sessionId, byte[] ticket) {
+        DtlsClientHello dtlsClientHello = DtlsMessageTest.createDtlsClientHelloTest();
+        if (sessionId != null) {
+            dtlsClientHello.setSessionIdLength((short) sessionId.length);
+            dtlsClientHello.setSessionId(sessionId);
+        }
+        dtlsClientHello.setSessionTicket(ticket);
+
+        byte[] cookie = DtlsHandshakeManager.getInstance().getDtlsCookieManager().generateCookie(DtlsPeerKey.of(sender), dtlsClientHello);
+        dtlsClientHello.setCookieLength((short) cookie.length);
+        dtlsClientHello.setCookie(cookie);
+        return dtlsClientHello;
+    }
+
+    private static DtlsUnit sendClientHello(EmbeddedChannel channel, InetSocketAddress sender, DtlsClientHello dtlsClientHello) throws Exception {
+        int length = dtlsClientHello.getData().length;
+        DtlsHandshakeCommonBody dtlsHandshakeCommonBody = new DtlsHandshakeCommonBody(
+                DtlsHandshakeType.valueOf(DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO),
+                length, 1, 0, length
+        );
+        byte[] data = createDtlsPacket(new DtlsRecordLayer(
+                createDtlsRecordHeader(DtlsContentType.TLS_TYPE_HANDSHAKE, 0, 1),
+                new DtlsHandshake(dtlsHandshakeCommonBody, dtlsClientHello)
+        )).getData();
+        channel.writeInbound(new DatagramPacket(Unpooled.wrappedBuffer(data), LOCAL_ADDRESS, sender));
+
+        DtlsUnit dtlsUnit = DtlsHandshakeManager.getInstance().getDtlsUnit(sender);
+        Assert.assertNotNull(dtlsUnit);
+        callOnEventLoop(dtlsUnit, () -> null);
+        return dtlsUnit;
+    }
+
+    private static void awaitDtlsState(DtlsUnit dtlsUnit, int dtlsState) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (callOnEventLoop(dtlsUnit, dtlsUnit::getDtlsState) != dtlsState && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(dtlsState, (int) callOnEventLoop(dtlsUnit, dtlsUnit::getDtlsState));
+    }
+
+    private static void sendClientFinished(EmbeddedChannel channel, InetSocketAddress sender) throws Exception {
+        byte[] data = createDtlsPacket(
+                new DtlsRecordLayer(createDtlsRecordHeader(DtlsContentType.TLS_TYPE_CHANGE_CIPHER_SPEC, 0, 2), new DtlsChangeCipherSpec()),
+                new DtlsRecordLayer(createDtlsRecordHeader(DtlsContentType.TLS_TYPE_HANDSHAKE, 1, 0), new DtlsEncryptedHandShake(new byte[32]))
+        ).getData();
+        channel.writeInbound(new DatagramPacket(Unpooled.wrappedBuffer(data), LOCAL_ADDRESS, sender));
+    }
+
+    /**
+     * @return Plain handshake messages written by the unit so far (the writes of the unit loop are run on the channel)
+     */
+    private static List<DtlsHandshake> readHandshakes(EmbeddedChannel channel, DtlsUnit dtlsUnit) throws Exception {
+        callOnEventLoop(dtlsUnit, () -> null);
+        channel.runPendingTasks();
+
+        List<DtlsHandshake> dtlsHandshakeList = new ArrayList<>();
+        DatagramPacket datagramPacket;
+        while ((datagramPacket = channel.readOutbound()) != null) {
+            DtlsPacket dtlsPacket = new DtlsPacket(datagramPacket.content());
+            for (DtlsRecordLayer dtlsRecordLayer : dtlsPacket.getDtlsRecordLayerList()) {
+                if (dtlsRecordLayer.getDtlsHandshakeFactory() instanceof DtlsHandshake) {
+                    dtlsHandshakeList.add((DtlsHandshake) dtlsRecordLayer.getDtlsHandshakeFactory());
+                }
+            }
+            datagramPacket.release();
+        }
+        return dtlsHandshakeList;
+    }
+
+    private static int getHandshakeType(DtlsHandshake dtlsHandshake) {
+        return dtlsHandshake.getDtlsHandshakeCommonBody().getHandshakeType().getType();
+    }
+
+    /**
+     * Runs the callable on the event loop of the unit, after the datagrams handed over before it
+     */
+    static <T> T callOnEventLoop(DtlsUnit dtlsUnit, Callable<T> callable) throws Exception {
+        return dtlsUnit.getEventLoop().submit(callable).get(5, TimeUnit.SECONDS);
+    }
+
+    static DtlsRecordHeader createDtlsRecordHeader(int contentType, int epoch, long sequenceNumber) {
+        return new DtlsRecordHeader(
+                DtlsContentType.valueOf(contentType),
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                epoch, sequenceNumber, 0
+        );
+    }
+
+    static DtlsRecordLayer createDtlsClientHelloRecord(long sequenceNumber, int messageSequence) {
+        DtlsClientHello dtlsClientHello = DtlsMessageTest.createDtlsClientHelloTest();
+        int length = dtlsClientHello.getData().length;
+        DtlsHandshakeCommonBody dtlsHandshakeCommonBody = new DtlsHandshakeCommonBody(
+                DtlsHandshakeType.valueOf(DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO),
+                length, messageSequence, 0, length
+        );
+        return new DtlsRecordLayer(
+                createDtlsRecordHeader(DtlsContentType.TLS_TYPE_HANDSHAKE, 0, sequenceNumber),
+                new DtlsHandshake(dtlsHandshakeCommonBody, dtlsClientHello)
+        );
+    }
+
+    static DtlsPacket createDtlsPacket(DtlsRecordLayer... dtlsRecordLayers) {
+        List<DtlsRecordLayer> dtlsRecordLayerList = new ArrayList<>();
+        for (DtlsRecordLayer dtlsRecordLayer : dtlsRecordLayers) {
+            dtlsRecordLayerList.add(dtlsRecordLayer);
+        }
+        return new DtlsPacket(dtlsRecordLayerList);
+    }
+
+}
@@ -0,0 +1,109 @@
+package dtls;
+
+import dtls.fsm.definition.DtlsEvent;
+import dtls.fsm.definition.DtlsState;
+import dtls.retransmit.DtlsBackoffRetransmitPolicy;
+import dtls.unit.DtlsPeerKey;
+import dtls.unit.DtlsUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class DtlsRetransmitTest {
+
+    @Test
+    public void backoffPolicyTest() {
+        /////////////////////////////////////////////////////////
+        // Exponential backoff : 1 sec > 2 sec > 4 sec > ... > 60 sec
+        DtlsBackoffRetransmitPolicy dtlsRetransmitPolicy = new DtlsBackoffRetransmitPolicy();
+        Assert.assertEquals(1000, dtlsRetransmitPolicy.getTimeoutMs());
+
+        dtlsRetransmitPolicy.onFlightSent(0);
+        dtlsRetransmitPolicy.onTimerExpired();
+        Assert.assertEquals(2000, dtlsRetransmitPolicy.getTimeoutMs());
+        dtlsRetransmitPolicy.onTimerExpired();
+        Assert.assertEquals(4000, dtlsRetransmitPolicy.getTimeoutMs());
+        for (int i = 0; i < 10; i++) {
+            dtlsRetransmitPolicy.onTimerExpired();
+        }
+        Assert.assertEquals(60000, dtlsRetransmitPolicy.getTimeoutMs());
+
+        // Retransmitted flight is not sampled (Karn's algorithm), the backoff is reset on progress
+        dtlsRetransmitPolicy.onFlightReceived(70000);
+        Assert.assertEquals(-1, dtlsRetransmitPolicy.getSmoothedRttMs());
+        Assert.assertEquals(1000, dtlsRetransmitPolicy.getTimeoutMs());
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // RTT estimation (RFC 6298) : SRTT + 4 * RTTVAR
+        dtlsRetransmitPolicy.onFlightSent(100000);
+        dtlsRetransmitPolicy.onFlightReceived(100080);
+        Assert.assertEquals(80, dtlsRetransmitPolicy.getSmoothedRttMs());
+        Assert.assertEquals(40, dtlsRetransmitPolicy.getRttVariationMs());
+        Assert.assertEquals(240, dtlsRetransmitPolicy.getTimeoutMs());
+
+        dtlsRetransmitPolicy.onFlightSent(200000);
+        dtlsRetransmitPolicy.onFlightReceived(200080);
+        Assert.assertEquals(80, dtlsRetransmitPolicy.getSmoothedRttMs());
+        Assert.assertEquals(30, dtlsRetransmitPolicy.getRttVariationMs());
+        Assert.assertEquals(200, dtlsRetransmitPolicy.getTimeoutMs());
+
+        dtlsRetransmitPolicy.onTimerExpired();
+        Assert.assertEquals(400, dtlsRetransmitPolicy.getTimeoutMs());
+
+        dtlsRetransmitPolicy.reset();
+        Assert.assertEquals(1000, dtlsRetransmitPolicy.getTimeoutMs());
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void timerExpiresTest() throws Exception {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsPeerKey key = DtlsPeerKey.of(0x0A000010, 40000);
+        DtlsUnit dtlsUnit = dtlsHandshakeManager.addDtlsUnit(key);
+        Assert.assertNotNull(dtlsUnit);
+
+        try {
+            DtlsBackoffRetransmitPolicy dtlsRetransmitPolicy = new DtlsBackoffRetransmitPolicy(20, 10, 1000);
+            dtlsUnit.setDtlsRetransmitPolicy(dtlsRetransmitPolicy);
+
+            /////////////////////////////////////////////////////////
+            // WAITING : the flight is retransmitted, the timeout is doubled
+            Assert.assertTrue(dtlsUnit.fire(DtlsEvent.BUFFER_NEXT_FLIGHT).get());
+            Assert.assertTrue(dtlsUnit.fire(DtlsEvent.SEND_FLIGHT_2).get());
+            awaitExpiry(dtlsUnit);
+            Assert.assertEquals(DtlsState.DTLS_STATE_SENDING, dtlsUnit.getDtlsState());
+            Assert.assertEquals(1, dtlsRetransmitPolicy.getBackoffCount());
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // FINISHED : the late timer is rejected by the FSM, no backoff
+            Assert.assertTrue(dtlsUnit.fire(DtlsEvent.SEND_FLIGHT_1).get());
+            Assert.assertEquals(DtlsState.DTLS_STATE_FINISHED, dtlsUnit.getDtlsState());
+            dtlsUnit.startRetransmitTimer(20);
+            awaitExpiry(dtlsUnit);
+            Assert.assertEquals(DtlsState.DTLS_STATE_FINISHED, dtlsUnit.getDtlsState());
+            Assert.assertEquals(1, dtlsRetransmitPolicy.getBackoffCount());
+            /////////////////////////////////////////////////////////
+        } finally {
+            dtlsHandshakeManager.deleteDtlsUnit(key);
+        }
+    }
+
+    /**
+     * Waits until the timer of the unit is expired and its expiry has run on the event loop of the unit
+     */
+    private static void awaitExpiry(DtlsUnit dtlsUnit) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dtlsUnit.isRetransmitTimerActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertFalse(dtlsUnit.isRetransmitTimerActive());
+
+        // The timer thread clears the timer and then queues the expiry on the loop
+        Thread.sleep(50);
+        dtlsUnit.getEventLoop().submit(() -> {}).get(5, TimeUnit.SECONDS);
+    }
+
+}
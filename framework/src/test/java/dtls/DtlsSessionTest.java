@@ -0,0 +1,140 @@
+package dtls;
+
+import dtls.cipher.DtlsCipherSuite;
+import dtls.cipher.DtlsCipherSuiteType;
+import dtls.compression.DtlsCompressionMethodType;
+import dtls.packet.base.DtlsProtocolVersion;
+import dtls.session.DtlsSession;
+import dtls.session.DtlsSessionCache;
+import dtls.ticket.DtlsSessionTicketManager;
+import dtls.ticket.TlsSessionTicket;
+import dtls.type.DtlsClientHello;
+import dtls.type.DtlsNewSessionTicket;
+import dtls.unit.DtlsPeerKey;
+import dtls.unit.DtlsUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DtlsSessionTest {
+
+    @Test
+    public void sessionCacheTest() {
+        DtlsSessionCache dtlsSessionCache = new DtlsSessionCache(2, 1000);
+        long nowMs = System.currentTimeMillis();
+
+        DtlsSession session1 = createDtlsSession((byte) 1, nowMs);
+        DtlsSession session2 = createDtlsSession((byte) 2, nowMs);
+        DtlsSession session3 = createDtlsSession((byte) 3, nowMs);
+        Assert.assertTrue(dtlsSessionCache.put(session1));
+        Assert.assertTrue(dtlsSessionCache.put(session2));
+
+        // LRU : session1 is used, session2 is evicted by session3
+        Assert.assertSame(session1, dtlsSessionCache.get(session1.getSessionId().clone(), nowMs));
+        Assert.assertTrue(dtlsSessionCache.put(session3));
+        Assert.assertEquals(2, dtlsSessionCache.size());
+        Assert.assertNull(dtlsSessionCache.get(session2.getSessionId(), nowMs));
+        Assert.assertSame(session3, dtlsSessionCache.get(session3.getSessionId(), nowMs));
+
+        // TTL
+        Assert.assertNull(dtlsSessionCache.get(session1.getSessionId(), nowMs + 1000));
+        Assert.assertEquals(1, dtlsSessionCache.size());
+        Assert.assertEquals(1, dtlsSessionCache.removeExpiredSessions(nowMs + 1000));
+        Assert.assertEquals(0, dtlsSessionCache.size());
+    }
+
+    @Test
+    public void sessionTicketTest() {
+        DtlsSessionTicketManager dtlsSessionTicketManager = new DtlsSessionTicketManager();
+        DtlsSession dtlsSession = createDtlsSession((byte) 1, System.currentTimeMillis());
+
+        TlsSessionTicket tlsSessionTicket = dtlsSessionTicketManager.issueTicket(dtlsSession);
+        Assert.assertNotNull(tlsSessionTicket);
+        Assert.assertEquals(dtlsSessionTicketManager.getTicketLifetimeMs() / 1000, tlsSessionTicket.getLifeTimeHint());
+
+        // Codec round trip (NewSessionTicket)
+        TlsSessionTicket decodedTicket = new TlsSessionTicket(tlsSessionTicket.getData());
+        byte[] ticket = decodedTicket.getTicket();
+        Assert.assertArrayEquals(tlsSessionTicket.getTicket(), ticket);
+
+        DtlsSession openedSession = dtlsSessionTicketManager.validateTicket(ticket);
+        Assert.assertNotNull(openedSession);
+        Assert.assertArrayEquals(dtlsSession.getSessionId(), openedSession.getSessionId());
+        Assert.assertArrayEquals(dtlsSession.getMasterSecret(), openedSession.getMasterSecret());
+        Assert.assertArrayEquals(dtlsSession.getCipherSuite().getCipherSuite(), openedSession.getCipherSuite().getCipherSuite());
+        Assert.assertEquals(dtlsSession.getCreationTimeMs(), openedSession.getCreationTimeMs());
+
+        // Tampered
+        byte[] tamperedTicket = ticket.clone();
+        tamperedTicket[tamperedTicket.length - 1] ^= 0x01;
+        Assert.assertNull(dtlsSessionTicketManager.validateTicket(tamperedTicket));
+
+        // Expired
+        DtlsSession oldSession = createDtlsSession((byte) 2, System.currentTimeMillis() - dtlsSessionTicketManager.getTicketLifetimeMs());
+        Assert.assertNull(dtlsSessionTicketManager.validateTicket(dtlsSessionTicketManager.issueTicket(oldSession).getTicket()));
+
+        // Key rotation : the previous key is still accepted, not the one before
+        dtlsSessionTicketManager.rotateKey();
+        Assert.assertNotNull(dtlsSessionTicketManager.validateTicket(ticket));
+        dtlsSessionTicketManager.rotateKey();
+        Assert.assertNull(dtlsSessionTicketManager.validateTicket(ticket));
+    }
+
+    @Test
+    public void resumeSessionTest() {
+        DtlsHandshakeManager dtlsHandshakeManager = DtlsHandshakeManager.getInstance();
+        DtlsPeerKey key = DtlsPeerKey.of(0x0A000005, 60000);
+        DtlsUnit dtlsUnit = dtlsHandshakeManager.addDtlsUnit(key);
+        Assert.assertNotNull(dtlsUnit);
+
+        try {
+            DtlsClientHello dtlsClientHello = DtlsMessageTest.createDtlsClientHelloTest();
+            DtlsSession dtlsSession = new DtlsSession(
+                    dtlsClientHello.getSessionId(),
+                    new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_0),
+                    new DtlsCipherSuite(DtlsCipherSuiteType.TLS_RSA_WITH_RC4_128_MD5),
+                    new DtlsCompressionMethodType(DtlsCompressionMethodType.TLS_COMPRESSION_METHOD_NULL),
+                    new byte[DtlsSession.MASTER_SECRET_LENGTH],
+                    System.currentTimeMillis()
+            );
+
+            // Miss : full handshake
+            Assert.assertNull(dtlsHandshakeManager.resumeSession(dtlsUnit, dtlsClientHello, null));
+            Assert.assertFalse(dtlsUnit.isResumed());
+
+            // Hit by the session ID
+            dtlsHandshakeManager.storeSession(dtlsUnit, dtlsSession);
+            Assert.assertSame(dtlsSession, dtlsHandshakeManager.resumeSession(dtlsUnit, dtlsClientHello, null));
+            Assert.assertTrue(dtlsUnit.isResumed());
+            dtlsHandshakeManager.getDtlsSessionCache().remove(dtlsSession.getSessionId());
+
+            // Hit by the ticket
+            DtlsNewSessionTicket dtlsNewSessionTicket = dtlsHandshakeManager.issueSessionTicket(dtlsSession);
+            Assert.assertNotNull(dtlsNewSessionTicket);
+            dtlsUnit.setDtlsSession(null, false);
+            DtlsSession resumedSession = dtlsHandshakeManager.resumeSession(
+                    dtlsUnit, dtlsClientHello, dtlsNewSessionTicket.getTlsSessionTicket().getTicket()
+            );
+            Assert.assertNotNull(resumedSession);
+            Assert.assertTrue(dtlsUnit.isResumed());
+        } finally {
+            dtlsHandshakeManager.deleteDtlsUnit(key);
+        }
+    }
+
+    private static DtlsSession createDtlsSession(byte seed, long creationTimeMs) {
+        byte[] sessionId = new byte[DtlsSession.SESSION_ID_LENGTH];
+        byte[] masterSecret = new byte[DtlsSession.MASTER_SECRET_LENGTH];
+        sessionId[0] = seed;
+        masterSecret[0] = seed;
+
+        return new DtlsSession(
+                sessionId,
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                new DtlsCipherSuite(DtlsCipherSuiteType.TLS_ECDHE_PSK_WITH_RC4_128_SHA),
+                new DtlsCompressionMethodType(DtlsCompressionMethodType.TLS_COMPRESSION_METHOD_NULL),
+                masterSecret,
+                creationTimeMs
+        );
+    }
+
+}
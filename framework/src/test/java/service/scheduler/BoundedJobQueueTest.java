@@ -0,0 +1,282 @@
+package service.scheduler;
+
+import org.junit.Assert;
+import org.junit.Test;
+import service.scheduler.job.Job;
+import service.scheduler.schedule.ScheduleManager;
+import service.scheduler.schedule.handler.BoundedJobQueue;
+import service.scheduler.schedule.handler.JobDispatchMode;
+import service.scheduler.schedule.handler.JobExecutor;
+import service.scheduler.schedule.handler.JobOverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static service.scheduler.JobSchedulerTest.await;
+import static service.scheduler.JobSchedulerTest.newJob;
+
+public class BoundedJobQueueTest {
+
+    @Test
+    public void capacityTest() throws Exception {
+        BoundedJobQueue jobQueue = new BoundedJobQueue(4);
+
+        /////////////////////////////////////////////////////////
+        // Full queue : rejected
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(jobQueue.offer(newJob("job-" + i, 1, () -> {})));
+        }
+        Assert.assertFalse(jobQueue.offer(newJob("rejected", 1, () -> {})));
+        Assert.assertFalse(jobQueue.tryOffer(newJob("rejected", 1, () -> {})));
+        Assert.assertEquals(4, jobQueue.size());
+        Assert.assertEquals(2, jobQueue.getRejectedCount());
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // Every removal gives its slot back (poll, take, drainTo, clear)
+        Assert.assertNotNull(jobQueue.poll());
+        Assert.assertTrue(jobQueue.offer(newJob("afterPoll", 1, () -> {})));
+        Assert.assertFalse(jobQueue.offer(newJob("rejected", 1, () -> {})));
+
+        Assert.assertNotNull(jobQueue.take());
+        Assert.assertTrue(jobQueue.tryOffer(newJob("afterTake", 1, () -> {})));
+        Assert.assertFalse(jobQueue.offer(newJob("rejected", 1, () -> {})));
+
+        List<Job> jobs = new ArrayList<>();
+        Assert.assertEquals(2, jobQueue.drainTo(jobs, 2));
+        Assert.assertEquals(2, jobQueue.size());
+        Assert.assertTrue(jobQueue.offer(newJob("afterDrain-0", 1, () -> {})));
+        Assert.assertTrue(jobQueue.offer(newJob("afterDrain-1", 1, () -> {})));
+        Assert.assertFalse(jobQueue.offer(newJob("rejected", 1, () -> {})));
+
+        jobQueue.clear();
+        Assert.assertTrue(jobQueue.isEmpty());
+        Assert.assertNull(jobQueue.poll());
+        Assert.assertEquals(0, jobQueue.drainTo(jobs, 4));
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(jobQueue.offer(newJob("afterClear-" + i, 1, () -> {})));
+        }
+        Assert.assertFalse(jobQueue.offer(newJob("rejected", 1, () -> {})));
+        Assert.assertEquals(4, jobQueue.size());
+        Assert.assertEquals(6, jobQueue.getRejectedCount());
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void dropOldestLowestPriorityTest() {
+        BoundedJobQueue jobQueue = new BoundedJobQueue(3, JobOverflowPolicy.DROP_OLDEST_LOWEST_PRIORITY, 0);
+        Assert.assertTrue(jobQueue.offer(newJob("high", 1, () -> {})));
+        Assert.assertTrue(jobQueue.offer(newJob("low-old", 5, () -> {})));
+        Assert.assertTrue(jobQueue.offer(newJob("low-new", 5, () -> {})));
+
+        /////////////////////////////////////////////////////////
+        // The oldest job of the lowest priority is the victim
+        Assert.assertTrue(jobQueue.offer(newJob("middle", 3, () -> {})));
+        Assert.assertEquals(1, jobQueue.getDroppedCount());
+        // A new job of the same priority as the victim replaces it too (the timer path drops as well)
+        Assert.assertTrue(jobQueue.tryOffer(newJob("low-newest", 5, () -> {})));
+        Assert.assertEquals(2, jobQueue.getDroppedCount());
+        // A new job lower than every queued one is rejected
+        Assert.assertFalse(jobQueue.offer(newJob("lowest", 9, () -> {})));
+        Assert.assertEquals(1, jobQueue.getRejectedCount());
+        Assert.assertEquals(3, jobQueue.size());
+
+        Assert.assertEquals("high", jobQueue.poll().getName());
+        Assert.assertEquals("middle", jobQueue.poll().getName());
+        Assert.assertEquals("low-newest", jobQueue.poll().getName());
+        Assert.assertNull(jobQueue.poll());
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void blockWithTimeoutTest() throws Exception {
+        BoundedJobQueue jobQueue = new BoundedJobQueue(1, JobOverflowPolicy.BLOCK_WITH_TIMEOUT, 100);
+        Assert.assertTrue(jobQueue.offer(newJob("first", 1, () -> {})));
+
+        /////////////////////////////////////////////////////////
+        // Waits up to the timeout, then rejects
+        long startNanos = System.nanoTime();
+        Assert.assertFalse(jobQueue.offer(newJob("timedOut", 1, () -> {})));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 90);
+        Assert.assertEquals(1, jobQueue.getRejectedCount());
+
+        // The timer path never waits
+        startNanos = System.nanoTime();
+        Assert.assertFalse(jobQueue.tryOffer(newJob("timer", 1, () -> {})));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < 50);
+        /////////////////////////////////////////////////////////
+
+        /////////////////////////////////////////////////////////
+        // A slot freed during the wait is taken
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+                jobQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Assert.assertTrue(jobQueue.offer(newJob("unblocked", 1, () -> {})));
+        consumer.join(1000);
+        Assert.assertEquals("unblocked", jobQueue.poll().getName());
+        /////////////////////////////////////////////////////////
+    }
+
+    @Test
+    public void callerRunsTest() throws Exception {
+        JobExecutor jobExecutor = new JobExecutor(
+                901, new BoundedJobQueue(1, JobOverflowPolicy.CALLER_RUNS, 0), null
+        );
+        CountDownLatch blockLatch = new CountDownLatch(1);
+        try {
+            CountDownLatch startLatch = new CountDownLatch(1);
+            Assert.assertTrue(jobExecutor.addJob(newJob("block", 1, () -> {
+                startLatch.countDown();
+                await(blockLatch);
+            })));
+            Assert.assertTrue(startLatch.await(1, TimeUnit.SECONDS));
+            Assert.assertTrue(jobExecutor.addJob(newJob("queued", 1, () -> {})));
+
+            /////////////////////////////////////////////////////////
+            // Full queue : a direct caller runs the job itself
+            List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+            Assert.assertTrue(jobExecutor.addJob(newJob("callerRuns", 1, () -> threadNames.add(Thread.currentThread().getName()))));
+            Assert.assertEquals(1, threadNames.size());
+            Assert.assertEquals(Thread.currentThread().getName(), threadNames.get(0));
+
+            // The timer path never runs it inline
+            Assert.assertFalse(jobExecutor.tryAddJob(newJob("timer", 1, () -> threadNames.add(Thread.currentThread().getName()))));
+            Assert.assertEquals(1, threadNames.size());
+            Assert.assertEquals(2, jobExecutor.getJobQueue().getRejectedCount());
+            /////////////////////////////////////////////////////////
+        } finally {
+            blockLatch.countDown();
+            jobExecutor.stop();
+        }
+    }
+
+    @Test
+    public void startJobTest() throws Exception {
+        ScheduleManager scheduleManager = new ScheduleManager();
+        CountDownLatch blockLatch = new CountDownLatch(1);
+        try {
+            Assert.assertTrue(scheduleManager.initJob("startJobTest", 1, 1));
+            fillUp(scheduleManager, "startJobTest", blockLatch);
+
+            /////////////////////////////////////////////////////////
+            // Rejected : false, the run is given back, the job is not kept
+            AtomicInteger runCount = new AtomicInteger(0);
+            Job job = new Job(scheduleManager, "rejected", 0, 0, TimeUnit.MILLISECONDS, 1, 3, false) {
+                @Override
+                public void run() {
+                    runCount.incrementAndGet();
+                }
+            };
+            int activeJobNumber = scheduleManager.getActiveJobNumber("startJobTest");
+            Assert.assertFalse(scheduleManager.startJob("startJobTest", job));
+            Assert.assertEquals(3, job.getCurRemainRunCount());
+            Assert.assertEquals(activeJobNumber, scheduleManager.getActiveJobNumber("startJobTest"));
+            Assert.assertFalse(scheduleManager.startJob("unknown", job));
+            /////////////////////////////////////////////////////////
+
+            blockLatch.countDown();
+            Assert.assertEquals(0, runCount.get());
+        } finally {
+            blockLatch.countDown();
+            scheduleManager.finish();
+        }
+    }
+
+    @Test
+    public void timerOverflowTest() throws Exception {
+        ScheduleManager scheduleManager = new ScheduleManager();
+        CountDownLatch callerRunsLatch = new CountDownLatch(1);
+        CountDownLatch blockLatch = new CountDownLatch(1);
+        try {
+            Assert.assertTrue(scheduleManager.initJob(
+                    "callerRuns", 1, 1, JobDispatchMode.LEAST_LOADED, JobOverflowPolicy.CALLER_RUNS, 0
+            ));
+            Assert.assertTrue(scheduleManager.initJob(
+                    "block", 1, 1, JobDispatchMode.LEAST_LOADED, JobOverflowPolicy.BLOCK_WITH_TIMEOUT, 5000
+            ));
+            Assert.assertTrue(scheduleManager.initJob("free", 1, 16));
+            fillUp(scheduleManager, "callerRuns", callerRunsLatch);
+            fillUp(scheduleManager, "block", blockLatch);
+
+            /////////////////////////////////////////////////////////
+            // Full queues : the timer skips the runs, it neither runs them (CALLER_RUNS) nor waits (BLOCK_WITH_TIMEOUT)
+            List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger callerRunsCount = new AtomicInteger(0);
+            Assert.assertTrue(scheduleManager.startJob("callerRuns", new Job(
+                    scheduleManager, "callerRunsTimer", 5, 5, TimeUnit.MILLISECONDS, 1, 0, true) {
+                @Override
+                public void run() {
+                    threadNames.add(Thread.currentThread().getName());
+                    callerRunsCount.incrementAndGet();
+                }
+            }));
+            Assert.assertTrue(scheduleManager.startJob("block", new Job(
+                    scheduleManager, "blockTimer", 5, 5, TimeUnit.MILLISECONDS, 1, 0, true) {
+                @Override
+                public void run() {}
+            }));
+
+            // The timer still serves the other units on time
+            AtomicInteger freeRunCount = new AtomicInteger(0);
+            Assert.assertTrue(scheduleManager.startJob("free", new Job(
+                    scheduleManager, "freeTimer", 5, 5, TimeUnit.MILLISECONDS, 1, 10, false) {
+                @Override
+                public void run() {
+                    freeRunCount.incrementAndGet();
+                }
+            }));
+            long deadline = System.currentTimeMillis() + 1000;
+            while (freeRunCount.get() < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(10, freeRunCount.get());
+            Assert.assertEquals(0, callerRunsCount.get());
+            Assert.assertTrue(scheduleManager.getScheduleUnit("callerRuns").getJobScheduler().getRejectedJobCount() > 0);
+            Assert.assertTrue(scheduleManager.getScheduleUnit("block").getJobScheduler().getRejectedJobCount() > 0);
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Once the queue drains, the runs go to the executor again (never to the timer thread)
+            callerRunsLatch.countDown();
+            deadline = System.currentTimeMillis() + 1000;
+            while (callerRunsCount.get() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertTrue(callerRunsCount.get() >= 3);
+            for (String threadName : new ArrayList<>(threadNames)) {
+                Assert.assertTrue(threadName.startsWith("JobExecutor-"));
+            }
+            /////////////////////////////////////////////////////////
+        } finally {
+            callerRunsLatch.countDown();
+            blockLatch.countDown();
+            scheduleManager.finish();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Holds the only executor of the unit and fills its queue (of one job)
+     */
+    private static void fillUp(ScheduleManager scheduleManager, String key, CountDownLatch blockLatch) throws InterruptedException {
+        CountDownLatch startLatch = new CountDownLatch(1);
+        Assert.assertTrue(scheduleManager.startJob(key, newJob(key + "-block", 1, () -> {
+            startLatch.countDown();
+            await(blockLatch);
+        })));
+        Assert.assertTrue(startLatch.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(scheduleManager.startJob(key, newJob(key + "-filler", 1, () -> {})));
+    }
+
+}
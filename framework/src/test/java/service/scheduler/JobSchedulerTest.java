@@ -0,0 +1,399 @@
+package service.scheduler;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import service.scheduler.job.Job;
+import service.scheduler.schedule.ScheduleManager;
+import service.scheduler.schedule.handler.JobDispatchMode;
+import service.scheduler.schedule.handler.JobExecutor;
+import service.scheduler.schedule.handler.JobScheduler;
+import service.scheduler.schedule.handler.VirtualJobExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobSchedulerTest {
+
+    @Test
+    public void executorTest() throws Exception {
+        JobExecutor jobExecutor = new JobExecutor(900, 16);
+        try {
+            /////////////////////////////////////////////////////////
+            // Idle : the worker is parked on the queue (no timed polling tick)
+            Thread workerThread = findThread("JobExecutor-900");
+            Assert.assertNotNull(workerThread);
+            Assert.assertTrue(waitForState(workerThread, Thread.State.WAITING));
+
+            // A new job wakes it up at once
+            CountDownLatch runLatch = new CountDownLatch(1);
+            jobExecutor.addJob(newJob("wakeUp", 1, runLatch::countDown));
+            Assert.assertTrue(runLatch.await(1, TimeUnit.SECONDS));
+            // Parked again (a job added before would be polled right after the previous one)
+            Assert.assertTrue(waitForState(workerThread, Thread.State.WAITING));
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Priority order (then FIFO) of the jobs queued behind a running one
+            CountDownLatch blockLatch = new CountDownLatch(1);
+            CountDownLatch startLatch = new CountDownLatch(1);
+            jobExecutor.addJob(newJob("block", 1, () -> {
+                startLatch.countDown();
+                await(blockLatch);
+            }));
+            Assert.assertTrue(startLatch.await(1, TimeUnit.SECONDS));
+
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch doneLatch = new CountDownLatch(4);
+            int[] priorities = {3, 1, 2, 1};
+            String[] names = {"p3", "p1-first", "p2", "p1-second"};
+            for (int i = 0; i < priorities.length; i++) {
+                String name = names[i];
+                Assert.assertTrue(jobExecutor.addJob(newJob(name, priorities[i], () -> {
+                    order.add(name);
+                    doneLatch.countDown();
+                })));
+            }
+            Assert.assertEquals(4, jobExecutor.getQueuedJobCount());
+            Assert.assertEquals(5, jobExecutor.getLoad());
+
+            blockLatch.countDown();
+            Assert.assertTrue(doneLatch.await(1, TimeUnit.SECONDS));
+            Assert.assertEquals(4, order.size());
+            Assert.assertEquals("p1-first", order.get(0));
+            Assert.assertEquals("p1-second", order.get(1));
+            Assert.assertEquals("p2", order.get(2));
+            Assert.assertEquals("p3", order.get(3));
+            /////////////////////////////////////////////////////////
+        } finally {
+            jobExecutor.stop();
+        }
+    }
+
+    @Test
+    public void priorityTest() throws Exception {
+        JobExecutor jobExecutor = new JobExecutor(901, 16);
+        try {
+            /////////////////////////////////////////////////////////
+            // Low priority jobs are queued behind a running one
+            CountDownLatch blockLatch = new CountDownLatch(1);
+            CountDownLatch startLatch = new CountDownLatch(1);
+            jobExecutor.addJob(newJob("block", 1, () -> {
+                startLatch.countDown();
+                await(blockLatch);
+            }));
+            Assert.assertTrue(startLatch.await(1, TimeUnit.SECONDS));
+
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch doneLatch = new CountDownLatch(4);
+            Job highJob = newJob("high", 1, () -> {
+                order.add("high");
+                doneLatch.countDown();
+            });
+            for (int i = 0; i < 3; i++) {
+                String name = "low-" + i;
+                Assert.assertTrue(jobExecutor.addJob(newJob(name, 5, () -> {
+                    // The high priority job arrives while the low priority ones are being run
+                    if (order.isEmpty()) {
+                        jobExecutor.addJob(highJob);
+                    }
+                    order.add(name);
+                    doneLatch.countDown();
+                })));
+            }
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // It runs right after the running job, not after the low priority ones taken before it came
+            blockLatch.countDown();
+            Assert.assertTrue(doneLatch.await(1, TimeUnit.SECONDS));
+            Assert.assertEquals(4, order.size());
+            Assert.assertEquals("low-0", order.get(0));
+            Assert.assertEquals("high", order.get(1));
+            /////////////////////////////////////////////////////////
+        } finally {
+            jobExecutor.stop();
+        }
+    }
+
+    @Test
+    public void stealTest() throws Exception {
+        JobScheduler jobScheduler = new JobScheduler("stealTest", 2, 16, JobDispatchMode.LEAST_LOADED);
+        CountDownLatch slowLatch = new CountDownLatch(1);
+        CountDownLatch gateLatch = new CountDownLatch(1);
+        try {
+            /////////////////////////////////////////////////////////
+            // One executor runs a slow job, the other one waits on a gate
+            CountDownLatch startLatch = new CountDownLatch(2);
+            Assert.assertTrue(jobScheduler.addJobToExecutor(newJob("slow", 1, () -> {
+                startLatch.countDown();
+                await(slowLatch);
+            })));
+            Assert.assertTrue(jobScheduler.addJobToExecutor(newJob("gate", 1, () -> {
+                startLatch.countDown();
+                await(gateLatch);
+            })));
+            Assert.assertTrue(startLatch.await(1, TimeUnit.SECONDS));
+
+            // Same load : the jobs are spread, two of them are queued behind the slow job
+            CountDownLatch doneLatch = new CountDownLatch(4);
+            for (int i = 0; i < 4; i++) {
+                Assert.assertTrue(jobScheduler.addJobToExecutor(newJob("quick-" + i, 1, doneLatch::countDown)));
+            }
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // The gate is opened : the free executor runs its jobs, then steals the ones behind the slow job
+            gateLatch.countDown();
+            Assert.assertTrue(doneLatch.await(1, TimeUnit.SECONDS));
+            Assert.assertEquals(1, slowLatch.getCount());
+            Assert.assertEquals(2, jobScheduler.getStolenJobCount());
+            /////////////////////////////////////////////////////////
+        } finally {
+            slowLatch.countDown();
+            gateLatch.countDown();
+            jobScheduler.stop();
+        }
+    }
+
+    @Test
+    public void wakeTest() throws Exception {
+        JobScheduler jobScheduler = new JobScheduler("wakeTest", 2, 16, JobDispatchMode.LEAST_LOADED);
+        CountDownLatch slowLatch = new CountDownLatch(1);
+        try {
+            /////////////////////////////////////////////////////////
+            // One executor runs a slow job, the other one is parked on its empty queue
+            JobExecutor busyExecutor = jobScheduler.getJobExecutor(0);
+            JobExecutor parkedExecutor = jobScheduler.getJobExecutor(1);
+            CountDownLatch startLatch = new CountDownLatch(1);
+            Assert.assertTrue(busyExecutor.addJob(newJob("slow", 1, () -> {
+                startLatch.countDown();
+                await(slowLatch);
+            })));
+            Assert.assertTrue(startLatch.await(1, TimeUnit.SECONDS));
+            Assert.assertTrue(waitForParked(parkedExecutor));
+            Assert.assertEquals(1, busyExecutor.getLoad());
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // The queue of the busy executor grows to the threshold : the parked one gets the head job & steals the rest
+            CountDownLatch doneLatch = new CountDownLatch(JobExecutor.WAKE_THRESHOLD);
+            for (int i = 0; i < JobExecutor.WAKE_THRESHOLD; i++) {
+                Assert.assertTrue(busyExecutor.addJob(newJob("queued-" + i, 1, doneLatch::countDown)));
+            }
+            Assert.assertTrue(doneLatch.await(1, TimeUnit.SECONDS));
+            Assert.assertEquals(1, slowLatch.getCount());
+            Assert.assertEquals(1, jobScheduler.getHandedOverJobCount());
+            Assert.assertEquals(JobExecutor.WAKE_THRESHOLD - 1, jobScheduler.getStolenJobCount());
+            Assert.assertEquals(1, busyExecutor.getLoad());
+            /////////////////////////////////////////////////////////
+        } finally {
+            slowLatch.countDown();
+            jobScheduler.stop();
+        }
+    }
+
+    @Test
+    public void timerTest() throws Exception {
+        ScheduleManager scheduleManager = new ScheduleManager();
+        try {
+            /////////////////////////////////////////////////////////
+            // Fixed rate : exactly totalRunCount runs, then the timer stops
+            Assert.assertTrue(scheduleManager.initJob("timerTest", 1, 1));
+            AtomicInteger nowRunCount = new AtomicInteger(0);
+            AtomicInteger delayedRunCount = new AtomicInteger(0);
+            Assert.assertTrue(scheduleManager.startJob("timerTest", newTimerJob(scheduleManager, "now", 0, 3, 5, false, nowRunCount)));
+            Assert.assertTrue(scheduleManager.startJob("timerTest", newTimerJob(scheduleManager, "delayed", 20, 3, 4, false, delayedRunCount)));
+
+            Assert.assertTrue(waitForCount(nowRunCount, 5) && waitForCount(delayedRunCount, 4));
+            Assert.assertTrue(waitForNoPendingTimeout(scheduleManager));
+            Thread.sleep(50);
+            Assert.assertEquals(5, nowRunCount.get());
+            Assert.assertEquals(4, delayedRunCount.get());
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Cancel (setIsFinished) : no run after the stop, the timer is dropped
+            AtomicInteger lastedRunCount = new AtomicInteger(0);
+            Job lastedJob = newTimerJob(scheduleManager, "lasted", 0, 3, 0, true, lastedRunCount);
+            Assert.assertTrue(scheduleManager.startJob("timerTest", lastedJob));
+            Assert.assertTrue(waitForCount(lastedRunCount, 3));
+
+            scheduleManager.stopJob("timerTest", lastedJob);
+            Assert.assertTrue(lastedJob.getIsFinished());
+            Assert.assertTrue(lastedJob.getFutureScheduler().isCancelled());
+            Assert.assertTrue(waitForNoPendingTimeout(scheduleManager));
+            int stoppedRunCount = lastedRunCount.get();
+            Thread.sleep(50);
+            Assert.assertEquals(stoppedRunCount, lastedRunCount.get());
+            /////////////////////////////////////////////////////////
+
+            /////////////////////////////////////////////////////////
+            // Rejected by the full queue : the skipped runs are given back, the run count is still exact
+            CountDownLatch blockLatch = new CountDownLatch(1);
+            CountDownLatch startLatch = new CountDownLatch(1);
+            Assert.assertTrue(scheduleManager.startJob("timerTest", newJob("block", 1, () -> {
+                startLatch.countDown();
+                await(blockLatch);
+            })));
+            Assert.assertTrue(startLatch.await(1, TimeUnit.SECONDS));
+            Assert.assertTrue(scheduleManager.startJob("timerTest", newJob("filler", 1, () -> {})));
+
+            AtomicInteger rejectedRunCount = new AtomicInteger(0);
+            Job rejectedJob = newTimerJob(scheduleManager, "rejected", 5, 3, 3, false, rejectedRunCount);
+            Assert.assertTrue(scheduleManager.startJob("timerTest", rejectedJob));
+            JobScheduler jobScheduler = scheduleManager.getScheduleUnit("timerTest").getJobScheduler();
+            long deadline = System.currentTimeMillis() + 1000;
+            while (jobScheduler.getRejectedJobCount() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertTrue(jobScheduler.getRejectedJobCount() >= 3);
+            Assert.assertEquals(0, rejectedRunCount.get());
+            Assert.assertTrue(rejectedJob.getCurRemainRunCount() > 0);
+
+            blockLatch.countDown();
+            Assert.assertTrue(waitForCount(rejectedRunCount, 3));
+            Assert.assertTrue(waitForNoPendingTimeout(scheduleManager));
+            Thread.sleep(50);
+            Assert.assertEquals(3, rejectedRunCount.get());
+            /////////////////////////////////////////////////////////
+        } finally {
+            scheduleManager.finish();
+        }
+    }
+
+    @Test
+    public void virtualThreadTest() throws Exception {
+        // JDK 21+ only
+        Assume.assumeTrue(VirtualJobExecutor.isAvailable());
+
+        JobScheduler jobScheduler = new JobScheduler("virtualTest", 2, 16, JobDispatchMode.VIRTUAL_THREAD);
+        try {
+            Assert.assertEquals(JobDispatchMode.VIRTUAL_THREAD, jobScheduler.getJobDispatchMode());
+            VirtualJobExecutor virtualJobExecutor = jobScheduler.getVirtualJobExecutor();
+            Assert.assertNotNull(virtualJobExecutor);
+
+            /////////////////////////////////////////////////////////
+            // Blocking jobs run on virtual threads, at most poolSize at once
+            AtomicInteger runningCount = new AtomicInteger(0);
+            AtomicInteger maxRunningCount = new AtomicInteger(0);
+            List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch doneLatch = new CountDownLatch(10);
+            for (int i = 0; i < 10; i++) {
+                Assert.assertTrue(jobScheduler.addJobToExecutor(newJob("blocking-" + i, 1, () -> {
+                    maxRunningCount.accumulateAndGet(runningCount.incrementAndGet(), Math::max);
+                    threadNames.add(Thread.currentThread().getName());
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    runningCount.decrementAndGet();
+                    doneLatch.countDown();
+                })));
+            }
+            Assert.assertTrue(doneLatch.await(2, TimeUnit.SECONDS));
+            Assert.assertTrue(maxRunningCount.get() <= 2);
+            for (String threadName : threadNames) {
+                Assert.assertTrue(threadName.startsWith("VirtualJobExecutor-virtualTest-"));
+            }
+            Assert.assertTrue(virtualJobExecutor.getStartedThreadCount() >= 1);
+            /////////////////////////////////////////////////////////
+        } finally {
+            jobScheduler.stop();
+        }
+    }
+
+    @Test
+    public void virtualThreadFallbackTest() {
+        // Before JDK 21 only
+        Assume.assumeFalse(VirtualJobExecutor.isAvailable());
+
+        Assert.assertNull(VirtualJobExecutor.create("fallbackTest", 2, 16));
+        JobScheduler jobScheduler = new JobScheduler("fallbackTest", 2, 16, JobDispatchMode.VIRTUAL_THREAD);
+        try {
+            Assert.assertEquals(JobDispatchMode.LEAST_LOADED, jobScheduler.getJobDispatchMode());
+            Assert.assertNull(jobScheduler.getVirtualJobExecutor());
+        } finally {
+            jobScheduler.stop();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+
+    private static Job newTimerJob(ScheduleManager scheduleManager, String name, int initialDelay, int interval,
+                                   int totalRunCount, boolean isLasted, AtomicInteger runCount) {
+        return new Job(scheduleManager, name, initialDelay, interval, TimeUnit.MILLISECONDS, 1, totalRunCount, isLasted) {
+            @Override
+            public void run() {
+                runCount.incrementAndGet();
+            }
+        };
+    }
+
+    private static boolean waitForCount(AtomicInteger count, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (count.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        return count.get() >= expected;
+    }
+
+    private static boolean waitForNoPendingTimeout(ScheduleManager scheduleManager) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (scheduleManager.getPendingTimeouts() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        return scheduleManager.getPendingTimeouts() == 0;
+    }
+
+    static Job newJob(String name, int priority, Runnable body) {
+        return new Job(null, name, 0, 0, TimeUnit.MILLISECONDS, priority, 1, false) {
+            @Override
+            public void run() {
+                body.run();
+            }
+        };
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread findThread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    private static boolean waitForParked(JobExecutor jobExecutor) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!jobExecutor.isParked() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        return jobExecutor.isParked();
+    }
+
+    private static boolean waitForState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < deadline) {
+            if (thread.getState() == state) {
+                return true;
+            }
+            Thread.sleep(1);
+        }
+        return false;
+    }
+
+}
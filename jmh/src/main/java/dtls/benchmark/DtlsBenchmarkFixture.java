@@ -0,0 +1,288 @@
+package dtls.benchmark;
+
+import dtls.certificate.Certificates;
+import dtls.cipher.DtlsCipherSuite;
+import dtls.cipher.DtlsCipherSuiteList;
+import dtls.compression.DtlsCompressionMethodType;
+import dtls.packet.DtlsPacket;
+import dtls.packet.base.DtlsContentType;
+import dtls.packet.base.DtlsProtocolVersion;
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.packet.recordlayer.DtlsRecordHeader;
+import dtls.packet.recordlayer.DtlsRecordLayer;
+import dtls.ticket.TlsSessionTicket;
+import dtls.type.*;
+import dtls.type.base.DtlsFormat;
+import dtls.type.base.DtlsHandshakeCommonBody;
+import dtls.type.base.DtlsHandshakeType;
+import dtls.type.base.DtlsRandom;
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Realistic DTLS payloads for the codec benchmarks
+ *      - Payloads are generated with a fixed seed, so every run measures the same bytes.
+ *      - Sizes follow a typical RSA/ECDHE deployment (2-level certificate chain, browser-like cipher list).
+ */
+public class DtlsBenchmarkFixture {
+
+    ////////////////////////////////////////////////////////////
+    public static final int LEAF_CERTIFICATE_LENGTH = 1420;
+    public static final int INTERMEDIATE_CERTIFICATE_LENGTH = 1180;
+    public static final int ROOT_CERTIFICATE_LENGTH = 890;
+
+    public static final int SESSION_ID_LENGTH = 32;
+    public static final int COOKIE_LENGTH = 32;
+    public static final int SERVER_KEY_EXCHANGE_LENGTH = 329; // ECDHE (P-256) params + RSA-2048 signature
+    public static final int CLIENT_KEY_EXCHANGE_LENGTH = 66; // ECDHE (P-256) public key
+    public static final int SESSION_TICKET_LENGTH = 192;
+
+    private static final Random random = new Random(0x4A44544CL);
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    /**
+     * @param count Number of cipher suites (2 bytes each)
+     */
+    public static DtlsCipherSuiteList createCipherSuiteList(int count) {
+        List<DtlsCipherSuite> dtlsCipherSuites = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int cipherSuite = 0xC000 + i;
+            dtlsCipherSuites.add(new DtlsCipherSuite(new byte[] { (byte) (cipherSuite >> 8), (byte) cipherSuite }));
+        }
+        return new DtlsCipherSuiteList(dtlsCipherSuites);
+    }
+
+    public static DtlsClientHello createClientHello(int cipherSuiteCount) {
+        DtlsCipherSuiteList dtlsCipherSuiteList = createCipherSuiteList(cipherSuiteCount);
+        return new DtlsClientHello(
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                DtlsRandom.getRandom(),
+                (short) SESSION_ID_LENGTH, randomBytes(SESSION_ID_LENGTH),
+                (short) COOKIE_LENGTH, randomBytes(COOKIE_LENGTH),
+                dtlsCipherSuiteList.getTotalLength(), dtlsCipherSuiteList,
+                (short) 1, new DtlsCompressionMethodType(DtlsCompressionMethodType.TLS_COMPRESSION_METHOD_NULL)
+        );
+    }
+
+    public static DtlsServerHello createServerHello() {
+        return new DtlsServerHello(
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                DtlsRandom.getRandom(),
+                (short) SESSION_ID_LENGTH, randomBytes(SESSION_ID_LENGTH),
+                new DtlsCipherSuite(new byte[] { (byte) 0xC0, (byte) 0x2F }), // TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256
+                new DtlsCompressionMethodType(DtlsCompressionMethodType.TLS_COMPRESSION_METHOD_NULL)
+        );
+    }
+
+    public static DtlsHelloVerifyRequest createHelloVerifyRequest() {
+        return new DtlsHelloVerifyRequest(
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_0),
+                (short) COOKIE_LENGTH, randomBytes(COOKIE_LENGTH)
+        );
+    }
+
+    /**
+     * Leaf + intermediate + root certificates, each entry prefixed with its 3-byte length (certificate_list)
+     */
+    public static DtlsCertificate createCertificateChain() {
+        int[] certificateLengths = { LEAF_CERTIFICATE_LENGTH, INTERMEDIATE_CERTIFICATE_LENGTH, ROOT_CERTIFICATE_LENGTH };
+
+        int chainLength = 0;
+        for (int certificateLength : certificateLengths) {
+            chainLength += 3 + certificateLength;
+        }
+
+        // The first entry is the Certificates object itself, the rest of the list is carried as its payload.
+        byte[] chain = new byte[chainLength - 3];
+        int index = 0;
+        for (int i = 0; i < certificateLengths.length; i++) {
+            if (i > 0) {
+                chain[index++] = (byte) (certificateLengths[i] >> 16);
+                chain[index++] = (byte) (certificateLengths[i] >> 8);
+                chain[index++] = (byte) certificateLengths[i];
+            }
+            byte[] certificate = randomBytes(certificateLengths[i]);
+            certificate[0] = 0x30; // DER SEQUENCE
+            System.arraycopy(certificate, 0, chain, index, certificate.length);
+            index += certificate.length;
+        }
+
+        Certificates certificates = new Certificates(chain.length, chain);
+        return new DtlsCertificate(3 + chain.length, certificates);
+    }
+
+    public static DtlsServerKeyExchange createServerKeyExchange() {
+        return new DtlsServerKeyExchange(randomBytes(SERVER_KEY_EXCHANGE_LENGTH));
+    }
+
+    public static DtlsClientKeyExchange createClientKeyExchange() {
+        return new DtlsClientKeyExchange(randomBytes(CLIENT_KEY_EXCHANGE_LENGTH));
+    }
+
+    public static DtlsNewSessionTicket createNewSessionTicket() {
+        return new DtlsNewSessionTicket(new TlsSessionTicket(7200, SESSION_TICKET_LENGTH, randomBytes(SESSION_TICKET_LENGTH)));
+    }
+
+    public static DtlsFormat createFormat(int handshakeType, int cipherSuiteCount) {
+        switch (handshakeType) {
+            case DtlsHandshakeType.TLS_TYPE_HELLO_REQUEST:
+                return new DtlsHelloRequest();
+            case DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO:
+                return createClientHello(cipherSuiteCount);
+            case DtlsHandshakeType.TLS_TYPE_SERVER_HELLO:
+                return createServerHello();
+            case DtlsHandshakeType.TLS_TYPE_HELLO_VERIFY_REQUEST:
+                return createHelloVerifyRequest();
+            case DtlsHandshakeType.TLS_TYPE_NEW_SESSION_TICKET:
+                return createNewSessionTicket();
+            case DtlsHandshakeType.TLS_TYPE_CERTIFICATE:
+                return createCertificateChain();
+            case DtlsHandshakeType.TLS_TYPE_SERVER_KEY_EXCHANGE:
+                return createServerKeyExchange();
+            case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_REQUEST:
+                return new DtlsCertificateRequest();
+            case DtlsHandshakeType.TLS_TYPE_SERVER_HELLO_DONE:
+                return new DtlsServerHelloDone();
+            case DtlsHandshakeType.TLS_TYPE_CERTIFICATE_VERIFY:
+                return new DtlsCertificateVerify();
+            case DtlsHandshakeType.TLS_TYPE_CLIENT_KEY_EXCHANGE:
+                return createClientKeyExchange();
+            case DtlsHandshakeType.TLS_TYPE_FINISHED:
+                return new DtlsFinished();
+            default:
+                throw new IllegalArgumentException("Unknown handshake type (" + handshakeType + ")");
+        }
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    public static DtlsRecordHeader createRecordHeader(int epoch, long sequenceNumber, int length) {
+        return new DtlsRecordHeader(
+                new DtlsContentType(DtlsContentType.TLS_TYPE_HANDSHAKE),
+                new DtlsProtocolVersion(DtlsProtocolVersion.DTLS_1_2),
+                epoch, sequenceNumber, length
+        );
+    }
+
+    public static DtlsRecordLayer createHandshakeRecord(int handshakeType, int messageSequence, long sequenceNumber, DtlsFormat dtlsFormat) {
+        int formatLength = dtlsFormat.encodedLength();
+        DtlsHandshake dtlsHandshake = new DtlsHandshake(
+                new DtlsHandshakeCommonBody(
+                        DtlsHandshakeType.valueOf(handshakeType),
+                        formatLength, messageSequence,
+                        0, formatLength
+                ),
+                dtlsFormat
+        );
+        return new DtlsRecordLayer(createRecordHeader(0, sequenceNumber, dtlsHandshake.encodedLength()), dtlsHandshake);
+    }
+
+    public static DtlsPacket createHandshakePacket(int handshakeType, int cipherSuiteCount) {
+        List<DtlsRecordLayer> dtlsRecordLayerList = new ArrayList<>();
+        dtlsRecordLayerList.add(createHandshakeRecord(handshakeType, 0, 0, createFormat(handshakeType, cipherSuiteCount)));
+        return new DtlsPacket(dtlsRecordLayerList);
+    }
+
+    /**
+     * Server flight 4 (ServerHello, Certificate, ServerKeyExchange, ServerHelloDone)
+     *      with every handshake message split into fragments of at most the given size (one record per fragment)
+     */
+    public static DtlsPacket createFragmentedServerFlight(int maxFragmentLength) {
+        int[] handshakeTypes = {
+                DtlsHandshakeType.TLS_TYPE_SERVER_HELLO,
+                DtlsHandshakeType.TLS_TYPE_CERTIFICATE,
+                DtlsHandshakeType.TLS_TYPE_SERVER_KEY_EXCHANGE,
+                DtlsHandshakeType.TLS_TYPE_SERVER_HELLO_DONE
+        };
+
+        List<DtlsRecordLayer> dtlsRecordLayerList = new ArrayList<>();
+        long sequenceNumber = 0;
+        for (int messageSequence = 0; messageSequence < handshakeTypes.length; messageSequence++) {
+            int handshakeType = handshakeTypes[messageSequence];
+            byte[] body = createFormat(handshakeType, 0).getData();
+            int bodyLength = body == null ? 0 : body.length;
+
+            int fragmentOffset = 0;
+            do {
+                int fragmentLength = Math.min(maxFragmentLength, bodyLength - fragmentOffset);
+                byte[] fragment = new byte[fragmentLength];
+                if (fragmentLength > 0) {
+                    System.arraycopy(body, fragmentOffset, fragment, 0, fragmentLength);
+                }
+
+                DtlsHandshake dtlsHandshake = new DtlsHandshake(
+                        new DtlsHandshakeCommonBody(
+                                DtlsHandshakeType.valueOf(handshakeType),
+                                bodyLength, messageSequence,
+                                fragmentOffset, fragmentLength
+                        ),
+                        new DtlsFragmentBody(fragment)
+                );
+                dtlsRecordLayerList.add(new DtlsRecordLayer(
+                        createRecordHeader(0, sequenceNumber++, dtlsHandshake.encodedLength()),
+                        dtlsHandshake
+                ));
+
+                fragmentOffset += fragmentLength;
+            } while (fragmentOffset < bodyLength);
+        }
+
+        return new DtlsPacket(dtlsRecordLayerList);
+    }
+
+    /**
+     * Walks the records of a (fragmented) flight and reads the fragment headers in place
+     * @return Sum of the fragment lengths (to be consumed by the benchmark)
+     */
+    public static long readFragmentHeaders(ByteBuf buf) {
+        long totalFragmentLength = 0;
+        int index = buf.readerIndex();
+        int endIndex = buf.writerIndex();
+        while (endIndex - index >= DtlsRecordHeader.LENGTH + DtlsHandshakeCommonBody.LENGTH) {
+            DtlsRecordHeader dtlsRecordHeader = new DtlsRecordHeader(buf, index);
+            DtlsHandshakeCommonBody dtlsHandshakeCommonBody = new DtlsHandshakeCommonBody(buf, index + DtlsRecordHeader.LENGTH);
+            totalFragmentLength += dtlsHandshakeCommonBody.getFragmentLength();
+            index += DtlsRecordHeader.LENGTH + dtlsRecordHeader.getLength();
+        }
+        return totalFragmentLength;
+    }
+    ////////////////////////////////////////////////////////////
+
+    /**
+     * Raw handshake fragment (the body of one DTLS handshake fragment is not decodable on its own)
+     */
+    static class DtlsFragmentBody extends DtlsFormat {
+
+        private final byte[] fragment;
+
+        DtlsFragmentBody(byte[] fragment) {
+            this.fragment = fragment;
+        }
+
+        @Override
+        public byte[] getData() {
+            return fragment;
+        }
+
+        @Override
+        public int encodedLength() {
+            return fragment.length;
+        }
+
+        @Override
+        public void encodeTo(ByteBuf buf) {
+            buf.writeBytes(fragment);
+        }
+    }
+
+}
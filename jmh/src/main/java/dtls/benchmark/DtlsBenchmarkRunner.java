@@ -0,0 +1,33 @@
+package dtls.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the DTLS codec benchmarks with the GC profiler
+ *      - Primary metric : ops/s (throughput)
+ *      - gc.alloc.rate.norm : bytes allocated per operation
+ *      - Result file : jmh-result.json (for regression comparison)
+ *
+ * Usage : java -jar target/benchmarks.jar [benchmark regex]
+ */
+public class DtlsBenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : DtlsBenchmarkRunner.class.getPackage().getName() + ".*";
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build();
+
+        new Runner(options).run();
+    }
+
+}
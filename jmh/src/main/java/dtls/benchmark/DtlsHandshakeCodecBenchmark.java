@@ -0,0 +1,131 @@
+package dtls.benchmark;
+
+import dtls.packet.DtlsPacket;
+import dtls.packet.handshake.DtlsHandshake;
+import dtls.packet.recordlayer.DtlsRecordLayer;
+import dtls.type.base.DtlsHandshakeType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode / decode cost of a single-record DtlsPacket for every handshake message type
+ *      - encode* : legacy nested getData() vs single-pass encodeTo() into a pooled buffer
+ *      - decode* : byte[] decoder vs in-place ByteBuf decoder (the handshake body is parsed lazily)
+ *      - decode*AndParse : decoding + DtlsFormat parsing of every handshake body
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtlsHandshakeCodecBenchmark {
+
+    ////////////////////////////////////////////////////////////
+    @Param({
+            "HELLO_REQUEST", "CLIENT_HELLO", "SERVER_HELLO", "HELLO_VERIFY_REQUEST",
+            "NEW_SESSION_TICKET", "CERTIFICATE", "SERVER_KEY_EXCHANGE", "CERTIFICATE_REQUEST",
+            "SERVER_HELLO_DONE", "CERTIFICATE_VERIFY", "CLIENT_KEY_EXCHANGE", "FINISHED"
+    })
+    public String handshakeType;
+
+    @Param({ "64" })
+    public int cipherSuiteCount;
+
+    private DtlsPacket dtlsPacket;
+    private byte[] encodedData;
+    private ByteBuf encodedBuf;
+    private ByteBuf outputBuf;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    @Setup
+    public void setup() {
+        dtlsPacket = DtlsBenchmarkFixture.createHandshakePacket(toHandshakeType(handshakeType), cipherSuiteCount);
+        encodedData = dtlsPacket.getData();
+        encodedBuf = Unpooled.directBuffer(encodedData.length).writeBytes(encodedData);
+        outputBuf = PooledByteBufAllocator.DEFAULT.directBuffer(encodedData.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encodedBuf.release();
+        outputBuf.release();
+    }
+
+    private static int toHandshakeType(String name) {
+        switch (name) {
+            case "HELLO_REQUEST": return DtlsHandshakeType.TLS_TYPE_HELLO_REQUEST;
+            case "CLIENT_HELLO": return DtlsHandshakeType.TLS_TYPE_CLIENT_HELLO;
+            case "SERVER_HELLO": return DtlsHandshakeType.TLS_TYPE_SERVER_HELLO;
+            case "HELLO_VERIFY_REQUEST": return DtlsHandshakeType.TLS_TYPE_HELLO_VERIFY_REQUEST;
+            case "NEW_SESSION_TICKET": return DtlsHandshakeType.TLS_TYPE_NEW_SESSION_TICKET;
+            case "CERTIFICATE": return DtlsHandshakeType.TLS_TYPE_CERTIFICATE;
+            case "SERVER_KEY_EXCHANGE": return DtlsHandshakeType.TLS_TYPE_SERVER_KEY_EXCHANGE;
+            case "CERTIFICATE_REQUEST": return DtlsHandshakeType.TLS_TYPE_CERTIFICATE_REQUEST;
+            case "SERVER_HELLO_DONE": return DtlsHandshakeType.TLS_TYPE_SERVER_HELLO_DONE;
+            case "CERTIFICATE_VERIFY": return DtlsHandshakeType.TLS_TYPE_CERTIFICATE_VERIFY;
+            case "CLIENT_KEY_EXCHANGE": return DtlsHandshakeType.TLS_TYPE_CLIENT_KEY_EXCHANGE;
+            case "FINISHED": return DtlsHandshakeType.TLS_TYPE_FINISHED;
+            default: throw new IllegalArgumentException("Unknown handshake type (" + name + ")");
+        }
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    @Benchmark
+    public byte[] encodeGetData() {
+        return dtlsPacket.getData();
+    }
+
+    @Benchmark
+    public int encodeToPooledBuffer() {
+        outputBuf.clear();
+        dtlsPacket.encodeTo(outputBuf);
+        return outputBuf.writerIndex();
+    }
+
+    @Benchmark
+    public void encodeAllocatePooled(Blackhole blackhole) {
+        ByteBuf buf = dtlsPacket.encode(PooledByteBufAllocator.DEFAULT);
+        blackhole.consume(buf.writerIndex());
+        buf.release();
+    }
+
+    @Benchmark
+    public DtlsPacket decodeByteArray() {
+        return new DtlsPacket(encodedData);
+    }
+
+    @Benchmark
+    public DtlsPacket decodeByteBuf() {
+        DtlsPacket decodedPacket = new DtlsPacket(encodedBuf);
+        decodedPacket.release();
+        return decodedPacket;
+    }
+
+    @Benchmark
+    public void decodeByteArrayAndParse(Blackhole blackhole) {
+        parse(new DtlsPacket(encodedData), blackhole);
+    }
+
+    @Benchmark
+    public void decodeByteBufAndParse(Blackhole blackhole) {
+        DtlsPacket decodedPacket = new DtlsPacket(encodedBuf);
+        parse(decodedPacket, blackhole);
+        decodedPacket.release();
+    }
+
+    private static void parse(DtlsPacket decodedPacket, Blackhole blackhole) {
+        for (DtlsRecordLayer dtlsRecordLayer : decodedPacket.getDtlsRecordLayerList()) {
+            blackhole.consume(((DtlsHandshake) dtlsRecordLayer.getDtlsHandshakeFactory()).getDtlsFormat());
+        }
+    }
+    ////////////////////////////////////////////////////////////
+
+}
@@ -0,0 +1,143 @@
+package dtls.benchmark;
+
+import dtls.cipher.DtlsCipherSuiteList;
+import dtls.packet.DtlsPacket;
+import dtls.packet.recordlayer.DtlsRecordHeader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode / decode cost of the record-level building blocks
+ *      - DtlsRecordHeader (13 bytes)
+ *      - DtlsCipherSuiteList (long client cipher list)
+ *      - A fragmented server flight (ServerHello ~ ServerHelloDone, one record per fragment)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtlsRecordCodecBenchmark {
+
+    ////////////////////////////////////////////////////////////
+    @Param({ "16", "128" })
+    public int cipherSuiteCount;
+
+    @Param({ "500", "1200" })
+    public int maxFragmentLength;
+
+    private DtlsRecordHeader dtlsRecordHeader;
+    private byte[] recordHeaderData;
+    private ByteBuf recordHeaderBuf;
+
+    private DtlsCipherSuiteList dtlsCipherSuiteList;
+    private byte[] cipherSuiteListData;
+
+    private DtlsPacket fragmentedFlight;
+    private ByteBuf fragmentedFlightBuf;
+    private ByteBuf outputBuf;
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    @Setup
+    public void setup() {
+        dtlsRecordHeader = DtlsBenchmarkFixture.createRecordHeader(1, 0x0000123456789AL, 1200);
+        recordHeaderData = dtlsRecordHeader.getData();
+        recordHeaderBuf = Unpooled.directBuffer(recordHeaderData.length).writeBytes(recordHeaderData);
+
+        dtlsCipherSuiteList = DtlsBenchmarkFixture.createCipherSuiteList(cipherSuiteCount);
+        cipherSuiteListData = dtlsCipherSuiteList.getData();
+
+        fragmentedFlight = DtlsBenchmarkFixture.createFragmentedServerFlight(maxFragmentLength);
+        byte[] fragmentedFlightData = fragmentedFlight.getData();
+        fragmentedFlightBuf = Unpooled.directBuffer(fragmentedFlightData.length).writeBytes(fragmentedFlightData);
+        outputBuf = PooledByteBufAllocator.DEFAULT.directBuffer(fragmentedFlightData.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        recordHeaderBuf.release();
+        fragmentedFlightBuf.release();
+        outputBuf.release();
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    // DtlsRecordHeader
+    @Benchmark
+    public byte[] recordHeaderEncodeGetData() {
+        return dtlsRecordHeader.getData();
+    }
+
+    @Benchmark
+    public int recordHeaderEncodeTo() {
+        outputBuf.clear();
+        dtlsRecordHeader.encodeTo(outputBuf);
+        return outputBuf.writerIndex();
+    }
+
+    @Benchmark
+    public DtlsRecordHeader recordHeaderDecodeByteArray() {
+        return new DtlsRecordHeader(recordHeaderData);
+    }
+
+    @Benchmark
+    public DtlsRecordHeader recordHeaderDecodeByteBuf() {
+        return new DtlsRecordHeader(recordHeaderBuf, recordHeaderBuf.readerIndex());
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    // DtlsCipherSuiteList
+    @Benchmark
+    public byte[] cipherSuiteListEncodeGetData() {
+        return dtlsCipherSuiteList.getData();
+    }
+
+    @Benchmark
+    public int cipherSuiteListEncodeTo() {
+        outputBuf.clear();
+        dtlsCipherSuiteList.encodeTo(outputBuf);
+        return outputBuf.writerIndex();
+    }
+
+    @Benchmark
+    public DtlsCipherSuiteList cipherSuiteListDecode() {
+        return new DtlsCipherSuiteList(cipherSuiteListData);
+    }
+    ////////////////////////////////////////////////////////////
+
+    ////////////////////////////////////////////////////////////
+    // Fragmented flight
+    @Benchmark
+    public byte[] fragmentedFlightEncodeGetData() {
+        return fragmentedFlight.getData();
+    }
+
+    @Benchmark
+    public int fragmentedFlightEncodeTo() {
+        outputBuf.clear();
+        fragmentedFlight.encodeTo(outputBuf);
+        return outputBuf.writerIndex();
+    }
+
+    @Benchmark
+    public long fragmentedFlightReadFragmentHeaders() {
+        return DtlsBenchmarkFixture.readFragmentHeaders(fragmentedFlightBuf);
+    }
+
+    @Benchmark
+    public DtlsPacket fragmentedFlightDecodeByteBuf() {
+        // Fragment bodies are not parsed (lazy DtlsHandshake), only the record and common body headers are read
+        DtlsPacket decodedPacket = new DtlsPacket(fragmentedFlightBuf);
+        decodedPacket.release();
+        return decodedPacket;
+    }
+    ////////////////////////////////////////////////////////////
+
+}